@@ -0,0 +1,132 @@
+package org.nucleodevel.webapptemplate.benchmark;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.entity.EntitySorter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ *   Compares EntitySorter, used by AbstractDao.sort(), with Collections.sort() in the natural 
+ *   order of the entities, which computes two comparable strings per comparison. Every 
+ *   operation sorts a new copy of the same shuffled list, so the copy is measured by all of 
+ *   them.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntitySorterBenchmark {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	@Param({"1000", "100000"})
+	private int entities;
+	
+	private List<Item> shuffled;
+	
+	private Collator collator;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		shuffled = new ArrayList<Item>(entities);
+		for (int i = 0; i < entities; i++)
+			shuffled.add(new Item((long) i, "Item " + Long.toString(random.nextLong(), 36)));
+		collator = Collator.getInstance(Locale.ROOT);
+	}
+	
+	@Benchmark
+	public List<Item> entitySorter() {
+		return EntitySorter.sort(new ArrayList<Item>(shuffled));
+	}
+	
+	@Benchmark
+	public List<Item> entitySorterWithCollator() {
+		return EntitySorter.sort(new ArrayList<Item>(shuffled), collator);
+	}
+	
+	@Benchmark
+	public List<Item> collectionsSort() {
+		List<Item> list = new ArrayList<Item>(shuffled);
+		Collections.sort(list);
+		return list;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Support classes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Entity that keeps the default compareTo() of AbstractEntity.
+	 * </p>
+	 */
+	public static class Item extends AbstractEntity<Long> {
+		
+		private Long id;
+		
+		private final String name;
+		
+		public Item(Long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+		
+		@Override
+		public Long getEntityId() {
+			return id;
+		}
+		
+		@Override
+		public void setEntityId(Long id) {
+			this.id = id;
+		}
+		
+		@Override
+		protected String getViewString() {
+			return name;
+		}
+		
+	}
+	
+}
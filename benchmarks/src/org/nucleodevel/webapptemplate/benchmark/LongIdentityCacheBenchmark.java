@@ -0,0 +1,95 @@
+package org.nucleodevel.webapptemplate.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.nucleodevel.webapptemplate.dao.LongIdentityCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ *   Compares the lookups of LongIdentityCache, used by AbstractDao.selectOneCached(), with the 
+ *   ones of a HashMap&lt;Long, E&gt;, which boxes every ID. The IDs looked up are drawn from the 
+ *   cached ones, in random order, so every lookup is a hit.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LongIdentityCacheBenchmark {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	@Param({"1024", "65536"})
+	private int entries;
+	
+	private long[] ids;
+	
+	private int next;
+	
+	private LongIdentityCache<Object> cache;
+	
+	private Map<Long, Object> map;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		cache = new LongIdentityCache<Object>(entries, false);
+		map = new HashMap<Long, Object>();
+		long[] cached = new long[entries];
+		for (int i = 0; i < entries; i++) {
+			cached[i] = random.nextInt(Integer.MAX_VALUE);
+			Object entity = new Object();
+			cache.put(cached[i], entity);
+			map.put(cached[i], entity);
+		}
+		ids = new long[4096];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = cached[random.nextInt(entries)];
+	}
+	
+	@Benchmark
+	public Object longIdentityCache() {
+		return cache.get(nextId());
+	}
+	
+	@Benchmark
+	public Object hashMap() {
+		return map.get(nextId());
+	}
+	
+	private long nextId() {
+		return ids[next++ & (ids.length - 1)];
+	}
+	
+}
@@ -0,0 +1,172 @@
+package org.nucleodevel.webapptemplate.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.nucleodevel.webapptemplate.ws.rest.SmileProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ *   Compares writing and reading a list of entities in Smile, through SmileProvider, with doing 
+ *   it in XML, through JAXB as the XML provider of Jersey does, which are the two media types 
+ *   that AbstractRestClient may exchange with AbstractRestResource.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SmileBenchmark {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+	
+	@Param({"10", "1000"})
+	private int entities;
+	
+	private Items items;
+	
+	private SmileProvider smile;
+	
+	private JAXBContext jaxb;
+	
+	private byte[] smileBytes;
+	
+	private byte[] xmlBytes;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	@Setup
+	public void setup() throws IOException, JAXBException {
+		items = new Items();
+		for (int i = 0; i < entities; i++) {
+			Item item = new Item();
+			item.id = 1000000L + i;
+			item.name = "Item " + i;
+			item.created = new Date(1500000000000L + i * 60000L);
+			item.amount = i * 7L;
+			item.active = i % 2 == 0;
+			items.item.add(item);
+		}
+		smile = new SmileProvider();
+		jaxb = JAXBContext.newInstance(Items.class);
+		smileBytes = writeSmile().toByteArray();
+		xmlBytes = writeXml().toByteArray();
+	}
+	
+	@Benchmark
+	public ByteArrayOutputStream writeSmile() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		smile.writeTo(
+			items, Items.class, Items.class, NO_ANNOTATIONS, 
+			SmileProvider.APPLICATION_SMILE_TYPE, null, out
+		);
+		return out;
+	}
+	
+	@Benchmark
+	public ByteArrayOutputStream writeXml() throws JAXBException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		jaxb.createMarshaller().marshal(items, out);
+		return out;
+	}
+	
+	@Benchmark
+	public Object readSmile() throws IOException {
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Class<Object> type = (Class) Items.class;
+		return smile.readFrom(
+			type, Items.class, NO_ANNOTATIONS, SmileProvider.APPLICATION_SMILE_TYPE, null, 
+			new ByteArrayInputStream(smileBytes)
+		);
+	}
+	
+	@Benchmark
+	public Object readXml() throws JAXBException {
+		return jaxb.createUnmarshaller().unmarshal(new ByteArrayInputStream(xmlBytes));
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Support classes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Entity mapped like the entities exchanged by the REST resources.
+	 * </p>
+	 */
+	@XmlRootElement
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class Item {
+		
+		private Long id;
+		
+		private String name;
+		
+		private Date created;
+		
+		private Long amount;
+		
+		private boolean active;
+		
+	}
+	
+	/**
+	 * <p>
+	 *   List of entities, which is what the resources return by default.
+	 * </p>
+	 */
+	@XmlRootElement
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class Items {
+		
+		@XmlElement
+		private List<Item> item = new ArrayList<Item>();
+		
+	}
+	
+}
@@ -1,13 +1,33 @@
 package org.nucleodevel.webapptemplate.dao;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.Collections;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
-import org.nucleodevel.webapptemplate.util.ParameterizedClassUtils;
+import org.nucleodevel.webapptemplate.entity.EntitySorter;
+import org.nucleodevel.webapptemplate.metrics.MetricsRegistry;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+import org.nucleodevel.webapptemplate.util.ValueUtils;
 
 /**
  * <p>
@@ -27,6 +47,22 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 	 * --------------------------------------------------------------------------------------------
 	 */
 	
+	
+	/**
+	 * <p>
+	 *   Identity caches shared by every DAO instance of the same entity class.
+	 * </p>
+	 */
+	private static final ConcurrentMap<Class<?>, LongIdentityCache<?>> IDENTITY_CACHES = 
+		new ConcurrentHashMap<Class<?>, LongIdentityCache<?>>();
+	
+	/**
+	 * <p>
+	 *   Write listeners of each entity class, notified by every DAO instance of that class.
+	 * </p>
+	 */
+	private static final ConcurrentMap<Class<?>, List<DaoWriteListener<?>>> WRITE_LISTENERS = 
+		new ConcurrentHashMap<Class<?>, List<DaoWriteListener<?>>>();
     
 	/**
      * <p>
@@ -36,6 +72,14 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
      */
     private Class<E> entityClass;
 	
+	/**
+	 * <p>
+	 *   Maximum time, in milliseconds, of each read query of the DAO in the datasource, or zero 
+	 *   for no limit.
+	 * </p>
+	 */
+	private int queryTimeout;
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -44,17 +88,33 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 	 */
 	
 
+	public int getQueryTimeout() {
+		return queryTimeout;
+	}
+	
+	/**
+	 * <p>
+	 *   Sets the maximum time, in milliseconds, of each read query of the DAO in the datasource, 
+	 *   or zero for no limit, such as for the DAO of a report that must not run forever. It is 
+	 *   applied by the subclasses whose datasource supports it, to the queries of 
+	 *   selectAllByRange(), forEach(), selectCount() and selectAggregateByTimeBucket(), which 
+	 *   then fail when it is exceeded and can be stopped by cancelQueries().
+	 * </p>
+	 */
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = Math.max(queryTimeout, 0);
+	}
+
     /**
      * <p>
-     *   Returns the class<?> of E via ParameterizedClassUtils
+     *   Returns the class<?> of E via ClassDescriptor
      * </p>
      */
     @SuppressWarnings("unchecked")
 	protected Class<E> getEntityClass() {
     	if (entityClass == null)
     		entityClass = 
-    			(Class<E>) ParameterizedClassUtils.
-    				getParameterClassFromParameterizedClass(getClass(), 0);
+    			(Class<E>) ClassDescriptor.of(getClass()).getParameterClass(AbstractDao.class, 0);
     	return entityClass;
     }
 
@@ -67,19 +127,8 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 	@SuppressWarnings("unchecked")
 	public E getNewEntityInstance() {
 		try {
-			Constructor<?> cons = getEntityClass().getConstructor();
-			return (E) cons.newInstance();
-		} catch (InstantiationException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			e.printStackTrace();
-		} catch (NoSuchMethodException e) {
-			e.printStackTrace();
-		} catch (SecurityException e) {
+			return (E) ClassDescriptor.of(getEntityClass()).newInstance();
+		} catch (IllegalStateException e) {
 			e.printStackTrace();
 		}
 		return null;
@@ -105,6 +154,26 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 		return true;
 	}
     
+	/**
+	 * <p>
+	 *   Same as isAnUniqueEntity() for the insertion of a batch of entities, which are also 
+	 *   checked against each other: an entity whose unique values repeat those of a previous 
+	 *   entity of the batch is not unique. By default each entity is checked by 
+	 *   isAnUniqueEntity(), but a subclass should check all of them in a few operations.
+	 * </p>
+	 * @return Whether each entity, in the order of the list, is unique.
+	 */
+	public boolean[] areUniqueEntities(List<E> entities) {
+		boolean[] unique = new boolean[entities.size()];
+		Set<Map<String, Object>> seen = new HashSet<Map<String, Object>>();
+		for (int i = 0; i < entities.size(); i++) {
+			Map<String, Object> params = getUniqueParams(entities.get(i));
+			unique[i] = 
+				(params == null || seen.add(params)) && isAnUniqueEntity(entities.get(i), true);
+		}
+		return unique;
+	}
+    
     /**
      * <p>
      *   A subclass must implement a method that returns the values of the unique attributes of the
@@ -112,6 +181,155 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
      * </p>
      */
     protected abstract Map<String, Object> getUniqueParams(E entity);
+    
+    /**
+     * <p>
+     *   Returns the maximum number of entities kept by the identity cache used by 
+     *   selectOneCached(). The cache is shared by all DAOs of E and only works for entities with 
+     *   integral IDs. Since the cached instances are shared between users, it is intended for 
+     *   reference data that is read far more often than written. Zero, the default, disables it.
+     * </p>
+     */
+    protected int getIdentityCacheSize() {
+    	return 0;
+    }
+    
+    /**
+     * <p>
+     *   Indicates whether the identity cache holds its entities by soft references, so that they 
+     *   can be reclaimed under memory pressure. False by default.
+     * </p>
+     */
+    protected boolean isIdentityCacheSoft() {
+    	return false;
+    }
+    
+    /**
+     * <p>
+     *   Returns the identity cache of E, or null if it is disabled or the ID of E is not an 
+     *   integral number.
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+	private LongIdentityCache<E> getIdentityCache() {
+    	int size = getIdentityCacheSize();
+    	if (size <= 0)
+    		return null;
+    	
+    	LongIdentityCache<?> cache = IDENTITY_CACHES.get(getEntityClass());
+    	if (cache == null) {
+    		if (!isIntegralId())
+    			return null;
+    		cache = IDENTITY_CACHES.computeIfAbsent(
+    			getEntityClass(), key -> new LongIdentityCache<E>(size, isIdentityCacheSoft())
+    		);
+    	}
+    	return (LongIdentityCache<E>) cache;
+    }
+    
+    /**
+     * <p>
+     *   Indicates whether the ID of E is integral, according to its IdCodec.
+     * </p>
+     */
+    private boolean isIntegralId() {
+    	return ClassDescriptor.of(getEntityClass()).getIdCodec().isIntegral();
+    }
+    
+    /**
+     * <p>
+     *   Removes the entity whose ID is passed by parameter from the identity cache. Subclasses 
+     *   call it after updating or deleting an entity.
+     * </p>
+     */
+    protected void evictFromIdentityCache(Object id) {
+    	if (id instanceof Number && getIdentityCacheSize() > 0) {
+    		LongIdentityCache<?> cache = IDENTITY_CACHES.get(getEntityClass());
+    		if (cache != null)
+    			cache.remove(((Number) id).longValue());
+    	}
+    }
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Write listeners
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Registers a listener of the inserts and deletes of the entities of the class passed by 
+	 *   parameter, performed by any DAO.
+	 * </p>
+	 */
+	public static <T extends AbstractEntity<?>> void addWriteListener(
+		Class<T> entityClass, DaoWriteListener<? super T> listener
+	) {
+		WRITE_LISTENERS.computeIfAbsent(
+			entityClass, key -> new CopyOnWriteArrayList<DaoWriteListener<?>>()
+		).add(listener);
+	}
+	
+	/**
+	 * <p>
+	 *   Unregisters a listener registered by addWriteListener().
+	 * </p>
+	 */
+	public static void removeWriteListener(Class<?> entityClass, DaoWriteListener<?> listener) {
+		List<DaoWriteListener<?>> listeners = WRITE_LISTENERS.get(entityClass);
+		if (listeners != null)
+			listeners.remove(listener);
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether there are write listeners of E, in which case subclasses must know the 
+	 *   entities they delete, instead of deleting them by ID only.
+	 * </p>
+	 */
+	protected boolean hasWriteListeners() {
+		List<DaoWriteListener<?>> listeners = WRITE_LISTENERS.get(getEntityClass());
+		return listeners != null && !listeners.isEmpty();
+	}
+	
+	/**
+	 * <p>
+	 *   Notifies the write listeners of E that the entity was inserted. Subclasses call it after 
+	 *   each successful insert.
+	 * </p>
+	 */
+	protected void fireInserted(E entity) {
+		fireWrite(entity, true);
+	}
+	
+	/**
+	 * <p>
+	 *   Notifies the write listeners of E that the entity was deleted. Subclasses call it after 
+	 *   each successful delete.
+	 * </p>
+	 */
+	protected void fireDeleted(E entity) {
+		fireWrite(entity, false);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void fireWrite(E entity, boolean inserted) {
+		List<DaoWriteListener<?>> listeners = WRITE_LISTENERS.get(getEntityClass());
+		if (listeners != null)
+			for (DaoWriteListener<?> listener: listeners)
+				try {
+					if (inserted)
+						((DaoWriteListener<E>) listener).inserted(entity);
+					else
+						((DaoWriteListener<E>) listener).deleted(entity);
+				} catch (RuntimeException e) {
+					Logger.getLogger(AbstractDao.class.getName()).log(
+						Level.WARNING, "Write listener " + listener + " failed", e
+					);
+				}
+	}
 	
 	
 	/* 
@@ -154,6 +372,129 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
     	return selectAll().size();
     }
 
+	/**
+	 * <p>
+	 *   Returns a page of the E entities that match the filters, sorted by sortField. It is used 
+	 *   by EntityLazyDataModel, which passes down the sort and filter metadata of a datatable so 
+	 *   that only the visible page is read. By default the entities are read by selectAll() and 
+	 *   filtered, sorted and paged in memory, but a subclass should do it in the datasource.
+	 * </p>
+	 * @param first Index of the first entity of the page.
+	 * @param pageSize Maximum number of entities of the page, or zero for no limit.
+	 * @param sortField Attribute, or path of attributes such as "city.name", by which the 
+	 *   entities are sorted, or null for the order of sort().
+	 * @param ascending Indicates whether the order is ascending.
+	 * @param filters Values that attributes, or paths of attributes, must match. A string 
+	 *   matches string attributes that start with it, ignoring case, and is converted by 
+	 *   ValueUtils for other attributes. A collection or array matches any of its elements. Null 
+	 *   and empty values are ignored.
+	 */
+	public List<E> selectAllByRange(
+		int first, int pageSize, String sortField, boolean ascending, Map<String, Object> filters
+	) {
+		List<E> entities = selectAllByFilters(filters);
+		if (sortField != null && !sortField.isEmpty())
+			entities.sort(getPropertyComparator(sortField, ascending));
+		else
+			sort(entities);
+		
+		int from = Math.min(Math.max(first, 0), entities.size());
+		int to = pageSize > 0? Math.min(from + pageSize, entities.size()): entities.size();
+		return new ArrayList<E>(entities.subList(from, to));
+	}
+    
+	/**
+	 * <p>
+	 *   Passes each E entity that matches the filters, sorted by sortField, to the action, as 
+	 *   described in selectAllByRange(). It is used by exports, which write the entities as they 
+	 *   are read, so a subclass should read them through a cursor of the datasource instead of 
+	 *   a list, releasing each entity after the action. By default the entities are read by 
+	 *   selectAllByRange() without a page size.
+	 * </p>
+	 */
+	public void forEach(
+		String sortField, boolean ascending, Map<String, Object> filters, 
+		Consumer<? super E> action
+	) {
+		for (E entity: selectAllByRange(0, 0, sortField, ascending, filters))
+			action.accept(entity);
+	}
+	
+	/**
+	 * <p>
+	 *   Passes each E entity that matches the filters and whose date attribute is between begin 
+	 *   and end, both included, to the action, sorted by that attribute. Null begin or end means 
+	 *   no bound, and entities without a date are skipped. By default the entities of forEach() 
+	 *   are filtered in memory, but a subclass should restrict the cursor of the datasource to 
+	 *   the range.
+	 * </p>
+	 */
+	public void forEachBetween(
+		String dateAttribute, Date begin, Date end, Map<String, Object> filters, 
+		Consumer<? super E> action
+	) {
+		forEach(dateAttribute, true, filters, entity -> {
+			Object date = getPropertyValue(entity, dateAttribute);
+			if (
+				date instanceof Date && (begin == null || !((Date) date).before(begin)) 
+					&& (end == null || !((Date) date).after(end))
+			)
+				action.accept(entity);
+		});
+	}
+    
+    /**
+     * <p>
+     *   Returns the number of E entities in the datasource that match the filters, as described 
+     *   in selectAllByRange(). By default they are counted in memory.
+     * </p>  
+     */
+    public int selectCount(Map<String, Object> filters) {
+    	return selectAllByFilters(filters).size();
+    }
+
+	/**
+	 * <p>
+	 *   Returns the aggregate of the E entities that match the filters and whose date attribute 
+	 *   is between begin and end, grouped by the bucket of that date, such as the number of 
+	 *   entities created each day. Buckets without entities are absent. By default the entities 
+	 *   are read by selectAll() and aggregated in memory, but a subclass should aggregate them in 
+	 *   the datasource.
+	 * </p>
+	 * @param dateAttribute Attribute, or path of attributes, of type Date by which the entities 
+	 *   are grouped. Entities whose date is null are ignored.
+	 * @param bucket Period of the groups, keyed by their start as returned by 
+	 *   TimeBucket.truncate().
+	 * @param function Aggregate function applied to each group.
+	 * @param valueAttribute Attribute, or path of attributes, whose values are aggregated, or 
+	 *   null to count the entities with COUNT.
+	 * @param begin First date included, or null for no lower bound.
+	 * @param end Last date included, or null for no upper bound.
+	 * @param filters Filters as described in selectAllByRange().
+	 */
+	public SortedMap<Date, Number> selectAggregateByTimeBucket(
+		String dateAttribute, TimeBucket bucket, AggregateFunction function, 
+		String valueAttribute, Date begin, Date end, Map<String, Object> filters
+	) {
+		Map<Date, List<Object>> groups = new TreeMap<Date, List<Object>>();
+		for (E entity: selectAllByFilters(filters)) {
+			Date date = (Date) getPropertyValue(entity, dateAttribute);
+			if (
+				date == null || (begin != null && date.before(begin)) 
+					|| (end != null && date.after(end))
+			)
+				continue;
+			groups.computeIfAbsent(bucket.truncate(date), key -> new ArrayList<Object>()).add(
+				valueAttribute != null? getPropertyValue(entity, valueAttribute): entity
+			);
+		}
+		
+		SortedMap<Date, Number> aggregates = new TreeMap<Date, Number>();
+		for (Map.Entry<Date, List<Object>> group: groups.entrySet())
+			aggregates.put(group.getKey(), function.apply(group.getValue()));
+		return aggregates;
+	}
+
 	/**
 	 * <p>
 	 *   A subclass must implement a method that returns the entity whose ID is passed by 
@@ -162,6 +503,79 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 	 */
 	public abstract E selectOne(Object id);
 	
+	/**
+	 * <p>
+	 *   Returns the entities whose IDs are passed by parameter, in no particular order. IDs with 
+	 *   no entity are ignored. By default it reads the entities one by one through 
+	 *   selectOneCached(), but a subclass should read them in a single operation.
+	 * </p>
+	 */
+	public List<E> selectAllByIds(Collection<?> ids) {
+		List<E> entities = new ArrayList<E>();
+		for (Object id: ids) {
+			E entity = selectOneCached(id);
+			if (entity != null)
+				entities.add(entity);
+		}
+		return entities;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the entity whose ID is passed by parameter from the identity cache, reading it 
+	 *   by selectOne() and caching it if it is not there. Falls back to selectOne() if the 
+	 *   identity cache is disabled or the ID is not an integral number.
+	 * </p>
+	 */
+	public E selectOneCached(Object id) {
+		if (id instanceof Long || id instanceof Integer || id instanceof Short) {
+			LongIdentityCache<E> cache = getIdentityCache();
+			if (cache != null)
+				return selectOneCached(cache, ((Number) id).longValue(), id);
+		}
+		return selectOne(id);
+	}
+	
+	/**
+	 * <p>
+	 *   Same as selectOneCached(Object), but for an ID that is already a primitive long, which 
+	 *   is only boxed when the entity has to be read from the datasource.
+	 * </p>
+	 */
+	public E selectOneCached(long id) {
+		LongIdentityCache<E> cache = getIdentityCache();
+		if (cache == null)
+			return selectOne(boxId(id));
+		return selectOneCached(cache, id, null);
+	}
+	
+	/**
+	 * <p>
+	 *   Looks up the cache and, on a miss, reads the entity and caches it, detached from the 
+	 *   DAO that read it, since it is shared by every thread.
+	 * </p>
+	 */
+	private E selectOneCached(LongIdentityCache<E> cache, long id, Object boxedId) {
+		E entity = cache.get(id);
+		if (entity == null) {
+			entity = selectOne(boxedId != null? boxedId: boxId(id));
+			if (entity != null) {
+				detach(entity);
+				cache.put(id, entity);
+			}
+		}
+		return entity;
+	}
+	
+	/**
+	 * <p>
+	 *   Boxes a long ID in the integral class of the ID of E.
+	 * </p>
+	 */
+	private Object boxId(long id) {
+		return ClassDescriptor.of(getEntityClass()).getIdCodec().fromLong(id);
+	}
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -196,6 +610,78 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 	 * @return The same entity.
 	 */
 	public abstract E delete(E entity);
+
+	/**
+	 * <p>
+	 *   Performs a delete operation on the entity whose ID is passed by parameter. By default it 
+	 *   reads the entity and deletes it, but a subclass can delete it without reading it.
+	 * </p>
+	 */
+	public void deleteById(Object id) {
+		E entity = selectOne(id);
+		if (entity != null)
+			delete(entity);
+	}
+
+	/**
+	 * <p>
+	 *   Performs an insert operation on each entity passed by parameter and reports, per entity, 
+	 *   whether it succeeded. By default each entity is inserted by insert(), which keeps the 
+	 *   ones that succeed, but a subclass should insert all of them in a single operation, which 
+	 *   writes all of them or none.
+	 * </p>
+	 */
+	public BatchResult<E> insertAll(Collection<E> entities) {
+		BatchResult<E> result = new BatchResult<E>();
+		for (E entity: entities)
+			try {
+				insert(entity);
+				result.addSucceeded(entity);
+			} catch (RuntimeException e) {
+				result.addFailure(entity, e);
+			}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 *   Performs an update operation on each entity passed by parameter and reports, per entity, 
+	 *   whether it succeeded. By default each entity is updated by update(), which keeps the 
+	 *   ones that succeed, but a subclass should update all of them in a single operation, which 
+	 *   writes all of them or none.
+	 * </p>
+	 */
+	public BatchResult<E> updateAll(Collection<E> entities) {
+		BatchResult<E> result = new BatchResult<E>();
+		for (E entity: entities)
+			try {
+				update(entity);
+				result.addSucceeded(entity);
+			} catch (RuntimeException e) {
+				result.addFailure(entity, e);
+			}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 *   Performs a delete operation on each entity passed by parameter and reports, per entity, 
+	 *   whether it succeeded. By default each entity is deleted by delete(), which keeps the 
+	 *   ones that succeed, but a subclass should delete all of them in a single operation, which 
+	 *   writes all of them or none.
+	 * </p>
+	 */
+	public BatchResult<E> deleteAll(Collection<E> entities) {
+		BatchResult<E> result = new BatchResult<E>();
+		for (E entity: entities)
+			try {
+				delete(entity);
+				result.addSucceeded(entity);
+			} catch (RuntimeException e) {
+				result.addFailure(entity, e);
+			}
+		return result;
+	}
 	
 	
 	/* 
@@ -208,12 +694,222 @@ public abstract class AbstractDao<E extends AbstractEntity<?>> {
 	/**
 	 * <p>
 	 *   A method that can be used to correct a previous operation that returned an unordered 
-	 *   collection of E entities. Then this list is returned.
+	 *   collection of E entities. Then this list is returned. The comparable string of each 
+	 *   entity is computed once, and large lists are sorted in parallel, via EntitySorter.
 	 * </p>
 	 */
 	public List<E> sort(List<E> entities) {
-		Collections.sort(entities);
+		return EntitySorter.sort(entities, getCollator());
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the Collator used by sort() to compare the comparable strings of the entities, or 
+	 *   null to compare them by String.compareTo(), which is the order of 
+	 *   AbstractEntity.compareTo(). A subclass can return, for example, 
+	 *   Collator.getInstance(locale) for a locale-aware order.
+	 * </p>
+	 */
+	protected Collator getCollator() {
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a modifiable list of the entities read by selectAll() that match the filters.
+	 * </p>
+	 */
+	private List<E> selectAllByFilters(Map<String, Object> filters) {
+		List<E> all = selectAll();
+		List<E> entities = new ArrayList<E>(all != null? all.size(): 0);
+		if (all != null)
+			for (E entity: all)
+				if (matchesFilters(entity, filters))
+					entities.add(entity);
 		return entities;
 	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the entity matches all the filters.
+	 * </p>
+	 */
+	private static boolean matchesFilters(Object entity, Map<String, Object> filters) {
+		if (filters != null)
+			for (Map.Entry<String, Object> filter: filters.entrySet())
+				if (!matchesFilter(getPropertyValue(entity, filter.getKey()), filter.getValue()))
+					return false;
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the value of an attribute matches a filter, as described in 
+	 *   selectAllByRange().
+	 * </p>
+	 */
+	private static boolean matchesFilter(Object value, Object filter) {
+		if (filter == null || "".equals(filter))
+			return true;
+		if (filter instanceof Object[])
+			filter = Arrays.asList((Object[]) filter);
+		if (filter instanceof Collection) {
+			Collection<?> filterValues = (Collection<?>) filter;
+			if (filterValues.isEmpty())
+				return true;
+			for (Object filterValue: filterValues)
+				if (filterValue != null && matchesFilter(value, filterValue))
+					return true;
+			return false;
+		}
+		
+		if (value == null)
+			return false;
+		if (filter instanceof String) {
+			String filterString = (String) filter;
+			if (value instanceof String)
+				return ((String) value).regionMatches(
+					true, 0, filterString, 0, filterString.length()
+				);
+			try {
+				filter = ValueUtils.parse(value.getClass(), filterString);
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+		return value.equals(filter);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a comparator of entities by the value of an attribute, or path of attributes, 
+	 *   with null values first. Strings are compared by getCollator() if it is not null.
+	 * </p>
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Comparator<E> getPropertyComparator(String path, boolean ascending) {
+		Collator collator = getCollator();
+		Comparator<Object> valueComparator = (a, b) -> {
+			if (collator != null && a instanceof String && b instanceof String)
+				return collator.compare(a, b);
+			return ((Comparable) a).compareTo(b);
+		};
+		Comparator<E> comparator = Comparator.comparing(
+			entity -> getPropertyValue(entity, path), Comparator.nullsFirst(valueComparator)
+		);
+		return ascending? comparator: comparator.reversed();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the value of an attribute, or path of attributes separated by dots, read by its 
+	 *   getter. Returns null if an intermediate value is null.
+	 * </p>
+	 * @throws IllegalArgumentException If there is no such attribute.
+	 */
+	public static Object getPropertyValue(Object bean, String path) {
+		Object value = bean;
+		for (String name: path.split("\\.")) {
+			if (value == null)
+				return null;
+			try {
+				PropertyDescriptor descriptor = null;
+				for (
+					PropertyDescriptor pd: 
+						Introspector.getBeanInfo(value.getClass()).getPropertyDescriptors()
+				)
+					if (pd.getName().equals(name))
+						descriptor = pd;
+				if (descriptor == null || descriptor.getReadMethod() == null)
+					throw new IllegalArgumentException(
+						value.getClass().getName() + " has no attribute " + name
+					);
+				value = descriptor.getReadMethod().invoke(value);
+			} catch (IntrospectionException | ReflectiveOperationException e) {
+				throw new IllegalArgumentException(path, e);
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * <p>
+	 *   Stops, from any thread, the read queries with a timeout that the DAO is running, which 
+	 *   then fail, and makes the next ones fail, so it is meant for the DAO of a job that is 
+	 *   being cancelled. It is implemented by the subclasses whose datasource supports it; by 
+	 *   default it does nothing.
+	 * </p>
+	 */
+	public void cancelQueries() {
+	}
+	
+	/**
+	 * <p>
+	 *   Stops tracking all the entities read so far by the DAO, which then reads them again 
+	 *   from the datasource and no longer holds them in memory. It is implemented by the 
+	 *   subclasses whose datasource keeps a context of the entities read; by default it does 
+	 *   nothing.
+	 * </p>
+	 */
+	public void clear() {
+	}
+	
+	/**
+	 * <p>
+	 *   Releases the resources that the DAO holds for its datasource, such as the context of 
+	 *   the entities read, so it is meant for a DAO created for a single task, such as a job, 
+	 *   once it is over. A later operation acquires them again. It is implemented by the 
+	 *   subclasses that hold such resources; by default it does nothing.
+	 * </p>
+	 */
+	public void close() {
+	}
+	
+	/**
+	 * <p>
+	 *   Stops tracking the entity passed by parameter, which can then be shared with other 
+	 *   threads without the DAO changing it or holding it in memory. It is implemented by the 
+	 *   subclasses whose datasource keeps a context of the entities read; by default it does 
+	 *   nothing.
+	 * </p>
+	 */
+	public void detach(E entity) {
+	}
+	
+	/**
+	 * <p>
+	 *   Records the current values of the entity, read or written by the DAO, against which 
+	 *   hasUnsavedChanges() compares it later. It is implemented by the subclasses that can 
+	 *   compare the entities with their values without serializing them; by default it does 
+	 *   nothing.
+	 * </p>
+	 */
+	public void trackChanges(E entity) {
+	}
+	
+	/**
+	 * <p>
+	 *   Returns whether the entity may have been changed since trackChanges() recorded its 
+	 *   values, or since the DAO read or wrote it if it tracks the changes of the entities 
+	 *   itself. It is implemented by the subclasses that implement trackChanges(); by default the 
+	 *   changes cannot be told, so it returns true.
+	 * </p>
+	 */
+	public boolean hasUnsavedChanges(E entity) {
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 *   Timing hook used by subclasses around their datasource operations. Records in 
+	 *   MetricsRegistry the duration of the operation, tagged by the entity class of the DAO, 
+	 *   since startNanos, a value read from System.nanoTime() when the operation began.
+	 * </p>
+	 */
+	protected void recordOperation(String operation, long startNanos) {
+		MetricsRegistry.recordSince(
+			MetricsRegistry.Category.DAO, getEntityClass(), operation, startNanos
+		);
+	}
     
 }
\ No newline at end of file
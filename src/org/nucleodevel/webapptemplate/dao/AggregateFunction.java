@@ -0,0 +1,122 @@
+package org.nucleodevel.webapptemplate.dao;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+
+/**
+ * <p>
+ *   Aggregate functions of AbstractDao.selectAggregateByTimeBucket(), with the semantics of the 
+ *   functions of the same name in SQL: null values are ignored, and every function but COUNT 
+ *   returns null when there is no other value.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public enum AggregateFunction {
+	
+	COUNT,
+	
+	SUM,
+	
+	AVG,
+	
+	MIN,
+	
+	MAX;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the function whose name is passed by parameter, ignoring case.
+	 * </p>
+	 * @throws IllegalArgumentException If there is no such function.
+	 */
+	public static AggregateFunction of(String name) {
+		if (name != null)
+			for (AggregateFunction function: values())
+				if (function.name().equalsIgnoreCase(name.trim()))
+					return function;
+		throw new IllegalArgumentException("Unknown aggregate function: " + name);
+	}
+	
+	/**
+	 * <p>
+	 *   Applies the function to values in memory. COUNT counts any value, while the other 
+	 *   functions require numbers: SUM returns a Long for integral values, a BigDecimal for 
+	 *   BigDecimals and a Double otherwise, AVG returns a Double, and MIN and MAX return one of 
+	 *   the values.
+	 * </p>
+	 * @throws IllegalArgumentException If a value is not a number and the function is not 
+	 *   COUNT.
+	 */
+	public Number apply(Collection<?> values) {
+		long count = 0;
+		boolean integral = true;
+		boolean decimal = true;
+		long longSum = 0;
+		double doubleSum = 0;
+		BigDecimal decimalSum = BigDecimal.ZERO;
+		Number min = null;
+		Number max = null;
+		
+		for (Object value: values) {
+			if (value == null)
+				continue;
+			count++;
+			if (this == COUNT)
+				continue;
+			if (!(value instanceof Number))
+				throw new IllegalArgumentException(name() + " of a non-numeric value: " + value);
+			
+			Number number = (Number) value;
+			integral &= isIntegral(number);
+			decimal &= number instanceof BigDecimal;
+			if (integral)
+				longSum += number.longValue();
+			if (decimal)
+				decimalSum = decimalSum.add((BigDecimal) number);
+			doubleSum += number.doubleValue();
+			if (min == null || compare(number, min) < 0)
+				min = number;
+			if (max == null || compare(number, max) > 0)
+				max = number;
+		}
+		
+		if (this == COUNT)
+			return count;
+		if (count == 0)
+			return null;
+		switch (this) {
+			case SUM:
+				return integral? (Number) longSum: decimal? decimalSum: (Number) doubleSum;
+			case AVG:
+				return doubleSum / count;
+			case MIN:
+				return min;
+			default:
+				return max;
+		}
+	}
+	
+	private static boolean isIntegral(Number number) {
+		return
+			number instanceof Long || number instanceof Integer || number instanceof Short
+				|| number instanceof Byte || number instanceof BigInteger;
+	}
+	
+	private static int compare(Number a, Number b) {
+		if (a instanceof BigDecimal && b instanceof BigDecimal)
+			return ((BigDecimal) a).compareTo((BigDecimal) b);
+		if (isIntegral(a) && isIntegral(b))
+			return Long.compare(a.longValue(), b.longValue());
+		return Double.compare(a.doubleValue(), b.doubleValue());
+	}
+	
+}
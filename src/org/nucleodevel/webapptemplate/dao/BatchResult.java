@@ -0,0 +1,127 @@
+package org.nucleodevel.webapptemplate.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *   Result of a batch operation of a DAO, such as updateAll() and deleteAll(): the entities on 
+ *   which the operation succeeded and, for each entity on which it failed, the cause. A DAO 
+ *   that writes a batch in a single transaction writes all of its entities or none: when some 
+ *   of them fail, the others are rolled back instead of succeeded.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Type of the entities.
+ */
+public class BatchResult<E> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final List<E> succeeded = new ArrayList<E>();
+	
+	private final List<Failure<E>> failures = new ArrayList<Failure<E>>();
+	
+	private final List<E> rolledBack = new ArrayList<E>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public List<E> getSucceeded() {
+		return Collections.unmodifiableList(succeeded);
+	}
+	
+	public List<Failure<E>> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the entities on which the operation did not fail but that were not written, 
+	 *   because the operation failed on others of the same transaction.
+	 * </p>
+	 */
+	public List<E> getRolledBack() {
+		return Collections.unmodifiableList(rolledBack);
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the operation failed on no entity.
+	 * </p>
+	 */
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public void addSucceeded(E entity) {
+		succeeded.add(entity);
+	}
+	
+	public void addSucceeded(List<E> entities) {
+		succeeded.addAll(entities);
+	}
+	
+	public void addFailure(E entity, Exception cause) {
+		failures.add(new Failure<E>(entity, cause));
+	}
+	
+	public void addRolledBack(List<E> entities) {
+		rolledBack.addAll(entities);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Failure
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Entity on which the operation failed and the cause of the failure, which is null if the 
+	 *   entity was refused before reaching the datasource, as by a permission filter.
+	 * </p>
+	 */
+	public static class Failure<E> {
+		
+		private final E entity;
+		
+		private final Exception cause;
+		
+		public Failure(E entity, Exception cause) {
+			this.entity = entity;
+			this.cause = cause;
+		}
+		
+		public E getEntity() {
+			return entity;
+		}
+		
+		public Exception getCause() {
+			return cause;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,29 @@
+package org.nucleodevel.webapptemplate.dao;
+
+/**
+ * <p>
+ *   Listener of the inserts and deletes of the E entities by any DAO, registered through 
+ *   AbstractDao.addWriteListener(). It is notified after the write succeeded, in the thread 
+ *   that performed it, so it must be fast and thread-safe. Exceptions that it throws are logged 
+ *   and do not fail the write.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Type of the entities.
+ */
+public interface DaoWriteListener<E> {
+	
+	/**
+	 * <p>
+	 *   Called after the entity was inserted.
+	 * </p>
+	 */
+	void inserted(E entity);
+	
+	/**
+	 * <p>
+	 *   Called after the entity was deleted.
+	 * </p>
+	 */
+	void deleted(E entity);
+	
+}
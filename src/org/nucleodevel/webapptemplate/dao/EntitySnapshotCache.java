@@ -0,0 +1,132 @@
+package org.nucleodevel.webapptemplate.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.RefreshAheadCache;
+
+/**
+ * <p>
+ *   Application-wide cache of immutable snapshots of all the entities of a DAO, returned by the 
+ *   getAll() of every AbstractJsfCrudMb that enables shared snapshots. Instead of one list and 
+ *   one selectAll() per view, each entity type has a single unmodifiable list, which is replaced 
+ *   as a whole when it is reloaded: asynchronously after writes and ahead of its maximum age, 
+ *   through a RefreshAheadCache. The entities of a snapshot are shared too, so they must not be 
+ *   changed: AbstractJsfCrudMb reads its own copy of the ones that it selects for editing.
+ * </p>
+ * <p>
+ *   Snapshots are loaded by DAO instances owned by the cache, created through the default 
+ *   constructor of the DAO class, so that the loads in the background never share a DAO, and 
+ *   its EntityManager, with a request. The maximum age and the refresh-ahead time, in 
+ *   milliseconds, are read from the system properties webapptemplate.snapshot.maxAge, 300000 by 
+ *   default, and webapptemplate.snapshot.refreshAhead, 60000 by default.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@ApplicationScoped
+public class EntitySnapshotCache {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long MAX_AGE_MILLIS = 
+		Long.getLong("webapptemplate.snapshot.maxAge", 300000L);
+	
+	private static final long REFRESH_AHEAD_MILLIS = Math.min(
+		Long.getLong("webapptemplate.snapshot.refreshAhead", 60000L), MAX_AGE_MILLIS
+	);
+	
+	/**
+	 * <p>
+	 *   DAOs that load the snapshots, one per DAO class. RefreshAheadCache never loads the same 
+	 *   key concurrently, so each DAO is used by one thread at a time.
+	 * </p>
+	 */
+	private final Map<Class<?>, AbstractDao<?>> daos = 
+		new ConcurrentHashMap<Class<?>, AbstractDao<?>>();
+	
+	private final RefreshAheadCache<Class<?>, List<?>> snapshots = 
+		new RefreshAheadCache<Class<?>, List<?>>(
+			this::loadSnapshot, MAX_AGE_MILLIS, REFRESH_AHEAD_MILLIS
+		);
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the unmodifiable snapshot of all the entities read by the DAO class, loading it on 
+	 *   the first call.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends AbstractEntity<?>> List<E> getAll(
+		Class<? extends AbstractDao<E>> daoClass
+	) {
+		return (List<E>) snapshots.get(daoClass);
+	}
+	
+	/**
+	 * <p>
+	 *   Reloads the snapshot of the DAO class synchronously and returns it.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends AbstractEntity<?>> List<E> reload(
+		Class<? extends AbstractDao<E>> daoClass
+	) {
+		return (List<E>) snapshots.reload(daoClass);
+	}
+	
+	/**
+	 * <p>
+	 *   Marks the snapshot of the DAO class as outdated after a write, so that it is rebuilt in 
+	 *   the background. Until then, readers get the previous snapshot.
+	 * </p>
+	 */
+	public void invalidate(Class<?> daoClass) {
+		snapshots.invalidate(daoClass);
+	}
+	
+	/**
+	 * <p>
+	 *   Reads all the entities through the DAO of the cache for the DAO class and copies them to 
+	 *   an unmodifiable list. The DAO is cleared before the read, so that it returns the current 
+	 *   state of the entities instead of the ones of the previous load, and after it, so that 
+	 *   the entities of the snapshot, shared by every thread, are detached and the DAO does not 
+	 *   retain them.
+	 * </p>
+	 */
+	private List<?> loadSnapshot(Class<?> daoClass) {
+		AbstractDao<?> dao = daos.computeIfAbsent(
+			daoClass, key -> (AbstractDao<?>) ClassDescriptor.of(key).newInstance()
+		);
+		dao.clear();
+		try {
+			List<?> all = dao.selectAll();
+			return Collections.unmodifiableList(
+				all != null? new ArrayList<Object>(all): new ArrayList<Object>()
+			);
+		} finally {
+			dao.clear();
+		}
+	}
+	
+}
@@ -0,0 +1,287 @@
+package org.nucleodevel.webapptemplate.dao;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>
+ *   Bounded identity cache of entities whose IDs are integral numbers. It is an open-addressing 
+ *   hash table with linear probing over a long[] of keys, so lookups never box the ID, and it 
+ *   never holds more than maxEntries entities: when it is full, inserting an entity evicts 
+ *   another one in FIFO-like order. Values can optionally be held by soft references, so the 
+ *   garbage collector can reclaim them under memory pressure.
+ * </p>
+ * <p>
+ *   Reads are lock-free in the absence of writes, through the optimistic mode of a StampedLock.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Type of the cached entities.
+ */
+public class LongIdentityCache<E> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final int maxEntries;
+	
+	private final boolean softValues;
+	
+	private final int mask;
+	
+	private final long[] keys;
+	
+	/**
+	 * <p>
+	 *   Entities, or soft references to them, by slot. A null value is an empty slot.
+	 * </p>
+	 */
+	private final Object[] values;
+	
+	private final StampedLock lock = new StampedLock();
+	
+	private int size;
+	
+	/**
+	 * <p>
+	 *   Slot from which the next eviction looks for an occupied slot.
+	 * </p>
+	 */
+	private int evictionCursor;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Creates a cache for at most maxEntries entities, with a table of at least twice that 
+	 *   size so probe sequences stay short.
+	 * </p>
+	 */
+	public LongIdentityCache(int maxEntries, boolean softValues) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be positive");
+		this.maxEntries = maxEntries;
+		this.softValues = softValues;
+		int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1;
+		this.mask = capacity - 1;
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the entity cached with the key, or null if there is none or it was reclaimed.
+	 * </p>
+	 */
+	public E get(long key) {
+		long stamp = lock.tryOptimisticRead();
+		Object value = find(key);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				value = find(key);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return unwrap(value);
+	}
+	
+	/**
+	 * <p>
+	 *   Caches the entity with the key, replacing the previous one, and evicts another entity if 
+	 *   the cache is full.
+	 * </p>
+	 */
+	public void put(long key, E entity) {
+		if (entity == null) {
+			remove(key);
+			return;
+		}
+		Object value = softValues? new SoftReference<E>(entity): entity;
+		
+		long stamp = lock.writeLock();
+		try {
+			int slot = indexOf(key);
+			if (slot >= 0) {
+				values[slot] = value;
+				return;
+			}
+			if (size >= maxEntries)
+				evict();
+			slot = home(key);
+			while (values[slot] != null)
+				slot = (slot + 1) & mask;
+			keys[slot] = key;
+			values[slot] = value;
+			size++;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Removes the entity cached with the key, if any.
+	 * </p>
+	 */
+	public void remove(long key) {
+		long stamp = lock.writeLock();
+		try {
+			int slot = indexOf(key);
+			if (slot >= 0)
+				removeAt(slot);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Removes every cached entity.
+	 * </p>
+	 */
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			for (int i = 0; i < values.length; i++)
+				values[i] = null;
+			size = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the value stored with the key without locking; it must be validated by the 
+	 *   caller. The probe is bounded by the table size because an optimistic read can observe 
+	 *   the table in the middle of a write.
+	 * </p>
+	 */
+	private Object find(long key) {
+		int slot = home(key);
+		for (int probes = 0; probes <= mask; probes++) {
+			Object value = values[slot];
+			if (value == null)
+				return null;
+			if (keys[slot] == key)
+				return value;
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the slot that stores the key, or -1. Must be called with the lock held.
+	 * </p>
+	 */
+	private int indexOf(long key) {
+		int slot = home(key);
+		while (values[slot] != null) {
+			if (keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * <p>
+	 *   Evicts the first occupied slot after the eviction cursor. Must be called with the write 
+	 *   lock held and with at least one entity in the cache.
+	 * </p>
+	 */
+	private void evict() {
+		int slot = evictionCursor;
+		while (values[slot] == null)
+			slot = (slot + 1) & mask;
+		evictionCursor = (slot + 1) & mask;
+		removeAt(slot);
+	}
+	
+	/**
+	 * <p>
+	 *   Empties the slot and shifts back the entries of the same probe sequence, so that no 
+	 *   tombstones are needed. Must be called with the write lock held.
+	 * </p>
+	 */
+	private void removeAt(int slot) {
+		int hole = slot;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (values[next] == null)
+				break;
+			int home = home(keys[next]);
+			boolean inPlace = hole <= next? 
+				hole < home && home <= next: 
+				hole < home || home <= next;
+			if (inPlace)
+				continue;
+			keys[hole] = keys[next];
+			values[hole] = values[next];
+			hole = next;
+		}
+		values[hole] = null;
+		size--;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the first slot of the probe sequence of the key.
+	 * </p>
+	 */
+	private int home(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private E unwrap(Object value) {
+		if (value instanceof SoftReference)
+			return ((SoftReference<E>) value).get();
+		return (E) value;
+	}
+	
+}
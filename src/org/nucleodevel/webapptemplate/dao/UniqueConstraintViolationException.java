@@ -0,0 +1,89 @@
+package org.nucleodevel.webapptemplate.dao;
+
+import java.sql.SQLException;
+
+/**
+ * <p>
+ *   Thrown by a DAO when an insert or update operation is refused by the datasource because the 
+ *   entity repeats the unique values of another one, as a unique constraint of a database or a 
+ *   409 response of a REST resource. It lets a write go straight to the datasource, which is the 
+ *   only place where uniqueness can be checked without races, instead of being preceded by 
+ *   isAnUniqueEntity().
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class UniqueConstraintViolationException extends RuntimeException {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * <p>
+	 *   SQLState of a unique violation in PostgreSQL, H2, HSQLDB, Derby and DB2.
+	 * </p>
+	 */
+	private static final String UNIQUE_VIOLATION_STATE = "23505";
+	
+	/**
+	 * <p>
+	 *   Prefix of the SQLStates of integrity constraint violations, which include unique 
+	 *   violations in databases that use a single state for all of them.
+	 * </p>
+	 */
+	private static final String INTEGRITY_VIOLATION_CLASS = "23";
+	
+	/**
+	 * <p>
+	 *   Vendor codes of unique violations reported with a generic state: MySQL and MariaDB 
+	 *   (1062, 1586), Oracle (1, ORA-00001) and SQL Server (2601, 2627).
+	 * </p>
+	 */
+	private static final int[] UNIQUE_VIOLATION_CODES = {1062, 1586, 1, 2601, 2627};
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public UniqueConstraintViolationException(Throwable cause) {
+		super(cause != null? cause.getMessage(): null, cause);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Indicates whether the SQLException, or any exception chained to it, reports a unique 
+	 *   violation.
+	 * </p>
+	 */
+	public static boolean isUniqueViolation(SQLException exception) {
+		for (SQLException e = exception; e != null; e = e.getNextException()) {
+			String state = e.getSQLState();
+			if (UNIQUE_VIOLATION_STATE.equals(state))
+				return true;
+			if (state != null && state.startsWith(INTEGRITY_VIOLATION_CLASS))
+				for (int code: UNIQUE_VIOLATION_CODES)
+					if (e.getErrorCode() == code)
+						return true;
+		}
+		return false;
+	}
+	
+}
@@ -1,19 +1,71 @@
 package org.nucleodevel.webapptemplate.dao.db.jpa;
 
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.exceptions.EclipseLinkException;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.jpa.JpaCriteriaBuilder;
+import org.eclipse.persistence.queries.ScrollableCursor;
+import org.eclipse.persistence.sessions.UnitOfWork;
 import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.AggregateFunction;
+import org.nucleodevel.webapptemplate.dao.BatchResult;
+import org.nucleodevel.webapptemplate.dao.UniqueConstraintViolationException;
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+import org.nucleodevel.webapptemplate.util.ValueUtils;
 
 /**
  * <p>
@@ -33,6 +85,53 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
 	 */
 	
 	
+	/**
+	 * <p>
+	 *   Marker stored in the loaded state of an entity for lazy attributes that were not loaded 
+	 *   when the state was taken, so that reading the state never loads them.
+	 * </p>
+	 */
+	private static final Object NOT_LOADED = new Object();
+	
+	/**
+	 * <p>
+	 *   Maximum number of IDs in the IN clause of a single query of selectAllByIds(), below the 
+	 *   limit of the most restrictive databases.
+	 * </p>
+	 */
+	private static final int MAX_IDS_PER_QUERY = 1000;
+	
+	/**
+	 * <p>
+	 *   Escape character of the LIKE patterns of string filters.
+	 * </p>
+	 */
+	private static final char LIKE_ESCAPE = '\\';
+	
+	/**
+	 * <p>
+	 *   Maximum number of entities whose unique values are looked up by a single query of 
+	 *   areUniqueEntities().
+	 * </p>
+	 */
+	private static final int MAX_ENTITIES_PER_UNIQUE_QUERY = 100;
+	
+	/**
+	 * <p>
+	 *   Number of entities fetched from the database at a time by forEach(), after which the 
+	 *   cursor releases the entities already read.
+	 * </p>
+	 */
+	private static final int CURSOR_PAGE_SIZE = 500;
+	
+	/**
+	 * <p>
+	 *   Parts extracted from dates by the database to group them in 
+	 *   selectAggregateByTimeBucket(), from the coarsest to the finest.
+	 * </p>
+	 */
+	private static final List<String> DATE_PARTS = Arrays.asList("YEAR", "MONTH", "DAY");
+	
 	/**
 	 * <p>
 	 *   Attribute that effectively performs the persistence operations.
@@ -40,6 +139,16 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
 	 */
 	private EntityManager entityManager;
 	
+	/**
+	 * <p>
+	 *   Cursor of the forEach() or forEachBetween() that is running, if any, whose statement 
+	 *   cancelQueries() cancels.
+	 * </p>
+	 */
+	private volatile ScrollableCursor runningCursor;
+	
+	private volatile boolean cancelled;
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -67,6 +176,36 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
      * </p>
      */
     protected abstract String getPersistenceUnit();
+    
+    /**
+     * <p>
+     *   Indicates whether selectAggregateByTimeBucket() aggregates in the database, grouping by 
+     *   the SQL standard EXTRACT(YEAR | MONTH | DAY FROM date), which EclipseLink emits as it is. 
+     *   It was checked against H2, and is also available in PostgreSQL, MySQL, MariaDB, Oracle 
+     *   and HSQLDB. A subclass whose database lacks EXTRACT, such as SQL Server, Derby or SQLite, 
+     *   must override it and return false, so that the entities are aggregated in memory by 
+     *   AbstractDao instead. The date parts are the ones stored in the database, which are the 
+     *   ones of the default time zone of the JVM for the usual temporal types.
+     * </p>
+     */
+    protected boolean isTimeBucketAggregationSupported() {
+    	return true;
+    }
+    
+    /**
+     * <p>
+     *   Indicates whether this DAO tracks the changes of the entities it reads by selectOne(). 
+     *   When it does, update() writes only the attributes modified since the entity was read, 
+     *   with a single UPDATE and no previous SELECT, and deleteById() deletes the entity with a 
+     *   single DELETE without reading it. The entities read by selectOne() are then detached, 
+     *   so that the EntityManager does not write their changes again. Since bulk operations 
+     *   bypass cascades and entity callbacks, a subclass should only enable it for entities that 
+     *   do not depend on them. Disabled by default.
+     * </p>
+     */
+    protected boolean isChangeTrackingEnabled() {
+    	return false;
+    }
 	
 	
 	/* 
@@ -81,7 +220,12 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
      */
     @Override
 	public List<E> selectAll() {
-		return selectAllByNamedQuery("all", null);
+    	long start = System.nanoTime();
+    	try {
+    		return selectAllByNamedQuery("all", null);
+    	} finally {
+    		recordOperation("selectAll", start);
+    	}
 	}
     
     /* (non-Javadoc)
@@ -89,7 +233,12 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
      */
     @Override
 	public List<E> selectAllByUniqueParams(Map<String, Object> params) {
-		return selectAllByNamedQuery("one", params);
+    	long start = System.nanoTime();
+    	try {
+    		return selectAllByNamedQuery("one", params);
+    	} finally {
+    		recordOperation("selectAllByUniqueParams", start);
+    	}
 	}
 	
 	/* (non-Javadoc)
@@ -97,12 +246,17 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
 	 */
 	@Override
     public List<E> selectAllByRange(int[] range) {    	
-    	TypedQuery<E> q = (TypedQuery<E>) getEntityManager().createNamedQuery(
-    		getEntityClass().getSimpleName() + ".findAll", getEntityClass()
-    	);
-        q.setMaxResults(range[1] - range[0] + 1);
-        q.setFirstResult(range[0]);
-        return q.getResultList();
+    	long start = System.nanoTime();
+    	try {
+	    	TypedQuery<E> q = (TypedQuery<E>) getEntityManager().createNamedQuery(
+	    		getEntityClass().getSimpleName() + ".findAll", getEntityClass()
+	    	);
+	        q.setMaxResults(range[1] - range[0] + 1);
+	        q.setFirstResult(range[0]);
+	        return q.getResultList();
+    	} finally {
+    		recordOperation("selectAllByRange", start);
+    	}
     }
 
     /* (non-Javadoc)
@@ -110,11 +264,167 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
      */
     @Override
     public int selectCount() {
-        CriteriaQuery<Object> cq = getEntityManager().getCriteriaBuilder().createQuery();
-        Root<?> rt = cq.from(getEntityClass());
-        cq.select((Selection<?>) getEntityManager().getCriteriaBuilder().count(rt));
-        Query q = getEntityManager().createQuery(cq);
-        return ((Long) q.getSingleResult()).intValue();
+    	long start = System.nanoTime();
+    	try {
+	        CriteriaQuery<Object> cq = getEntityManager().getCriteriaBuilder().createQuery();
+	        Root<?> rt = cq.from(getEntityClass());
+	        cq.select((Selection<?>) getEntityManager().getCriteriaBuilder().count(rt));
+	        Query q = getEntityManager().createQuery(cq);
+	        return ((Long) q.getSingleResult()).intValue();
+    	} finally {
+    		recordOperation("selectCount", start);
+    	}
+    }
+
+    /* (non-Javadoc)
+     * @see org.nucleodevel.webapptemplate.dao.AbstractDao#selectAllByRange(
+     *     int, int, java.lang.String, boolean, java.util.Map
+     * )
+     */
+    @Override
+    public List<E> selectAllByRange(
+    	int first, int pageSize, String sortField, boolean ascending, Map<String, Object> filters
+    ) {
+    	long start = System.nanoTime();
+    	try {
+    		return runCancellable(() -> {
+	    		TypedQuery<E> q = createRangeQuery(sortField, ascending, filters);
+	    		q.setFirstResult(Math.max(first, 0));
+	    		if (pageSize > 0)
+	    			q.setMaxResults(pageSize);
+	    		return q.getResultList();
+    		});
+    	} finally {
+    		recordOperation("selectAllByRange", start);
+    	}
+    }
+
+    /* (non-Javadoc)
+     * @see org.nucleodevel.webapptemplate.dao.AbstractDao#forEach(
+     *     java.lang.String, boolean, java.util.Map, java.util.function.Consumer
+     * )
+     */
+    @Override
+    public void forEach(
+    	String sortField, boolean ascending, Map<String, Object> filters, 
+    	Consumer<? super E> action
+    ) {
+    	long start = System.nanoTime();
+    	try {
+    		runCancellable(() -> {
+	    		forEachInCursor(createRangeQuery(sortField, ascending, filters), action);
+	    		return null;
+    		});
+    	} finally {
+    		recordOperation("forEach", start);
+    	}
+    }
+
+    /* (non-Javadoc)
+     * @see org.nucleodevel.webapptemplate.dao.AbstractDao#forEachBetween(
+     *     java.lang.String, java.util.Date, java.util.Date, java.util.Map, 
+     *     java.util.function.Consumer
+     * )
+     */
+    @Override
+    public void forEachBetween(
+    	String dateAttribute, Date begin, Date end, Map<String, Object> filters, 
+    	Consumer<? super E> action
+    ) {
+    	long start = System.nanoTime();
+    	try {
+    		runCancellable(() -> {
+	    		forEachInCursor(createRangeQuery(dateAttribute, begin, end, filters), action);
+	    		return null;
+    		});
+    	} finally {
+    		recordOperation("forEachBetween", start);
+    	}
+    }
+
+    /* (non-Javadoc)
+     * @see org.nucleodevel.webapptemplate.dao.AbstractDao#selectCount(java.util.Map)
+     */
+    @Override
+    public int selectCount(Map<String, Object> filters) {
+    	long start = System.nanoTime();
+    	try {
+    		CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+    		CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+    		Root<E> root = cq.from(getEntityClass());
+    		cq.where(getFilterPredicates(cb, root, filters));
+    		// a join of a collection repeats the entity once per element
+    		cq.select(root.getJoins().isEmpty()? cb.count(root): cb.countDistinct(root));
+    		return runCancellable(
+    			() -> applyQueryTimeout(getEntityManager().createQuery(cq)).getSingleResult()
+    		).intValue();
+    	} finally {
+    		recordOperation("selectCount", start);
+    	}
+    }
+
+    /* (non-Javadoc)
+     * @see org.nucleodevel.webapptemplate.dao.AbstractDao#selectAggregateByTimeBucket(
+     *     java.lang.String, org.nucleodevel.webapptemplate.util.TimeBucket, 
+     *     org.nucleodevel.webapptemplate.dao.AggregateFunction, java.lang.String, java.util.Date, 
+     *     java.util.Date, java.util.Map
+     * )
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public SortedMap<Date, Number> selectAggregateByTimeBucket(
+    	String dateAttribute, TimeBucket bucket, AggregateFunction function, 
+    	String valueAttribute, Date begin, Date end, Map<String, Object> filters
+    ) {
+    	CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
+    	if (
+    		!(criteriaBuilder instanceof JpaCriteriaBuilder) || !isTimeBucketAggregationSupported()
+    	)
+    		return super.selectAggregateByTimeBucket(
+    			dateAttribute, bucket, function, valueAttribute, begin, end, filters
+    		);
+    	
+    	long start = System.nanoTime();
+    	try {
+    		JpaCriteriaBuilder cb = (JpaCriteriaBuilder) criteriaBuilder;
+    		CriteriaQuery<Object[]> cq = cb.createQuery(Object[].class);
+    		Root<E> root = cq.from(getEntityClass());
+    		Path<Date> date = (Path<Date>) getPath(root, dateAttribute);
+    		
+    		List<javax.persistence.criteria.Expression<Number>> parts = 
+    			new ArrayList<javax.persistence.criteria.Expression<Number>>();
+    		for (String part: DATE_PARTS.subList(0, getDatePartCount(bucket)))
+    			parts.add(cb.fromExpression(cb.toExpression(date).extract(part), Number.class));
+    		
+    		List<Predicate> predicates = 
+    			new ArrayList<Predicate>(Arrays.asList(getFilterPredicates(cb, root, filters)));
+    		predicates.add(cb.isNotNull(date));
+    		if (begin != null)
+    			predicates.add(cb.greaterThanOrEqualTo(date, begin));
+    		if (end != null)
+    			predicates.add(cb.lessThanOrEqualTo(date, end));
+    		
+    		List<Selection<?>> selections = new ArrayList<Selection<?>>(parts);
+    		selections.add(getAggregate(cb, root, function, valueAttribute));
+    		cq.multiselect(selections)
+    			.where(predicates.toArray(new Predicate[predicates.size()]))
+    			.groupBy(new ArrayList<javax.persistence.criteria.Expression<?>>(parts));
+    		
+    		SortedMap<Date, Number> aggregates = new TreeMap<Date, Number>();
+    		TypedQuery<Object[]> q = applyQueryTimeout(getEntityManager().createQuery(cq));
+    		for (Object[] row: runCancellable(q::getResultList))
+    			aggregates.put(
+    				bucket.getStart(
+    					((Number) row[0]).intValue(), 
+    					parts.size() > 1? ((Number) row[1]).intValue(): 1, 
+    					parts.size() > 2? ((Number) row[2]).intValue(): 1
+    				), 
+    				(Number) row[parts.size()]
+    			);
+    		return aggregates;
+    	} finally {
+    		recordOperation("selectAggregateByTimeBucket", start);
+    	}
     }
     
     /* (non-Javadoc)
@@ -122,7 +432,98 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
      */
     @Override
 	public E selectOne(Object id) {
-		return (E) getEntityManager().find(getEntityClass(), id);
+    	long start = System.nanoTime();
+    	try {
+    		E entity = (E) getEntityManager().find(getEntityClass(), id);
+    		if (entity != null && isChangeTrackingEnabled()) {
+    			entity.trackLoadedState(getAttributeValues(entity));
+    			getEntityManager().detach(entity);
+    		}
+    		return entity;
+    	} finally {
+    		recordOperation("selectOne", start);
+    	}
+	}
+
+    /* (non-Javadoc)
+     * @see org.nucleodevel.webapptemplate.dao.AbstractDao#selectAllByIds(java.util.Collection)
+     */
+    @Override
+    public List<E> selectAllByIds(Collection<?> ids) {
+    	EntityType<E> type = getEntityManager().getMetamodel().entity(getEntityClass());
+		SingularAttribute<? super E, ?> idAttribute = getIdAttribute(type);
+		if (idAttribute == null)
+			return super.selectAllByIds(ids);
+		
+    	long start = System.nanoTime();
+    	try {
+    		List<Object> idList = new ArrayList<Object>(ids);
+    		List<E> entities = new ArrayList<E>(idList.size());
+    		CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+    		for (int i = 0; i < idList.size(); i += MAX_IDS_PER_QUERY) {
+    			CriteriaQuery<E> cq = cb.createQuery(getEntityClass());
+    			Root<E> root = cq.from(getEntityClass());
+    			cq.select(root).where(
+    				root.get(idAttribute.getName()).in(
+    					idList.subList(i, Math.min(i + MAX_IDS_PER_QUERY, idList.size()))
+    				)
+    			);
+    			entities.addAll(getEntityManager().createQuery(cq).getResultList());
+    		}
+    		return entities;
+    	} finally {
+    		recordOperation("selectAllByIds", start);
+    	}
+    }
+
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#areUniqueEntities(java.util.List)
+	 */
+	@Override
+	public boolean[] areUniqueEntities(List<E> entities) {
+		long start = System.nanoTime();
+		try {
+			List<Map<String, Object>> paramsList = new ArrayList<Map<String, Object>>();
+			for (E entity: entities)
+				paramsList.add(getUniqueParams(entity));
+			
+			Set<Map<String, Object>> existing = new HashSet<Map<String, Object>>();
+			CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+			for (int i = 0; i < paramsList.size(); i += MAX_ENTITIES_PER_UNIQUE_QUERY) {
+				CriteriaQuery<E> cq = cb.createQuery(getEntityClass());
+				Root<E> root = cq.from(getEntityClass());
+				List<Predicate> predicates = new ArrayList<Predicate>();
+				for (
+					Map<String, Object> params: 
+						paramsList.subList(
+							i, Math.min(i + MAX_ENTITIES_PER_UNIQUE_QUERY, paramsList.size())
+						)
+				)
+					if (params != null && !params.isEmpty())
+						predicates.add(getUniqueParamsPredicate(cb, root, params));
+				if (predicates.isEmpty())
+					continue;
+				
+				cq.select(root).where(cb.or(predicates.toArray(new Predicate[predicates.size()])));
+				for (E found: getEntityManager().createQuery(cq).getResultList()) {
+					existing.add(getUniqueParams(found));
+					getEntityManager().detach(found);
+				}
+			}
+			
+			boolean[] unique = new boolean[entities.size()];
+			Set<Map<String, Object>> seen = new HashSet<Map<String, Object>>();
+			for (int i = 0; i < unique.length; i++) {
+				Map<String, Object> params = paramsList.get(i);
+				unique[i] = params == null || (seen.add(params) && !existing.contains(params));
+			}
+			return unique;
+		} catch (IllegalArgumentException e) {
+			// the unique params do not name attributes of E
+			return super.areUniqueEntities(entities);
+		} finally {
+			recordOperation("areUniqueEntities", start);
+		}
 	}
 
 	/**
@@ -189,10 +590,23 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
 	 */
 	@Override
     public E insert(E entity) {
-		getEntityManager().getTransaction().begin();
-    	getEntityManager().persist(entity);
-	    getEntityManager().getTransaction().commit();
-	    return entity;
+    	long start = System.nanoTime();
+    	boolean generatedId = entity.getEntityId() == null;
+    	try {
+			getEntityManager().getTransaction().begin();
+	    	getEntityManager().persist(entity);
+		    getEntityManager().getTransaction().commit();
+		    fireInserted(entity);
+		    return entity;
+    	} catch (RuntimeException e) {
+    		// an ID generated by the rolled back transaction must be generated again
+    		if (generatedId)
+    			setIdAttributeValue(entity, null);
+    		throw translateException(e);
+    	} finally {
+    		rollbackIfActive();
+    		recordOperation("insert", start);
+    	}
     }
 
 	/* (non-Javadoc)
@@ -202,10 +616,24 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
 	 */
 	@Override
     public E update(E entity) {
-    	getEntityManager().getTransaction().begin();
-    	getEntityManager().merge(entity);
-	    getEntityManager().getTransaction().commit();
-	    return entity;
+    	long start = System.nanoTime();
+    	try {
+    		if (isChangeTrackingEnabled() && updateChangedAttributes(entity))
+    			return entity;
+    		
+	    	getEntityManager().getTransaction().begin();
+	    	getEntityManager().merge(entity);
+		    getEntityManager().getTransaction().commit();
+		    if (isChangeTrackingEnabled())
+		    	entity.trackLoadedState(getAttributeValues(entity));
+		    return entity;
+    	} catch (RuntimeException e) {
+    		throw translateException(e);
+    	} finally {
+    		rollbackIfActive();
+    		evictFromIdentityCache(entity.getEntityId());
+    		recordOperation("update", start);
+    	}
     }
 
 	/* (non-Javadoc)
@@ -215,10 +643,908 @@ public abstract class AbstractJpaDao<E extends AbstractEntity<?>> extends Abstra
 	 */
 	@Override
     public E delete(E entity) {
-    	getEntityManager().getTransaction().begin();
-        getEntityManager().remove(getEntityManager().merge(entity));
-	    getEntityManager().getTransaction().commit();   
-	    return entity;
+    	long start = System.nanoTime();
+    	try {
+	    	getEntityManager().getTransaction().begin();
+	    	if (getEntityManager().contains(entity))
+	    		getEntityManager().remove(entity);
+	    	else
+	    		getEntityManager().remove(getEntityManager().merge(entity));
+		    getEntityManager().getTransaction().commit();   
+		    fireDeleted(entity);
+		    return entity;
+    	} finally {
+    		rollbackIfActive();
+    		evictFromIdentityCache(entity.getEntityId());
+    		recordOperation("delete", start);
+    	}
     }
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#deleteById(java.lang.Object)
+	 */
+	@Override
+	public void deleteById(Object id) {
+		if (!isChangeTrackingEnabled() || hasWriteListeners()) {
+			super.deleteById(id);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		try {
+			EntityType<E> type = getEntityManager().getMetamodel().entity(getEntityClass());
+			SingularAttribute<? super E, ?> idAttribute = getIdAttribute(type);
+			if (idAttribute == null) {
+				super.deleteById(id);
+				return;
+			}
+			
+			CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+			CriteriaDelete<E> cd = cb.createCriteriaDelete(getEntityClass());
+			Root<E> root = cd.from(getEntityClass());
+			cd.where(cb.equal(root.get(idAttribute.getName()), id));
+			
+			getEntityManager().getTransaction().begin();
+			try {
+				getEntityManager().createQuery(cd).executeUpdate();
+				getEntityManager().getTransaction().commit();
+			} finally {
+				rollbackIfActive();
+			}
+			getEntityManager().getEntityManagerFactory().getCache().evict(getEntityClass(), id);
+			// a bulk delete bypasses the persistence context, which would keep the entity
+			E managed = getManagedInstance(id);
+			if (managed != null)
+				getEntityManager().detach(managed);
+		} finally {
+			evictFromIdentityCache(id);
+			recordOperation("deleteById", start);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#insertAll(java.util.Collection)
+	 */
+	@Override
+	public BatchResult<E> insertAll(Collection<E> entities) {
+		long start = System.nanoTime();
+		List<E> entityList = new ArrayList<E>(entities);
+		List<E> generatedIds = new ArrayList<E>();
+		for (E entity: entityList)
+			if (entity.getEntityId() == null)
+				generatedIds.add(entity);
+		try {
+			BatchResult<E> result = writeAllOrNothing(
+				entityList, EntityManager::persist, 
+				() -> {
+					// IDs generated by a rolled back transaction must be generated again
+					for (E entity: generatedIds)
+						setIdAttributeValue(entity, null);
+				}
+			);
+			for (E entity: result.getSucceeded())
+				fireInserted(entity);
+			return result;
+		} finally {
+			recordOperation("insertAll", start);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#updateAll(java.util.Collection)
+	 */
+	@Override
+	public BatchResult<E> updateAll(Collection<E> entities) {
+		long start = System.nanoTime();
+		List<E> entityList = new ArrayList<E>(entities);
+		try {
+			BatchResult<E> result = writeAllOrNothing(
+				entityList, EntityManager::merge, () -> {}
+			);
+			for (E entity: result.getSucceeded())
+				refreshManagedInstance(entity.getEntityId());
+			if (isChangeTrackingEnabled())
+				for (E entity: result.getSucceeded())
+					entity.trackLoadedState(getAttributeValues(entity));
+			return result;
+		} finally {
+			for (E entity: entityList)
+				evictFromIdentityCache(entity.getEntityId());
+			recordOperation("updateAll", start);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#deleteAll(java.util.Collection)
+	 */
+	@Override
+	public BatchResult<E> deleteAll(Collection<E> entities) {
+		long start = System.nanoTime();
+		List<E> entityList = new ArrayList<E>(entities);
+		try {
+			BatchResult<E> result = writeAllOrNothing(
+				entityList, (batch, entity) -> batch.remove(batch.merge(entity)), () -> {}
+			);
+			for (E entity: result.getSucceeded()) {
+				E managed = getManagedInstance(entity.getEntityId());
+				if (managed != null)
+					getEntityManager().detach(managed);
+				fireDeleted(entity);
+			}
+			return result;
+		} finally {
+			for (E entity: entityList)
+				evictFromIdentityCache(entity.getEntityId());
+			recordOperation("deleteAll", start);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Applies the operation to every entity in a single transaction, so that either all of 
+	 *   them are written or none is. If the transaction fails, it is rolled back and the 
+	 *   entities are applied again one by one, each followed by a flush, in transactions that 
+	 *   are always rolled back, which finds the entities that fail: they are reported as 
+	 *   failures and the others as rolled back. A failure of the commit itself, such as a 
+	 *   deferred constraint, is reported on every entity.
+	 * </p>
+	 * <p>
+	 *   The operation is applied through an EntityManager of its own, from the same factory, 
+	 *   which is closed at the end, since a rollback detaches every entity of the persistence 
+	 *   context, which would include those that the EntityManager of the DAO holds for the view. 
+	 *   The entities written are therefore detached at the end.
+	 * </p>
+	 * @param afterRollback Restores the entities after a rollback, such as their generated IDs.
+	 */
+	private BatchResult<E> writeAllOrNothing(
+		List<E> entities, BiConsumer<EntityManager, E> operation, Runnable afterRollback
+	) {
+		EntityManager batch = getEntityManager().getEntityManagerFactory().createEntityManager();
+		try {
+			return writeAllOrNothing(batch, entities, operation, afterRollback);
+		} finally {
+			batch.close();
+		}
+	}
+	
+	private BatchResult<E> writeAllOrNothing(
+		EntityManager batch, List<E> entities, BiConsumer<EntityManager, E> operation, 
+		Runnable afterRollback
+	) {
+		BatchResult<E> result = new BatchResult<E>();
+		RuntimeException batchFailure;
+		batch.getTransaction().begin();
+		try {
+			for (E entity: entities)
+				operation.accept(batch, entity);
+			batch.getTransaction().commit();
+			result.addSucceeded(entities);
+			return result;
+		} catch (RuntimeException e) {
+			batchFailure = e;
+			rollbackIfActive(batch);
+			batch.clear();
+			afterRollback.run();
+		}
+		
+		List<E> passed = new ArrayList<E>();
+		int next = 0;
+		while (next < entities.size()) {
+			batch.getTransaction().begin();
+			try {
+				for (; next < entities.size(); next++) {
+					E entity = entities.get(next);
+					try {
+						operation.accept(batch, entity);
+						batch.flush();
+						passed.add(entity);
+					} catch (RuntimeException e) {
+						result.addFailure(entity, translateException(e));
+						next++;
+						break;
+					}
+				}
+			} finally {
+				rollbackIfActive(batch);
+				batch.clear();
+				afterRollback.run();
+			}
+		}
+		
+		if (result.isSuccessful()) {
+			// every entity passed on its own, so the batch failed at the commit
+			RuntimeException cause = translateException(batchFailure);
+			for (E entity: entities)
+				result.addFailure(entity, cause);
+		}
+		else
+			result.addRolledBack(passed);
+		return result;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Change tracking
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Writes only the attributes of the entity that differ from its loaded state, with a 
+	 *   single CriteriaUpdate. Returns false, without writing anything, when the change cannot 
+	 *   be expressed that way and the entity must be merged: it has no loaded state, it has a 
+	 *   version, a composite ID or embedded attributes, or a collection or a lazy attribute may 
+	 *   have changed. A managed entity is detached before it is written, so that the 
+	 *   EntityManager does not write its changes again at its next commit, and any other 
+	 *   instance of the row that it manages is refreshed afterwards, since the CriteriaUpdate 
+	 *   bypasses the persistence context.
+	 * </p>
+	 */
+	private boolean updateChangedAttributes(E entity) {
+		Map<String, Object> loadedState = entity.loadedState();
+		if (loadedState == null)
+			return false;
+		
+		EntityType<E> type = getEntityManager().getMetamodel().entity(getEntityClass());
+		SingularAttribute<? super E, ?> idAttribute = getIdAttribute(type);
+		if (idAttribute == null || type.hasVersionAttribute())
+			return false;
+		
+		Map<String, Object> changed = getChangedAttributes(entity, loadedState);
+		if (changed == null)
+			return false;
+		
+		if (getEntityManager().contains(entity))
+			getEntityManager().detach(entity);
+		if (!changed.isEmpty()) {
+			CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+			CriteriaUpdate<E> cu = cb.createCriteriaUpdate(getEntityClass());
+			Root<E> root = cu.from(getEntityClass());
+			for (Map.Entry<String, Object> entry: changed.entrySet())
+				cu.set(entry.getKey(), entry.getValue());
+			cu.where(cb.equal(root.get(idAttribute.getName()), entity.getEntityId()));
+			
+			getEntityManager().getTransaction().begin();
+			try {
+				getEntityManager().createQuery(cu).executeUpdate();
+				getEntityManager().getTransaction().commit();
+			} finally {
+				rollbackIfActive();
+			}
+			getEntityManager().getEntityManagerFactory().getCache()
+				.evict(getEntityClass(), entity.getEntityId());
+			refreshManagedInstance(entity.getEntityId());
+		}
+		entity.trackLoadedState(getAttributeValues(entity));
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the values of the basic attributes of the entity that differ from its loaded 
+	 *   state, by name, except its ID, or null if its changes cannot be expressed by them, 
+	 *   because it has embedded attributes, or a collection or a lazy attribute may have changed. 
+	 *   The entity is compared as it is, without loading its lazy attributes.
+	 * </p>
+	 */
+	private Map<String, Object> getChangedAttributes(E entity, Map<String, Object> loadedState) {
+		EntityType<E> type = getEntityManager().getMetamodel().entity(getEntityClass());
+		SingularAttribute<? super E, ?> idAttribute = getIdAttribute(type);
+		PersistenceUnitUtil unitUtil = 
+			getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+		Map<String, Object> changed = new LinkedHashMap<String, Object>();
+		for (Attribute<? super E, ?> attribute: type.getAttributes()) {
+			String name = attribute.getName();
+			if (idAttribute != null && name.equals(idAttribute.getName()))
+				continue;
+			if (
+				attribute.getPersistentAttributeType() 
+					== Attribute.PersistentAttributeType.EMBEDDED
+			)
+				return null;
+			
+			Object before = loadedState.get(name);
+			if (before == NOT_LOADED) {
+				if (unitUtil.isLoaded(entity, name))
+					return null;
+				continue;
+			}
+			Object after = getAttributeValue(attribute, entity);
+			if (attribute.isCollection()) {
+				if (!Objects.equals(before, copyValue(after)))
+					return null;
+			}
+			else if (!Objects.deepEquals(before, after))
+				changed.put(name, after);
+		}
+		return changed;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the values of the persistent attributes of the entity. Collections are copied 
+	 *   and mutable dates are cloned, so that later changes do not reach these values, and lazy 
+	 *   attributes that are not loaded are marked instead of being loaded.
+	 * </p>
+	 */
+	private Map<String, Object> getAttributeValues(E entity) {
+		EntityType<E> type = getEntityManager().getMetamodel().entity(getEntityClass());
+		PersistenceUnitUtil unitUtil = 
+			getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+		Map<String, Object> values = new HashMap<String, Object>();
+		for (Attribute<? super E, ?> attribute: type.getAttributes()) {
+			if (!unitUtil.isLoaded(entity, attribute.getName()))
+				values.put(attribute.getName(), NOT_LOADED);
+			else
+				values.put(
+					attribute.getName(), copyValue(getAttributeValue(attribute, entity))
+				);
+		}
+		return values;
+	}
+	
+	/**
+	 * <p>
+	 *   Reads the value of a persistent attribute through the field or the getter mapped by JPA.
+	 * </p>
+	 */
+	private Object getAttributeValue(Attribute<? super E, ?> attribute, E entity) {
+		Member member = attribute.getJavaMember();
+		try {
+			if (member instanceof Field) {
+				Field field = (Field) member;
+				if (!field.isAccessible())
+					field.setAccessible(true);
+				return field.get(entity);
+			}
+			if (member instanceof Method) {
+				Method method = (Method) member;
+				if (!method.isAccessible())
+					method.setAccessible(true);
+				return method.invoke(entity);
+			}
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(
+				"Attribute " + attribute.getName() + " could not be read", e
+			);
+		}
+		throw new IllegalStateException("Attribute " + attribute.getName() + " has no member");
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a copy of the mutable values that JPA maps, or the value itself.
+	 * </p>
+	 */
+	private static Object copyValue(Object value) {
+		if (value instanceof Collection)
+			return new ArrayList<Object>((Collection<?>) value);
+		if (value instanceof Map)
+			return new HashMap<Object, Object>((Map<?, ?>) value);
+		if (value instanceof Date)
+			return ((Date) value).clone();
+		if (value instanceof Calendar)
+			return ((Calendar) value).clone();
+		return value;
+	}
+	
+	/**
+	 * <p>
+	 *   Writes the ID of the entity through the field mapped by JPA or, if JPA maps the getter, 
+	 *   through the setter.
+	 * </p>
+	 */
+	private void setIdAttributeValue(E entity, Object value) {
+		EntityType<E> type = getEntityManager().getMetamodel().entity(getEntityClass());
+		SingularAttribute<? super E, ?> idAttribute = getIdAttribute(type);
+		if (idAttribute == null)
+			return;
+		Member member = idAttribute.getJavaMember();
+		try {
+			if (member instanceof Field) {
+				Field field = (Field) member;
+				if (!field.isAccessible())
+					field.setAccessible(true);
+				field.set(entity, value);
+			} else {
+				PropertyDescriptor descriptor = 
+					new PropertyDescriptor(idAttribute.getName(), getEntityClass());
+				descriptor.getWriteMethod().invoke(entity, value);
+			}
+		} catch (
+			IllegalAccessException | InvocationTargetException | IntrospectionException e
+		) {
+			throw new IllegalStateException(
+				"Attribute " + idAttribute.getName() + " could not be written", e
+			);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the ID attribute of the entity type, or null if the ID is composite.
+	 * </p>
+	 */
+	private SingularAttribute<? super E, ?> getIdAttribute(EntityType<E> type) {
+		if (!type.hasSingleIdAttribute())
+			return null;
+		for (SingularAttribute<? super E, ?> attribute: type.getSingularAttributes())
+			if (attribute.isId())
+				return attribute;
+		return null;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Criteria utils
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Sets getQueryTimeout(), if any, as the timeout of the query and returns it. The timeout 
+	 *   is passed in seconds, rounded up, with its unit, since JDBC drivers only take seconds 
+	 *   and EclipseLink reads the hint in seconds by default.
+	 * </p>
+	 */
+	private <Q extends Query> Q applyQueryTimeout(Q query) {
+		if (getQueryTimeout() > 0) {
+			query.setHint(QueryHints.QUERY_TIMEOUT, (getQueryTimeout() + 999) / 1000);
+			query.setHint(QueryHints.QUERY_TIMEOUT_UNIT, "SECONDS");
+		}
+		return query;
+	}
+	
+	/**
+	 * <p>
+	 *   Runs a read, unless the DAO has a query timeout, such as the DAO of a report, and its 
+	 *   queries were cancelled by cancelQueries().
+	 * </p>
+	 * @throws PersistenceException If the queries of the DAO were cancelled.
+	 */
+	private <T> T runCancellable(Supplier<T> read) {
+		checkCancelled();
+		return read.get();
+	}
+		
+	private void checkCancelled() {
+		if (cancelled && getQueryTimeout() > 0)
+			throw new PersistenceException("Queries of the DAO were cancelled");
+	}
+	
+	/**
+	 * <p>
+	 *   Makes the next reads fail and cancels the statement of the cursor that is running, if 
+	 *   any, through Statement.cancel(), which JDBC drivers support from another thread. A 
+	 *   query that is running without a cursor is stopped by the query timeout of the DAO, 
+	 *   which is applied to every read. The connection is never closed nor aborted, since it 
+	 *   belongs to EclipseLink and to its pool or to the DataSource of the container.
+	 * </p>
+	 */
+	@Override
+	public void cancelQueries() {
+		cancelled = true;
+		ScrollableCursor cursor = runningCursor;
+		if (cursor == null)
+			return;
+		try {
+			ResultSet resultSet = cursor.getResultSet();
+			if (resultSet != null)
+				resultSet.getStatement().cancel();
+		} catch (SQLException | RuntimeException e) {
+			// the cursor was already closed
+			Logger.getLogger(getClass().getName()).log(
+				Level.FINE, "Running query could not be cancelled", e
+			);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Clears the persistence context of the EntityManager, which detaches all its entities.
+	 * </p>
+	 */
+	@Override
+	public void clear() {
+		getEntityManager().clear();
+	}
+	
+	/**
+	 * <p>
+	 *   Closes the EntityManager, after rolling back a transaction left active, which detaches 
+	 *   all its entities. A later operation creates a new one.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		EntityManager closing = entityManager;
+		if (closing == null)
+			return;
+		entityManager = null;
+		if (closing.isOpen()) {
+			rollbackIfActive(closing);
+			closing.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Detaches the entity from the EntityManager, if it is managed.
+	 * </p>
+	 */
+	@Override
+	public void detach(E entity) {
+		if (getEntityManager().contains(entity))
+			getEntityManager().detach(entity);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the instance of the entity of the ID that the EntityManager manages, or null if 
+	 *   it manages none, without reading it from the shared cache or the database.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private E getManagedInstance(Object id) {
+		if (id == null)
+			return null;
+		AbstractSession session = (AbstractSession) getEntityManager().unwrap(UnitOfWork.class);
+		return (E) session.getIdentityMapAccessorInstance().getIdentityMapManager()
+			.getFromIdentityMap(id, getEntityClass(), session.getDescriptor(getEntityClass()));
+	}
+	
+	/**
+	 * <p>
+	 *   Reads again the instance of the entity of the ID that the EntityManager manages, if 
+	 *   any, after its row was written without it, so that it holds the values and version 
+	 *   written instead of stale ones.
+	 * </p>
+	 */
+	private void refreshManagedInstance(Object id) {
+		E managed = getManagedInstance(id);
+		if (managed != null)
+			getEntityManager().refresh(managed);
+	}
+	
+	/**
+	 * <p>
+	 *   Records the values of the persistent attributes of the entity as its loaded state, 
+	 *   without loading its lazy attributes. If isChangeTrackingEnabled(), the loaded state 
+	 *   recorded when the entity was read or written is kept, since it is the state that 
+	 *   update() compares the entity with.
+	 * </p>
+	 */
+	@Override
+	public void trackChanges(E entity) {
+		if (!isChangeTrackingEnabled() || entity.loadedState() == null)
+			entity.trackLoadedState(getAttributeValues(entity));
+	}
+	
+	/**
+	 * <p>
+	 *   Compares the persistent attributes of the entity with its loaded state, without loading 
+	 *   or serializing them. It returns true if the entity has no loaded state, or if it has 
+	 *   embedded attributes, or a lazy attribute was loaded since, whose changes it cannot tell.
+	 * </p>
+	 */
+	@Override
+	public boolean hasUnsavedChanges(E entity) {
+		Map<String, Object> loadedState = entity.loadedState();
+		if (loadedState == null)
+			return true;
+		Map<String, Object> changed = getChangedAttributes(entity, loadedState);
+		return changed == null || !changed.isEmpty();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the query of the entities that match the filters, sorted by sortField and then 
+	 *   by ID, so that pages and cursors follow a stable order.
+	 * </p>
+	 */
+	private TypedQuery<E> createRangeQuery(
+		String sortField, boolean ascending, Map<String, Object> filters
+	) {
+		CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+		CriteriaQuery<E> cq = cb.createQuery(getEntityClass());
+		Root<E> root = cq.from(getEntityClass());
+		cq.select(root).where(getFilterPredicates(cb, root, filters));
+		return createSortedQuery(cb, cq, root, sortField, ascending);
+	}
+		
+	/**
+	 * <p>
+	 *   Returns the query of the entities that match the filters and whose date attribute is 
+	 *   between begin and end, both included, sorted by that attribute and then by ID.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private TypedQuery<E> createRangeQuery(
+		String dateAttribute, Date begin, Date end, Map<String, Object> filters
+	) {
+		CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+		CriteriaQuery<E> cq = cb.createQuery(getEntityClass());
+		Root<E> root = cq.from(getEntityClass());
+		Path<Date> date = (Path<Date>) getPath(root, dateAttribute);
+		
+		List<Predicate> predicates = 
+			new ArrayList<Predicate>(Arrays.asList(getFilterPredicates(cb, root, filters)));
+		predicates.add(cb.isNotNull(date));
+		if (begin != null)
+			predicates.add(cb.greaterThanOrEqualTo(date, begin));
+		if (end != null)
+			predicates.add(cb.lessThanOrEqualTo(date, end));
+		cq.select(root).where(predicates.toArray(new Predicate[predicates.size()]));
+		return createSortedQuery(cb, cq, root, dateAttribute, true);
+	}
+	
+	/**
+	 * <p>
+	 *   Sorts the query by sortField and then by ID, so that pages and cursors follow a stable 
+	 *   order, and returns it with the query timeout applied.
+	 * </p>
+	 */
+	private TypedQuery<E> createSortedQuery(
+		CriteriaBuilder cb, CriteriaQuery<E> cq, Root<E> root, String sortField, boolean ascending
+	) {
+		List<Order> orders = new ArrayList<Order>();
+		if (sortField != null && !sortField.isEmpty()) {
+			Path<?> path = getPath(root, sortField);
+			orders.add(ascending? cb.asc(path): cb.desc(path));
+		}
+		SingularAttribute<? super E, ?> idAttribute = 
+			getIdAttribute(getEntityManager().getMetamodel().entity(getEntityClass()));
+		if (idAttribute != null)
+			orders.add(cb.asc(root.get(idAttribute.getName())));
+		cq.orderBy(orders);
+		return applyQueryTimeout(getEntityManager().createQuery(cq));
+	}
+	
+	/**
+	 * <p>
+	 *   Passes each entity of the query to the action through a read-only cursor, which 
+	 *   releases the entities already read every CURSOR_PAGE_SIZE of them.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private void forEachInCursor(TypedQuery<E> q, Consumer<? super E> action) {
+		q.setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE);
+		q.setHint(QueryHints.READ_ONLY, HintValues.TRUE);
+		q.setHint(QueryHints.JDBC_FETCH_SIZE, CURSOR_PAGE_SIZE);
+		ScrollableCursor cursor = (ScrollableCursor) (Object) q.getSingleResult();
+		runningCursor = cursor;
+		try {
+			for (int count = 1; cursor.hasNext(); count++) {
+				action.accept((E) cursor.next());
+				if (count % CURSOR_PAGE_SIZE == 0) {
+					cursor.clear();
+					checkCancelled();
+				}
+			}
+		} finally {
+			runningCursor = null;
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the predicates of the filters passed down by selectAllByRange() and 
+	 *   selectCount(), with the semantics described in AbstractDao.selectAllByRange(). String 
+	 *   prefixes are matched by a case-insensitive LIKE, so an index on the lower case value of 
+	 *   the column lets the database use it.
+	 * </p>
+	 */
+	private Predicate[] getFilterPredicates(
+		CriteriaBuilder cb, Root<E> root, Map<String, Object> filters
+	) {
+		List<Predicate> predicates = new ArrayList<Predicate>();
+		if (filters != null)
+			for (Map.Entry<String, Object> filter: filters.entrySet()) {
+				Object value = filter.getValue();
+				if (value instanceof Object[])
+					value = Arrays.asList((Object[]) value);
+				if (
+					value == null || "".equals(value) 
+						|| (value instanceof Collection && ((Collection<?>) value).isEmpty())
+				)
+					continue;
+				predicates.add(getFilterPredicate(cb, getPath(root, filter.getKey()), value));
+			}
+		return predicates.toArray(new Predicate[predicates.size()]);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the predicate of a single filter on the attribute of a path.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private Predicate getFilterPredicate(CriteriaBuilder cb, Path<?> path, Object filter) {
+		if (filter instanceof Collection) {
+			List<Predicate> predicates = new ArrayList<Predicate>();
+			for (Object value: (Collection<?>) filter)
+				if (value != null)
+					predicates.add(getFilterPredicate(cb, path, value));
+			return cb.or(predicates.toArray(new Predicate[predicates.size()]));
+		}
+		
+		if (filter instanceof String) {
+			String filterString = (String) filter;
+			if (path.getJavaType() == String.class)
+				return cb.like(
+					cb.lower((Path<String>) path), 
+					escapeLike(filterString.toLowerCase(Locale.ROOT)) + "%", LIKE_ESCAPE
+				);
+			try {
+				filter = ValueUtils.parse(path.getJavaType(), filterString);
+			} catch (IllegalArgumentException e) {
+				return cb.disjunction();
+			}
+		}
+		return cb.equal(path, filter);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the aggregate of the values of an attribute selected by 
+	 *   selectAggregateByTimeBucket(), or the count of the entities if the attribute is null.
+	 * </p>
+	 * @throws IllegalArgumentException If the attribute is null and the function is not COUNT.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Selection<? extends Number> getAggregate(
+		CriteriaBuilder cb, Root<?> root, AggregateFunction function, String valueAttribute
+	) {
+		if (valueAttribute == null) {
+			if (function != AggregateFunction.COUNT)
+				throw new IllegalArgumentException(function + " requires a value attribute");
+			return cb.count(root);
+		}
+		
+		Path<Number> path = (Path<Number>) getPath(root, valueAttribute);
+		switch (function) {
+			case COUNT:
+				return cb.count(path);
+			case SUM:
+				return cb.sum(path);
+			case AVG:
+				// some databases, such as H2, average integers into an integer
+				return cb.avg(cb.prod(path, 1.0));
+			case MIN:
+				return cb.min(path);
+			default:
+				return cb.max(path);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns how many of the DATE_PARTS identify a bucket: year, month and day for DAY, and so 
+	 *   on.
+	 * </p>
+	 */
+	private static int getDatePartCount(TimeBucket bucket) {
+		switch (bucket) {
+			case YEAR:
+				return 1;
+			case MONTH:
+				return 2;
+			default:
+				return 3;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the predicate that matches the entities with all the unique values passed by 
+	 *   parameter, keyed by attribute name. A null value matches a null attribute.
+	 * </p>
+	 */
+	private static Predicate getUniqueParamsPredicate(
+		CriteriaBuilder cb, Root<?> root, Map<String, Object> params
+	) {
+		List<Predicate> predicates = new ArrayList<Predicate>();
+		for (Map.Entry<String, Object> param: params.entrySet()) {
+			Path<?> path = getPath(root, param.getKey());
+			predicates.add(
+				param.getValue() == null? cb.isNull(path): cb.equal(path, param.getValue())
+			);
+		}
+		return cb.and(predicates.toArray(new Predicate[predicates.size()]));
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the path of an attribute, or of a path of attributes separated by dots, joining 
+	 *   the intermediate attributes with left joins so that entities whose intermediate values 
+	 *   are null are not left out. The paths of a root that go through the same attributes share 
+	 *   their joins, so that each association is joined once per query.
+	 * </p>
+	 */
+	private static Path<?> getPath(Root<?> root, String attributePath) {
+		String[] names = attributePath.split("\\.");
+		From<?, ?> from = root;
+		for (int i = 0; i < names.length - 1; i++)
+			from = getLeftJoin(from, names[i]);
+		return from.get(names[names.length - 1]);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the left join of the attribute from the source, creating it if the source has 
+	 *   none yet.
+	 * </p>
+	 */
+	private static From<?, ?> getLeftJoin(From<?, ?> from, String attribute) {
+		for (Join<?, ?> join: from.getJoins())
+			if (
+				join.getJoinType() == JoinType.LEFT 
+					&& join.getAttribute().getName().equals(attribute)
+			)
+				return join;
+		return from.join(attribute, JoinType.LEFT);
+	}
+	
+	/**
+	 * <p>
+	 *   Escapes the wildcards of LIKE in a value that must be matched literally.
+	 * </p>
+	 */
+	private static String escapeLike(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == LIKE_ESCAPE)
+				sb.append(LIKE_ESCAPE);
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Transaction utils
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns a UniqueConstraintViolationException if the exception thrown by a write was 
+	 *   caused by a unique violation reported by the database, or the exception itself.
+	 * </p>
+	 */
+	private static RuntimeException translateException(RuntimeException exception) {
+		Throwable cause = exception;
+		for (int depth = 0; cause != null && depth < 16; depth++) {
+			if (cause instanceof SQLException)
+				return UniqueConstraintViolationException.isUniqueViolation((SQLException) cause)? 
+					new UniqueConstraintViolationException(exception): exception;
+			Throwable next = cause instanceof EclipseLinkException? 
+				((EclipseLinkException) cause).getInternalException(): null;
+			cause = next != null? next: cause.getCause();
+		}
+		return exception;
+	}
+	
+	/**
+	 * <p>
+	 *   Rolls back the current transaction if a failure left it active.
+	 * </p>
+	 */
+	private void rollbackIfActive() {
+		rollbackIfActive(getEntityManager());
+	}
+	
+	private static void rollbackIfActive(EntityManager entityManager) {
+		if (entityManager.getTransaction().isActive())
+			entityManager.getTransaction().rollback();
+	}
     
 }
\ No newline at end of file
@@ -1,7 +1,16 @@
 package org.nucleodevel.webapptemplate.dao.ws.rest;
 
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
@@ -14,7 +23,14 @@ import javax.ws.rs.core.UriBuilder;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.AggregateFunction;
+import org.nucleodevel.webapptemplate.dao.UniqueConstraintViolationException;
+import org.nucleodevel.webapptemplate.datasource.ws.rest.AbstractRestResource;
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.metrics.RestClientMetricsFilter;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+import org.nucleodevel.webapptemplate.ws.rest.SmileProvider;
 
 /**
  * <p>
@@ -36,6 +52,14 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
 	 */
 	
 	
+	/**
+	 * <p>
+	 *   Indicates whether entities are exchanged in Smile instead of XML by default, set by the 
+	 *   system property webapptemplate.rest.smile, false by default.
+	 * </p>
+	 */
+	private static final boolean SMILE = Boolean.getBoolean("webapptemplate.rest.smile");
+	
 	/**
 	 * <p>
 	 *   Attribute that effectively performs the REST webservice operations by providing access to 
@@ -55,7 +79,10 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
     protected WebTarget getResource() {
     	if (resource == null) {
     		ClientConfig config = new ClientConfig();
-    		Client client = ClientBuilder.newClient(config).register(MultiPartFeature.class);
+    		Client client = 
+    			ClientBuilder.newClient(config).register(MultiPartFeature.class)
+    				.register(SmileProvider.class)
+    				.register(new RestClientMetricsFilter(getEntityClass()));
     	    resource = client.target(UriBuilder.fromUri(getResourceUrl()).build());
     	}
 		return resource;
@@ -69,6 +96,44 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
      */
     public abstract String getResourceUrl();
 	
+	/**
+     * <p>
+     *   Returns the media type in which entities are exchanged with the REST resource. The 
+     *   default is XML, which every resource speaks. Smile, a compact binary encoding supported 
+     *   by AbstractRestResource, is used instead when the system property 
+     *   webapptemplate.rest.smile is true, or by a subclass that overrides this method and 
+     *   returns SmileProvider.APPLICATION_SMILE_TYPE.
+     * </p>
+     */
+    protected MediaType getMediaType() {
+    	return SMILE? SmileProvider.APPLICATION_SMILE_TYPE: MediaType.APPLICATION_XML_TYPE;
+    }
+	
+	/**
+     * <p>
+     *   Returns the path segment of the ID passed by parameter, formatted with the IdCodec of E, 
+     *   which AbstractRestResource uses to parse it back.
+     * </p>
+     */
+    private String getIdPath(Object id) {
+    	return ClassDescriptor.of(getEntityClass()).getIdCodec().formatObject(id);
+    }
+	
+    /**
+     * <p>
+     *   Throws UniqueConstraintViolationException if the response is 409, by which 
+     *   AbstractRestResource reports a unique violation.
+     * </p>
+     */
+    private static void checkConflict(Response response) {
+    	if (response.getStatus() == Response.Status.CONFLICT.getStatusCode()) {
+    		response.close();
+    		throw new UniqueConstraintViolationException(
+    			new WebApplicationException(Response.Status.CONFLICT)
+    		);
+    	}
+    }
+	
     /**
      * <p>
      *   A subclass must implement a method that indicates the specific type of List for E 
@@ -90,8 +155,12 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
      */
     @Override
 	public List<E> selectAll() {
-		return 
-			getResource().request().accept(MediaType.APPLICATION_XML).get(getGenericTypeForList());
+    	long start = System.nanoTime();
+    	try {
+    		return getResource().request().accept(getMediaType()).get(getGenericTypeForList());
+    	} finally {
+    		recordOperation("selectAll", start);
+    	}
 	}
 	
 	/* (non-Javadoc)
@@ -102,16 +171,69 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
     	return null;
     }
 
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#selectAggregateByTimeBucket(
+	 *     java.lang.String, org.nucleodevel.webapptemplate.util.TimeBucket, 
+	 *     org.nucleodevel.webapptemplate.dao.AggregateFunction, java.lang.String, java.util.Date, 
+	 *     java.util.Date, java.util.Map
+	 * )
+	 */
+	@Override
+	public SortedMap<Date, Number> selectAggregateByTimeBucket(
+		String dateAttribute, TimeBucket bucket, AggregateFunction function, 
+		String valueAttribute, Date begin, Date end, Map<String, Object> filters
+	) {
+		if (filters != null && !filters.isEmpty())
+			return super.selectAggregateByTimeBucket(
+				dateAttribute, bucket, function, valueAttribute, begin, end, filters
+			);
+		
+		long start = System.nanoTime();
+		try {
+			DateFormat dateFormat = 
+				new SimpleDateFormat(AbstractRestResource.AGGREGATE_DATE_PATTERN);
+			WebTarget target = 
+				getResource().path("aggregate").path(bucket.name().toLowerCase(Locale.ROOT))
+					.queryParam("date", dateAttribute)
+					.queryParam("function", function.name().toLowerCase(Locale.ROOT));
+			if (valueAttribute != null)
+				target = target.queryParam("value", valueAttribute);
+			if (begin != null)
+				target = target.queryParam("begin", dateFormat.format(begin));
+			if (end != null)
+				target = target.queryParam("end", dateFormat.format(end));
+			Map<String, Number> result = target.request(MediaType.APPLICATION_JSON_TYPE)
+				.get(new GenericType<Map<String, Number>>() {});
+			
+			DateFormat keyFormat = 
+				new SimpleDateFormat(AbstractRestResource.AGGREGATE_BUCKET_PATTERN);
+			SortedMap<Date, Number> aggregates = new TreeMap<Date, Number>();
+			for (Map.Entry<String, Number> aggregate: result.entrySet())
+				aggregates.put(keyFormat.parse(aggregate.getKey()), aggregate.getValue());
+			return aggregates;
+		} catch (ParseException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			recordOperation("selectAggregateByTimeBucket", start);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#selectOne(java.lang.Object)
 	 */
 	@Override
 	public E selectOne(Object id) {
-		if (id != null)
+		if (id == null)
+			return null;
+		
+		long start = System.nanoTime();
+		try {
 			return 
-				getResource().path(id.toString()).request().accept(MediaType.APPLICATION_XML)
+				getResource().path(getIdPath(id)).request().accept(getMediaType())
 					.get(getEntityClass());
-		return null;
+		} finally {
+			recordOperation("selectOne", start);
+		}
 	}
 	
 	
@@ -129,10 +251,18 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
 	 */
 	@Override
 	public E insert(E entity) {
-		Response response = getResource().request(MediaType.APPLICATION_XML).post(
-			Entity.entity(entity, MediaType.APPLICATION_XML), Response.class
-		);
-		return response.readEntity(getEntityClass());
+		long start = System.nanoTime();
+		try {
+			Response response = getResource().request(getMediaType()).post(
+				Entity.entity(entity, getMediaType()), Response.class
+			);
+			checkConflict(response);
+			E inserted = response.readEntity(getEntityClass());
+			fireInserted(inserted);
+			return inserted;
+		} finally {
+			recordOperation("insert", start);
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -142,10 +272,17 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
 	 */
 	@Override
 	public E update(E entity) {
-		Response response = getResource().request(MediaType.APPLICATION_XML).put(
-			Entity.entity(entity, MediaType.APPLICATION_XML), Response.class
-		);
-		return response.readEntity(getEntityClass());
+		long start = System.nanoTime();
+		try {
+			Response response = getResource().request(getMediaType()).put(
+				Entity.entity(entity, getMediaType()), Response.class
+			);
+			checkConflict(response);
+			return response.readEntity(getEntityClass());
+		} finally {
+			evictFromIdentityCache(entity.getEntityId());
+			recordOperation("update", start);
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -155,10 +292,38 @@ public abstract class AbstractRestClient<E extends AbstractEntity<?>> extends Ab
 	 */
 	@Override
 	public E delete(E entity) {
-		Response response =  
-			getResource().path(entity.getEntityId().toString())
-				.request(MediaType.APPLICATION_XML).delete(Response.class);
-		return response.readEntity(getEntityClass());
+		long start = System.nanoTime();
+		try {
+			Response response =  
+				getResource().path(getIdPath(entity.getEntityId()))
+					.request(getMediaType()).delete(Response.class);
+			E deleted = response.readEntity(getEntityClass());
+			fireDeleted(entity);
+			return deleted;
+		} finally {
+			evictFromIdentityCache(entity.getEntityId());
+			recordOperation("delete", start);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.AbstractDao#deleteById(java.lang.Object)
+	 */
+	@Override
+	public void deleteById(Object id) {
+		if (hasWriteListeners()) {
+			super.deleteById(id);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		try {
+			getResource().path(getIdPath(id)).request(getMediaType()).delete(Response.class)
+				.close();
+		} finally {
+			evictFromIdentityCache(id);
+			recordOperation("deleteById", start);
+		}
 	}
 	
 }
\ No newline at end of file
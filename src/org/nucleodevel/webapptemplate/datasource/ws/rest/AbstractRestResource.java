@@ -1,23 +1,53 @@
 package org.nucleodevel.webapptemplate.datasource.ws.rest;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.bind.JAXBElement;
 
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
+import org.glassfish.jersey.media.multipart.FormDataParam;
 import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.AggregateFunction;
+import org.nucleodevel.webapptemplate.dao.UniqueConstraintViolationException;
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
-import org.nucleodevel.webapptemplate.util.ParameterizedClassUtils;
+import org.nucleodevel.webapptemplate.io.ColumnMapping;
+import org.nucleodevel.webapptemplate.io.EntityExporter;
+import org.nucleodevel.webapptemplate.io.FileFormat;
+import org.nucleodevel.webapptemplate.job.AbstractJob;
+import org.nucleodevel.webapptemplate.job.ImportJob;
+import org.nucleodevel.webapptemplate.job.JobManager;
+import org.nucleodevel.webapptemplate.job.JobStatus;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.JsfServletUtils;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+import org.nucleodevel.webapptemplate.ws.rest.SmileProvider;
 
 /**
  * <p>
@@ -56,6 +86,20 @@ public abstract class AbstractRestResource
      * </p>
      */
     private Class<DAO> daoClass;
+    
+    /**
+     * <p>
+     *   Format of the dates passed to getAggregate(), in the default time zone.
+     * </p>
+     */
+    public static final String AGGREGATE_DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+    
+    /**
+     * <p>
+     *   Format of the starts of the buckets returned by getAggregate().
+     * </p>
+     */
+    public static final String AGGREGATE_BUCKET_PATTERN = "yyyy-MM-dd";
 	
 	
 	/* 
@@ -73,15 +117,15 @@ public abstract class AbstractRestResource
     
 	/**
      * <p>
-     *   Returns the class<?> of DAO via ParameterizedClassUtils
+     *   Returns the class<?> of DAO via ClassDescriptor
      * </p>
      */
     @SuppressWarnings("unchecked")
 	protected Class<DAO> getDaoClass() {
     	if (daoClass == null)
     		daoClass = 
-    			(Class<DAO>) ParameterizedClassUtils
-    				.getParameterClassFromParameterizedClass(getClass(), 2);
+    			(Class<DAO>) ClassDescriptor.of(getClass())
+    				.getParameterClass(AbstractRestResource.class, 2);
     	return daoClass;
     }
 
@@ -94,24 +138,52 @@ public abstract class AbstractRestResource
 	@SuppressWarnings("unchecked")
 	public DAO getNewDaoInstance() {
 		try {
-			Constructor<?> cons = getDaoClass().getConstructor();   
-			return (DAO) cons.newInstance();
-		} catch (InstantiationException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
+			return (DAO) ClassDescriptor.of(getDaoClass()).newInstance();
+		} catch (IllegalStateException e) {
 			e.printStackTrace();
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the ID represented by a path parameter, parsed with the IdCodec of E, the same 
+	 *   codec that AbstractRestClient uses to format it.
+	 * </p>
+	 * @throws NotFoundException If the path parameter does not represent an ID, so that the 
+	 *   response is 404 as for an ID that does not exist.
+	 */
+	@SuppressWarnings("unchecked")
+	protected TID getIdFromPath(String idString) {
+		try {
+			Class<?> entityClass = 
+				ClassDescriptor.of(getClass()).getParameterClass(AbstractRestResource.class, 1);
+			return (TID) ClassDescriptor.of(entityClass).getIdCodec().parse(idString);
 		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			e.printStackTrace();
-		} catch (NoSuchMethodException e) {
-			e.printStackTrace();
-		} catch (SecurityException e) {
-			e.printStackTrace();
+			throw new NotFoundException(e);
 		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the mapping of the columns of the files imported by importFile() to the 
+	 *   attributes of E, or null if this resource does not import files, which is the default.
+	 * </p>
+	 */
+	protected ColumnMapping<E> getImportMapping() {
 		return null;
 	}
 	
+	/**
+	 * <p>
+	 *   Returns the mapping of the E attributes to the columns of the files returned by 
+	 *   exportFile(). By default, the mapping of getImportMapping().
+	 * </p>
+	 */
+	protected ColumnMapping<E> getExportMapping() {
+		return getImportMapping();
+	}
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -131,10 +203,12 @@ public abstract class AbstractRestResource
     }
 
 	/**
-	 * Returns a list of all E entities in XML and JSON formats.
+	 * Returns a list of all E entities in XML, JSON and Smile formats.
 	 */
 	@GET
-    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    @Produces({ 
+    	MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, SmileProvider.APPLICATION_SMILE 
+    })
     public List<E> getEntities() {
     	List<E> entities = getDao().selectAll();
         return entities;
@@ -151,14 +225,112 @@ public abstract class AbstractRestResource
         return String.valueOf(count);
     }
     
+	/**
+	 * Returns all E entities as a file of the format passed by parameter, csv, xlsx or json, 
+	 * if getExportMapping() is not null. The entities are read through a cursor of the DAO and 
+	 * written straight to the response, which is sent in chunks. 
+	 */
+	@GET
+	@Path("export/{format}")
+	public Response exportFile(@PathParam("format") String format) {
+		ColumnMapping<E> mapping = getExportMapping();
+		FileFormat fileFormat;
+		try {
+			fileFormat = FileFormat.of(format);
+		} catch (IllegalArgumentException e) {
+			throw new NotFoundException(e);
+		}
+		if (mapping == null)
+			throw new NotFoundException();
+		
+		DAO dao = getDao();
+		StreamingOutput output = 
+			out -> new EntityExporter<E>(dao, mapping).export(out, fileFormat, null, true, null);
+		String classSimpleName = 
+			ClassDescriptor.of(getClass()).getParameterClass(AbstractRestResource.class, 1)
+				.getSimpleName();
+		return Response.ok(output, fileFormat.getContentType())
+			.header(
+				"Content-Disposition", 
+				JsfServletUtils.getContentDisposition(fileFormat.getFileName(classSimpleName))
+			)
+			.build();
+	}
+    
+	/**
+	 * Returns the aggregate of the E entities grouped by the bucket, day, month or year, of 
+	 * their date attribute, as computed by AbstractDao.selectAggregateByTimeBucket(). The 
+	 * buckets are keyed by their start formatted by AGGREGATE_BUCKET_PATTERN, and begin and end 
+	 * are formatted by AGGREGATE_DATE_PATTERN or AGGREGATE_BUCKET_PATTERN.
+	 * @param dateAttribute Attribute by which the entities are grouped.
+	 * @param function Aggregate function, count by default.
+	 * @param valueAttribute Attribute whose values are aggregated, or none to count entities.
+	 */
+	@GET
+	@Path("aggregate/{bucket}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Map<String, Number> getAggregate(
+		@PathParam("bucket") String bucket, @QueryParam("date") String dateAttribute, 
+		@QueryParam("function") @DefaultValue("count") String function, 
+		@QueryParam("value") String valueAttribute, @QueryParam("begin") String begin, 
+		@QueryParam("end") String end
+	) {
+		TimeBucket timeBucket;
+		try {
+			timeBucket = TimeBucket.of(bucket);
+		} catch (IllegalArgumentException e) {
+			throw new NotFoundException(e);
+		}
+		if (dateAttribute == null)
+			throw new BadRequestException("Missing date attribute");
+		
+		SortedMap<Date, Number> aggregates;
+		try {
+			aggregates = getDao().selectAggregateByTimeBucket(
+				dateAttribute, timeBucket, AggregateFunction.of(function), valueAttribute, 
+				parseAggregateDate(begin), parseAggregateDate(end), null
+			);
+		} catch (IllegalArgumentException | ClassCastException e) {
+			throw new BadRequestException(e);
+		}
+		
+		DateFormat keyFormat = new SimpleDateFormat(AGGREGATE_BUCKET_PATTERN);
+		Map<String, Number> result = new LinkedHashMap<String, Number>();
+		for (Map.Entry<Date, Number> aggregate: aggregates.entrySet())
+			result.put(keyFormat.format(aggregate.getKey()), aggregate.getValue());
+		return result;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the date of a query parameter of getAggregate(), or null if it is null.
+	 * </p>
+	 * @throws BadRequestException If the parameter is not a date.
+	 */
+	private static Date parseAggregateDate(String value) {
+		if (value == null)
+			return null;
+		for (String pattern: new String[] {AGGREGATE_DATE_PATTERN, AGGREGATE_BUCKET_PATTERN}) {
+			DateFormat format = new SimpleDateFormat(pattern);
+			format.setLenient(false);
+			ParsePosition position = new ParsePosition(0);
+			Date date = format.parse(value, position);
+			if (date != null && position.getIndex() == value.length())
+				return date;
+		}
+		throw new BadRequestException("Invalid date: " + value);
+	}
+    
 	/**
 	 * Returns a specific E entity by the ID passed by parameter. 
 	 */
 	@GET
     @Path("{entity}")
-    @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-    public E getOne(@PathParam("entity") TID id) {
-    	E entity = getDao().selectOne(id);
+    @Produces({
+    	MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, SmileProvider.APPLICATION_SMILE 
+    })
+    public E getOne(@PathParam("entity") String id) {
+    	E entity = getDao().selectOneCached(getIdFromPath(id));
         return entity;
     }
 
@@ -168,8 +340,8 @@ public abstract class AbstractRestResource
 	@GET
     @Path("{entity}")
     @Produces(MediaType.TEXT_XML)
-    public E getOneHTML(@PathParam("entity") TID id) {
-        E entity = getDao().selectOne(id);
+    public E getOneHTML(@PathParam("entity") String id) {
+        E entity = getDao().selectOneCached(getIdFromPath(id));
         return entity;
     }
 	
@@ -190,8 +362,19 @@ public abstract class AbstractRestResource
     @Consumes(MediaType.APPLICATION_XML)
     public E create(JAXBElement<E> jaxbElement) {
         E entity = jaxbElement.getValue();
-        getDao().insert(entity);
-        return entity;
+        return insert(entity);
+    }
+
+	/**
+	 * Prompts DAO to perform an insert operation on the entity passed by parameter in Smile 
+	 * format. 
+	 * @return The same entity with its new ID.
+	 */
+	@POST
+    @Produces(SmileProvider.APPLICATION_SMILE)
+    @Consumes(SmileProvider.APPLICATION_SMILE)
+    public E createBinary(E entity) {
+        return insert(entity);
     }
 
 	/**
@@ -203,18 +386,132 @@ public abstract class AbstractRestResource
     @Consumes(MediaType.APPLICATION_XML)
     public E edit(JAXBElement<E> jaxbElement) {
     	E entity = jaxbElement.getValue();
-        getDao().update(entity);
-        return entity;
+        return update(entity);
+    }
+
+	/**
+	 * Prompts DAO to perform an update operation on the entity passed by parameter in Smile 
+	 * format. 
+	 * @return The same entity.
+	 */
+	@PUT
+    @Produces(SmileProvider.APPLICATION_SMILE)
+    @Consumes(SmileProvider.APPLICATION_SMILE)
+    public E editBinary(E entity) {
+        return update(entity);
     }
     
 	/**
-	 * Prompts DAO to perform a delete operation on the entity passed by parameter. 
+	 * Prompts DAO to perform a delete operation on the entity whose ID is passed by parameter, 
+	 * without reading it first if the DAO supports it. 
 	 */
 	@DELETE
     @Path("{id}")
-    public void remove(@PathParam("id") Long id) {
-    	E entity = getDao().selectOne(id);
-        getDao().delete(entity);
+    public void remove(@PathParam("id") String id) {
+        getDao().deleteById(getIdFromPath(id));
     }
+    
+	/**
+	 * <p>
+	 *   Prompts DAO to perform an insert operation on the entity passed by parameter, without 
+	 *   checking its uniqueness first.
+	 * </p>
+	 * @throws ClientErrorException 409 if the datasource refuses the entity as not unique.
+	 */
+	private E insert(E entity) {
+		try {
+			getDao().insert(entity);
+			return entity;
+		} catch (UniqueConstraintViolationException e) {
+			throw new ClientErrorException(Response.Status.CONFLICT, e);
+		}
+	}
+    
+	/**
+	 * <p>
+	 *   Prompts DAO to perform an update operation on the entity passed by parameter, without 
+	 *   checking its uniqueness first.
+	 * </p>
+	 * @throws ClientErrorException 409 if the datasource refuses the entity as not unique.
+	 */
+	private E update(E entity) {
+		try {
+			getDao().update(entity);
+			return entity;
+		} catch (UniqueConstraintViolationException e) {
+			throw new ClientErrorException(Response.Status.CONFLICT, e);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Import operations 
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+
+	/**
+	 * Starts an ImportJob of the CSV or XLSX file uploaded as the multipart field "file", if 
+	 * getImportMapping() is not null. The upload is spooled to a temporary file and imported in 
+	 * the background, so the response, 202, is sent before the import is over.
+	 * @return The status of the job, whose ID is used to poll it.
+	 */
+	@POST
+	@Path("import")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+	public Response importFile(
+		@FormDataParam("file") InputStream in, 
+		@FormDataParam("file") FormDataContentDisposition disposition
+	) {
+		ColumnMapping<E> mapping = getImportMapping();
+		if (mapping == null || in == null)
+			throw new NotFoundException();
+		
+		String fileName = disposition != null? disposition.getFileName(): null;
+		File file;
+		try {
+			file = ImportJob.spool(in, fileName);
+		} catch (IOException e) {
+			throw new InternalServerErrorException(e);
+		}
+		ImportJob<E> job = 
+			JobManager.submit(new ImportJob<E>(getDaoClass(), mapping, file, fileName, true));
+		return Response.status(Response.Status.ACCEPTED).entity(job.getStatus()).build();
+	}
+
+	/**
+	 * Returns the status of an import started by importFile().
+	 */
+	@GET
+	@Path("import/{job}")
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+	public JobStatus getImportStatus(@PathParam("job") String jobId) {
+		return getImportJob(jobId).getStatus();
+	}
+
+	/**
+	 * Cancels an import started by importFile(). The rows already written are kept.
+	 */
+	@DELETE
+	@Path("import/{job}")
+	public void cancelImport(@PathParam("job") String jobId) {
+		getImportJob(jobId).cancel();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the import job whose ID is passed by parameter, if it imports into the DAO of 
+	 *   this resource.
+	 * </p>
+	 * @throws NotFoundException If there is no such job.
+	 */
+	private AbstractJob getImportJob(String jobId) {
+		AbstractJob job = JobManager.get(jobId);
+		if (!(job instanceof ImportJob) || ((ImportJob<?>) job).getDaoClass() != getDaoClass())
+			throw new NotFoundException();
+		return job;
+	}
 
-}
\ No newline at end of file
+}
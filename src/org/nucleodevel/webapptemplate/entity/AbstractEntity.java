@@ -1,8 +1,10 @@
 package org.nucleodevel.webapptemplate.entity;
 
+import java.util.Map;
+
 import javax.xml.bind.annotation.XmlTransient;
 
-import org.nucleodevel.webapptemplate.util.ParameterizedClassUtils;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
 
 /**
  * <p>
@@ -24,10 +26,13 @@ public abstract class AbstractEntity<TID> implements Comparable<AbstractEntity<T
     
 	/**
      * <p>
-     *   Attribute that stores the class adopted by TID, which is the ID of the entity.
+     *   Values of the persistent attributes of the entity when it was read from the datasource, 
+     *   kept by DAOs that track changes so that an update writes only the modified attributes. 
+     *   It is transient, so an entity restored from a serialized state is simply updated as a 
+     *   whole.
      * </p>
      */
-    private Class<TID> entityIdClass;
+    private transient Map<String, Object> loadedState;
 	
 	
 	/* 
@@ -39,16 +44,12 @@ public abstract class AbstractEntity<TID> implements Comparable<AbstractEntity<T
     
 	/**
      * <p>
-     *   Returns the class<?> of TID via ParameterizedClassUtils
+     *   Returns the class<?> of TID via ClassDescriptor, which resolves it once per entity class.
      * </p>
      */
     @SuppressWarnings("unchecked")
 	public Class<TID> getEntityIdClass() {
-    	if (entityIdClass == null)
-    		entityIdClass = 
-    			(Class<TID>) ParameterizedClassUtils
-    				.getParameterClassFromParameterizedClass(getClass(), 0);
-    	return entityIdClass;
+    	return (Class<TID>) ClassDescriptor.of(getClass()).getEntityIdClass();
     }
 
     /**
@@ -68,6 +69,27 @@ public abstract class AbstractEntity<TID> implements Comparable<AbstractEntity<T
 	 */
 	public abstract void setEntityId(TID id);
 	
+	/**
+	 * <p>
+	 *   Returns the values of the persistent attributes of the entity when it was read from the 
+	 *   datasource, or null if its changes are not tracked. It is not a getter so that JAXB and 
+	 *   Jackson do not serialize it.
+	 * </p>
+	 */
+	public Map<String, Object> loadedState() {
+		return loadedState;
+	}
+	
+	/**
+	 * <p>
+	 *   Used by DAOs that track changes to store the values of the persistent attributes of the 
+	 *   entity after it is read from or written to the datasource.
+	 * </p>
+	 */
+	public void trackLoadedState(Map<String, Object> loadedState) {
+		this.loadedState = loadedState;
+	}
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
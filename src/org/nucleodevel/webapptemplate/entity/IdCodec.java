@@ -0,0 +1,98 @@
+package org.nucleodevel.webapptemplate.entity;
+
+/**
+ * <p>
+ *   Converts the IDs of an entity class from and to the string format used in URLs, JSF 
+ *   components and REST paths. A codec is resolved once per entity class by IdCodecs and cached 
+ *   in its ClassDescriptor, so converters, CRUD managed beans and REST resources and clients 
+ *   share it instead of testing the class of the ID on every request. Codecs of integral IDs 
+ *   also parse to and from primitive longs, without boxing.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <TID> Type of entity's ID.
+ */
+public abstract class IdCodec<TID> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   A subclass must implement a method that returns the class of the IDs it converts.
+	 * </p>
+	 */
+	public abstract Class<TID> getIdClass();
+	
+	/**
+	 * <p>
+	 *   Indicates whether the IDs are integral numbers, which can be handled as primitive longs 
+	 *   by parseLong() and fromLong().
+	 * </p>
+	 */
+	public boolean isIntegral() {
+		return false;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   A subclass must implement a method that returns the ID represented by the string.
+	 * </p>
+	 * @throws IllegalArgumentException If the string does not represent an ID, including 
+	 *   NumberFormatException for numeric IDs.
+	 */
+	public abstract TID parse(String value);
+	
+	/**
+	 * <p>
+	 *   Returns the string that represents the ID, which parse() converts back to an equal ID.
+	 * </p>
+	 */
+	public String format(TID id) {
+		return id != null? id.toString(): null;
+	}
+	
+	/**
+	 * <p>
+	 *   Same as format(), but accepts an ID whose type is only known at runtime.
+	 * </p>
+	 * @throws ClassCastException If the ID is not of the class of the codec.
+	 */
+	public String formatObject(Object id) {
+		return format(getIdClass().cast(id));
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the integral ID represented by the string as a primitive long.
+	 * </p>
+	 * @throws NumberFormatException If the string is not an integral number.
+	 * @throws UnsupportedOperationException If the IDs are not integral.
+	 */
+	public long parseLong(String value) {
+		throw new UnsupportedOperationException(getIdClass().getName() + " is not integral");
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the ID that corresponds to a primitive long.
+	 * </p>
+	 * @throws UnsupportedOperationException If the IDs are not integral.
+	 */
+	public TID fromLong(long id) {
+		throw new UnsupportedOperationException(getIdClass().getName() + " is not integral");
+	}
+	
+}
@@ -0,0 +1,463 @@
+package org.nucleodevel.webapptemplate.entity;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+
+/**
+ * <p>
+ *   Registry of the IdCodecs. It provides codecs for Long, Integer, Short, String and UUID; for 
+ *   any class with a static valueOf(String) method or a constructor that takes a String, such as 
+ *   BigInteger or an enum; and for composite keys, classes whose fields are the parts of the ID, 
+ *   as used by @EmbeddedId and @IdClass. A composite key is represented by its parts in the 
+ *   alphabetical order of the fields, separated by colons, with colons and backslashes inside a 
+ *   part escaped by a backslash.
+ * </p>
+ * <p>
+ *   An application can register its own codec for an ID class, which must be done before the 
+ *   codec of any entity with that ID class is first used.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class IdCodecs {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final char SEPARATOR = ':';
+	
+	private static final char ESCAPE = '\\';
+	
+	private static final ConcurrentMap<Class<?>, IdCodec<?>> REGISTERED = 
+		new ConcurrentHashMap<Class<?>, IdCodec<?>>();
+	
+	/**
+	 * <p>
+	 *   Codec of each ID class, created on its first use, including the classes that are not 
+	 *   the ID class of an entity, such as the parts of composite keys.
+	 * </p>
+	 */
+	private static final ClassValue<IdCodec<?>> CODECS = new ClassValue<IdCodec<?>>() {
+		@Override
+		protected IdCodec<?> computeValue(Class<?> idClass) {
+			return createCodec(idClass);
+		}
+	};
+	
+	public static final IdCodec<Long> LONG = new IdCodec<Long>() {
+		@Override
+		public Class<Long> getIdClass() {
+			return Long.class;
+		}
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+		@Override
+		public Long parse(String value) {
+			return Long.valueOf(value);
+		}
+		@Override
+		public long parseLong(String value) {
+			return Long.parseLong(value);
+		}
+		@Override
+		public Long fromLong(long id) {
+			return id;
+		}
+	};
+	
+	public static final IdCodec<Integer> INTEGER = new IdCodec<Integer>() {
+		@Override
+		public Class<Integer> getIdClass() {
+			return Integer.class;
+		}
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+		@Override
+		public Integer parse(String value) {
+			return Integer.valueOf(value);
+		}
+		@Override
+		public long parseLong(String value) {
+			return Integer.parseInt(value);
+		}
+		@Override
+		public Integer fromLong(long id) {
+			return (int) id;
+		}
+	};
+	
+	public static final IdCodec<Short> SHORT = new IdCodec<Short>() {
+		@Override
+		public Class<Short> getIdClass() {
+			return Short.class;
+		}
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+		@Override
+		public Short parse(String value) {
+			return Short.valueOf(value);
+		}
+		@Override
+		public long parseLong(String value) {
+			return Short.parseShort(value);
+		}
+		@Override
+		public Short fromLong(long id) {
+			return (short) id;
+		}
+	};
+	
+	public static final IdCodec<String> STRING = new IdCodec<String>() {
+		@Override
+		public Class<String> getIdClass() {
+			return String.class;
+		}
+		@Override
+		public String parse(String value) {
+			return value;
+		}
+	};
+	
+	public static final IdCodec<UUID> UUID_CODEC = new IdCodec<UUID>() {
+		@Override
+		public Class<UUID> getIdClass() {
+			return UUID.class;
+		}
+		@Override
+		public UUID parse(String value) {
+			return UUID.fromString(value);
+		}
+	};
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Registers the codec for its ID class, replacing the default one.
+	 * </p>
+	 */
+	public static void register(IdCodec<?> codec) {
+		REGISTERED.put(codec.getIdClass(), codec);
+		CODECS.remove(codec.getIdClass());
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the codec of the IDs of an entity class, cached in its ClassDescriptor.
+	 * </p>
+	 */
+	public static IdCodec<?> forEntity(Class<?> entityClass) {
+		return ClassDescriptor.of(entityClass).getIdCodec();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the codec of an ID class, or of the wrapper of a primitive class, which is 
+	 *   created on the first call for the class and cached. Callers that want the codec of an 
+	 *   entity should use forEntity(); the values of other attributes are converted by 
+	 *   ValueUtils.
+	 * </p>
+	 */
+	public static IdCodec<?> forIdClass(Class<?> idClass) {
+		return idClass != null? CODECS.get(wrap(idClass)): STRING;
+	}
+	
+	/**
+	 * <p>
+	 *   Creates the codec of an ID class, which is the registered one if there is one.
+	 * </p>
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static IdCodec<?> createCodec(Class<?> idClass) {
+		IdCodec<?> codec = REGISTERED.get(idClass);
+		if (codec != null)
+			return codec;
+		
+		if (idClass == Long.class)
+			return LONG;
+		if (idClass == Integer.class)
+			return INTEGER;
+		if (idClass == Short.class)
+			return SHORT;
+		if (idClass == String.class)
+			return STRING;
+		if (idClass == UUID.class)
+			return UUID_CODEC;
+		if (idClass.isEnum())
+			return new EnumIdCodec(idClass);
+		
+		IdCodec<?> stringCodec = createStringConstructorCodec(idClass);
+		if (stringCodec != null)
+			return stringCodec;
+		
+		IdCodec<?> compositeCodec = createCompositeCodec(idClass);
+		if (compositeCodec != null)
+			return compositeCodec;
+		
+		return STRING;
+	}
+	
+	/**
+	 * <p>
+	 *   Creates a codec that parses through a static valueOf(String) method or a constructor 
+	 *   that takes a String, and formats through toString(), or returns null if the class has 
+	 *   neither.
+	 * </p>
+	 */
+	private static <T> IdCodec<T> createStringConstructorCodec(final Class<T> idClass) {
+		Method valueOf = null;
+		try {
+			valueOf = idClass.getMethod("valueOf", String.class);
+			if (!Modifier.isStatic(valueOf.getModifiers()) || valueOf.getReturnType() != idClass)
+				valueOf = null;
+		} catch (NoSuchMethodException e) {
+			valueOf = null;
+		}
+		Constructor<T> constructor = null;
+		if (valueOf == null)
+			try {
+				constructor = idClass.getConstructor(String.class);
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		
+		final Method parseMethod = valueOf;
+		final Constructor<T> parseConstructor = constructor;
+		return new IdCodec<T>() {
+			@Override
+			public Class<T> getIdClass() {
+				return idClass;
+			}
+			@Override
+			public T parse(String value) {
+				try {
+					return parseMethod != null? 
+						idClass.cast(parseMethod.invoke(null, value)): 
+						parseConstructor.newInstance(value);
+				} catch (InvocationTargetException e) {
+					throw new IllegalArgumentException(value, e.getCause());
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalArgumentException(value, e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * <p>
+	 *   Creates a codec for a composite key whose parts are the instance fields of the class, or 
+	 *   returns null if the class is not instantiable or has no fields.
+	 * </p>
+	 */
+	private static IdCodec<?> createCompositeCodec(Class<?> idClass) {
+		if (idClass.isInterface() || Modifier.isAbstract(idClass.getModifiers()))
+			return null;
+		try {
+			idClass.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> c = idClass; c != null && c != Object.class; c = c.getSuperclass())
+			for (Field field: c.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers))
+					fields.add(field);
+			}
+		if (fields.isEmpty())
+			return null;
+		fields.sort(Comparator.comparing(Field::getName));
+		return new CompositeIdCodec<Object>(idClass, fields);
+	}
+	
+	
+	/**
+	 * <p>
+	 *   Returns the wrapper class of a primitive class, or the class itself.
+	 * </p>
+	 */
+	private static Class<?> wrap(Class<?> type) {
+		if (type == long.class)
+			return Long.class;
+		if (type == int.class)
+			return Integer.class;
+		if (type == short.class)
+			return Short.class;
+		if (type == byte.class)
+			return Byte.class;
+		if (type == boolean.class)
+			return Boolean.class;
+		if (type == char.class)
+			return Character.class;
+		if (type == double.class)
+			return Double.class;
+		if (type == float.class)
+			return Float.class;
+		return type;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Codecs
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Codec of enum IDs, represented by the names of the constants.
+	 * </p>
+	 */
+	private static class EnumIdCodec<T extends Enum<T>> extends IdCodec<T> {
+		
+		private final Class<T> idClass;
+		
+		private EnumIdCodec(Class<T> idClass) {
+			this.idClass = idClass;
+		}
+
+		@Override
+		public Class<T> getIdClass() {
+			return idClass;
+		}
+
+		@Override
+		public T parse(String value) {
+			return Enum.valueOf(idClass, value);
+		}
+
+		@Override
+		public String format(T id) {
+			return id != null? id.name(): null;
+		}
+		
+	}
+	
+	/**
+	 * <p>
+	 *   Codec of composite keys.
+	 * </p>
+	 */
+	private static class CompositeIdCodec<T> extends IdCodec<T> {
+		
+		private final Class<T> idClass;
+		
+		private final Field[] fields;
+		
+		private final IdCodec<?>[] codecs;
+		
+		@SuppressWarnings("unchecked")
+		private CompositeIdCodec(Class<?> idClass, List<Field> fields) {
+			this.idClass = (Class<T>) idClass;
+			this.fields = fields.toArray(new Field[fields.size()]);
+			this.codecs = new IdCodec<?>[this.fields.length];
+			for (int i = 0; i < this.fields.length; i++) {
+				this.fields[i].setAccessible(true);
+				this.codecs[i] = forIdClass(this.fields[i].getType());
+			}
+		}
+
+		@Override
+		public Class<T> getIdClass() {
+			return idClass;
+		}
+
+		@Override
+		public T parse(String value) {
+			List<String> parts = split(value);
+			if (parts.size() != fields.length)
+				throw new IllegalArgumentException(
+					value + " does not have the " + fields.length + " parts of " 
+					+ idClass.getName()
+				);
+			
+			Object id = ClassDescriptor.of(idClass).newInstance();
+			try {
+				for (int i = 0; i < fields.length; i++) {
+					String part = parts.get(i);
+					fields[i].set(id, part.isEmpty()? null: codecs[i].parse(part));
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+			return idClass.cast(id);
+		}
+
+		@Override
+		public String format(T id) {
+			if (id == null)
+				return null;
+			StringBuilder sb = new StringBuilder();
+			try {
+				for (int i = 0; i < fields.length; i++) {
+					if (i > 0)
+						sb.append(SEPARATOR);
+					Object part = fields[i].get(id);
+					if (part != null)
+						escape(codecs[i].formatObject(part), sb);
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+			return sb.toString();
+		}
+		
+		private static void escape(String part, StringBuilder sb) {
+			for (int i = 0; i < part.length(); i++) {
+				char c = part.charAt(i);
+				if (c == SEPARATOR || c == ESCAPE)
+					sb.append(ESCAPE);
+				sb.append(c);
+			}
+		}
+		
+		private static List<String> split(String value) {
+			List<String> parts = new ArrayList<String>();
+			StringBuilder part = new StringBuilder();
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == ESCAPE && i + 1 < value.length())
+					part.append(value.charAt(++i));
+				else if (c == SEPARATOR) {
+					parts.add(part.toString());
+					part.setLength(0);
+				}
+				else
+					part.append(c);
+			}
+			parts.add(part.toString());
+			return parts;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,324 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.nucleodevel.webapptemplate.entity.IdCodecs;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+
+/**
+ * <p>
+ *   Declarative mapping of the columns of a tabular file to the attributes of E, used to turn 
+ *   the rows read by a RowReader into entities and entities into the rows written by a 
+ *   RowWriter. Columns are identified by their headers, 
+ *   compared without case and surrounding spaces, so their order in the file does not matter. 
+ *   An attribute is set through its setter, converting the cell as follows: strings are set as 
+ *   they are; dates are read as yyyy-MM-dd, yyyy-MM-dd HH:mm:ss, dd/MM/yyyy or, as stored in 
+ *   spreadsheets, serial numbers of days; any other type is parsed by IdCodecs, which covers 
+ *   numbers, booleans, enums and classes with a valueOf(String) method. Empty cells leave the 
+ *   attribute untouched.
+ * </p>
+ * <pre>
+ * new ColumnMapping&lt;City&gt;(City.class)
+ *     .column("Name", "name")
+ *     .column("Population", "population")
+ *     .column("State", (city, value) -&gt; city.setState(stateDao.selectOneByAcronym(value)));
+ * </pre>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Class of the entities.
+ */
+public class ColumnMapping<E> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final String[] DATE_PATTERNS = {
+		"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd", "dd/MM/yyyy HH:mm:ss", 
+		"dd/MM/yyyy"
+	};
+	
+	private final Class<E> entityClass;
+	
+	private final List<Column<E>> columns = new ArrayList<Column<E>>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public ColumnMapping(Class<E> entityClass) {
+		this.entityClass = entityClass;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Maps the column with the header passed by parameter to an attribute of E. The column is 
+	 *   imported through the setter of the attribute and exported through its getter, so an 
+	 *   attribute without one of them is only exported or only imported.
+	 * </p>
+	 * @throws IllegalArgumentException If E has no such attribute.
+	 */
+	public ColumnMapping<E> column(String header, String attribute) {
+		PropertyDescriptor descriptor = null;
+		try {
+			for (
+				PropertyDescriptor pd: 
+					Introspector.getBeanInfo(entityClass).getPropertyDescriptors()
+			)
+				if (pd.getName().equals(attribute))
+					descriptor = pd;
+		} catch (IntrospectionException e) {
+			throw new IllegalArgumentException(attribute, e);
+		}
+		if (
+			descriptor == null 
+				|| (descriptor.getReadMethod() == null && descriptor.getWriteMethod() == null)
+		)
+			throw new IllegalArgumentException(
+				entityClass.getName() + " has no attribute " + attribute
+			);
+		
+		Method readMethod = descriptor.getReadMethod();
+		Method writeMethod = descriptor.getWriteMethod();
+		Function<String, Object> converter = 
+			writeMethod != null? getConverter(writeMethod.getParameterTypes()[0]): null;
+		columns.add(
+			new Column<E>(
+				header, 
+				writeMethod == null? null: (entity, value) -> 
+					invoke(writeMethod, entity, converter.apply(value)),
+				readMethod == null? null: entity -> invoke(readMethod, entity)
+			)
+		);
+		return this;
+	}
+	
+	/**
+	 * <p>
+	 *   Maps the column with the header passed by parameter to a custom setter, which receives 
+	 *   the entity and the non-empty value of the cell and may throw IllegalArgumentException 
+	 *   to reject the row. The column is only imported.
+	 * </p>
+	 */
+	public ColumnMapping<E> column(String header, BiConsumer<E, String> setter) {
+		columns.add(new Column<E>(header, setter, null));
+		return this;
+	}
+	
+	/**
+	 * <p>
+	 *   Maps the column with the header passed by parameter to a custom getter, which returns 
+	 *   the value of the cell for an entity. The column is only exported.
+	 * </p>
+	 */
+	public ColumnMapping<E> column(String header, Function<E, ?> getter) {
+		columns.add(new Column<E>(header, null, getter));
+		return this;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the headers of the exported columns, in the order in which they were mapped.
+	 * </p>
+	 */
+	public String[] getExportHeaders() {
+		List<String> headers = new ArrayList<String>();
+		for (Column<E> column: columns)
+			if (column.getter != null)
+				headers.add(column.header);
+		return headers.toArray(new String[headers.size()]);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the values of the exported columns for an entity, in the order of 
+	 *   getExportHeaders().
+	 * </p>
+	 */
+	public Object[] getExportValues(E entity) {
+		List<Object> values = new ArrayList<Object>();
+		for (Column<E> column: columns)
+			if (column.getter != null)
+				values.add(column.getter.apply(entity));
+		return values.toArray();
+	}
+	
+	/**
+	 * <p>
+	 *   Binds the mapping to the header row of a file, locating its columns.
+	 * </p>
+	 * @throws IllegalArgumentException If an imported column is not in the header.
+	 */
+	public Binding bind(String[] header) {
+		int[] indexes = new int[columns.size()];
+		for (int i = 0; i < columns.size(); i++) {
+			indexes[i] = -1;
+			if (columns.get(i).setter == null)
+				continue;
+			for (int j = 0; j < header.length; j++)
+				if (columns.get(i).header.equalsIgnoreCase(header[j].trim()))
+					indexes[i] = j;
+			if (indexes[i] < 0)
+				throw new IllegalArgumentException(
+					"Column " + columns.get(i).header + " not found"
+				);
+		}
+		return new Binding(indexes);
+	}
+	
+	/**
+	 * <p>
+	 *   Invokes a getter or setter of an entity, rethrowing its exceptions as 
+	 *   IllegalArgumentException.
+	 * </p>
+	 */
+	private static Object invoke(Method method, Object entity, Object... args) {
+		try {
+			return method.invoke(entity, args);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(e.getCause().getMessage(), e.getCause());
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the function that converts a cell to a type of attribute.
+	 * </p>
+	 */
+	private static Function<String, Object> getConverter(Class<?> type) {
+		if (type == String.class)
+			return value -> value;
+		if (Date.class.isAssignableFrom(type))
+			return ColumnMapping::parseDate;
+		if (type == Calendar.class)
+			return value -> {
+				Calendar calendar = Calendar.getInstance();
+				calendar.setTime(parseDate(value));
+				return calendar;
+			};
+		return value -> IdCodecs.forIdClass(type).parse(value.trim());
+	}
+	
+	/**
+	 * <p>
+	 *   Parses a date in one of the accepted patterns or as a serial number of days.
+	 * </p>
+	 */
+	private static Date parseDate(String value) {
+		String trimmed = value.trim();
+		try {
+			return SerialDates.toDate(Double.parseDouble(trimmed));
+		} catch (NumberFormatException e) {
+			// not a serial date
+		}
+		for (String pattern: DATE_PATTERNS) {
+			SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.ROOT);
+			format.setLenient(false);
+			try {
+				return format.parse(trimmed);
+			} catch (ParseException e) {
+				// try the next pattern
+			}
+		}
+		throw new IllegalArgumentException("Invalid date: " + value);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Column and binding
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static class Column<E> {
+		
+		private final String header;
+		
+		private final BiConsumer<E, String> setter;
+		
+		private final Function<E, ?> getter;
+		
+		private Column(String header, BiConsumer<E, String> setter, Function<E, ?> getter) {
+			this.header = header.trim();
+			this.setter = setter;
+			this.getter = getter;
+		}
+		
+	}
+	
+	/**
+	 * <p>
+	 *   Mapping bound to the columns of a file, which turns its rows into entities.
+	 * </p>
+	 */
+	public class Binding {
+		
+		private final int[] indexes;
+		
+		private Binding(int[] indexes) {
+			this.indexes = indexes;
+		}
+		
+		/**
+		 * <p>
+		 *   Returns a new entity with the values of the row.
+		 * </p>
+		 * @throws IllegalArgumentException If a value cannot be converted, with a message that 
+		 *   names its column.
+		 */
+		@SuppressWarnings("unchecked")
+		public E map(String[] row) {
+			E entity = (E) ClassDescriptor.of(entityClass).newInstance();
+			for (int i = 0; i < indexes.length; i++) {
+				int index = indexes[i];
+				if (
+					index < 0 || index >= row.length || row[index] == null 
+						|| row[index].trim().isEmpty()
+				)
+					continue;
+				Column<E> column = columns.get(i);
+				try {
+					column.setter.accept(entity, row[index]);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(
+						column.header + ": " + e.getMessage(), e
+					);
+				}
+			}
+			return entity;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,98 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ *   InputStream that counts the bytes read through it, used by the RowReaders to report their 
+ *   progress.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+class CountingInputStream extends FilterInputStream {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private volatile long count;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	long getCount() {
+		return count;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0)
+			count++;
+		return b;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0)
+			count += n;
+		return n;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#skip(long)
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		count += skipped;
+		return skipped;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#markSupported()
+	 */
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+}
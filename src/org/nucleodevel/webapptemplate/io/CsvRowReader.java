@@ -0,0 +1,234 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *   RowReader of CSV files as described by RFC 4180: cells may be enclosed in double quotes, 
+ *   which may contain separators, line breaks and doubled double quotes. The separator is 
+ *   either passed by parameter or detected from the first line, as a comma or, as exported by 
+ *   spreadsheet applications in locales that use the comma as decimal separator, a semicolon. 
+ *   Blank lines are skipped.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class CsvRowReader implements RowReader {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final int NONE = -2;
+	
+	private static final int MAX_DETECTION_CHARS = 65536;
+	
+	private final BufferedReader reader;
+	
+	private final CountingInputStream counter;
+	
+	private final long length;
+	
+	private final char separator;
+	
+	/**
+	 * <p>
+	 *   Character read ahead and not consumed yet, or NONE.
+	 * </p>
+	 */
+	private int pending = NONE;
+	
+	private long rowNumber;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Opens the file, detecting its separator.
+	 * </p>
+	 */
+	public CsvRowReader(File file, Charset charset) throws IOException {
+		this.counter = new CountingInputStream(new FileInputStream(file));
+		this.length = file.length();
+		this.reader = new BufferedReader(new InputStreamReader(counter, charset));
+		skipByteOrderMark();
+		this.separator = detectSeparator();
+	}
+	
+	/**
+	 * <p>
+	 *   Reads from a reader whose length is unknown, with the separator passed by parameter.
+	 * </p>
+	 */
+	public CsvRowReader(Reader reader, char separator) throws IOException {
+		this.counter = null;
+		this.length = -1;
+		this.reader = new BufferedReader(reader);
+		this.separator = separator;
+		skipByteOrderMark();
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public char getSeparator() {
+		return separator;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowReader#getRowNumber()
+	 */
+	@Override
+	public long getRowNumber() {
+		return rowNumber;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowReader#getProgress()
+	 */
+	@Override
+	public double getProgress() {
+		if (counter == null || length <= 0)
+			return -1;
+		return Math.min(1.0, (double) counter.getCount() / length);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowReader#next()
+	 */
+	@Override
+	public String[] next() throws IOException {
+		List<String> cells = new ArrayList<String>();
+		StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+		boolean started = false;
+		
+		while (true) {
+			int c = read();
+			if (quoted) {
+				if (c == -1)
+					quoted = false;
+				else if (c == '"') {
+					int next = read();
+					if (next == '"')
+						cell.append('"');
+					else {
+						pending = next;
+						quoted = false;
+					}
+				}
+				else
+					cell.append((char) c);
+				continue;
+			}
+			
+			if (c == -1 || c == '\n' || c == '\r') {
+				if (c == '\r') {
+					int next = read();
+					if (next != '\n')
+						pending = next;
+				}
+				if (!started && cell.length() == 0) {
+					if (c == -1)
+						return null;
+					// a blank row is skipped but still numbered, as by a spreadsheet application
+					rowNumber++;
+					continue;
+				}
+				cells.add(cell.toString());
+				rowNumber++;
+				return cells.toArray(new String[cells.size()]);
+			}
+			
+			started = true;
+			if (c == separator) {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			}
+			else if (c == '"' && cell.length() == 0)
+				quoted = true;
+			else
+				cell.append((char) c);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	private int read() throws IOException {
+		if (pending != NONE) {
+			int c = pending;
+			pending = NONE;
+			return c;
+		}
+		return reader.read();
+	}
+	
+	private void skipByteOrderMark() throws IOException {
+		reader.mark(1);
+		if (reader.read() != '\uFEFF')
+			reader.reset();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the separator that occurs most in the first line, outside quotes: a semicolon 
+	 *   or, by default, a comma.
+	 * </p>
+	 */
+	private char detectSeparator() throws IOException {
+		reader.mark(MAX_DETECTION_CHARS);
+		int commas = 0;
+		int semicolons = 0;
+		boolean quoted = false;
+		for (int i = 0; i < MAX_DETECTION_CHARS; i++) {
+			int c = reader.read();
+			if (c == -1 || (!quoted && (c == '\n' || c == '\r')))
+				break;
+			if (c == '"')
+				quoted = !quoted;
+			else if (!quoted && c == ',')
+				commas++;
+			else if (!quoted && c == ';')
+				semicolons++;
+		}
+		reader.reset();
+		return semicolons > commas? ';': ',';
+	}
+	
+}
@@ -0,0 +1,134 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * <p>
+ *   RowWriter of CSV files as described by RFC 4180: values that contain the separator, quotes 
+ *   or line breaks are quoted, and rows end with CRLF. Dates are written as yyyy-MM-dd HH:mm:ss, 
+ *   which ColumnMapping reads back.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class CsvRowWriter implements RowWriter {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final Writer writer;
+	
+	private final char separator;
+	
+	private final SimpleDateFormat dateFormat = 
+		new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT);
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Writes UTF-8 with a byte order mark, by which spreadsheet applications recognize the 
+	 *   encoding, and commas as separators.
+	 * </p>
+	 */
+	public CsvRowWriter(OutputStream out) throws IOException {
+		this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), ',');
+		writer.write('\uFEFF');
+	}
+	
+	public CsvRowWriter(Writer writer, char separator) {
+		this.writer = writer;
+		this.separator = separator;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowWriter#writeHeader(java.lang.String[])
+	 */
+	@Override
+	public void writeHeader(String[] headers) throws IOException {
+		writeRow(headers);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowWriter#writeRow(java.lang.Object[])
+	 */
+	@Override
+	public void writeRow(Object[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				writer.write(separator);
+			writeValue(format(values[i]));
+		}
+		writer.write("\r\n");
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+	
+	private String format(Object value) {
+		if (value == null)
+			return "";
+		if (value instanceof Calendar)
+			value = ((Calendar) value).getTime();
+		if (value instanceof Date)
+			return dateFormat.format((Date) value);
+		if (value instanceof BigDecimal)
+			return ((BigDecimal) value).toPlainString();
+		return value.toString();
+	}
+	
+	private void writeValue(String value) throws IOException {
+		boolean quoted = false;
+		for (int i = 0; i < value.length() && !quoted; i++) {
+			char c = value.charAt(i);
+			quoted = c == separator || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quoted) {
+			writer.write(value);
+			return;
+		}
+		
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"')
+				writer.write('"');
+			writer.write(c);
+		}
+		writer.write('"');
+	}
+	
+}
@@ -0,0 +1,85 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+
+/**
+ * <p>
+ *   Exports the E entities of a DAO as a CSV, XLSX or JSON file written straight to an 
+ *   OutputStream, such as the output of a response. The entities are read by 
+ *   AbstractDao.forEach() and each one is written as a row, through the exported columns of a 
+ *   ColumnMapping, as soon as it is read, so the export never holds more than a page of the 
+ *   cursor in memory, whatever the number of entities.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Subclass of AbstractEntity that maps an entity of a datasource.
+ */
+public class EntityExporter<E extends AbstractEntity<?>> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final AbstractDao<E> dao;
+	
+	private final ColumnMapping<E> mapping;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public EntityExporter(AbstractDao<E> dao, ColumnMapping<E> mapping) {
+		this.dao = dao;
+		this.mapping = mapping;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Writes the entities that match the filters, sorted by sortField as described in 
+	 *   AbstractDao.selectAllByRange(), and closes the stream.
+	 * </p>
+	 * @return The number of entities written.
+	 */
+	public long export(
+		OutputStream out, FileFormat format, String sortField, boolean ascending, 
+		Map<String, Object> filters
+	) throws IOException {
+		long[] count = new long[1];
+		try (RowWriter writer = RowWriter.open(out, format)) {
+			writer.writeHeader(mapping.getExportHeaders());
+			dao.forEach(sortField, ascending, filters, entity -> {
+				try {
+					writer.writeRow(mapping.getExportValues(entity));
+					count[0]++;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return count[0];
+	}
+	
+}
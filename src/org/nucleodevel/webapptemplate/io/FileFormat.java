@@ -0,0 +1,92 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.util.Locale;
+
+/**
+ * <p>
+ *   Formats of the tabular files exported by RowWriters, with their content types and 
+ *   extensions.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public enum FileFormat {
+	
+	CSV("text/csv; charset=UTF-8", "csv"),
+	
+	XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx"),
+	
+	JSON("application/json; charset=UTF-8", "json");
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final String contentType;
+	
+	private final String extension;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private FileFormat(String contentType, String extension) {
+		this.contentType = contentType;
+		this.extension = extension;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public String getContentType() {
+		return contentType;
+	}
+	
+	public String getExtension() {
+		return extension;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the format whose extension or name is passed by parameter, ignoring case.
+	 * </p>
+	 * @throws IllegalArgumentException If there is no such format.
+	 */
+	public static FileFormat of(String extension) {
+		if (extension != null)
+			for (FileFormat format: values())
+				if (format.extension.equalsIgnoreCase(extension.trim()))
+					return format;
+		throw new IllegalArgumentException("Unknown file format: " + extension);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the name of a file of this format, adding the extension to the base name.
+	 * </p>
+	 */
+	public String getFileName(String baseName) {
+		return baseName + "." + extension.toLowerCase(Locale.ROOT);
+	}
+	
+}
@@ -0,0 +1,126 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * <p>
+ *   RowWriter of JSON files, which are arrays with an object per row whose fields are named by 
+ *   the header. The array is written by a streaming Jackson generator, so memory does not 
+ *   depend on the number of rows. Dates are written as ISO 8601 strings.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class JsonRowWriter implements RowWriter {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	
+	private final JsonGenerator generator;
+	
+	private final SimpleDateFormat dateFormat = 
+		new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", Locale.ROOT);
+	
+	private String[] headers;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public JsonRowWriter(OutputStream out) throws IOException {
+		this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+		generator.writeStartArray();
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowWriter#writeHeader(java.lang.String[])
+	 */
+	@Override
+	public void writeHeader(String[] headers) throws IOException {
+		this.headers = headers.clone();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowWriter#writeRow(java.lang.Object[])
+	 */
+	@Override
+	public void writeRow(Object[] values) throws IOException {
+		if (headers == null)
+			throw new IllegalStateException("The header must be written before the rows");
+		generator.writeStartObject();
+		for (int i = 0; i < headers.length; i++) {
+			generator.writeFieldName(headers[i]);
+			writeValue(i < values.length? values[i]: null);
+		}
+		generator.writeEndObject();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			generator.writeEndArray();
+		} finally {
+			generator.close();
+		}
+	}
+	
+	private void writeValue(Object value) throws IOException {
+		if (value instanceof Calendar)
+			value = ((Calendar) value).getTime();
+		
+		if (value == null)
+			generator.writeNull();
+		else if (value instanceof Boolean)
+			generator.writeBoolean((Boolean) value);
+		else if (value instanceof BigDecimal)
+			generator.writeNumber((BigDecimal) value);
+		else if (value instanceof BigInteger)
+			generator.writeNumber((BigInteger) value);
+		else if (value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			if (Double.isNaN(number) || Double.isInfinite(number))
+				generator.writeString(value.toString());
+			else
+				generator.writeNumber(number);
+		}
+		else if (value instanceof Number)
+			generator.writeNumber(((Number) value).longValue());
+		else if (value instanceof Date)
+			generator.writeString(dateFormat.format((Date) value));
+		else
+			generator.writeString(value.toString());
+	}
+	
+}
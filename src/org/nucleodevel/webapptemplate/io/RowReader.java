@@ -0,0 +1,63 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * <p>
+ *   Reader of the rows of a tabular file, such as a CSV file or a spreadsheet, one row at a 
+ *   time, so that files of any size can be read in bounded memory. Every cell is read as a 
+ *   string; converting it is up to the caller, usually through a ColumnMapping.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public interface RowReader extends Closeable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the cells of the next row, or null if there are no more rows. Missing cells 
+	 *   between filled ones are empty strings.
+	 * </p>
+	 */
+	String[] next() throws IOException;
+	
+	/**
+	 * <p>
+	 *   Returns the number of the last row returned by next(), starting at 1, as displayed by 
+	 *   spreadsheet applications.
+	 * </p>
+	 */
+	long getRowNumber();
+	
+	/**
+	 * <p>
+	 *   Returns the fraction of the file read so far, between 0 and 1, or a negative number if 
+	 *   it is unknown.
+	 * </p>
+	 */
+	double getProgress();
+	
+	/**
+	 * <p>
+	 *   Opens a reader for a file according to the extension of its original name: XLSX for 
+	 *   ".xlsx" and UTF-8 CSV for any other.
+	 * </p>
+	 */
+	static RowReader open(File file, String fileName) throws IOException {
+		if (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".xlsx"))
+			return new XlsxRowReader(file);
+		return new CsvRowReader(file, StandardCharsets.UTF_8);
+	}
+	
+}
@@ -0,0 +1,56 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ *   Writer of the rows of a tabular file, one row at a time, straight to an OutputStream, so 
+ *   that files of any size can be written in bounded memory. Values are written according to 
+ *   their types where the format has types, as numbers, booleans and dates; other values are 
+ *   written as strings. close() ends the file and closes the stream.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public interface RowWriter extends Closeable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Writes the header, which must be written once, before any row.
+	 * </p>
+	 */
+	void writeHeader(String[] headers) throws IOException;
+	
+	/**
+	 * <p>
+	 *   Writes a row, whose values are in the order of the header. Null values are empty cells.
+	 * </p>
+	 */
+	void writeRow(Object[] values) throws IOException;
+	
+	/**
+	 * <p>
+	 *   Opens a writer of a file of the format passed by parameter.
+	 * </p>
+	 */
+	static RowWriter open(OutputStream out, FileFormat format) throws IOException {
+		switch (format) {
+			case XLSX:
+				return new XlsxRowWriter(out);
+			case JSON:
+				return new JsonRowWriter(out);
+			default:
+				return new CsvRowWriter(out);
+		}
+	}
+	
+}
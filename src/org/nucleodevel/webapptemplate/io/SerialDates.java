@@ -0,0 +1,62 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ *   Conversions between dates and the serial numbers of days by which spreadsheets store them, 
+ *   in the local time zone, as spreadsheets have no time zones.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+class SerialDates {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Day 0 of the serial dates of spreadsheets, which count from 1899-12-30 to make up for the 
+	 *   leap day of 1900 that does not exist.
+	 * </p>
+	 */
+	private static final long EPOCH_MILLIS = -2209161600000L;
+	
+	private static final double MILLIS_PER_DAY = 86400000.0;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private SerialDates() {
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	static Date toDate(double serial) {
+		long localMillis = EPOCH_MILLIS + Math.round(serial * MILLIS_PER_DAY);
+		return new Date(localMillis - TimeZone.getDefault().getOffset(localMillis));
+	}
+	
+	static double toSerial(Date date) {
+		long millis = date.getTime();
+		return (millis + TimeZone.getDefault().getOffset(millis) - EPOCH_MILLIS) / MILLIS_PER_DAY;
+	}
+	
+}
@@ -0,0 +1,328 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * <p>
+ *   RowReader of the first worksheet of an XLSX file, which is a zip of XML documents. The 
+ *   worksheet is parsed by StAX as it is read, so memory does not depend on the number of 
+ *   rows; only the table of shared strings, which has one entry per distinct text, is loaded 
+ *   beforehand. Cells are read as the values stored in the file, so numbers are not formatted 
+ *   and dates are serial numbers of days, which ColumnMapping converts.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class XlsxRowReader implements RowReader {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final String DEFAULT_SHEET = "xl/worksheets/sheet1.xml";
+	
+	private static final String RELATIONSHIPS_NAMESPACE = 
+		"http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	
+	private final ZipFile zipFile;
+	
+	private final List<String> sharedStrings;
+	
+	private final CountingInputStream counter;
+	
+	private final long length;
+	
+	private final XMLStreamReader sheet;
+	
+	private long rowNumber;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public XlsxRowReader(File file) throws IOException {
+		this.zipFile = new ZipFile(file);
+		try {
+			this.sharedStrings = readSharedStrings();
+			ZipEntry entry = zipFile.getEntry(getFirstSheetName());
+			if (entry == null)
+				throw new IOException("The file has no worksheet");
+			this.length = entry.getSize();
+			this.counter = new CountingInputStream(zipFile.getInputStream(entry));
+			this.sheet = createXmlInputFactory().createXMLStreamReader(counter);
+		} catch (IOException | XMLStreamException | RuntimeException e) {
+			zipFile.close();
+			throw e instanceof IOException? (IOException) e: new IOException(e);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowReader#getRowNumber()
+	 */
+	@Override
+	public long getRowNumber() {
+		return rowNumber;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowReader#getProgress()
+	 */
+	@Override
+	public double getProgress() {
+		if (length <= 0)
+			return -1;
+		return Math.min(1.0, (double) counter.getCount() / length);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowReader#next()
+	 */
+	@Override
+	public String[] next() throws IOException {
+		try {
+			while (sheet.hasNext()) {
+				if (sheet.next() != XMLStreamConstants.START_ELEMENT)
+					continue;
+				if (sheet.getLocalName().equals("row")) {
+					String r = sheet.getAttributeValue(null, "r");
+					rowNumber = r != null? Long.parseLong(r): rowNumber + 1;
+					List<String> cells = readRow();
+					for (String cell: cells)
+						if (!cell.isEmpty())
+							return cells.toArray(new String[cells.size()]);
+				}
+			}
+			return null;
+		} catch (XMLStreamException | NumberFormatException e) {
+			throw new IOException("Invalid worksheet at row " + rowNumber, e);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			sheet.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			zipFile.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Reads the cells of the current row, filling the missing ones with empty strings.
+	 * </p>
+	 */
+	private List<String> readRow() throws XMLStreamException {
+		List<String> cells = new ArrayList<String>();
+		while (sheet.hasNext()) {
+			int event = sheet.next();
+			if (event == XMLStreamConstants.END_ELEMENT && sheet.getLocalName().equals("row"))
+				break;
+			if (event != XMLStreamConstants.START_ELEMENT || !sheet.getLocalName().equals("c"))
+				continue;
+			
+			String ref = sheet.getAttributeValue(null, "r");
+			String type = sheet.getAttributeValue(null, "t");
+			int column = ref != null? getColumnIndex(ref): cells.size();
+			while (cells.size() < column)
+				cells.add("");
+			String value = readCellValue(type);
+			if (cells.size() == column)
+				cells.add(value);
+			else
+				cells.set(column, value);
+		}
+		return cells;
+	}
+	
+	/**
+	 * <p>
+	 *   Reads the value of the current cell according to its type.
+	 * </p>
+	 */
+	private String readCellValue(String type) throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+		boolean inValue = false;
+		while (sheet.hasNext()) {
+			int event = sheet.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = sheet.getLocalName();
+				inValue = name.equals("v") || name.equals("t");
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (sheet.getLocalName().equals("c"))
+					break;
+				inValue = false;
+			}
+			else if (inValue && event == XMLStreamConstants.CHARACTERS)
+				text.append(sheet.getText());
+		}
+		
+		String value = text.toString();
+		if ("s".equals(type)) {
+			int index = Integer.parseInt(value.trim());
+			return index < sharedStrings.size()? sharedStrings.get(index): "";
+		}
+		if ("b".equals(type))
+			return "1".equals(value)? "true": "false";
+		return value;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the index, starting at 0, of the column of a cell reference such as "AB12".
+	 * </p>
+	 */
+	private static int getColumnIndex(String ref) {
+		int column = 0;
+		for (int i = 0; i < ref.length(); i++) {
+			char c = ref.charAt(i);
+			if (c < 'A' || c > 'Z')
+				break;
+			column = column * 26 + (c - 'A' + 1);
+		}
+		return column - 1;
+	}
+	
+	/**
+	 * <p>
+	 *   Reads the table of shared strings, where each entry is the concatenation of the texts 
+	 *   of its runs.
+	 * </p>
+	 */
+	private List<String> readSharedStrings() throws IOException, XMLStreamException {
+		List<String> strings = new ArrayList<String>();
+		ZipEntry entry = zipFile.getEntry("xl/sharedStrings.xml");
+		if (entry == null)
+			return strings;
+		
+		try (InputStream in = zipFile.getInputStream(entry)) {
+			XMLStreamReader xml = createXmlInputFactory().createXMLStreamReader(in);
+			StringBuilder text = null;
+			boolean inText = false;
+			boolean inPhonetic = false;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = xml.getLocalName();
+					if (name.equals("si"))
+						text = new StringBuilder();
+					else if (name.equals("rPh"))
+						inPhonetic = true;
+					else if (name.equals("t"))
+						inText = !inPhonetic;
+				}
+				else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = xml.getLocalName();
+					if (name.equals("si") && text != null)
+						strings.add(text.toString());
+					else if (name.equals("rPh"))
+						inPhonetic = false;
+					else if (name.equals("t"))
+						inText = false;
+				}
+				else if (inText && text != null && event == XMLStreamConstants.CHARACTERS)
+					text.append(xml.getText());
+			}
+			xml.close();
+		}
+		return strings;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the name of the zip entry of the first worksheet of the workbook, following the 
+	 *   relationship of its first sheet, or the conventional name of the first worksheet.
+	 * </p>
+	 */
+	private String getFirstSheetName() throws IOException, XMLStreamException {
+		String relationshipId = null;
+		ZipEntry workbook = zipFile.getEntry("xl/workbook.xml");
+		if (workbook != null)
+			try (InputStream in = zipFile.getInputStream(workbook)) {
+				XMLStreamReader xml = createXmlInputFactory().createXMLStreamReader(in);
+				while (relationshipId == null && xml.hasNext())
+					if (
+						xml.next() == XMLStreamConstants.START_ELEMENT 
+							&& xml.getLocalName().equals("sheet")
+					)
+						relationshipId = xml.getAttributeValue(RELATIONSHIPS_NAMESPACE, "id");
+				xml.close();
+			}
+		
+		ZipEntry relationships = zipFile.getEntry("xl/_rels/workbook.xml.rels");
+		if (relationshipId == null || relationships == null)
+			return DEFAULT_SHEET;
+		try (InputStream in = zipFile.getInputStream(relationships)) {
+			XMLStreamReader xml = createXmlInputFactory().createXMLStreamReader(in);
+			while (xml.hasNext())
+				if (
+					xml.next() == XMLStreamConstants.START_ELEMENT 
+						&& xml.getLocalName().equals("Relationship")
+						&& relationshipId.equals(xml.getAttributeValue(null, "Id"))
+				) {
+					String target = xml.getAttributeValue(null, "Target");
+					xml.close();
+					if (target == null)
+						return DEFAULT_SHEET;
+					return target.startsWith("/")? target.substring(1): "xl/" + target;
+				}
+			xml.close();
+		}
+		return DEFAULT_SHEET;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a StAX factory that does not process DTDs nor external entities, since the file 
+	 *   comes from a user.
+	 * </p>
+	 */
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+	
+}
@@ -0,0 +1,361 @@
+package org.nucleodevel.webapptemplate.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * <p>
+ *   RowWriter of XLSX files, which are zips of XML documents. Rows are written by StAX straight 
+ *   into the zip entry of the worksheet as they come, and texts are written as inline strings 
+ *   instead of a table of shared strings, so memory does not depend on the number of rows. 
+ *   Numbers and booleans are written as such, and dates as serial numbers with a date format. 
+ *   A worksheet holds at most MAX_ROWS rows, the limit of spreadsheet applications; longer 
+ *   files continue in new worksheets, each one with the header.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class XlsxRowWriter implements RowWriter {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Maximum number of rows of a worksheet, including the header.
+	 * </p>
+	 */
+	public static final int MAX_ROWS = 1048576;
+	
+	/**
+	 * <p>
+	 *   Maximum number of characters of a cell. Longer texts are truncated.
+	 * </p>
+	 */
+	private static final int MAX_CELL_LENGTH = 32767;
+	
+	private static final String MAIN_NAMESPACE = 
+		"http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+	
+	private static final String RELATIONSHIPS_NAMESPACE = 
+		"http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	
+	private static final String PACKAGE_RELATIONSHIPS_NAMESPACE = 
+		"http://schemas.openxmlformats.org/package/2006/relationships";
+	
+	private static final String XML_DECLARATION = 
+		"<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+	
+	/**
+	 * <p>
+	 *   Styles of the cells: 0 is the default and 1 formats dates.
+	 * </p>
+	 */
+	private static final String STYLES = 
+		XML_DECLARATION + "<styleSheet xmlns=\"" + MAIN_NAMESPACE + "\">" 
+			+ "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>" 
+			+ "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>" 
+			+ "<fill><patternFill patternType=\"gray125\"/></fill></fills>" 
+			+ "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border>" 
+			+ "</borders><cellStyleXfs count=\"1\">" 
+			+ "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" 
+			+ "<cellXfs count=\"2\">" 
+			+ "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>" 
+			+ "<xf numFmtId=\"22\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" " 
+			+ "applyNumberFormat=\"1\"/></cellXfs></styleSheet>";
+	
+	private static final String DATE_STYLE = "1";
+	
+	private final ZipOutputStream zip;
+	
+	private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+	
+	private XMLStreamWriter sheet;
+	
+	private int sheetCount;
+	
+	private int rowNumber;
+	
+	private String[] headers;
+	
+	/**
+	 * <p>
+	 *   Letters of the columns already written, by index.
+	 * </p>
+	 */
+	private String[] columnNames = new String[0];
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public XlsxRowWriter(OutputStream out) {
+		this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowWriter#writeHeader(java.lang.String[])
+	 */
+	@Override
+	public void writeHeader(String[] headers) throws IOException {
+		writeRow(headers);
+		this.headers = headers.clone();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.io.RowWriter#writeRow(java.lang.Object[])
+	 */
+	@Override
+	public void writeRow(Object[] values) throws IOException {
+		try {
+			if (sheet == null || rowNumber == MAX_ROWS) {
+				endSheet();
+				startSheet();
+				if (headers != null)
+					writeCells(headers);
+			}
+			writeCells(values);
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (sheet == null)
+				startSheet();
+			endSheet();
+			writePackageParts();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			zip.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Opens the zip entry of a new worksheet and writes the start of its document.
+	 * </p>
+	 */
+	private void startSheet() throws IOException, XMLStreamException {
+		sheetCount++;
+		rowNumber = 0;
+		zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+		sheet = xmlOutputFactory.createXMLStreamWriter(zip, "UTF-8");
+		sheet.writeStartDocument("UTF-8", "1.0");
+		sheet.writeStartElement("worksheet");
+		sheet.writeDefaultNamespace(MAIN_NAMESPACE);
+		sheet.writeStartElement("sheetData");
+	}
+	
+	/**
+	 * <p>
+	 *   Writes the end of the document of the current worksheet, if any, and closes its entry.
+	 * </p>
+	 */
+	private void endSheet() throws IOException, XMLStreamException {
+		if (sheet == null)
+			return;
+		sheet.writeEndElement();
+		sheet.writeEndElement();
+		sheet.writeEndDocument();
+		sheet.flush();
+		sheet.close();
+		sheet = null;
+		zip.closeEntry();
+	}
+	
+	/**
+	 * <p>
+	 *   Writes a row of cells in the current worksheet.
+	 * </p>
+	 */
+	private void writeCells(Object[] values) throws XMLStreamException {
+		rowNumber++;
+		sheet.writeStartElement("row");
+		sheet.writeAttribute("r", String.valueOf(rowNumber));
+		for (int i = 0; i < values.length; i++) {
+			Object value = values[i];
+			if (value == null)
+				continue;
+			if (value instanceof Calendar)
+				value = ((Calendar) value).getTime();
+			
+			sheet.writeStartElement("c");
+			sheet.writeAttribute("r", getColumnName(i) + rowNumber);
+			if (value instanceof Date) {
+				sheet.writeAttribute("s", DATE_STYLE);
+				writeValue(String.valueOf(SerialDates.toSerial((Date) value)));
+			} else if (value instanceof Boolean) {
+				sheet.writeAttribute("t", "b");
+				writeValue((Boolean) value? "1": "0");
+			} else if (isFinite(value))
+				writeValue(
+					value instanceof BigDecimal? 
+						((BigDecimal) value).toPlainString(): value.toString()
+				);
+			else {
+				sheet.writeAttribute("t", "inlineStr");
+				sheet.writeStartElement("is");
+				sheet.writeStartElement("t");
+				sheet.writeAttribute(
+					"xml", "http://www.w3.org/XML/1998/namespace", "space", "preserve"
+				);
+				sheet.writeCharacters(toXmlText(value.toString()));
+				sheet.writeEndElement();
+				sheet.writeEndElement();
+			}
+			sheet.writeEndElement();
+		}
+		sheet.writeEndElement();
+	}
+	
+	private void writeValue(String value) throws XMLStreamException {
+		sheet.writeStartElement("v");
+		sheet.writeCharacters(value);
+		sheet.writeEndElement();
+	}
+	
+	/**
+	 * <p>
+	 *   Writes the parts of the package that list the worksheets, after all of them are written.
+	 * </p>
+	 */
+	private void writePackageParts() throws IOException {
+		StringBuilder contentTypes = new StringBuilder(XML_DECLARATION)
+			.append("<Types xmlns=\"")
+			.append("http://schemas.openxmlformats.org/package/2006/content-types\">")
+			.append("<Default Extension=\"rels\" ")
+			.append("ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+			.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+			.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/")
+			.append("vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+			.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/")
+			.append("vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+		StringBuilder workbook = new StringBuilder(XML_DECLARATION)
+			.append("<workbook xmlns=\"").append(MAIN_NAMESPACE)
+			.append("\" xmlns:r=\"").append(RELATIONSHIPS_NAMESPACE).append("\"><sheets>");
+		StringBuilder workbookRels = new StringBuilder(XML_DECLARATION)
+			.append("<Relationships xmlns=\"").append(PACKAGE_RELATIONSHIPS_NAMESPACE).append("\">")
+			.append("<Relationship Id=\"rIdStyles\" Target=\"styles.xml\" Type=\"")
+			.append(RELATIONSHIPS_NAMESPACE).append("/styles\"/>");
+		for (int i = 1; i <= sheetCount; i++) {
+			contentTypes
+				.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+				.append(".xml\" ContentType=\"application/")
+				.append("vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+			workbook
+				.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i)
+				.append("\" r:id=\"rId").append(i).append("\"/>");
+			workbookRels
+				.append("<Relationship Id=\"rId").append(i)
+				.append("\" Target=\"worksheets/sheet").append(i).append(".xml\" Type=\"")
+				.append(RELATIONSHIPS_NAMESPACE).append("/worksheet\"/>");
+		}
+		contentTypes.append("</Types>");
+		workbook.append("</sheets></workbook>");
+		workbookRels.append("</Relationships>");
+		
+		writeEntry("[Content_Types].xml", contentTypes.toString());
+		writeEntry(
+			"_rels/.rels", 
+			XML_DECLARATION + "<Relationships xmlns=\"" + PACKAGE_RELATIONSHIPS_NAMESPACE + "\">" 
+				+ "<Relationship Id=\"rId1\" Target=\"xl/workbook.xml\" Type=\"" 
+				+ RELATIONSHIPS_NAMESPACE + "/officeDocument\"/></Relationships>"
+		);
+		writeEntry("xl/workbook.xml", workbook.toString());
+		writeEntry("xl/_rels/workbook.xml.rels", workbookRels.toString());
+		writeEntry("xl/styles.xml", STYLES);
+	}
+	
+	private void writeEntry(String name, String content) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(content.getBytes(StandardCharsets.UTF_8));
+		zip.closeEntry();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the letters of the column of index passed by parameter, such as A, Z or AA.
+	 * </p>
+	 */
+	private String getColumnName(int index) {
+		if (index >= columnNames.length) {
+			String[] names = new String[Math.max(index + 1, columnNames.length * 2)];
+			System.arraycopy(columnNames, 0, names, 0, columnNames.length);
+			columnNames = names;
+		}
+		if (columnNames[index] == null) {
+			StringBuilder sb = new StringBuilder();
+			for (int n = index + 1; n > 0; n = (n - 1) / 26)
+				sb.insert(0, (char) ('A' + (n - 1) % 26));
+			columnNames[index] = sb.toString();
+		}
+		return columnNames[index];
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the value is a number that a cell can hold.
+	 * </p>
+	 */
+	private static boolean isFinite(Object value) {
+		if (value instanceof Double || value instanceof Float)
+			return !Double.isNaN(((Number) value).doubleValue()) 
+				&& !Double.isInfinite(((Number) value).doubleValue());
+		return value instanceof Number;
+	}
+	
+	/**
+	 * <p>
+	 *   Removes the characters that XML does not allow and truncates the text to the length of 
+	 *   a cell.
+	 * </p>
+	 */
+	private static String toXmlText(String text) {
+		StringBuilder sb = null;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			boolean allowed = 
+				c >= 0x20 && c != 0xFFFE && c != 0xFFFF || c == '\t' || c == '\n' || c == '\r';
+			if (!allowed && sb == null)
+				sb = new StringBuilder(text.length()).append(text, 0, i);
+			else if (allowed && sb != null)
+				sb.append(c);
+		}
+		String result = sb != null? sb.toString(): text;
+		return result.length() > MAX_CELL_LENGTH? result.substring(0, MAX_CELL_LENGTH): result;
+	}
+	
+}
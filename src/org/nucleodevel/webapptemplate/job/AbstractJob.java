@@ -0,0 +1,251 @@
+package org.nucleodevel.webapptemplate.job;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ *   Abstract class of a long task run in the background by JobManager, such as an import of a 
+ *   file, whose progress is polled by its ID. A subclass implements execute() and reports its 
+ *   progress, the items it processed and the items that failed, checking isCancelRequested() 
+ *   between items so that it can be cancelled. Only the first errors are kept, so the memory of 
+ *   a job does not grow with the number of failed items.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public abstract class AbstractJob implements Runnable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Maximum number of error messages kept by a job.
+	 * </p>
+	 */
+	public static final int MAX_ERRORS = 100;
+	
+	private final String id = UUID.randomUUID().toString();
+	
+	private volatile State state = State.PENDING;
+	
+	private volatile boolean cancelRequested;
+	
+	private volatile double progress;
+	
+	private volatile String message;
+	
+	private volatile long startedAt;
+	
+	private volatile long finishedAt;
+	
+	private final AtomicLong processed = new AtomicLong();
+	
+	private final AtomicLong failed = new AtomicLong();
+	
+	private final List<String> errors = new ArrayList<String>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public String getId() {
+		return id;
+	}
+	
+	public State getState() {
+		return state;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the name of the job shown to the users. By default, the simple name of its class.
+	 * </p>
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the job is over, whatever its outcome.
+	 * </p>
+	 */
+	public boolean isFinished() {
+		return state != State.PENDING && state != State.RUNNING;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the time at which the job finished, in milliseconds, or 0 if it is not over.
+	 * </p>
+	 */
+	public long getFinishedAt() {
+		return finishedAt;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the job was asked to stop. execute() should check it between items.
+	 * </p>
+	 */
+	public boolean isCancelRequested() {
+		return cancelRequested;
+	}
+	
+	/**
+	 * <p>
+	 *   Sets the progress of the job, from 0 to 1.
+	 * </p>
+	 */
+	protected void setProgress(double progress) {
+		this.progress = Math.max(0, Math.min(1, progress));
+	}
+	
+	/**
+	 * <p>
+	 *   Sets a message that describes the current step or the outcome of the job.
+	 * </p>
+	 */
+	protected void setMessage(String message) {
+		this.message = message;
+	}
+	
+	/**
+	 * <p>
+	 *   Adds to the number of items processed successfully.
+	 * </p>
+	 */
+	protected void addProcessed(long count) {
+		processed.addAndGet(count);
+	}
+	
+	/**
+	 * <p>
+	 *   Counts an item that failed and keeps its error message, unless MAX_ERRORS messages are 
+	 *   already kept.
+	 * </p>
+	 */
+	protected void addFailure(String error) {
+		failed.incrementAndGet();
+		synchronized (errors) {
+			if (errors.size() < MAX_ERRORS)
+				errors.add(error);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a snapshot of the status of the job.
+	 * </p>
+	 */
+	public JobStatus getStatus() {
+		JobStatus status = new JobStatus();
+		status.setId(id);
+		status.setName(getName());
+		status.setState(state.name());
+		status.setProgress(progress);
+		status.setProcessed(processed.get());
+		status.setFailed(failed.get());
+		status.setMessage(message);
+		status.setStartedAt(startedAt != 0? new Date(startedAt): null);
+		status.setFinishedAt(finishedAt != 0? new Date(finishedAt): null);
+		synchronized (errors) {
+			status.setErrors(new ArrayList<String>(errors));
+		}
+		return status;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public final void run() {
+		try {
+			if (cancelRequested) {
+				state = State.CANCELLED;
+				return;
+			}
+			state = State.RUNNING;
+			startedAt = System.currentTimeMillis();
+			execute();
+			if (cancelRequested)
+				state = State.CANCELLED;
+			else {
+				setProgress(1);
+				state = State.SUCCEEDED;
+			}
+		} catch (Exception e) {
+			Logger.getLogger(getClass().getName()).log(Level.WARNING, "Job " + id + " failed", e);
+			message = e.getMessage() != null? e.getMessage(): e.getClass().getName();
+			state = State.FAILED;
+		} finally {
+			try {
+				cleanup();
+			} finally {
+				finishedAt = System.currentTimeMillis();
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   A subclass must implement the task of the job. An exception fails the whole job.
+	 * </p>
+	 */
+	protected abstract void execute() throws Exception;
+	
+	/**
+	 * <p>
+	 *   Releases the resources of the job, such as temporary files, after it is over, whatever 
+	 *   its outcome. By default it does nothing.
+	 * </p>
+	 */
+	protected void cleanup() {
+	}
+	
+	/**
+	 * <p>
+	 *   Asks the job to stop. A pending job does not start, and a running one stops at the next 
+	 *   check of isCancelRequested().
+	 * </p>
+	 */
+	public void cancel() {
+		cancelRequested = true;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   State
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public enum State {
+		PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED
+	}
+	
+}
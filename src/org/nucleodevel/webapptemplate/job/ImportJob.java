@@ -0,0 +1,263 @@
+package org.nucleodevel.webapptemplate.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.BatchResult;
+import org.nucleodevel.webapptemplate.dao.UniqueConstraintViolationException;
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.io.ColumnMapping;
+import org.nucleodevel.webapptemplate.io.RowReader;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.VariableUtils;
+
+/**
+ * <p>
+ *   Job that imports the rows of a CSV or XLSX file as E entities. The file is read as a stream 
+ *   by a RowReader, whose first row is the header, and its rows are mapped to entities by a 
+ *   ColumnMapping. Entities are written in batches of BATCH_SIZE: the uniqueness of a whole 
+ *   batch is checked by AbstractDao.areUniqueEntities() and the unique entities are inserted by 
+ *   AbstractDao.insertAll(), so a file takes a few queries per batch instead of a few per row, 
+ *   and only one batch is kept in memory. Rows that cannot be mapped, duplicate or fail to be 
+ *   inserted are reported as failures with their row numbers, and do not stop the import: the 
+ *   other rows of a batch rolled back by a failure are inserted again without it.
+ * </p>
+ * <p>
+ *   The job writes through its own instance of the DAO class, created by its default 
+ *   constructor, so it never shares a DAO, and its EntityManager, with a request, and closes 
+ *   it when the job is over.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Subclass of AbstractEntity that maps an entity of a datasource.
+ */
+public class ImportJob<E extends AbstractEntity<?>> extends AbstractJob {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Number of entities checked and inserted at a time.
+	 * </p>
+	 */
+	public static final int BATCH_SIZE = 500;
+	
+	private final Class<? extends AbstractDao<E>> daoClass;
+	
+	private final ColumnMapping<E> mapping;
+	
+	private final File file;
+	
+	private final String fileName;
+	
+	private final boolean deleteFile;
+	
+	/**
+	 * <p>
+	 *   DAO that writes the entities while the job runs, closed by cleanup().
+	 * </p>
+	 */
+	private AbstractDao<E> dao;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * @param daoClass Class of the DAO that writes the entities.
+	 * @param mapping Mapping of the columns of the file to the attributes of E.
+	 * @param file File to import.
+	 * @param fileName Original name of the file, whose extension tells its format.
+	 * @param deleteFile Whether the file is deleted when the job is over, as a spooled upload.
+	 */
+	public ImportJob(
+		Class<? extends AbstractDao<E>> daoClass, ColumnMapping<E> mapping, File file, 
+		String fileName, boolean deleteFile
+	) {
+		this.daoClass = daoClass;
+		this.mapping = mapping;
+		this.file = file;
+		this.fileName = fileName;
+		this.deleteFile = deleteFile;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.job.AbstractJob#getName()
+	 */
+	@Override
+	public String getName() {
+		return fileName;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the class of the DAO that writes the entities.
+	 * </p>
+	 */
+	public Class<? extends AbstractDao<E>> getDaoClass() {
+		return daoClass;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Copies an uploaded stream to a temporary file and closes the stream, so that the upload 
+	 *   is not kept in memory and an XLSX file can be read by random access. The file should be 
+	 *   imported with deleteFile set.
+	 * </p>
+	 */
+	public static File spool(InputStream in, String fileName) throws IOException {
+		String suffix = 
+			fileName != null && fileName.lastIndexOf('.') >= 0? 
+				fileName.substring(fileName.lastIndexOf('.')): null;
+		File file = File.createTempFile("webapptemplate-import-", suffix);
+		try (InputStream source = in) {
+			Files.copy(source, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+		return file;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.job.AbstractJob#execute()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void execute() throws Exception {
+		dao = (AbstractDao<E>) ClassDescriptor.of(daoClass).newInstance();
+		try (RowReader reader = RowReader.open(file, fileName)) {
+			String[] header = reader.next();
+			if (header == null)
+				return;
+			ColumnMapping<E>.Binding binding = mapping.bind(header);
+			
+			Map<E, Long> batch = new IdentityHashMap<E, Long>();
+			List<E> entities = new ArrayList<E>(BATCH_SIZE);
+			String[] row;
+			while (!isCancelRequested() && (row = reader.next()) != null) {
+				try {
+					E entity = binding.map(row);
+					entities.add(entity);
+					batch.put(entity, reader.getRowNumber());
+				} catch (RuntimeException e) {
+					addRowFailure("import.row.error", reader.getRowNumber(), e);
+				}
+				if (entities.size() >= BATCH_SIZE) {
+					writeBatch(dao, entities, batch);
+					setProgress(reader.getProgress());
+				}
+			}
+			if (!isCancelRequested())
+				writeBatch(dao, entities, batch);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.job.AbstractJob#cleanup()
+	 */
+	@Override
+	protected void cleanup() {
+		try {
+			if (dao != null)
+				dao.close();
+		} finally {
+			dao = null;
+			if (deleteFile)
+				file.delete();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Inserts the entities of a batch that are unique and clears the batch. Since insertAll() 
+	 *   may write all the entities or none, the ones rolled back because others failed are 
+	 *   inserted again, until none is rolled back or a batch is rolled back without failures, 
+	 *   whose entities are then reported as failures, since a retry would roll them back again.
+	 * </p>
+	 */
+	private void writeBatch(AbstractDao<E> dao, List<E> entities, Map<E, Long> batch) {
+		if (entities.isEmpty())
+			return;
+		
+		boolean[] unique = dao.areUniqueEntities(entities);
+		List<E> insertable = new ArrayList<E>(entities.size());
+		for (int i = 0; i < entities.size(); i++)
+			if (unique[i])
+				insertable.add(entities.get(i));
+			else
+				addRowFailure("import.row.duplicate", batch.get(entities.get(i)), null);
+		
+		while (!insertable.isEmpty()) {
+			BatchResult<E> result = dao.insertAll(insertable);
+			addProcessed(result.getSucceeded().size());
+			for (BatchResult.Failure<E> failure: result.getFailures())
+				if (failure.getCause() instanceof UniqueConstraintViolationException)
+					addRowFailure("import.row.duplicate", batch.get(failure.getEntity()), null);
+				else
+					addRowFailure(
+						"import.row.error", batch.get(failure.getEntity()), failure.getCause()
+					);
+			if (result.getFailures().isEmpty()) {
+				for (E entity: result.getRolledBack())
+					addRowFailure("import.row.rollback", batch.get(entity), null);
+				break;
+			}
+			// every retry has fewer entities, since this one had failures
+			insertable = new ArrayList<E>(result.getRolledBack());
+		}
+		
+		entities.clear();
+		batch.clear();
+	}
+	
+	/**
+	 * <p>
+	 *   Counts a row that failed, with a message read from the generic messages.
+	 * </p>
+	 */
+	private void addRowFailure(String key, long rowNumber, Exception cause) {
+		String error = cause == null? null: 
+			cause.getMessage() != null? cause.getMessage(): cause.getClass().getSimpleName();
+		addFailure(
+			MessageFormat.format(
+				VariableUtils.getVariableFromResource(key), String.valueOf(rowNumber), error
+			)
+		);
+	}
+	
+}
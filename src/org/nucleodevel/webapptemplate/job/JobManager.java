@@ -0,0 +1,198 @@
+package org.nucleodevel.webapptemplate.job;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Runs instances of AbstractJob in the background and keeps them by ID, so that their status 
+ *   can be polled from any request. Jobs run in a fixed pool of daemon threads, whose size is 
+ *   read from the system property webapptemplate.jobs.threads, 2 by default, so that heavy jobs 
+ *   never take more than a few threads of the server. Finished jobs are forgotten after the 
+ *   number of milliseconds read from the system property webapptemplate.jobs.retention, one 
+ *   hour by default.
+ * </p>
+ * <p>
+ *   Instances of ReportJob run in a pool of their own, so that reports never delay imports, of 
+ *   webapptemplate.reports.threads threads, 2 by default, whose queue holds at most 
+ *   webapptemplate.reports.queue reports, 50 by default. Reports that succeeded are reused by 
+ *   the submits of the same report for webapptemplate.reports.maxAge milliseconds, 10 minutes 
+ *   by default.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class JobManager {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final int THREADS = 
+		Math.max(1, Integer.getInteger("webapptemplate.jobs.threads", 2));
+	
+	private static final long RETENTION_MILLIS = 
+		Long.getLong("webapptemplate.jobs.retention", 3600000L);
+	
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+		THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "webapptemplate-job");
+			thread.setDaemon(true);
+			return thread;
+		}
+	);
+	
+	private static final int REPORT_THREADS = 
+		Math.max(1, Integer.getInteger("webapptemplate.reports.threads", 2));
+	
+	private static final int REPORT_QUEUE = 
+		Math.max(1, Integer.getInteger("webapptemplate.reports.queue", 50));
+	
+	private static final long REPORT_MAX_AGE_MILLIS = 
+		Long.getLong("webapptemplate.reports.maxAge", 600000L);
+	
+	private static final ExecutorService REPORT_EXECUTOR = new ThreadPoolExecutor(
+		REPORT_THREADS, REPORT_THREADS, 0L, TimeUnit.MILLISECONDS, 
+		new ArrayBlockingQueue<Runnable>(REPORT_QUEUE), 
+		runnable -> {
+			Thread thread = new Thread(runnable, "webapptemplate-report");
+			thread.setDaemon(true);
+			return thread;
+		}
+	);
+	
+	private static final Map<String, AbstractJob> JOBS = 
+		new ConcurrentHashMap<String, AbstractJob>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private JobManager() {
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Queues the job to run in the background and returns it.
+	 * </p>
+	 */
+	public static <J extends AbstractJob> J submit(J job) {
+		purge();
+		JOBS.put(job.getId(), job);
+		EXECUTOR.execute(job);
+		return job;
+	}
+	
+	/**
+	 * <p>
+	 *   Queues the report to run in the background and returns it, unless the same report, with 
+	 *   an equal key, is pending or running, or succeeded less than webapptemplate.reports.maxAge 
+	 *   milliseconds ago, in which case that report is returned instead, so that the users that 
+	 *   ask for the same report share its computation and its result. Cancelling a shared 
+	 *   report cancels it for all of them.
+	 * </p>
+	 * @throws RejectedExecutionException If the queue of the reports is full.
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <J extends ReportJob<?>> J submitReport(J job) {
+		purge();
+		long limit = System.currentTimeMillis() - REPORT_MAX_AGE_MILLIS;
+		for (AbstractJob other: JOBS.values())
+			if (other instanceof ReportJob && ((ReportJob<?>) other).isSameReport(job)) {
+				boolean running = !other.isFinished() && !other.isCancelRequested();
+				boolean fresh = 
+					other.getState() == AbstractJob.State.SUCCEEDED 
+						&& other.getFinishedAt() >= limit;
+				if (running || fresh)
+					return (J) other;
+			}
+		
+		JOBS.put(job.getId(), job);
+		try {
+			REPORT_EXECUTOR.execute(job);
+		} catch (RejectedExecutionException e) {
+			JOBS.remove(job.getId());
+			throw e;
+		}
+		return job;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the job whose ID is passed by parameter, or null if there is no such job or it 
+	 *   was forgotten.
+	 * </p>
+	 */
+	public static AbstractJob get(String id) {
+		return id != null? JOBS.get(id): null;
+	}
+	
+	/**
+	 * <p>
+	 *   Asks the job whose ID is passed by parameter to stop.
+	 * </p>
+	 * @return False if there is no such job.
+	 */
+	public static boolean cancel(String id) {
+		AbstractJob job = get(id);
+		if (job == null)
+			return false;
+		job.cancel();
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 *   Cancels the jobs that did not finish and stops the threads of the jobs, of the reports 
+	 *   and of the report watchdog, so that they do not outlive the application. Called by 
+	 *   JobManagerListener when the application is undeployed; jobs can no longer be submitted 
+	 *   afterwards.
+	 * </p>
+	 */
+	public static void shutdown() {
+		for (AbstractJob job: JOBS.values())
+			if (!job.isFinished())
+				job.cancel();
+		EXECUTOR.shutdownNow();
+		REPORT_EXECUTOR.shutdownNow();
+		ReportJob.shutdownWatchdog();
+		JOBS.clear();
+	}
+	
+	/**
+	 * <p>
+	 *   Forgets the jobs that finished longer than the retention time ago.
+	 * </p>
+	 */
+	public static void purge() {
+		long limit = System.currentTimeMillis() - RETENTION_MILLIS;
+		for (Iterator<AbstractJob> it = JOBS.values().iterator(); it.hasNext();) {
+			AbstractJob job = it.next();
+			if (job.isFinished() && job.getFinishedAt() != 0 && job.getFinishedAt() < limit)
+				it.remove();
+		}
+	}
+	
+}
@@ -0,0 +1,47 @@
+package org.nucleodevel.webapptemplate.job;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * <p>
+ *   Shuts JobManager down when the application is undeployed, cancelling the jobs that did not 
+ *   finish and stopping the threads of the jobs, of the reports and of the report watchdog, 
+ *   which would otherwise keep the class loader of the application alive after a redeploy. It 
+ *   is registered by the servlet container in every application that has webapptemplate in its 
+ *   classpath.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@WebListener
+public class JobManagerListener implements ServletContextListener {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextInitialized(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextDestroyed(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		JobManager.shutdown();
+	}
+	
+}
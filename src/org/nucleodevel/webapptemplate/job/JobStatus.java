@@ -0,0 +1,151 @@
+package org.nucleodevel.webapptemplate.job;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * <p>
+ *   Snapshot of the status of an AbstractJob, returned to the clients that poll it.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@XmlRootElement
+public class JobStatus implements Serializable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long serialVersionUID = 1L;
+	
+	private String id;
+	
+	private String name;
+	
+	private String state;
+	
+	private double progress;
+	
+	private long processed;
+	
+	private long failed;
+	
+	private String message;
+	
+	private Date startedAt;
+	
+	private Date finishedAt;
+	
+	private List<String> errors;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public String getId() {
+		return id;
+	}
+	
+	public void setId(String id) {
+		this.id = id;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * <p>
+	 *   Name of an AbstractJob.State.
+	 * </p>
+	 */
+	public String getState() {
+		return state;
+	}
+	
+	public void setState(String state) {
+		this.state = state;
+	}
+	
+	/**
+	 * <p>
+	 *   Progress of the job, from 0 to 1.
+	 * </p>
+	 */
+	public double getProgress() {
+		return progress;
+	}
+	
+	public void setProgress(double progress) {
+		this.progress = progress;
+	}
+	
+	public long getProcessed() {
+		return processed;
+	}
+	
+	public void setProcessed(long processed) {
+		this.processed = processed;
+	}
+	
+	public long getFailed() {
+		return failed;
+	}
+	
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+	
+	public String getMessage() {
+		return message;
+	}
+	
+	public void setMessage(String message) {
+		this.message = message;
+	}
+	
+	public Date getStartedAt() {
+		return startedAt;
+	}
+	
+	public void setStartedAt(Date startedAt) {
+		this.startedAt = startedAt;
+	}
+	
+	public Date getFinishedAt() {
+		return finishedAt;
+	}
+	
+	public void setFinishedAt(Date finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+	
+	/**
+	 * <p>
+	 *   First error messages of the job, up to AbstractJob.MAX_ERRORS.
+	 * </p>
+	 */
+	public List<String> getErrors() {
+		return errors;
+	}
+	
+	public void setErrors(List<String> errors) {
+		this.errors = errors;
+	}
+	
+}
@@ -0,0 +1,268 @@
+package org.nucleodevel.webapptemplate.job;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+
+/**
+ * <p>
+ *   Job that computes a report, such as the statistics of a period, in the background, so that 
+ *   a heavy report never blocks the request that asks for it and stops when it is cancelled. It 
+ *   is submitted by JobManager.submitReport(), which reuses the result of a recent job with the 
+ *   same key, the parameters of the report, instead of computing it again.
+ * </p>
+ * <p>
+ *   A subclass implements compute(), checking isCancelRequested() between steps, and reads the 
+ *   datasource through DAOs created by newDao(), which never share an EntityManager with a 
+ *   request and whose queries time out with the report. A report that runs for longer than its 
+ *   timeout, webapptemplate.reports.timeout milliseconds by default, 300000, fails, and the 
+ *   queries that its DAOs are running are stopped in the datasource when it times out or is 
+ *   cancelled.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <R> Type of the result of the report.
+ */
+public abstract class ReportJob<R> extends AbstractJob {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static final long DEFAULT_TIMEOUT_MILLIS = 
+		Long.getLong("webapptemplate.reports.timeout", 300000L);
+	
+	/**
+	 * <p>
+	 *   Executor that stops the queries of the reports that time out, whose daemon thread does 
+	 *   not prevent the shutdown of the JVM.
+	 * </p>
+	 */
+	private static final ScheduledExecutorService WATCHDOG = 
+		Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "webapptemplate-report-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		});
+	
+	private final String name;
+	
+	private final Object key;
+	
+	private final long timeoutMillis;
+	
+	private volatile long deadline;
+	
+	private volatile R result;
+	
+	/**
+	 * <p>
+	 *   DAOs created by newDao(), whose queries are stopped with the report.
+	 * </p>
+	 */
+	private final List<AbstractDao<?>> daos = new CopyOnWriteArrayList<AbstractDao<?>>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * @param name Name of the report shown to the users.
+	 * @param key Parameters of the report, compared by equals(), or null if its results must not 
+	 *   be reused.
+	 * @param timeoutMillis Maximum time of the report, or zero for no limit.
+	 */
+	public ReportJob(String name, Object key, long timeoutMillis) {
+		this.name = name;
+		this.key = key;
+		this.timeoutMillis = Math.max(timeoutMillis, 0);
+	}
+	
+	public ReportJob(String name, Object key) {
+		this(name, key, DEFAULT_TIMEOUT_MILLIS);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.job.AbstractJob#getName()
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	public Object getKey() {
+		return key;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the result of the report once it succeeded, or null.
+	 * </p>
+	 */
+	public R getResult() {
+		return result;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the report was cancelled or ran for longer than its timeout.
+	 * </p>
+	 */
+	@Override
+	public boolean isCancelRequested() {
+		return super.isCancelRequested() || isTimedOut();
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the report is running for longer than its timeout.
+	 * </p>
+	 */
+	public boolean isTimedOut() {
+		return deadline != 0 && System.currentTimeMillis() > deadline;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the time left to the report before its timeout, in milliseconds, at least 1, or 
+	 *   zero if it has no timeout.
+	 * </p>
+	 */
+	protected long getRemainingMillis() {
+		return deadline != 0? Math.max(deadline - System.currentTimeMillis(), 1): 0;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.job.AbstractJob#execute()
+	 */
+	@Override
+	protected final void execute() throws Exception {
+		ScheduledFuture<?> watchdog = null;
+		if (timeoutMillis > 0) {
+			deadline = System.currentTimeMillis() + timeoutMillis;
+			watchdog = 
+				WATCHDOG.schedule(this::cancelQueries, timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		
+		R computed;
+		try {
+			computed = compute();
+		} catch (Exception e) {
+			// a query stopped by the timeout or by the cancellation fails with its own exception
+			if (isTimedOut())
+				throw new TimeoutException("Report timed out after " + timeoutMillis + " ms");
+			if (super.isCancelRequested())
+				return;
+			throw e;
+		} finally {
+			if (watchdog != null)
+				watchdog.cancel(false);
+		}
+		if (isTimedOut())
+			throw new TimeoutException("Report timed out after " + timeoutMillis + " ms");
+		if (!super.isCancelRequested())
+			result = computed;
+	}
+	
+	/**
+	 * <p>
+	 *   Asks the report to stop and stops the queries that its DAOs are running.
+	 * </p>
+	 */
+	@Override
+	public void cancel() {
+		super.cancel();
+		cancelQueries();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.job.AbstractJob#cleanup()
+	 */
+	@Override
+	protected void cleanup() {
+		super.cleanup();
+		daos.clear();
+	}
+	
+	/**
+	 * <p>
+	 *   A subclass must implement the computation of the report, which returns its result. An 
+	 *   exception fails the report.
+	 * </p>
+	 */
+	protected abstract R compute() throws Exception;
+	
+	/**
+	 * <p>
+	 *   Creates a DAO of the class passed by parameter through its default constructor, whose 
+	 *   queries time out when the report does and are stopped when it is cancelled.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	protected <D extends AbstractDao<?>> D newDao(Class<D> daoClass) {
+		D dao = (D) ClassDescriptor.of(daoClass).newInstance();
+		long remaining = getRemainingMillis();
+		dao.setQueryTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+		daos.add(dao);
+		if (super.isCancelRequested())
+			dao.cancelQueries();
+		return dao;
+	}
+	
+	/**
+	 * <p>
+	 *   Stops the thread of the watchdog of the timeouts. Called by JobManager.shutdown().
+	 * </p>
+	 */
+	static void shutdownWatchdog() {
+		WATCHDOG.shutdownNow();
+	}
+	
+	private void cancelQueries() {
+		for (AbstractDao<?> dao: daos)
+			dao.cancelQueries();
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the result of this job answers the report passed by parameter, which 
+	 *   has the same key and class.
+	 * </p>
+	 */
+	boolean isSameReport(ReportJob<?> other) {
+		return
+			key != null && other.getClass() == getClass() && Objects.equals(key, other.key);
+	}
+	
+}
@@ -0,0 +1,222 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ *   Concurrent histogram of non-negative long values with HDR-style log-linear buckets: values 
+ *   lower than 64 have their own bucket and each power of two above that is split into 32 
+ *   buckets, which bounds the relative error of any percentile to about 3%. The buckets are 
+ *   preallocated, so recording a value never allocates and never locks.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class Histogram implements HistogramMXBean {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Number of bits that define the sub-buckets of each power of two.
+	 * </p>
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+	
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	/**
+	 * <p>
+	 *   Number of buckets needed to cover every positive long value.
+	 * </p>
+	 */
+	private static final int BUCKET_COUNT = 
+		(63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + 2 * SUB_BUCKET_COUNT;
+	
+	private final String category;
+	
+	private final String target;
+	
+	private final String operation;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	
+	private final LongAdder count = new LongAdder();
+	
+	private final LongAdder sum = new LongAdder();
+	
+	private final AtomicLong max = new AtomicLong();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public Histogram(String category, String target, String operation) {
+		this.category = category;
+		this.target = target;
+		this.operation = operation;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public String getCategory() {
+		return category;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getSum() {
+		return sum.sum();
+	}
+
+	@Override
+	public long getMax() {
+		return max.get();
+	}
+
+	@Override
+	public double getMean() {
+		long n = count.sum();
+		return n == 0? 0: (double) sum.sum() / n;
+	}
+
+	@Override
+	public long getP50() {
+		return getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getP90() {
+		return getValueAtPercentile(90);
+	}
+
+	@Override
+	public long getP99() {
+		return getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getP999() {
+		return getValueAtPercentile(99.9);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Records a value. Negative values are recorded as zero.
+	 * </p>
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		buckets.incrementAndGet(getBucketIndex(value));
+		count.increment();
+		sum.add(value);
+		
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value))
+			currentMax = max.get();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the highest value of the bucket that contains the given percentile, between 0 and 
+	 *   100, of the recorded values, or zero if nothing was recorded.
+	 * </p>
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(Math.min(percentile, 100) / 100 * total);
+		if (rank < 1)
+			rank = 1;
+		long accumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			accumulated += snapshot[i];
+			if (accumulated >= rank)
+				return Math.min(getBucketUpperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.metrics.HistogramMXBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			buckets.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the index of the bucket that stores the value.
+	 * </p>
+	 */
+	private static int getBucketIndex(long value) {
+		if (value < 2 * SUB_BUCKET_COUNT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the highest value stored by the bucket whose index is passed by parameter.
+	 * </p>
+	 */
+	private static long getBucketUpperBound(int index) {
+		if (index < 2 * SUB_BUCKET_COUNT)
+			return index;
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long top = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((top + 1) << shift) - 1;
+	}
+	
+}
@@ -0,0 +1,30 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+/**
+ * <p>
+ *   Management interface through which a Histogram is exposed in JMX. Values are expressed in 
+ *   the unit recorded by the histogram, which is nanoseconds for latency histograms.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public interface HistogramMXBean {
+	
+	long getCount();
+	
+	long getSum();
+	
+	long getMax();
+	
+	double getMean();
+	
+	long getP50();
+	
+	long getP90();
+	
+	long getP99();
+	
+	long getP999();
+	
+	void reset();
+	
+}
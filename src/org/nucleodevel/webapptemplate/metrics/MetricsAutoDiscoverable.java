@@ -0,0 +1,42 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import javax.annotation.Priority;
+import javax.ws.rs.RuntimeType;
+import javax.ws.rs.core.FeatureContext;
+
+import org.glassfish.jersey.internal.spi.AutoDiscoverable;
+
+/**
+ * <p>
+ *   Registers RestServerMetricsFilter in every Jersey server runtime that has webapptemplate in 
+ *   its classpath, so the latency of every resource is recorded without any change in the 
+ *   configuration of the application.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@Priority(AutoDiscoverable.DEFAULT_PRIORITY)
+public class MetricsAutoDiscoverable implements AutoDiscoverable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.glassfish.jersey.internal.spi.AutoDiscoverable#configure(
+	 *     javax.ws.rs.core.FeatureContext
+	 * )
+	 */
+	@Override
+	public void configure(FeatureContext context) {
+		if (
+			context.getConfiguration().getRuntimeType() == RuntimeType.SERVER
+			&& !context.getConfiguration().isRegistered(RestServerMetricsFilter.class)
+		)
+			context.register(RestServerMetricsFilter.class);
+	}
+	
+}
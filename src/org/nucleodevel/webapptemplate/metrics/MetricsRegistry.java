@@ -0,0 +1,184 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ *   Application-wide registry of the histograms recorded by webapptemplate. A histogram is 
+ *   identified by a category (DAO, REST server, REST client or session), a target class, which 
+ *   is usually the entity class, and an operation name. Each histogram is created and registered 
+ *   in JMX the first time it is requested; after that, looking it up costs one ClassValue read 
+ *   and one ConcurrentHashMap read, without allocation.
+ * </p>
+ * <p>
+ *   Recording can be turned off by the system property webapptemplate.metrics=false.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class MetricsRegistry {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Categories of the recorded operations.
+	 * </p>
+	 */
+	public enum Category {
+		DAO,
+		REST_SERVER,
+		REST_CLIENT,
+		SESSION
+	}
+	
+	/**
+	 * <p>
+	 *   JMX domain under which the histograms are registered.
+	 * </p>
+	 */
+	public static final String JMX_DOMAIN = "org.nucleodevel.webapptemplate";
+	
+	private static volatile boolean enabled = 
+		!"false".equalsIgnoreCase(System.getProperty("webapptemplate.metrics"));
+	
+	/**
+	 * <p>
+	 *   For each target class, one map of histograms by operation per category.
+	 * </p>
+	 */
+	private static final ClassValue<ConcurrentMap<String, Histogram>[]> HISTOGRAMS = 
+		new ClassValue<ConcurrentMap<String, Histogram>[]>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			protected ConcurrentMap<String, Histogram>[] computeValue(Class<?> type) {
+				ConcurrentMap<String, Histogram>[] maps = 
+					(ConcurrentMap<String, Histogram>[]) 
+						new ConcurrentMap<?, ?>[Category.values().length];
+				for (int i = 0; i < maps.length; i++)
+					maps[i] = new ConcurrentHashMap<String, Histogram>();
+				return maps;
+			}
+		};
+	
+	/**
+	 * <p>
+	 *   Every histogram created so far, in creation order, for listing.
+	 * </p>
+	 */
+	private static final List<Histogram> ALL = new CopyOnWriteArrayList<Histogram>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		MetricsRegistry.enabled = enabled;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a copy of the list of every histogram created so far.
+	 * </p>
+	 */
+	public static List<Histogram> getHistograms() {
+		return new ArrayList<Histogram>(ALL);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the histogram of the operation of the target class in the given category, 
+	 *   creating and registering it in JMX if it does not exist.
+	 * </p>
+	 */
+	public static Histogram getHistogram(Category category, Class<?> target, String operation) {
+		ConcurrentMap<String, Histogram> histograms = HISTOGRAMS.get(target)[category.ordinal()];
+		Histogram histogram = histograms.get(operation);
+		if (histogram == null)
+			histogram = histograms.computeIfAbsent(
+				operation, key -> register(new Histogram(category.name(), target.getName(), key))
+			);
+		return histogram;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Records in nanoseconds the time elapsed since startNanos, a value previously read from 
+	 *   System.nanoTime(), if recording is enabled.
+	 * </p>
+	 */
+	public static void recordSince(
+		Category category, Class<?> target, String operation, long startNanos
+	) {
+		if (enabled && target != null)
+			getHistogram(category, target, operation).record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * <p>
+	 *   Records a value that is not a duration, such as a size in bytes, if recording is enabled.
+	 * </p>
+	 */
+	public static void record(Category category, Class<?> target, String operation, long value) {
+		if (enabled && target != null)
+			getHistogram(category, target, operation).record(value);
+	}
+	
+	/**
+	 * <p>
+	 *   Adds the histogram to the list of histograms and registers it in the platform MBean 
+	 *   server. A failure in JMX registration does not prevent the histogram from being used.
+	 * </p>
+	 */
+	private static Histogram register(Histogram histogram) {
+		ALL.add(histogram);
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(
+				JMX_DOMAIN + ":type=" + histogram.getCategory() 
+				+ ",target=" + ObjectName.quote(histogram.getTarget()) 
+				+ ",operation=" + ObjectName.quote(histogram.getOperation())
+			);
+			if (!server.isRegistered(name))
+				server.registerMBean(histogram, name);
+		} catch (JMException e) {
+			Logger.getLogger(MetricsRegistry.class.getName()).log(
+				Level.WARNING, "Histogram could not be registered in JMX", e
+			);
+		}
+		return histogram;
+	}
+	
+}
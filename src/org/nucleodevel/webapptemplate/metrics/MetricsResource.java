@@ -0,0 +1,109 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import org.nucleodevel.webapptemplate.metrics.MetricsRegistry.Category;
+
+/**
+ * <p>
+ *   REST resource that exposes the histograms of MetricsRegistry. It is not registered 
+ *   automatically: an application that wants it must register it in its JAX-RS configuration, 
+ *   preferably behind some access control. Durations are reported in microseconds and the sizes 
+ *   of the session histograms in bytes.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@Path("metrics")
+public class MetricsResource {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * Returns one line per histogram in a format readable by a person.
+	 */
+	@GET
+	@Produces(MediaType.TEXT_PLAIN)
+	public String getMetricsText() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("category\ttarget\toperation\tcount\tmean\tp50\tp90\tp99\tp999\tmax\n");
+		for (Map<String, Object> metric: getMetrics()) {
+			for (Object value: metric.values())
+				sb.append(value).append('\t');
+			sb.setCharAt(sb.length() - 1, '\n');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the histograms in JSON format.
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public List<Map<String, Object>> getMetrics() {
+		List<Map<String, Object>> metrics = new ArrayList<Map<String, Object>>();
+		for (Histogram histogram: MetricsRegistry.getHistograms()) {
+			long unit = Category.SESSION.name().equals(histogram.getCategory())? 1: 1000;
+			Map<String, Object> metric = new LinkedHashMap<String, Object>();
+			metric.put("category", histogram.getCategory());
+			metric.put("target", histogram.getTarget());
+			metric.put("operation", histogram.getOperation());
+			metric.put("count", histogram.getCount());
+			metric.put("mean", Math.round(histogram.getMean() / unit));
+			metric.put("p50", histogram.getP50() / unit);
+			metric.put("p90", histogram.getP90() / unit);
+			metric.put("p99", histogram.getP99() / unit);
+			metric.put("p999", histogram.getP999() / unit);
+			metric.put("max", histogram.getMax() / unit);
+			metrics.add(metric);
+		}
+		return metrics;
+	}
+	
+	/**
+	 * Returns the sampling of SessionFootprint and its top offenders, the attributes and classes 
+	 * with the greatest sizes in bytes, in JSON format.
+	 */
+	@GET
+	@Path("session")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Map<String, Object> getSessionFootprint(
+		@QueryParam("top") @DefaultValue("20") int top
+	) {
+		List<Map<String, Object>> offenders = new ArrayList<Map<String, Object>>();
+		for (SessionFootprint.Offender offender: SessionFootprint.getTopOffenders(top)) {
+			Map<String, Object> metric = new LinkedHashMap<String, Object>();
+			metric.put("attribute", offender.getAttribute());
+			metric.put("type", offender.getType());
+			metric.put("samples", offender.getSamples());
+			metric.put("failures", offender.getFailures());
+			metric.put("mean", offender.getMeanBytes());
+			metric.put("last", offender.getLastBytes());
+			metric.put("max", offender.getMaxBytes());
+			offenders.add(metric);
+		}
+		
+		Map<String, Object> footprint = new LinkedHashMap<String, Object>();
+		footprint.put("sampleRate", SessionFootprint.getSampleRate());
+		footprint.put("sampledSessions", SessionFootprint.getSampledSessions());
+		footprint.put("droppedSamples", SessionFootprint.getDroppedSamples());
+		footprint.put("offenders", offenders);
+		return footprint;
+	}
+	
+}
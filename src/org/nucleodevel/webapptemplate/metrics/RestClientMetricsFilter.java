@@ -0,0 +1,91 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.io.IOException;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+
+/**
+ * <p>
+ *   JAX-RS client filter that records the latency of the calls made by an AbstractRestClient in 
+ *   MetricsRegistry, tagged by its entity class and the HTTP method of the call.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class RestClientMetricsFilter implements ClientRequestFilter, ClientResponseFilter {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Property of the request context that holds the System.nanoTime() of the start of the 
+	 *   call, boxed into a Long for the same reasons as in RestServerMetricsFilter, since an 
+	 *   asynchronous call may also be answered by another thread.
+	 * </p>
+	 */
+	private static final String START_PROPERTY = RestClientMetricsFilter.class.getName() + ".start";
+	
+	/**
+	 * <p>
+	 *   Entity class of the client, used as the target of the histograms.
+	 * </p>
+	 */
+	private final Class<?> entityClass;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public RestClientMetricsFilter(Class<?> entityClass) {
+		this.entityClass = entityClass;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.client.ClientRequestFilter#filter(
+	 *     javax.ws.rs.client.ClientRequestContext
+	 * )
+	 */
+	@Override
+	public void filter(ClientRequestContext requestContext) throws IOException {
+		if (MetricsRegistry.isEnabled())
+			requestContext.setProperty(START_PROPERTY, System.nanoTime());
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.client.ClientResponseFilter#filter(
+	 *     javax.ws.rs.client.ClientRequestContext, javax.ws.rs.client.ClientResponseContext
+	 * )
+	 */
+	@Override
+	public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) 
+		throws IOException {
+		
+		Object start = requestContext.getProperty(START_PROPERTY);
+		if (start != null)
+			MetricsRegistry.recordSince(
+				MetricsRegistry.Category.REST_CLIENT, entityClass, requestContext.getMethod(), 
+				(Long) start
+			);
+	}
+	
+}
@@ -0,0 +1,110 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import org.nucleodevel.webapptemplate.datasource.ws.rest.AbstractRestResource;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+
+/**
+ * <p>
+ *   JAX-RS server filter that records the latency of every resource method in 
+ *   MetricsRegistry. Subclasses of AbstractRestResource are tagged by their entity class, other 
+ *   resources by their own class, and the operation is the name of the resource method.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@Provider
+public class RestServerMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Property of the request context that holds the System.nanoTime() of the start of the 
+	 *   request. Properties hold objects, so the time is boxed into a Long, outside of the 
+	 *   cache of Long.valueOf(), which is one allocation of 16 bytes per request recorded and 
+	 *   none while MetricsRegistry is disabled. A reusable holder per thread would avoid it, 
+	 *   but the response may be filtered by another thread than the request.
+	 * </p>
+	 */
+	private static final String START_PROPERTY = RestServerMetricsFilter.class.getName() + ".start";
+	
+	/**
+	 * <p>
+	 *   Target class of the histograms of each resource class, resolved once per class.
+	 * </p>
+	 */
+	private static final ClassValue<Class<?>> TARGETS = new ClassValue<Class<?>>() {
+		@Override
+		protected Class<?> computeValue(Class<?> resourceClass) {
+			if (AbstractRestResource.class.isAssignableFrom(resourceClass)) {
+				Class<?> entityClass = ClassDescriptor.of(resourceClass)
+					.getParameterClass(AbstractRestResource.class, 1);
+				if (entityClass != null)
+					return entityClass;
+			}
+			return resourceClass;
+		}
+	};
+	
+	@Context
+	private ResourceInfo resourceInfo;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.container.ContainerRequestFilter#filter(
+	 *     javax.ws.rs.container.ContainerRequestContext
+	 * )
+	 */
+	@Override
+	public void filter(ContainerRequestContext requestContext) throws IOException {
+		if (MetricsRegistry.isEnabled())
+			requestContext.setProperty(START_PROPERTY, System.nanoTime());
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.container.ContainerResponseFilter#filter(
+	 *     javax.ws.rs.container.ContainerRequestContext, 
+	 *     javax.ws.rs.container.ContainerResponseContext
+	 * )
+	 */
+	@Override
+	public void filter(
+		ContainerRequestContext requestContext, ContainerResponseContext responseContext
+	) throws IOException {
+		Object start = requestContext.getProperty(START_PROPERTY);
+		if (start == null || resourceInfo == null)
+			return;
+		
+		Class<?> resourceClass = resourceInfo.getResourceClass();
+		Method resourceMethod = resourceInfo.getResourceMethod();
+		if (resourceClass != null && resourceMethod != null)
+			MetricsRegistry.recordSince(
+				MetricsRegistry.Category.REST_SERVER, TARGETS.get(resourceClass), 
+				resourceMethod.getName(), (Long) start
+			);
+	}
+	
+}
@@ -0,0 +1,504 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpSession;
+
+import org.jboss.weld.context.api.ContextualInstance;
+import org.nucleodevel.webapptemplate.metrics.MetricsRegistry.Category;
+
+/**
+ * <p>
+ *   Application-wide accounting of the memory retained by the HTTP sessions. A sample of the 
+ *   sessions, webapptemplate.metrics.session.sampleRate of the requests, such as 0.01, is 
+ *   measured by serializing each attribute, which estimates its retained size, at the end of the 
+ *   request that is sampled and on its own thread, so that the objects of the session, such as 
+ *   the EntityManager of a managed bean that loads a lazy collection while it is serialized, 
+ *   are never used by a thread outside of the requests. Only one request measures at a time: 
+ *   samples that arrive while another one is being measured are dropped instead of waiting. The 
+ *   rate is 0 by default, so the accounting is off until it is set by the property or by 
+ *   setSampleRate(), which is also exposed in JMX.
+ * </p>
+ * <p>
+ *   Maps, such as the view maps in which JSF keeps the view-scoped beans, and CDI contextual 
+ *   instances are opened, so that a managed bean is measured as its own class under the 
+ *   attribute that holds it. Each size is recorded in the SESSION histograms of MetricsRegistry, 
+ *   with the class of the value as target and the attribute as operation, and the total of the 
+ *   session under HttpSession/total. The greatest values per attribute and class, the top 
+ *   offenders, are kept by getTopOffenders() and exposed in JMX and in MetricsResource.
+ * </p>
+ * <p>
+ *   Values that are not serializable are counted as failures of their offender, since they 
+ *   prevent the session from being replicated or persisted.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class SessionFootprint {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static final int DEFAULT_TOP = 20;
+	
+	/**
+	 * <p>
+	 *   Depth up to which maps in the attributes are opened, enough for the view maps of each 
+	 *   view kept in the session.
+	 * </p>
+	 */
+	private static final int MAX_DEPTH = 3;
+	
+	/**
+	 * <p>
+	 *   Maximum number of pairs of attribute and class whose offenders and histograms are kept, 
+	 *   which bounds the memory of the accounting itself when attribute names are dynamic.
+	 * </p>
+	 */
+	private static final int MAX_OFFENDERS = 1024;
+	
+	private static volatile double sampleRate = Math.max(0, Math.min(1, Double.parseDouble(
+		System.getProperty("webapptemplate.metrics.session.sampleRate", "0")
+	)));
+	
+	private static final AtomicLong SAMPLED_SESSIONS = new AtomicLong();
+	
+	private static final AtomicLong DROPPED_SAMPLES = new AtomicLong();
+	
+	private static final ConcurrentMap<String, Offender> OFFENDERS = 
+		new ConcurrentHashMap<String, Offender>();
+	
+	/**
+	 * <p>
+	 *   Indicates whether a request is measuring a session, which keeps the other samples from 
+	 *   adding up the serializations of several sessions to the latency of the server.
+	 * </p>
+	 */
+	private static final AtomicBoolean MEASURING = new AtomicBoolean();
+	
+	/**
+	 * <p>
+	 *   Name under which this class registered its MBean, or null if it did not, which is 
+	 *   unregistered by shutdown().
+	 * </p>
+	 */
+	private static volatile ObjectName registeredName;
+	
+	static {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(
+				MetricsRegistry.JMX_DOMAIN + ":type=" + Category.SESSION + ",name=footprint"
+			);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new Management(), name);
+				registeredName = name;
+			}
+		} catch (JMException e) {
+			Logger.getLogger(SessionFootprint.class.getName()).log(
+				Level.WARNING, "Session footprint could not be registered in JMX", e
+			);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private SessionFootprint() {
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static double getSampleRate() {
+		return sampleRate;
+	}
+	
+	/**
+	 * <p>
+	 *   Sets the fraction of the requests whose session is measured, from 0, which turns the 
+	 *   accounting off, to 1.
+	 * </p>
+	 */
+	public static void setSampleRate(double sampleRate) {
+		SessionFootprint.sampleRate = Math.max(0, Math.min(1, sampleRate));
+	}
+	
+	public static long getSampledSessions() {
+		return SAMPLED_SESSIONS.get();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of samples dropped because another one was still being measured.
+	 * </p>
+	 */
+	public static long getDroppedSamples() {
+		return DROPPED_SAMPLES.get();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the offenders with the greatest maximum sizes, in descending order, at most top.
+	 * </p>
+	 */
+	public static List<Offender> getTopOffenders(int top) {
+		List<Offender> offenders = new ArrayList<Offender>(OFFENDERS.values());
+		offenders.sort(Comparator.comparingLong(Offender::getMaxBytes).reversed());
+		return offenders.size() > top? offenders.subList(0, Math.max(top, 0)): offenders;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Measures the session on the calling thread, which must be the one of a request of the 
+	 *   session, if it falls in the sample and metrics are enabled. Null and invalidated sessions 
+	 *   are ignored.
+	 * </p>
+	 */
+	public static void sample(HttpSession session) {
+		double rate = sampleRate;
+		if (
+			session == null || rate <= 0 || !MetricsRegistry.isEnabled()
+			|| ThreadLocalRandom.current().nextDouble() >= rate
+		)
+			return;
+		
+		if (!MEASURING.compareAndSet(false, true)) {
+			DROPPED_SAMPLES.incrementAndGet();
+			return;
+		}
+		try {
+			Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+			try {
+				Enumeration<String> names = session.getAttributeNames();
+				while (names.hasMoreElements()) {
+					String name = names.nextElement();
+					attributes.put(name, session.getAttribute(name));
+				}
+			} catch (IllegalStateException e) {
+				return;
+			}
+			measure(attributes);
+		} finally {
+			MEASURING.set(false);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Clears the offenders and the counters of samples. The histograms are reset through 
+	 *   MetricsRegistry.
+	 * </p>
+	 */
+	public static void reset() {
+		OFFENDERS.clear();
+		SAMPLED_SESSIONS.set(0);
+		DROPPED_SAMPLES.set(0);
+	}
+	
+	/**
+	 * <p>
+	 *   Unregisters the MBean, which would otherwise keep the class loader of the application 
+	 *   after it is undeployed. Samples are no longer measured afterwards.
+	 * </p>
+	 */
+	public static void shutdown() {
+		sampleRate = 0;
+		ObjectName name = registeredName;
+		if (name == null)
+			return;
+		registeredName = null;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			Logger.getLogger(SessionFootprint.class.getName()).log(
+				Level.WARNING, "Session footprint could not be unregistered from JMX", e
+			);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Measures the attributes of a session and records their sizes.
+	 * </p>
+	 */
+	private static void measure(Map<String, Object> attributes) {
+		long total = 0;
+		for (Map.Entry<String, Object> attribute: attributes.entrySet()) {
+			Map<Class<?>, long[]> sizes = new HashMap<Class<?>, long[]>();
+			collect(attribute.getValue(), 0, sizes);
+			for (Map.Entry<Class<?>, long[]> size: sizes.entrySet()) {
+				record(attribute.getKey(), size.getKey(), size.getValue());
+				total += size.getValue()[0];
+			}
+		}
+		MetricsRegistry.record(Category.SESSION, HttpSession.class, "total", total);
+		SAMPLED_SESSIONS.incrementAndGet();
+	}
+	
+	/**
+	 * <p>
+	 *   Adds the size of the value, or of the values of a map, to the size of their classes, 
+	 *   where size[0] holds the bytes and size[1] the number of values that failed to serialize.
+	 * </p>
+	 */
+	private static void collect(Object value, int depth, Map<Class<?>, long[]> sizes) {
+		if (value instanceof ContextualInstance)
+			value = ((ContextualInstance<?>) value).getInstance();
+		if (value == null)
+			return;
+		
+		if (value instanceof Map && depth < MAX_DEPTH) {
+			Object[] values;
+			try {
+				values = ((Map<?, ?>) value).values().toArray();
+			} catch (RuntimeException e) {
+				// the map is being changed by a request
+				return;
+			}
+			for (Object nested: values)
+				collect(nested, depth + 1, sizes);
+			return;
+		}
+		
+		long[] size = sizes.computeIfAbsent(value.getClass(), key -> new long[2]);
+		long bytes = getSerializedSize(value);
+		if (bytes >= 0)
+			size[0] += bytes;
+		else
+			size[1]++;
+	}
+	
+	/**
+	 * <p>
+	 *   Records the size of the values of one class under one attribute, in its offender and in 
+	 *   its histogram, unless MAX_OFFENDERS pairs are already accounted, which bounds both.
+	 * </p>
+	 */
+	private static void record(String attribute, Class<?> type, long[] size) {
+		String key = attribute + '\t' + type.getName();
+		Offender offender = OFFENDERS.get(key);
+		if (offender == null) {
+			if (OFFENDERS.size() >= MAX_OFFENDERS)
+				return;
+			offender = OFFENDERS.computeIfAbsent(key, k -> new Offender(attribute, type.getName()));
+		}
+		offender.record(size[0], size[1]);
+		
+		if (size[1] == 0 || size[0] > 0)
+			MetricsRegistry.record(Category.SESSION, type, attribute, size[0]);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of bytes of the serialized form of the value, or -1 if it is not 
+	 *   serializable or was changed while being serialized.
+	 * </p>
+	 */
+	private static long getSerializedSize(Object value) {
+		CountingOutputStream counter = new CountingOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+			out.writeObject(value);
+		} catch (IOException | RuntimeException e) {
+			return -1;
+		}
+		return counter.count;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Offender
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Sizes sampled of the values of one class under one session attribute. It is only written 
+	 *   by the request that is measuring, one at a time.
+	 * </p>
+	 */
+	public static final class Offender {
+		
+		private final String attribute;
+		
+		private final String type;
+		
+		private volatile long samples;
+		
+		private volatile long failures;
+		
+		private volatile long sumBytes;
+		
+		private volatile long lastBytes;
+		
+		private volatile long maxBytes;
+		
+		private Offender(String attribute, String type) {
+			this.attribute = attribute;
+			this.type = type;
+		}
+		
+		public String getAttribute() {
+			return attribute;
+		}
+		
+		/**
+		 * <p>
+		 *   Returns the name of the class of the values.
+		 * </p>
+		 */
+		public String getType() {
+			return type;
+		}
+		
+		public long getSamples() {
+			return samples;
+		}
+		
+		/**
+		 * <p>
+		 *   Returns the number of values that could not be serialized.
+		 * </p>
+		 */
+		public long getFailures() {
+			return failures;
+		}
+		
+		public long getLastBytes() {
+			return lastBytes;
+		}
+		
+		public long getMaxBytes() {
+			return maxBytes;
+		}
+		
+		public long getMeanBytes() {
+			long samples = this.samples;
+			return samples > 0? sumBytes / samples: 0;
+		}
+		
+		private void record(long bytes, long failures) {
+			this.failures += failures;
+			sumBytes += bytes;
+			lastBytes = bytes;
+			if (bytes > maxBytes)
+				maxBytes = bytes;
+			samples++;
+		}
+		
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Support classes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Output stream that discards the bytes written to it and only counts them.
+	 * </p>
+	 */
+	private static final class CountingOutputStream extends OutputStream {
+		
+		private long count;
+		
+		@Override
+		public void write(int b) {
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+		
+	}
+	
+	/**
+	 * <p>
+	 *   Instance registered in JMX, which delegates to the static methods.
+	 * </p>
+	 */
+	private static final class Management implements SessionFootprintMXBean {
+		
+		@Override
+		public double getSampleRate() {
+			return SessionFootprint.getSampleRate();
+		}
+		
+		@Override
+		public void setSampleRate(double sampleRate) {
+			SessionFootprint.setSampleRate(sampleRate);
+		}
+		
+		@Override
+		public long getSampledSessions() {
+			return SessionFootprint.getSampledSessions();
+		}
+		
+		@Override
+		public long getDroppedSamples() {
+			return SessionFootprint.getDroppedSamples();
+		}
+		
+		@Override
+		public List<Offender> getTopOffenders() {
+			return Collections.unmodifiableList(SessionFootprint.getTopOffenders(DEFAULT_TOP));
+		}
+		
+		@Override
+		public void reset() {
+			SessionFootprint.reset();
+		}
+		
+	}
+	
+}
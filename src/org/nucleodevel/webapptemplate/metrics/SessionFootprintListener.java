@@ -0,0 +1,73 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>
+ *   Passes the session of every request, at its end, when the beans and attributes changed by 
+ *   the request are in place, to SessionFootprint, which measures a sample of them once 
+ *   webapptemplate.metrics.session.sampleRate is set. It is registered by the servlet container 
+ *   in every application that has webapptemplate in its classpath, so turning the accounting on 
+ *   needs no other change in the configuration of the application, and it shuts SessionFootprint 
+ *   down when the application is undeployed.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@WebListener
+public class SessionFootprintListener implements ServletContextListener, ServletRequestListener {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextInitialized(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextDestroyed(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		SessionFootprint.shutdown();
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestListener#requestInitialized(
+	 *     javax.servlet.ServletRequestEvent
+	 * )
+	 */
+	@Override
+	public void requestInitialized(ServletRequestEvent event) {
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestListener#requestDestroyed(
+	 *     javax.servlet.ServletRequestEvent
+	 * )
+	 */
+	@Override
+	public void requestDestroyed(ServletRequestEvent event) {
+		if (event.getServletRequest() instanceof HttpServletRequest)
+			SessionFootprint.sample(
+				((HttpServletRequest) event.getServletRequest()).getSession(false)
+			);
+	}
+	
+}
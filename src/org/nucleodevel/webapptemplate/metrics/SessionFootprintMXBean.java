@@ -0,0 +1,26 @@
+package org.nucleodevel.webapptemplate.metrics;
+
+import java.util.List;
+
+/**
+ * <p>
+ *   Management interface through which SessionFootprint is exposed in JMX. Sizes are expressed 
+ *   in bytes of the serialized form.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public interface SessionFootprintMXBean {
+	
+	double getSampleRate();
+	
+	void setSampleRate(double sampleRate);
+	
+	long getSampledSessions();
+	
+	long getDroppedSamples();
+	
+	List<SessionFootprint.Offender> getTopOffenders();
+	
+	void reset();
+	
+}
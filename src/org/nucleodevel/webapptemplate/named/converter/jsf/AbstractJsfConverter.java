@@ -1,17 +1,25 @@
 package org.nucleodevel.webapptemplate.named.converter.jsf;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.faces.component.UIComponent;
+import javax.faces.component.UISelectItem;
+import javax.faces.component.UISelectItems;
 import javax.faces.context.FacesContext;
 import javax.faces.convert.Converter;
+import javax.faces.model.SelectItem;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.nucleodevel.webapptemplate.dao.AbstractDao;
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
-import org.nucleodevel.webapptemplate.util.ParameterizedClassUtils;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
 
 /**
  * <p>
@@ -36,6 +44,15 @@ public abstract class AbstractJsfConverter<E extends AbstractEntity<?>, DAO exte
 	 * --------------------------------------------------------------------------------------------
 	 */
 	
+	
+	/**
+	 * <p>
+	 *   Prefix of the FacesContext attributes that store, for the current request, the entities 
+	 *   already resolved by the converters of an entity class.
+	 * </p>
+	 */
+	private static final String RESOLVED_ATTRIBUTE = 
+		AbstractJsfConverter.class.getName() + ".resolved.";
     
 	/**
      * <p>
@@ -63,15 +80,15 @@ public abstract class AbstractJsfConverter<E extends AbstractEntity<?>, DAO exte
 
     /**
      * <p>
-     *   Returns the class<?> of E via ParameterizedClassUtils
+     *   Returns the class<?> of E via ClassDescriptor
      * </p>
      */
     @SuppressWarnings("unchecked")
 	protected Class<E> getEntityClass() {
     	if (entityClass == null)
     		entityClass = 
-    			(Class<E>) ParameterizedClassUtils.
-    				getParameterClassFromParameterizedClass(getClass(), 0);
+    			(Class<E>) ClassDescriptor.of(getClass())
+    				.getParameterClass(AbstractJsfConverter.class, 0);
     	return entityClass;
     }
 	
@@ -90,10 +107,129 @@ public abstract class AbstractJsfConverter<E extends AbstractEntity<?>, DAO exte
 	 */
 	@Override
     public Object getAsObject(FacesContext facesContext, UIComponent component, String value) {
-    	if (value == null || value.length() == 0 || getIdFromString(value) == null)
+    	if (value == null || value.length() == 0)
+    		return null;
+    	
+    	Map<String, Object> resolved = getResolvedEntities(facesContext, component);
+    	Object entity = resolved.get(value);
+    	if (entity != null)
+    		return entity;
+    	
+    	Object id = getIdFromString(value);
+    	if (id == null)
     		return null;
-   	    return dao.selectOne(getIdFromString(value));
+    	entity = dao.selectOneCached(id);
+    	if (entity != null)
+    		resolved.put(value, entity);
+   	    return entity;
     }
+	
+	/**
+	 * <p>
+	 *   Returns the entities of E already resolved in the current request, by their IDs in 
+	 *   string format. The first time it is called for a component in the request, it adds the 
+	 *   entities rendered as the items of the component, which JSF has just read to validate the 
+	 *   submitted values, and reads every other submitted value in a single call to 
+	 *   selectAllByIds(). A postback therefore costs at most one round trip to the datasource, 
+	 *   however many values are submitted.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> getResolvedEntities(
+		FacesContext facesContext, UIComponent component
+	) {
+		if (facesContext == null)
+			return new HashMap<String, Object>();
+		
+		Map<Object, Object> attributes = facesContext.getAttributes();
+		String resolvedKey = RESOLVED_ATTRIBUTE + getEntityClass().getName();
+		Map<String, Object> resolved = (Map<String, Object>) attributes.get(resolvedKey);
+		if (resolved == null) {
+			resolved = new HashMap<String, Object>();
+			attributes.put(resolvedKey, resolved);
+		}
+		
+		if (component != null) {
+			String clientId = component.getClientId(facesContext);
+			String preparedKey = resolvedKey + "." + clientId;
+			if (attributes.put(preparedKey, Boolean.TRUE) == null) {
+				addRenderedEntities(component, resolved);
+				addSubmittedEntities(facesContext, clientId, resolved);
+			}
+		}
+		return resolved;
+	}
+	
+	/**
+	 * <p>
+	 *   Adds to resolved the entities of E that are the items of a select component.
+	 * </p>
+	 */
+	private void addRenderedEntities(UIComponent component, Map<String, Object> resolved) {
+		for (UIComponent child: component.getChildren()) {
+			if (child instanceof UISelectItems) {
+				Object items = ((UISelectItems) child).getValue();
+				if (items instanceof Collection)
+					for (Object item: (Collection<?>) items)
+						addRenderedEntity(item, resolved);
+				else if (items instanceof Object[])
+					for (Object item: (Object[]) items)
+						addRenderedEntity(item, resolved);
+			}
+			else if (child instanceof UISelectItem) {
+				UISelectItem selectItem = (UISelectItem) child;
+				addRenderedEntity(
+					selectItem.getValue() != null? 
+						selectItem.getValue(): selectItem.getItemValue(), 
+					resolved
+				);
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Adds the item to resolved if it is, or if it is a SelectItem whose value is, an entity of 
+	 *   E.
+	 * </p>
+	 */
+	private void addRenderedEntity(Object item, Map<String, Object> resolved) {
+		if (item instanceof SelectItem)
+			item = ((SelectItem) item).getValue();
+		if (getEntityClass().isInstance(item)) {
+			Object id = ((AbstractEntity<?>) item).getEntityId();
+			if (id != null)
+				resolved.put(getStringFromId(id), item);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Reads in a single call to the DAO the entities submitted for the component that are not 
+	 *   in resolved yet.
+	 * </p>
+	 */
+	private void addSubmittedEntities(
+		FacesContext facesContext, String clientId, Map<String, Object> resolved
+	) {
+		String[] values = 
+			facesContext.getExternalContext().getRequestParameterValuesMap().get(clientId);
+		if (values == null || values.length < 2)
+			return;
+		
+		List<Object> ids = new ArrayList<Object>();
+		for (String value: values)
+			if (value != null && value.length() > 0 && !resolved.containsKey(value)) {
+				Object id = getIdFromString(value);
+				if (id != null)
+					ids.add(id);
+			}
+		if (ids.isEmpty())
+			return;
+		
+		for (AbstractEntity<?> entity: dao.selectAllByIds(ids))
+			resolved.put(getStringFromId(entity.getEntityId()), entity);
+	}
 
     /* (non-Javadoc)
      * @see javax.faces.convert.Converter#getAsString(
@@ -110,9 +246,7 @@ public abstract class AbstractJsfConverter<E extends AbstractEntity<?>, DAO exte
         String entityClassName = getEntityClass().getName();
        
         if (object.getClass().getName().compareTo(entityClassName) == 0) {
-        	StringBuilder sb = new StringBuilder();
-        	sb.append(entity.getEntityId());
-        	return sb.toString();
+        	return getStringFromId(entity.getEntityId());
         }
         else {
             Logger.getLogger(this.getClass().getName()).log(
@@ -125,26 +259,26 @@ public abstract class AbstractJsfConverter<E extends AbstractEntity<?>, DAO exte
 
     /**
      * <p>
-     *   Returns the ID in its correct type by converting the string passed by parameter.
+     *   Returns the ID in its correct type by converting the string passed by parameter with 
+     *   the IdCodec of E, or null if the string does not represent an ID.
      * </p>
      */
-    @SuppressWarnings("unchecked")
 	protected Object getIdFromString(String idString) {
-    	E newEntity = (E) dao.getNewEntityInstance();
-		String entityIdClass = newEntity.getEntityIdClass().getSimpleName();
-		
         try {
-        	if (entityIdClass.equals("Long"))
-    			return Long.parseLong(idString);
-    		else if (entityIdClass.equals("Integer"))
-    			return Integer.parseInt(idString);
-    		else if (entityIdClass.equals("Short"))
-    			return Short.parseShort(idString);
-    		else
-    			return idString;
-        } catch (NumberFormatException e) {
+        	return ClassDescriptor.of(getEntityClass()).getIdCodec().parse(idString);
+        } catch (IllegalArgumentException e) {
             return null;
         }
     }
 
+    /**
+     * <p>
+     *   Returns the string that represents the ID passed by parameter, formatted with the 
+     *   IdCodec of E.
+     * </p>
+     */
+	protected String getStringFromId(Object id) {
+		return ClassDescriptor.of(getEntityClass()).getIdCodec().formatObject(id);
+    }
+
 }
\ No newline at end of file
@@ -1,7 +1,18 @@
 package org.nucleodevel.webapptemplate.named.mb.jsf;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,13 +21,27 @@ import javax.ejb.EJBException;
 import javax.inject.Inject;
 
 import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.BatchResult;
+import org.nucleodevel.webapptemplate.dao.EntitySnapshotCache;
+import org.nucleodevel.webapptemplate.dao.UniqueConstraintViolationException;
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.entity.IdCodec;
+import org.nucleodevel.webapptemplate.io.ColumnMapping;
+import org.nucleodevel.webapptemplate.io.EntityExporter;
+import org.nucleodevel.webapptemplate.io.FileFormat;
+import org.nucleodevel.webapptemplate.job.AbstractJob;
+import org.nucleodevel.webapptemplate.job.ImportJob;
+import org.nucleodevel.webapptemplate.job.JobManager;
+import org.nucleodevel.webapptemplate.job.JobStatus;
 import org.nucleodevel.webapptemplate.named.mb.AbstractMb;
 import org.nucleodevel.webapptemplate.session.dao.jsf.AbstractSessionJsfDao;
 import org.nucleodevel.webapptemplate.util.JsfMessageUtils;
+import org.nucleodevel.webapptemplate.util.JsfServletUtils;
 import org.nucleodevel.webapptemplate.util.JsfUrlUtils;
-import org.nucleodevel.webapptemplate.util.ParameterizedClassUtils;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
 import org.nucleodevel.webapptemplate.util.PersistAction;
+import org.nucleodevel.webapptemplate.util.VariableUtils;
+import org.primefaces.event.FileUploadEvent;
 
 /**
  * <p>
@@ -55,18 +80,13 @@ public abstract class AbstractJsfCrudMb
 	public void initAbstractJsfCrudMb() {
     	String idString = JsfUrlUtils.getUrlStringParam("id");
 		
-		E newEntity = dao.getNewEntityInstance();
-		String entityIdClass = newEntity.getEntityIdClass().getSimpleName();
-		
 		if (idString != null && !idString.equals("")) {
-    		if (entityIdClass.equals("Long"))
-    			selected = dao.selectOne(Long.parseLong(idString));
-    		else if (entityIdClass.equals("Integer"))
-    			selected = dao.selectOne(Integer.parseInt(idString));
-    		else if (entityIdClass.equals("Short"))
-    			selected = dao.selectOne(Short.parseShort(idString));
-    		else
-    			selected = dao.selectOne(idString);
+			try {
+				Object id = ClassDescriptor.of(getEntityClass()).getIdCodec().parse(idString);
+				selected = dao.selectOne(id);
+			} catch (IllegalArgumentException e) {
+				selected = null;
+			}
 		}
 	}
 	
@@ -79,6 +99,26 @@ public abstract class AbstractJsfCrudMb
 
 	
     private static final long serialVersionUID = 1L;
+    
+    /**
+     * <p>
+     *   Version of the format written by writeObject().
+     * </p>
+     */
+    private static final int SERIAL_FORMAT = 3;
+    
+    private static final byte STATE_ABSENT = 0;
+    
+    private static final byte STATE_IDS = 1;
+    
+    private static final byte STATE_ENTITIES = 2;
+    
+    /**
+     * <p>
+     *   Maximum number of failures of a bulk action reported as individual messages.
+     * </p>
+     */
+    protected static final int MAX_BULK_ERROR_MESSAGES = 10;
 	
     /**
      * <p>
@@ -88,6 +128,15 @@ public abstract class AbstractJsfCrudMb
     @Inject
 	protected DAO dao;
     
+    /**
+     * <p>
+     *   Application-wide cache of the lists of all entities, used by getAll() when 
+     *   isSharedSnapshotEnabled() is true.
+     * </p>
+     */
+    @Inject
+    private EntitySnapshotCache snapshotCache;
+    
 	/**
      * <p>
      *   Attribute that stores the class adopted by E, which is the target entity of the DAO. It is
@@ -103,15 +152,126 @@ public abstract class AbstractJsfCrudMb
 	 *   created according to the value passed by the ID via HTTP GET or, if there is no ID, 
 	 *   considered null.
 	 * </p>  
+	 * <p>
+	 *   It is serialized by writeObject(), as its ID and version if isIdOnlySerializationEnabled() 
+	 *   is true and it has no changes that were not persisted. In that case, a subclass that 
+	 *   reads it directly must call getSelected() first after the view is restored.
+	 * </p>
 	 */
-	protected E selected;
+	protected transient E selected;
 	
 	/**
 	 * <p>
 	 *   The attribute that stores the list that contains all the E entities in the datasource.
 	 * </p>
+	 * <p>
+	 *   It is serialized by writeObject(), as the IDs of its entities if 
+	 *   isIdOnlySerializationEnabled() is true. In that case, a subclass that reads it directly 
+	 *   must call getAll() first after the view is restored.
+	 * </p>
+	 */
+	protected transient List<E> all;
+	
+	/**
+	 * <p>
+	 *   Lazy model of the E entities in the datasource, which reads only the page displayed by a 
+	 *   datatable. Created on the first call of getLazyAll(), and again after the view is 
+	 *   restored, since it is not serialized.
+	 * </p>
+	 */
+	protected transient EntityLazyDataModel<E> lazyAll;
+	
+	/**
+	 * <p>
+	 *   ID of selected read by readObject(), until getSelected() or an action reads the entity. 
+	 *   Null if there is nothing to read.
+	 * </p>
+	 */
+	private transient Object pendingSelectedId;
+	
+	/**
+	 * <p>
+	 *   Version of selected when the view read it, restored with its ID by readObject(), which 
+	 *   is written again instead of the version of the entity read from the DAO. Null if selected 
+	 *   was not restored or E has no version.
+	 * </p>
+	 */
+	private transient Object selectedVersion;
+	
+	/**
+	 * <p>
+	 *   Whether selected was changed by someone else between the request that read it and its 
+	 *   restoration, in which case persistSelected() refuses to write it.
+	 * </p>
+	 */
+	private transient boolean selectedConflict;
+	
+	/**
+	 * <p>
+	 *   Entities selected in a datatable with multiple selection, targets of the bulk actions 
+	 *   removeSelection() and editSelection().
+	 * </p>
+	 * <p>
+	 *   It is serialized by writeObject() like all, as the IDs of its entities if 
+	 *   isIdOnlySerializationEnabled() is true. In that case, a subclass that reads it directly 
+	 *   must call getSelection() first after the view is restored.
+	 * </p>
 	 */
-	protected List<E> all;
+	protected transient List<E> selection;
+	
+	/**
+	 * <p>
+	 *   Result of the last bulk action, with the entities on which it failed and why.
+	 * </p>
+	 */
+	protected transient BatchResult<E> batchResult;
+	
+	/**
+	 * <p>
+	 *   IDs of the entities of all read by readObject(), as a long[] for integral IDs or an 
+	 *   Object[] for others, until getAll() reads the entities. Null if there is nothing to read.
+	 * </p>
+	 */
+	private transient Object pendingAllIds;
+	
+	/**
+	 * <p>
+	 *   IDs of the entities of selection read by readObject(), in the same form as 
+	 *   pendingAllIds, until getSelection() or a bulk action reads the entities.
+	 * </p>
+	 */
+	private transient Object pendingSelectionIds;
+	
+	/**
+	 * <p>
+	 *   Versions of the entities of pendingSelectionIds, in the same order, or null if E has no 
+	 *   version.
+	 * </p>
+	 */
+	private transient Object[] pendingSelectionVersions;
+	
+	/**
+	 * <p>
+	 *   Entities of selection that were changed by someone else between the request that 
+	 *   selected them and their restoration, with the version that was selected, which the bulk 
+	 *   actions refuse to write.
+	 * </p>
+	 */
+	private transient Map<E, Object> selectionConflicts = new IdentityHashMap<E, Object>();
+	
+	/**
+	 * <p>
+	 *   ID of the last ImportJob started by importFile(), whose status is polled by the view.
+	 * </p>
+	 */
+	private String importJobId;
+	
+	/**
+	 * <p>
+	 *   Whether all was already refreshed after the end of the last import.
+	 * </p>
+	 */
+	private boolean importApplied;
 	
 	
 	/* 
@@ -123,24 +283,86 @@ public abstract class AbstractJsfCrudMb
     
 	/**
      * <p>
-     *   Returns the class<?> of E via ParameterizedClassUtils
+     *   Returns the class<?> of E via ClassDescriptor
      * </p>
      */
     @SuppressWarnings("unchecked")
 	protected Class<E> getEntityClass() {
     	if (entityClass == null)
     		entityClass = 
-    			(Class<E>) ParameterizedClassUtils 
-    				.getParameterClassFromParameterizedClass(getClass(), 0);
+    			(Class<E>) ClassDescriptor.of(getClass())
+    				.getParameterClass(AbstractJsfCrudMb.class, 0);
     	return entityClass;
     }
     
+	/**
+     * <p>
+     *   Returns the class<?> of DAO via ClassDescriptor
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+	protected Class<DAO> getDaoClass() {
+    	return 
+    		(Class<DAO>) ClassDescriptor.of(getClass())
+    			.getParameterClass(AbstractJsfCrudMb.class, 1);
+    }
+    
+    /**
+     * <p>
+     *   Indicates whether getAll() returns the application-wide snapshot of all E entities kept 
+     *   by EntitySnapshotCache instead of a list read for this managed bean. The snapshot is 
+     *   shared by every user and every view, so heap use and queries do not grow with the number 
+     *   of users; it is unmodifiable, reloaded in the background after the writes of persist() 
+     *   and at most as old as the maximum age of the cache. Intended for reference data that is 
+     *   read by many users and whose list is the same for all of them. Disabled by default.
+     * </p>
+     */
+    protected boolean isSharedSnapshotEnabled() {
+    	return false;
+    }
+    
+    /**
+     * <p>
+     *   Indicates whether the serialized state of this managed bean, which is kept in the view 
+     *   or session state and replicated between nodes, stores selected, all and selection as IDs 
+     *   instead of entities. They are read again through the DAO, lazily, after the view is 
+     *   restored. A selected that was never persisted, or that may have changes not persisted 
+     *   yet, as told by AbstractDao.hasUnsavedChanges(), is stored as an entity, so a DAO that 
+     *   does not implement it stores every selected as an entity. The version of selected and 
+     *   of the entities of selection, if E has one, is stored with their IDs, and the entities 
+     *   changed by someone else in the meantime are refused by the actions that write them, 
+     *   with the persistence.conflict.error message, as a stale entity would be refused by the 
+     *   optimistic lock of the datasource. Disabled by default.
+     * </p>
+     */
+    protected boolean isIdOnlySerializationEnabled() {
+    	return false;
+    }
+    
+    /**
+     * <p>
+     *   Indicates whether create() and edit() write selected straight to the datasource instead 
+     *   of checking its uniqueness with isAnUniqueEntity() first, which saves a round trip per 
+     *   save and is free of races between concurrent saves. A unique violation is then detected 
+     *   by the datasource, through a UniqueConstraintViolationException of the DAO, and reported 
+     *   by the same persistence.unique.error message of E, so the DAO should be an 
+     *   AbstractJpaDao on a table with unique constraints or an AbstractRestClient of an 
+     *   AbstractRestResource. Disabled by default.
+     * </p>
+     */
+    protected boolean isOptimisticWriteEnabled() {
+    	return false;
+    }
+    
     public E getSelected() {
+    	restoreSelected();
 		return selected;
 	}
 
 	public void setSelected(E selected) {
-		this.selected = selected;
+		this.pendingSelectedId = null;
+		this.selected = getOwnCopy(selected);
+		markSelectedRead();
 	}
 	
 	/**
@@ -152,13 +374,16 @@ public abstract class AbstractJsfCrudMb
 	 * @return Atual valor de {@link #selected selected}.
 	 */
 	public E getNewSelected() {
+		restoreSelected();
 		if (selected == null)
 			selected = dao.getNewEntityInstance();
 		return selected;
 	}
 
 	public void setNewSelected(E selected) {
-		this.selected = selected;
+		this.pendingSelectedId = null;
+		this.selected = getOwnCopy(selected);
+		markSelectedRead();
 	}
 
 	public List<E> getAll() {
@@ -169,22 +394,119 @@ public abstract class AbstractJsfCrudMb
 	 * <p>
 	 *   Returns the list of all E entities in the datasource at a given time, overwriting the last 
 	 *   read if the parameter is true. Uses canAll(), implemented by subclasses, as a permission 
-	 *   filter.
+	 *   filter. If isSharedSnapshotEnabled() is true, returns the shared snapshot instead, which 
+	 *   is reloaded synchronously if the parameter is true. Its entities are shared by every 
+	 *   user, so the ones set as selected or in selection are replaced by copies of this managed 
+	 *   bean, read again through the DAO, before they are edited.
 	 * </p>
 	 */
 	public List<E> getAll(boolean refresh) {
     	if (!canViewAll())
     		return null;
     	
+    	if (isSharedSnapshotEnabled())
+    		return refresh? 
+    			snapshotCache.reload(getDaoClass()): snapshotCache.getAll(getDaoClass());
+    	
+    	if (refresh)
+    		pendingAllIds = null;
+    	restoreAll();
 		if (all == null || refresh)
 			all = dao.selectAll();
     	return all;
 	}
 	
     public void setAll(List<E> all) {
+    	this.pendingAllIds = null;
 		this.all = all;
 	}
 	
+	public List<E> getSelection() {
+		restoreSelection();
+		return selection;
+	}
+
+	public void setSelection(List<E> selection) {
+		this.pendingSelectionIds = null;
+		this.pendingSelectionVersions = null;
+		this.selectionConflicts.clear();
+		this.selection = getOwnCopies(selection);
+	}
+
+	public BatchResult<E> getBatchResult() {
+		return batchResult;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the mapping of the columns of the files imported by importFile() to the 
+	 *   attributes of E, or null if this managed bean does not import files, which is the 
+	 *   default.
+	 * </p>
+	 */
+	protected ColumnMapping<E> getImportMapping() {
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the mapping of the E attributes to the columns of the files exported by 
+	 *   export(). By default, the mapping of getImportMapping().
+	 * </p>
+	 */
+	protected ColumnMapping<E> getExportMapping() {
+		return getImportMapping();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the status of the last import started by importFile(), or null if there is none. 
+	 *   Once the import is over, all is read again and the shared snapshot is invalidated, so 
+	 *   the view that polls the status shows the imported entities.
+	 * </p>
+	 */
+	public JobStatus getImportStatus() {
+		AbstractJob job = JobManager.get(importJobId);
+		if (job == null)
+			return null;
+		
+		if (job.isFinished() && !importApplied) {
+			importApplied = true;
+			if (isSharedSnapshotEnabled())
+				snapshotCache.invalidate(getDaoClass());
+			setAll(null);
+		}
+		return job.getStatus();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the progress of the last import started by importFile() as a percentage, as 
+	 *   expected by a progress bar, or 0 if there is none.
+	 * </p>
+	 */
+	public int getImportProgress() {
+		JobStatus status = getImportStatus();
+		return status != null? (int) Math.round(status.getProgress() * 100): 0;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a PrimeFaces LazyDataModel of the E entities in the datasource, to be used by 
+	 *   datatables with lazy="true" instead of getAll(). Sorting, filtering and paging are passed 
+	 *   down to the DAO, so only the visible page is read and kept in the view state. Uses 
+	 *   canViewAll() as a permission filter.
+	 * </p>
+	 */
+	public EntityLazyDataModel<E> getLazyAll() {
+		if (!canViewAll())
+			return null;
+		
+		if (lazyAll == null)
+			lazyAll = new EntityLazyDataModel<E>(dao, getEntityClass());
+		return lazyAll;
+	}
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -200,6 +522,8 @@ public abstract class AbstractJsfCrudMb
      *  </p>
      */
     public String create(String nextPath) {
+    	restoreSelected();
+    	
     	if (!canCreate()) {
     		JsfMessageUtils.addErrorMessage("can.error.generic");
 			return "";
@@ -209,13 +533,17 @@ public abstract class AbstractJsfCrudMb
     	String lcClassSimpleName =  
         	Character.toLowerCase(classSimpleName.charAt(0)) + classSimpleName.substring(1);
     	
-		if (!dao.isAnUniqueEntity(selected, true)) {
+		if (!isOptimisticWriteEnabled() && !dao.isAnUniqueEntity(selected, true)) {
 			JsfMessageUtils.addErrorMessage(
 				RESOURCE_APP_MSG, lcClassSimpleName + ".persistence.unique.error"
 			);
 			return nextPath != null? nextPath: "index.jsf?faces-redirect=true";
 		}
-		persist(PersistAction.INSERT, lcClassSimpleName + ".persistence.created");
+		if (
+			!persistSelected(PersistAction.INSERT, lcClassSimpleName + ".persistence.created") 
+				&& isOptimisticWriteEnabled()
+		)
+			return nextPath != null? nextPath: "index.jsf?faces-redirect=true";
         return nextPath != null? nextPath: "create.jsf?faces-redirect=true";
     }
 	
@@ -235,6 +563,8 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
 	public void createOnly() {
+    	restoreSelected();
+    	
     	if (!canCreate()) {
     		JsfMessageUtils.addErrorMessage("can.error.generic");
 			return;
@@ -244,7 +574,7 @@ public abstract class AbstractJsfCrudMb
     	String lcClassSimpleName = 
         	Character.toLowerCase(classSimpleName.charAt(0)) + classSimpleName.substring(1);
     	
-        if (!dao.isAnUniqueEntity(selected, true)) {
+        if (!isOptimisticWriteEnabled() && !dao.isAnUniqueEntity(selected, true)) {
 			JsfMessageUtils.addErrorMessage(
 				RESOURCE_APP_MSG, lcClassSimpleName + ".persistence.unique.error"
 			);
@@ -260,6 +590,8 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
     public String edit(String nextPath) {
+    	restoreSelected();
+    	
     	if (!canEdit()) {
     		JsfMessageUtils.addErrorMessage("can.error.generic");
 			return "";
@@ -269,13 +601,17 @@ public abstract class AbstractJsfCrudMb
     	String lcClassSimpleName = 
         	Character.toLowerCase(classSimpleName.charAt(0)) + classSimpleName.substring(1);
     	
-		if (!dao.isAnUniqueEntity(selected, false)) {
+		if (!isOptimisticWriteEnabled() && !dao.isAnUniqueEntity(selected, false)) {
 			JsfMessageUtils.addErrorMessage(
 				RESOURCE_APP_MSG, lcClassSimpleName + ".persistence.unique.error"
 			);
 			return nextPath != null? nextPath: "index.jsf?faces-redirect=true";
 		}
-    	persist(PersistAction.UPDATE, lcClassSimpleName + ".persistence.edited");
+		if (
+			!persistSelected(PersistAction.UPDATE, lcClassSimpleName + ".persistence.edited") 
+				&& isOptimisticWriteEnabled()
+		)
+			return nextPath != null? nextPath: "index.jsf?faces-redirect=true";
     	return nextPath != null? 
     		nextPath: "view.jsf?faces-redirect=true&id=" + selected.getEntityId();
     }
@@ -297,6 +633,8 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
     public String editWithoutMessage(String nextPath) {
+    	restoreSelected();
+    	
     	if (!canEdit()) {
     		JsfMessageUtils.addErrorMessage("can.error.generic");
 			return "";
@@ -306,13 +644,14 @@ public abstract class AbstractJsfCrudMb
     	String lcClassSimpleName = 
         	Character.toLowerCase(classSimpleName.charAt(0)) + classSimpleName.substring(1);
     	
-		if (!dao.isAnUniqueEntity(selected, false)) {
+		if (!isOptimisticWriteEnabled() && !dao.isAnUniqueEntity(selected, false)) {
 			JsfMessageUtils.addErrorMessage(
 				RESOURCE_APP_MSG, lcClassSimpleName + ".persistence.unique.error"
 			);
 			return nextPath != null? nextPath: "index.jsf?faces-redirect=true";
 		}
-    	persist(PersistAction.UPDATE, null);
+		if (!persistSelected(PersistAction.UPDATE, null) && isOptimisticWriteEnabled())
+			return nextPath != null? nextPath: "index.jsf?faces-redirect=true";
     	return nextPath != null? 
     		nextPath: "view.jsf?faces-redirect=true&id=" + selected.getEntityId();
     }
@@ -334,6 +673,8 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
     public String remove(String nextPath) {  
+    	restoreSelected();
+    	
     	if (!canRemove()) {
     		JsfMessageUtils.addErrorMessage("can.error.generic");
 			return "";
@@ -358,12 +699,254 @@ public abstract class AbstractJsfCrudMb
 		return remove(null);
     }
 
+    /**
+     * <p>
+     *   Bulk action that does a delete operation for all the entities of selection that pass 
+     *   getRemovable(), in a single DAO operation. Reports how many succeeded and the cause of 
+     *   each failure. Returns the string with the path of the next view.
+     * </p>
+     */
+    public String removeSelection(String nextPath) {
+    	persistAll(PersistAction.DELETE);
+    	return nextPath != null? nextPath: "";
+    }
+    
+    /**
+     * <p>
+     *   Same as removeSelection(String), but continues in the same view.
+     * </p>
+     */
+    public String removeSelection() {
+    	return removeSelection(null);
+    }
+    
+    /**
+     * <p>
+     *   Bulk action that does an update operation for all the entities of selection, with the 
+     *   values set on them by the view, that pass getEditable() and isAnUniqueEntity(), in a 
+     *   single DAO operation. Reports how many succeeded and the cause of each failure. Returns 
+     *   the string with the path of the next view.
+     * </p>
+     */
+    public String editSelection(String nextPath) {
+    	persistAll(PersistAction.UPDATE);
+    	return nextPath != null? nextPath: "";
+    }
+    
+    /**
+     * <p>
+     *   Same as editSelection(String), but continues in the same view.
+     * </p>
+     */
+    public String editSelection() {
+    	return editSelection(null);
+    }
+    
+    /**
+     * <p>
+     *   Listener of a file upload that tests canCreate() as the permission filter and imports 
+     *   the uploaded CSV or XLSX file in the background through an ImportJob with the mapping of 
+     *   getImportMapping(). The upload is spooled to a temporary file, so it is not kept in the 
+     *   session, and the progress of the import is polled through getImportStatus().
+     * </p>
+     */
+    public void importFile(FileUploadEvent event) {
+    	ColumnMapping<E> mapping = getImportMapping();
+    	if (!canCreate() || mapping == null) {
+    		JsfMessageUtils.addErrorMessage("can.error.generic");
+    		return;
+    	}
+    	
+    	String fileName = event.getFile().getFileName();
+    	try {
+    		ImportJob<E> job = JobManager.submit(
+    			new ImportJob<E>(
+    				getDaoClass(), mapping, 
+    				ImportJob.spool(event.getFile().getInputstream(), fileName), fileName, true
+    			)
+    		);
+    		importJobId = job.getId();
+    		importApplied = false;
+    		JsfMessageUtils.addSuccessMessage("import.started");
+    	} catch (IOException e) {
+    		Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
+    		JsfMessageUtils.addErrorMessage("persistence.error.generic");
+    	}
+    }
+    
+    /**
+     * <p>
+     *   Tests canViewAll() as the permission filter and downloads all the E entities as a file 
+     *   of the format passed by parameter, csv, xlsx or json, with the columns of 
+     *   getExportMapping(). The entities are read through a cursor of the DAO and written 
+     *   straight to the response, so the export does not hold them in memory.
+     * </p>
+     */
+    public void export(String format) {
+    	ColumnMapping<E> mapping = getExportMapping();
+    	if (!canViewAll() || mapping == null) {
+    		JsfMessageUtils.addErrorMessage("can.error.generic");
+    		return;
+    	}
+    	
+    	FileFormat fileFormat = FileFormat.of(format);
+    	String classSimpleName = getEntityClass().getSimpleName();
+    	String lcClassSimpleName = 
+        	Character.toLowerCase(classSimpleName.charAt(0)) + classSimpleName.substring(1);
+    	try {
+    		JsfServletUtils.writeAttachment(
+    			fileFormat.getFileName(lcClassSimpleName), fileFormat.getContentType(), 
+    			out -> new EntityExporter<E>(dao, mapping).export(out, fileFormat, null, true, null)
+    		);
+    	} catch (IOException e) {
+    		// the client usually closed the connection before the end of the download
+    		Logger.getLogger(this.getClass().getName()).log(Level.WARNING, null, e);
+    	}
+    }
+    
+    /**
+     * <p>
+     *   Cancels the last import started by importFile(). The entities already written are kept.
+     * </p>
+     */
+    public void cancelImport() {
+    	JobManager.cancel(importJobId);
+    }
+    
+    /**
+     * <p>
+     *   Generic method that effectively performs the bulk persistence operations on selection. 
+     *   Entities refused by the permission filters or, for updates without optimistic writes, 
+     *   by isAnUniqueEntity() are reported as failures without cause. The others are written by 
+     *   a single call of the DAO, which may write all of them or none. Deleted entities are 
+     *   removed from selection and all. At most MAX_BULK_ERROR_MESSAGES failures are reported as 
+     *   messages; the others are still available in getBatchResult().
+     * </p>
+     */
+    protected BatchResult<E> persistAll(PersistAction persistAction) {
+    	restoreSelected();
+    	restoreSelection();
+    	List<E> entities = selection != null? selection: new ArrayList<E>();
+    	List<E> permitted = persistAction == PersistAction.DELETE? 
+    		getRemovable(entities): getEditable(entities);
+    	Set<E> permittedSet = Collections.newSetFromMap(new IdentityHashMap<E, Boolean>());
+    	permittedSet.addAll(permitted);
+    	
+    	BatchResult<E> result = new BatchResult<E>();
+    	List<E> allowed = new ArrayList<E>();
+    	for (E entity: entities)
+    		if (!permittedSet.contains(entity))
+    			result.addFailure(entity, null);
+    		else if (selectionConflicts.containsKey(entity))
+    			result.addFailure(
+    				entity, new IllegalStateException(
+    					VariableUtils.getVariableFromResource("persistence.conflict.error")
+    				)
+    			);
+    		else if (
+    			persistAction == PersistAction.UPDATE && !isOptimisticWriteEnabled() 
+    				&& !dao.isAnUniqueEntity(entity, false)
+    		)
+    			result.addFailure(entity, null);
+    		else
+    			allowed.add(entity);
+    	
+    	if (!allowed.isEmpty()) {
+    		BatchResult<E> written = persistAction == PersistAction.DELETE? 
+    			dao.deleteAll(allowed): dao.updateAll(allowed);
+    		result.addSucceeded(written.getSucceeded());
+    		for (BatchResult.Failure<E> failure: written.getFailures())
+    			result.addFailure(failure.getEntity(), failure.getCause());
+    		result.addRolledBack(written.getRolledBack());
+    		if (isSharedSnapshotEnabled() && !written.getSucceeded().isEmpty())
+    			snapshotCache.invalidate(getDaoClass());
+    	}
+    	
+    	if (persistAction == PersistAction.DELETE) {
+    		Set<E> deleted = Collections.newSetFromMap(new IdentityHashMap<E, Boolean>());
+    		deleted.addAll(result.getSucceeded());
+    		List<E> remaining = new ArrayList<E>(entities);
+    		remaining.removeIf(deleted::contains);
+    		selection = remaining;
+    		if (all != null) {
+    			all = new ArrayList<E>(all);
+    			all.removeAll(result.getSucceeded());
+    		}
+    		if (selected != null && result.getSucceeded().contains(selected))
+    			selected = null;
+    	}
+    	
+    	addBatchMessages(result);
+    	batchResult = result;
+    	return result;
+    }
+    
+    /**
+     * <p>
+     *   Adds the messages of the result of a bulk action.
+     * </p>
+     */
+    private void addBatchMessages(BatchResult<E> result) {
+    	if (result.isSuccessful()) {
+    		JsfMessageUtils.addFormattedSuccessMessage(
+    			"persistence.bulk.success", result.getSucceeded().size()
+    		);
+    		return;
+    	}
+    	
+		if (result.getRolledBack().isEmpty())
+			JsfMessageUtils.addFormattedErrorMessage(
+				"persistence.bulk.partial", result.getSucceeded().size(), 
+				result.getFailures().size()
+			);
+		else
+			JsfMessageUtils.addFormattedErrorMessage(
+				"persistence.bulk.rollback", result.getFailures().size(), 
+				result.getRolledBack().size()
+			);
+		int count = 0;
+		for (BatchResult.Failure<E> failure: result.getFailures()) {
+			if (count++ == MAX_BULK_ERROR_MESSAGES)
+				break;
+			Exception cause = failure.getCause();
+			String reason;
+			if (cause == null)
+				reason = VariableUtils.getVariableFromResource("can.error.generic");
+			else if (cause.getLocalizedMessage() != null)
+				reason = cause.getLocalizedMessage();
+			else
+				reason = VariableUtils.getVariableFromResource("persistence.error.generic");
+			JsfMessageUtils.addFormattedErrorMessage(
+				"persistence.bulk.item.error", failure.getEntity(), reason
+			);
+		}
+    }
+    
     /**
      * <p>
      *   Generic method that effectively performs persistence operations.
      * </p>
      */
     protected void persist(PersistAction persistAction, String successMessage) {
+    	persistSelected(persistAction, successMessage);
+    }
+    
+    /**
+     * <p>
+     *   Same as persist(), but returns whether the operation succeeded. A unique violation 
+     *   reported by the DAO, which may happen even after isAnUniqueEntity() when saves run 
+     *   concurrently, is reported by the same persistence.unique.error message of E. An update 
+     *   or a delete of a selected that someone else changed since the view read it is refused 
+     *   with the persistence.conflict.error message.
+     * </p>
+     */
+    protected boolean persistSelected(PersistAction persistAction, String successMessage) {
+    	restoreSelected();
+    	if (selected != null && selectedConflict && persistAction != PersistAction.INSERT) {
+    		JsfMessageUtils.addErrorMessage("persistence.conflict.error");
+    		return false;
+    	}
+    	
     	if (selected != null) {
             try {
             	if (persistAction == PersistAction.INSERT)
@@ -372,11 +955,21 @@ public abstract class AbstractJsfCrudMb
             		dao.update(selected);
             	else if (persistAction == PersistAction.DELETE)
             		dao.delete(selected);
+            	if (isSharedSnapshotEnabled())
+            		snapshotCache.invalidate(getDaoClass());
+            	markSelectedRead();
             	if (successMessage != null)
             		JsfMessageUtils.addSuccessMessage(RESOURCE_APP_MSG, successMessage);
+            	return true;
+            } catch (UniqueConstraintViolationException ex) {
+            	addUniqueErrorMessage();
             } catch (EJBException ex) {
                 String msg = "";
                 Throwable cause = ex.getCause();
+                if (cause instanceof UniqueConstraintViolationException) {
+                	addUniqueErrorMessage();
+                	return false;
+                }
                 if (cause != null) {
                     msg = cause.getLocalizedMessage();
                 }
@@ -389,9 +982,351 @@ public abstract class AbstractJsfCrudMb
                 Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
             }
         }
+    	return false;
+    }
+    
+    /**
+     * <p>
+     *   Adds the persistence.unique.error message of E.
+     * </p>
+     */
+    private void addUniqueErrorMessage() {
+    	String classSimpleName = getEntityClass().getSimpleName();
+    	String lcClassSimpleName = 
+        	Character.toLowerCase(classSimpleName.charAt(0)) + classSimpleName.substring(1);
+    	JsfMessageUtils.addErrorMessage(
+    		RESOURCE_APP_MSG, lcClassSimpleName + ".persistence.unique.error"
+    	);
     }  
 	
 	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Serialization
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Writes the default fields and then selected, all and selection, each preceded by how it 
+	 *   is stored: absent, as IDs or as entities. The IDs of selected and selection are followed 
+	 *   by their versions. Pending IDs that were not read yet are written as they are, without 
+	 *   reading the entities.
+	 * </p>
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(SERIAL_FORMAT);
+		boolean idOnly = isIdOnlySerializationEnabled();
+		
+		if (pendingSelectedId != null) {
+			writeState(out, STATE_IDS, pendingSelectedId);
+			out.writeObject(selectedVersion);
+		}
+		else if (selected == null)
+			out.writeByte(STATE_ABSENT);
+		else if (idOnly && selected.getEntityId() != null && !isSelectedChanged()) {
+			writeState(out, STATE_IDS, selected.getEntityId());
+			out.writeObject(selectedVersion != null? selectedVersion: getVersion(selected));
+		}
+		else
+			writeState(out, STATE_ENTITIES, selected);
+		
+		writeList(out, all, pendingAllIds, idOnly);
+		if (writeList(out, selection, pendingSelectionIds, idOnly))
+			out.writeObject(
+				pendingSelectionIds != null? pendingSelectionVersions: getSelectionVersions()
+			);
+	}
+	
+	/**
+	 * <p>
+	 *   Reads what writeObject() wrote. IDs are kept pending until the entities are needed.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int format = in.readInt();
+		if (format != SERIAL_FORMAT)
+			throw new InvalidObjectException("Unknown serial format " + format);
+		
+		byte selectedState = in.readByte();
+		if (selectedState == STATE_IDS) {
+			pendingSelectedId = in.readObject();
+			selectedVersion = in.readObject();
+		}
+		else if (selectedState == STATE_ENTITIES)
+			selected = (E) in.readObject();
+		
+		byte allState = in.readByte();
+		if (allState == STATE_IDS)
+			pendingAllIds = in.readObject();
+		else if (allState == STATE_ENTITIES)
+			all = (List<E>) in.readObject();
+		
+		selectionConflicts = new IdentityHashMap<E, Object>();
+		byte selectionState = in.readByte();
+		if (selectionState == STATE_IDS) {
+			pendingSelectionIds = in.readObject();
+			pendingSelectionVersions = (Object[]) in.readObject();
+		}
+		else if (selectionState == STATE_ENTITIES)
+			selection = (List<E>) in.readObject();
+	}
+	
+	/**
+	 * <p>
+	 *   Writes a list of entities as its pending IDs, as the IDs of its entities if idOnly is 
+	 *   true and all of them have one, or as the entities. Returns whether IDs were written.
+	 * </p>
+	 */
+	private boolean writeList(
+		ObjectOutputStream out, List<E> entities, Object pendingIds, boolean idOnly
+	) throws IOException {
+		Object ids = pendingIds != null? pendingIds: idOnly? getIds(entities): null;
+		if (ids != null)
+			writeState(out, STATE_IDS, ids);
+		else if (entities == null)
+			out.writeByte(STATE_ABSENT);
+		else
+			writeState(out, STATE_ENTITIES, entities);
+		return ids != null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the versions of the entities of selection, in the same order, which are the 
+	 *   versions selected for the entities in conflict, or null if E has no version.
+	 * </p>
+	 */
+	private Object[] getSelectionVersions() {
+		Object[] versions = new Object[selection.size()];
+		boolean versioned = false;
+		for (int i = 0; i < versions.length; i++) {
+			E entity = selection.get(i);
+			versions[i] = selectionConflicts.containsKey(entity)? 
+				selectionConflicts.get(entity): getVersion(entity);
+			versioned |= versions[i] != null;
+		}
+		return versioned? versions: null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the version of the entity, or null if E has no version.
+	 * </p>
+	 */
+	private static Object getVersion(AbstractEntity<?> entity) {
+		return ClassDescriptor.of(entity.getClass()).getVersion(entity);
+	}
+	
+	/**
+	 * <p>
+	 *   Records selected as read by the view, without conflict and with its own version, and 
+	 *   has the DAO track its changes if it may be written as its ID.
+	 * </p>
+	 */
+	private void markSelectedRead() {
+		selectedVersion = null;
+		selectedConflict = false;
+		if (selected != null && isIdOnlySerializationEnabled())
+			dao.trackChanges(selected);
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether selected may have changes that were not persisted, as the DAO tells 
+	 *   by comparing it with the values tracked when it was read, set or persisted. Selected 
+	 *   is considered changed if the DAO cannot tell, such as after a subclass assigns it 
+	 *   directly without the DAO tracking its values.
+	 * </p>
+	 */
+	private boolean isSelectedChanged() {
+		return dao.hasUnsavedChanges(selected);
+	}
+	
+	private static void writeState(ObjectOutputStream out, byte state, Object value) 
+		throws IOException {
+		out.writeByte(state);
+		out.writeObject(value);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the IDs of the entities, as a long[] if the IDs of E are integral or as an 
+	 *   Object[] otherwise, or null if the list is null or has an entity without ID.
+	 * </p>
+	 */
+	private Object getIds(List<E> entities) {
+		if (entities == null)
+			return null;
+		
+		boolean integral = ClassDescriptor.of(getEntityClass()).getIdCodec().isIntegral();
+		long[] longIds = integral? new long[entities.size()]: null;
+		Object[] ids = integral? null: new Object[entities.size()];
+		for (int i = 0; i < entities.size(); i++) {
+			Object id = entities.get(i).getEntityId();
+			if (id == null)
+				return null;
+			if (integral)
+				longIds[i] = ((Number) id).longValue();
+			else
+				ids[i] = id;
+		}
+		return integral? longIds: ids;
+	}
+	
+	/**
+	 * <p>
+	 *   Reads selected through the DAO if its ID is pending since the view was restored, and 
+	 *   detects whether its version changed since the view read it.
+	 * </p>
+	 */
+	private void restoreSelected() {
+		Object id = pendingSelectedId;
+		if (id != null) {
+			pendingSelectedId = null;
+			selected = dao.selectOne(id);
+			if (selected != null)
+				dao.trackChanges(selected);
+			selectedConflict = 
+				selected != null && selectedVersion != null 
+					&& !selectedVersion.equals(getVersion(selected));
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the entity read again through the DAO if isSharedSnapshotEnabled() is true, so 
+	 *   that the unsaved changes made in selected are never seen in the snapshot of the other 
+	 *   users, or else the entity itself. The copy already held as selected is kept while the 
+	 *   same entity stays selected, and an entity never persisted or deleted in the meantime is 
+	 *   returned as it is.
+	 * </p>
+	 */
+	private E getOwnCopy(E entity) {
+		if (!isSharedSnapshotEnabled() || entity == null || entity.getEntityId() == null)
+			return entity;
+		if (selected != null && entity.getEntityId().equals(selected.getEntityId()))
+			return selected;
+		E copy = dao.selectOne(entity.getEntityId());
+		return copy != null? copy: entity;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the entities read again through the DAO, in a single call and in their original 
+	 *   order, as described in getOwnCopy(), keeping the copies already held in selection.
+	 * </p>
+	 */
+	private List<E> getOwnCopies(List<E> entities) {
+		if (!isSharedSnapshotEnabled() || entities == null)
+			return entities;
+		
+		Map<Object, E> copiesById = new HashMap<Object, E>();
+		if (selection != null)
+			for (E entity: selection)
+				if (entity.getEntityId() != null)
+					copiesById.put(entity.getEntityId(), entity);
+		List<Object> missing = new ArrayList<Object>();
+		for (E entity: entities)
+			if (entity.getEntityId() != null && !copiesById.containsKey(entity.getEntityId()))
+				missing.add(entity.getEntityId());
+		if (!missing.isEmpty())
+			for (E copy: dao.selectAllByIds(missing))
+				copiesById.put(copy.getEntityId(), copy);
+		
+		List<E> copies = new ArrayList<E>(entities.size());
+		for (E entity: entities) {
+			E copy = entity.getEntityId() != null? copiesById.get(entity.getEntityId()): null;
+			copies.add(copy != null? copy: entity);
+		}
+		return copies;
+	}
+	
+	/**
+	 * <p>
+	 *   Reads all through the DAO if the IDs of its entities are pending since the view was 
+	 *   restored.
+	 * </p>
+	 */
+	private void restoreAll() {
+		Object pending = pendingAllIds;
+		if (pending != null) {
+			pendingAllIds = null;
+			all = selectAllByPendingIds(pending);
+		}
+	}
+		
+	/**
+	 * <p>
+	 *   Reads selection through the DAO if the IDs of its entities are pending since the view 
+	 *   was restored, and records the entities whose versions changed since they were selected.
+	 * </p>
+	 */
+	private void restoreSelection() {
+		Object pending = pendingSelectionIds;
+		if (pending == null)
+			return;
+		Object[] versions = pendingSelectionVersions;
+		pendingSelectionIds = null;
+		pendingSelectionVersions = null;
+		
+		selection = selectAllByPendingIds(pending);
+		selectionConflicts.clear();
+		if (versions == null)
+			return;
+		List<Object> ids = decodeIds(pending);
+		Map<Object, Object> versionsById = new HashMap<Object, Object>();
+		for (int i = 0; i < ids.size(); i++)
+			versionsById.put(ids.get(i), versions[i]);
+		for (E entity: selection) {
+			Object version = versionsById.get(entity.getEntityId());
+			if (version != null && !version.equals(getVersion(entity)))
+				selectionConflicts.put(entity, version);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Reads the entities of the pending IDs, as written by getIds(), in a single call and in 
+	 *   their original order. Entities deleted in the meantime are left out.
+	 * </p>
+	 */
+	private List<E> selectAllByPendingIds(Object pending) {
+		List<Object> ids = decodeIds(pending);
+		Map<Object, E> entitiesById = new HashMap<Object, E>();
+		for (E entity: dao.selectAllByIds(ids))
+			entitiesById.put(entity.getEntityId(), entity);
+		List<E> restored = new ArrayList<E>(ids.size());
+		for (Object id: ids) {
+			E entity = entitiesById.get(id);
+			if (entity != null)
+				restored.add(entity);
+		}
+		return restored;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the IDs written by writeObject(), which are either an array of IDs or an array 
+	 *   of long values encoded by the IdCodec of E.
+	 * </p>
+	 */
+	private List<Object> decodeIds(Object pending) {
+		if (!(pending instanceof long[]))
+			return Arrays.asList((Object[]) pending);
+		IdCodec<?> codec = ClassDescriptor.of(getEntityClass()).getIdCodec();
+		long[] longIds = (long[]) pending;
+		List<Object> ids = new ArrayList<Object>(longIds.length);
+		for (long id: longIds)
+			ids.add(codec.fromLong(id));
+		return ids;
+	}
+	
+	
 	/* 
 	 * --------------------------------------------------------------------------------------------
 	 *   JSF View Filters
@@ -439,6 +1374,36 @@ public abstract class AbstractJsfCrudMb
      */
     public abstract boolean canRemove(E selected);
     
+    /**
+     * <p>
+     *   Bulk filter that returns the entities, among those passed by parameter, that can be 
+     *   edited. By default it tests canEdit(E) for each one, but a subclass can check all of 
+     *   them at once, for example in a single query.
+     * </p>
+     */
+    protected List<E> getEditable(List<E> entities) {
+    	List<E> editable = new ArrayList<E>();
+    	for (E entity: entities)
+    		if (canEdit(entity))
+    			editable.add(entity);
+    	return editable;
+    }
+    
+    /**
+     * <p>
+     *   Bulk filter that returns the entities, among those passed by parameter, that can be 
+     *   removed. By default it tests canRemove(E) for each one, but a subclass can check all of 
+     *   them at once, for example in a single query.
+     * </p>
+     */
+    protected List<E> getRemovable(List<E> entities) {
+    	List<E> removable = new ArrayList<E>();
+    	for (E entity: entities)
+    		if (canRemove(entity))
+    			removable.add(entity);
+    	return removable;
+    }
+    
     /**
      * <p>
      *   Filter that enables the managed bean to allow or prohibit the viewing of "selected". 
@@ -446,7 +1411,7 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
     public boolean canView() {
-    	return canView(selected);
+    	return canView(getSelected());
     }
     
     /**
@@ -456,7 +1421,7 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
     public boolean canEdit() {
-    	return canEdit(selected);
+    	return canEdit(getSelected());
     }
     
     /**
@@ -466,7 +1431,7 @@ public abstract class AbstractJsfCrudMb
      * </p>
      */
     public boolean canRemove() {
-    	return canRemove(selected);
+    	return canRemove(getSelected());
     }
     
 }
\ No newline at end of file
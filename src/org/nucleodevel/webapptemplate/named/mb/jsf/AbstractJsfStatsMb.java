@@ -4,18 +4,44 @@ import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.ToDoubleFunction;
 
 import javax.inject.Inject;
 
 import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.AggregateFunction;
 import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.job.AbstractJob;
+import org.nucleodevel.webapptemplate.job.JobManager;
+import org.nucleodevel.webapptemplate.job.JobStatus;
+import org.nucleodevel.webapptemplate.job.ReportJob;
 import org.nucleodevel.webapptemplate.named.mb.AbstractMb;
 import org.nucleodevel.webapptemplate.session.dao.jsf.AbstractSessionJsfDao;
+import org.nucleodevel.webapptemplate.stats.ChartSeriesCache;
+import org.nucleodevel.webapptemplate.stats.HyperLogLog;
+import org.nucleodevel.webapptemplate.stats.PeriodStats;
+import org.nucleodevel.webapptemplate.stats.QuantileSketch;
+import org.nucleodevel.webapptemplate.stats.RollupCounters;
+import org.nucleodevel.webapptemplate.stats.SeriesDownsampler;
+import org.nucleodevel.webapptemplate.stats.Sketch;
+import org.nucleodevel.webapptemplate.stats.SketchSeries;
+import org.nucleodevel.webapptemplate.stats.SketchSeriesCache;
+import org.nucleodevel.webapptemplate.stats.TimeSeries;
+import org.nucleodevel.webapptemplate.util.JsfMessageUtils;
 import org.nucleodevel.webapptemplate.util.JsfUrlUtils;
-import org.nucleodevel.webapptemplate.util.ParameterizedClassUtils;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
 import org.nucleodevel.webapptemplate.util.RandomUtils;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
 import org.primefaces.model.chart.Axis;
 import org.primefaces.model.chart.AxisType;
 import org.primefaces.model.chart.DateAxis;
@@ -47,6 +73,16 @@ public abstract class AbstractJsfStatsMb
 	
     private static final long serialVersionUID = 1L;
 	
+	private static final int CHART_MAX_POINTS = 
+		Integer.getInteger("webapptemplate.charts.maxPoints", 500);
+	
+	/**
+	 * <p>
+	 *   Maximum number of points of a chart whose point labels are shown.
+	 * </p>
+	 */
+	private static final int MAX_LABELED_POINTS = 60;
+	
     /**
      * <p>
      *   DAO provides access to the datasource used by the managed bean.
@@ -55,6 +91,23 @@ public abstract class AbstractJsfStatsMb
     @Inject
 	protected DAO dao;
     
+    /**
+     * <p>
+     *   Application-wide cache of the chart series, used by the charts that take no map when 
+     *   isSharedChartCacheEnabled() is true.
+     * </p>
+     */
+    @Inject
+    private ChartSeriesCache chartSeriesCache;
+    
+    /**
+     * <p>
+     *   Application-wide cache of the sketches per bucket, read by the charts of the sketches.
+     * </p>
+     */
+    @Inject
+    private SketchSeriesCache sketchSeriesCache;
+    
     /**
      * <p>
      *   Attribute that stores the class adopted by E, which is the target entity of the DAO. It is
@@ -105,6 +158,62 @@ public abstract class AbstractJsfStatsMb
 	 */
 	private LineChartModel totalByYearChartModel;
 	
+	/**
+	 * <p>
+	 *   Stores the statistics of the period of the charts that take no map, shared by them. It 
+	 *   is not serialized, but computed again after the bean is restored.
+	 * </p>
+	 */
+	private transient PeriodStats periodStats;
+	
+	/**
+	 * <p>
+	 *   Stores the sketches of the distinct values of getDistinctAttribute() in the period of the 
+	 *   charts that take no map, per bucket. They are not serialized, but built again after the 
+	 *   bean is restored.
+	 * </p>
+	 */
+	private transient Map<TimeBucket, SketchSeries<HyperLogLog>> distinctSketches;
+	
+	/**
+	 * <p>
+	 *   Stores the sketches of the values of getQuantileAttribute() in the period of the charts 
+	 *   that take no map, per bucket, built with distinctSketches.
+	 * </p>
+	 */
+	private transient Map<TimeBucket, SketchSeries<QuantileSketch>> quantileSketches;
+	
+	/**
+	 * <p>
+	 *   Stores the models of the charts of the sketches, keyed by their bucket and metric.
+	 * </p>
+	 */
+	private Map<String, LineChartModel> sketchChartModels = new HashMap<String, LineChartModel>();
+	
+	/**
+	 * <p>
+	 *   ID of the last report of the statistics of the period started in the background, whose 
+	 *   status is polled by the view.
+	 * </p>
+	 */
+	private String reportJobId;
+	
+	/**
+	 * <p>
+	 *   Beginning of the window zoomed into by zoom(), which replaces begin in the charts that 
+	 *   take no map, or null if they are not zoomed.
+	 * </p>
+	 */
+	private Date zoomBegin;
+	
+	/**
+	 * <p>
+	 *   End of the window zoomed into by zoom(), which replaces end in the charts that take no 
+	 *   map, or null if they are not zoomed.
+	 * </p>
+	 */
+	private Date zoomEnd;
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -115,15 +224,15 @@ public abstract class AbstractJsfStatsMb
     
 	/**
      * <p>
-     *   Returns the class<?> of E via ParameterizedClassUtils
+     *   Returns the class<?> of E via ClassDescriptor
      * </p>
      */
     @SuppressWarnings("unchecked")
 	protected Class<E> getEntityClass() {
     	if (entityClass == null)
     		entityClass = 
-    			(Class<E>) ParameterizedClassUtils 
-    				.getParameterClassFromParameterizedClass(getClass(), 0);
+    			(Class<E>) ClassDescriptor.of(getClass())
+    				.getParameterClass(AbstractJsfStatsMb.class, 0);
     	return entityClass;
     }
  
@@ -159,6 +268,148 @@ public abstract class AbstractJsfStatsMb
 		this.end = end;
 	}
 	
+	public Date getZoomBegin() {
+		return zoomBegin;
+	}
+	
+	public void setZoomBegin(Date zoomBegin) {
+		this.zoomBegin = zoomBegin;
+	}
+	
+	public Date getZoomEnd() {
+		return zoomEnd;
+	}
+	
+	public void setZoomEnd(Date zoomEnd) {
+		this.zoomEnd = zoomEnd;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the beginning of the period of the charts that take no map: zoomBegin if the 
+	 *   charts are zoomed, else begin.
+	 * </p>
+	 */
+	protected Date getChartBegin() {
+		return zoomBegin != null? zoomBegin: getBegin();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the end of the period of the charts that take no map: zoomEnd if the charts are 
+	 *   zoomed, else end.
+	 * </p>
+	 */
+	protected Date getChartEnd() {
+		return zoomEnd != null? zoomEnd: getEnd();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the maximum number of points of a chart. Longer series are downsampled by 
+	 *   SeriesDownsampler before the model is built, keeping their peaks and valleys, so that 
+	 *   the chart of any period stays light; zoom() then shows the buckets of a smaller window at 
+	 *   full resolution. Zero, or less than 3, disables downsampling. By default, the system 
+	 *   property webapptemplate.charts.maxPoints, or 500.
+	 * </p>
+	 */
+	protected int getChartMaxPoints() {
+		return CHART_MAX_POINTS;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the attribute of E, of type Date, by which the entities are grouped in the 
+	 *   charts that take no map, such as the creation date, or null if those charts are not 
+	 *   used, which is the default.
+	 * </p>
+	 */
+	protected String getDateAttribute() {
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the filters, as described in AbstractDao.selectAllByRange(), of the entities 
+	 *   counted in the charts that take no map. By default, none.
+	 * </p>
+	 */
+	protected Map<String, Object> getAggregateFilters() {
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the charts that take no map read the counts of RollupCounters, kept 
+	 *   up to date by the inserts and deletes, instead of aggregating the datasource on each 
+	 *   view. It only applies when getAggregateFilters() is null, and the counts include the 
+	 *   whole buckets of begin and end. False by default.
+	 * </p>
+	 */
+	protected boolean isRollupEnabled() {
+		return false;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the charts that take no map read their series from the 
+	 *   application-wide ChartSeriesCache, shared by all the users that view the same period, 
+	 *   instead of aggregating the datasource for each view. The series can then be up to 
+	 *   webapptemplate.charts.maxAge old. Ignored if isRollupEnabled() applies. False by default.
+	 * </p>
+	 */
+	protected boolean isSharedChartCacheEnabled() {
+		return false;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the attribute of E, or path of attributes, whose distinct values are estimated 
+	 *   by getDistinctSketches(), such as the user of an order, or null if they are not, which is 
+	 *   the default.
+	 * </p>
+	 */
+	protected String getDistinctAttribute() {
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the numeric attribute of E, or path of attributes, whose percentiles are 
+	 *   estimated by getQuantileSketches(), such as an amount or a latency, or null if they are 
+	 *   not, which is the default.
+	 * </p>
+	 */
+	protected String getQuantileAttribute() {
+		return null;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the statistics of the period of the charts that take no map are 
+	 *   computed by a report in the background, through JobManager.submitReport(), instead of in 
+	 *   the request, so that a heavy period never blocks the request and stops when the report 
+	 *   times out or is cancelled. The charts are then empty until the report, whose status is 
+	 *   polled through getReportStatus(), succeeds, and its result is shared with the other 
+	 *   users that view the same period. It reads the datasource, whatever isRollupEnabled() and 
+	 *   isSharedChartCacheEnabled() return. False by default.
+	 * </p>
+	 */
+	protected boolean isBackgroundReportEnabled() {
+		return false;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the class<?> of DAO via ClassDescriptor
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private Class<DAO> getDaoClass() {
+		return (Class<DAO>) ClassDescriptor.of(getClass())
+			.getParameterClass(AbstractJsfStatsMb.class, 1);
+	}
+	
 	
 	/* 
 	 * --------------------------------------------------------------------------------------------
@@ -166,24 +417,105 @@ public abstract class AbstractJsfStatsMb
 	 * --------------------------------------------------------------------------------------------
 	 */
 
+	/**
+	 * <p>
+	 *   Zooms the charts that take no map into the window from zoomBegin to zoomEnd, typically 
+	 *   set by the view from the visible range of a chart, discarding their models so that they 
+	 *   are built again from the buckets of the window, at full resolution unless the window 
+	 *   still has more than getChartMaxPoints() buckets.
+	 * </p>
+	 */
+	public void zoom() {
+		resetChartModels();
+	}
+	
+	/**
+	 * <p>
+	 *   Undoes zoom(), so that the charts that take no map show the period from begin to end 
+	 *   again.
+	 * </p>
+	 */
+	public void resetZoom() {
+		zoomBegin = null;
+		zoomEnd = null;
+		resetChartModels();
+	}
+	
+	private void resetChartModels() {
+		periodStats = null;
+		distinctSketches = null;
+		quantileSketches = null;
+		sketchChartModels.clear();
+		totalByDayChartModel = null;
+		totalByMonthChartModel = null;
+		totalByYearChartModel = null;
+	}
+	
 	/**
      * <p>
-     *   Method that supports the getters that stores the time unit charts.
+     *   Method that supports the getters that stores the time unit charts, downsampled to 
+     *   getChartMaxPoints().
      * </p>
      */
 	private LineChartModel getTotalByTimeUnitChartModel(
-		Map<Date, Long> totalByTimeUnit, String xTickFormat 
+		Map<Date, ? extends Number> totalByTimeUnit, String xTickFormat 
 	) throws ParseException {
 		
-		String seriesColor = RandomUtils.getRandomStringColorForChartSeries();
+		List<Date> dates = new ArrayList<Date>(totalByTimeUnit.size());
+		List<Number> totals = new ArrayList<Number>(totalByTimeUnit.size());
+		long[] values = new long[totalByTimeUnit.size()];
+		for (Map.Entry<Date, ? extends Number> entry : totalByTimeUnit.entrySet()) {
+			values[dates.size()] = entry.getValue() != null? entry.getValue().longValue(): 0;
+			dates.add(entry.getKey());
+			totals.add(entry.getValue());
+		}
+		
+		LineChartSeries series = new LineChartSeries();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");  
+        for (int i : SeriesDownsampler.selectIndexes(values, getChartMaxPoints()))
+            series.set(dateFormat.format(dates.get(i)), totals.get(i));
+        return getTotalByTimeUnitChartModel(series, xTickFormat);
+	}
+    
+	/**
+     * <p>
+     *   Method that supports the getters that stores the time unit charts from a TimeSeries, 
+     *   downsampled to getChartMaxPoints(), whose buckets are labeled by the ISO format of their 
+     *   first day, yyyy-MM-dd, without going through Date.
+     * </p>
+     */
+	private LineChartModel getTotalByTimeUnitChartModel(
+		TimeSeries totalByTimeUnit, String xTickFormat 
+	) {
+		LineChartSeries series = new LineChartSeries();
+		int[] indexes = SeriesDownsampler.selectIndexes(
+			totalByTimeUnit.toArray(), getChartMaxPoints()
+		);
+		for (int i : indexes)
+			series.set(totalByTimeUnit.getStart(i).toString(), totalByTimeUnit.get(i));
+		return getTotalByTimeUnitChartModel(series, xTickFormat);
+	}
+    
+	/**
+     * <p>
+     *   Creates the model of a time unit chart with the series passed by parameter. Point labels 
+     *   are only shown for series of up to MAX_LABELED_POINTS points, since they would overlap 
+     *   and weigh on the page beyond that.
+     * </p>
+     */
+	private LineChartModel getTotalByTimeUnitChartModel(
+		LineChartSeries series, String xTickFormat 
+	) {
+		String seriesColor = RandomUtils.getStringColorForChartSeries(getEntityClass().getName());
 		
 		LineChartModel totalByTimeUnitChartModel = new LineChartModel();
         totalByTimeUnitChartModel.setZoom(true);
-        totalByTimeUnitChartModel.setShowPointLabels(true);
+        totalByTimeUnitChartModel.setShowPointLabels(
+        	series.getData().size() <= MAX_LABELED_POINTS
+        );
         totalByTimeUnitChartModel.setSeriesColors(seriesColor);
         totalByTimeUnitChartModel.setShadow(false);
 
-		LineChartSeries series = new LineChartSeries();
 		series.setSmoothLine(true);
 		
 		DateAxis xAxis = new DateAxis();
@@ -194,29 +526,382 @@ public abstract class AbstractJsfStatsMb
         yAxis.setTickFormat("%d");
         yAxis.setMin(0);
         
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");  
-        
-        long max = 0;
-        for (Map.Entry<Date, Long> entry : totalByTimeUnit.entrySet()) {
-        	String key = dateFormat.format(entry.getKey());
-        	Long value = entry.getValue();
-        	if (value > max)
-        		max = value;
-            series.set(key, value);
-        }
-        
         totalByTimeUnitChartModel.addSeries(series);
 		
         return totalByTimeUnitChartModel;
 	}
     
+	/**
+	 * <p>
+	 *   Returns the number of entities E per bucket of getDateAttribute() between getChartBegin() 
+	 *   and getChartEnd(), counted by the datasource in a single query of 
+	 *   AbstractDao.selectAggregateByTimeBucket(), or read from RollupCounters or ChartSeriesCache 
+	 *   if they are enabled. Buckets without entities are absent.
+	 * </p>
+	 */
+	public SortedMap<Date, Number> getTotalByTimeBucket(TimeBucket bucket) {
+		if (getDateAttribute() == null)
+			throw new IllegalStateException(getClass().getName() + " has no date attribute");
+		
+		if (isRollupEnabled() && getAggregateFilters() == null)
+			return RollupCounters.of(getDaoClass(), getDateAttribute())
+				.getCounts(bucket, getChartBegin(), getChartEnd());
+		if (isSharedChartCacheEnabled())
+			return chartSeriesCache.getTotals(
+				getDaoClass(), getDateAttribute(), bucket, getChartBegin(), getChartEnd(), 
+				getAggregateFilters()
+			);
+		return dao.selectAggregateByTimeBucket(
+			getDateAttribute(), bucket, AggregateFunction.COUNT, null, getChartBegin(), 
+			getChartEnd(), getAggregateFilters()
+		);
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the totals of getTotalByTimeBucket() as a dense TimeSeries, with zero for the 
+	 *   buckets without entities, over the buckets from getChartBegin() to getChartEnd() or, if 
+	 *   they are not defined, from the first to the last bucket with entities.
+	 * </p>
+	 */
+	public TimeSeries getTotalSeries(TimeBucket bucket) {
+		return TimeSeries.of(
+			bucket, getChartBegin(), getChartEnd(), getTotalByTimeBucket(bucket)
+		);
+	}
+    
+	/**
+	 * <p>
+	 *   Stores the statistics of the period of the charts that take no map, computed by 
+	 *   PeriodStats in a single pass over the daily totals of getTotalSeries(), which are read 
+	 *   once for the daily, monthly and yearly charts and the metrics of the page. The monthly 
+	 *   and yearly totals therefore only count the days of the period, even where 
+	 *   isRollupEnabled() would count whole buckets.
+	 * </p>
+	 */
+	public PeriodStats getPeriodStats() {
+		if (periodStats == null)
+			periodStats = isBackgroundReportEnabled()? 
+				getReportResult(): PeriodStats.of(getTotalSeries(TimeBucket.DAY));
+		return periodStats;
+	}
+    
+	/**
+	 * <p>
+	 *   Starts the report of the statistics of the period in the background, unless the same 
+	 *   report is already running or recent, as described in isBackgroundReportEnabled().
+	 * </p>
+	 */
+	public void startReport() {
+		if (submitReport())
+			JsfMessageUtils.addSuccessMessage("report.started");
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the status of the last report started for the statistics of the period, or null 
+	 *   if there is none.
+	 * </p>
+	 */
+	public JobStatus getReportStatus() {
+		AbstractJob job = JobManager.get(reportJobId);
+		return job != null? job.getStatus(): null;
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the progress of the last report as a percentage, as expected by a progress bar.
+	 * </p>
+	 */
+	public int getReportProgress() {
+		JobStatus status = getReportStatus();
+		return status != null? (int) Math.round(status.getProgress() * 100): 0;
+	}
+    
+	/**
+	 * <p>
+	 *   Cancels the last report. It is cancelled for every user that shares it.
+	 * </p>
+	 */
+	public void cancelReport() {
+		JobManager.cancel(reportJobId);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the result of the report of the current period once it succeeded, or null while 
+	 *   it runs or if it failed or was cancelled. The report is submitted on the first call for 
+	 *   a period, but is not submitted again after it failed or was cancelled, except by 
+	 *   startReport().
+	 * </p>
+	 */
+	private PeriodStats getReportResult() {
+		AbstractJob job = JobManager.get(reportJobId);
+		if (
+			!(job instanceof PeriodStatsReport) 
+				|| !((PeriodStatsReport) job).getKey().equals(getReportKey())
+		) {
+			if (!submitReport())
+				return null;
+			job = JobManager.get(reportJobId);
+		}
+		return job instanceof PeriodStatsReport? ((PeriodStatsReport) job).getResult(): null;
+	}
+	
+	/**
+	 * <p>
+	 *   Submits the report of the current period, keeping its ID. Returns false, with an error 
+	 *   message, if the queue of the reports is full.
+	 * </p>
+	 */
+	private boolean submitReport() {
+		if (getDateAttribute() == null)
+			throw new IllegalStateException(getClass().getName() + " has no date attribute");
+		try {
+			reportJobId = JobManager.submitReport(
+				new PeriodStatsReport(
+					getEntityClass().getSimpleName(), getReportKey(), getDaoClass(), 
+					getDateAttribute(), getChartBegin(), getChartEnd(), getAggregateFilters()
+				)
+			).getId();
+			return true;
+		} catch (RejectedExecutionException e) {
+			JsfMessageUtils.addErrorMessage("report.error.busy");
+			return false;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the parameters of the report of the current period, by which its results are 
+	 *   reused.
+	 * </p>
+	 */
+	private List<Object> getReportKey() {
+		return Arrays.asList(
+			getDaoClass(), getDateAttribute(), getChartBegin(), getChartEnd(), 
+			getAggregateFilters()
+		);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns an empty model for a time unit chart whose statistics are not computed yet.
+	 * </p>
+	 */
+	private LineChartModel getPendingChartModel(String xTickFormat) {
+		return getTotalByTimeUnitChartModel(new LineChartSeries(), xTickFormat);
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the HyperLogLog sketches of the distinct values of getDistinctAttribute() per 
+	 *   bucket of getDateAttribute() in the whole buckets of getChartBegin() to getChartEnd(). 
+	 *   The sketches of a bucket are built application-wide by SketchSeriesCache, together with 
+	 *   those of getQuantileSketches(), in a single pass over the entities of the buckets that it 
+	 *   did not build yet, so they can be up to webapptemplate.charts.maxAge old. The bean keeps 
+	 *   a copy of them until the period changes by zoom(), so that any range of buckets is 
+	 *   summarized by merging them.
+	 * </p>
+	 */
+	public SketchSeries<HyperLogLog> getDistinctSketches(TimeBucket bucket) {
+		buildSketches(bucket);
+		return distinctSketches.get(bucket);
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the QuantileSketch sketches of the values of getQuantileAttribute() per bucket of 
+	 *   getDateAttribute() between getChartBegin() and getChartEnd(), built as described in 
+	 *   getDistinctSketches().
+	 * </p>
+	 */
+	public SketchSeries<QuantileSketch> getQuantileSketches(TimeBucket bucket) {
+		buildSketches(bucket);
+		return quantileSketches.get(bucket);
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the estimated number of distinct values of getDistinctAttribute() in the days 
+	 *   from getChartBegin() to getChartEnd(), merged from the daily sketches.
+	 * </p>
+	 */
+	public long getDistinctCount() {
+		return getDistinctSketches(TimeBucket.DAY).getMerged(getChartBegin(), getChartEnd())
+			.estimate();
+	}
+    
+	/**
+	 * <p>
+	 *   Returns the estimated value of getQuantileAttribute() at the quantile, such as 0.99 for 
+	 *   the 99th percentile, in the days from getChartBegin() to getChartEnd(), merged from the 
+	 *   daily sketches, or NaN if there are no values.
+	 * </p>
+	 */
+	public double getQuantile(double quantile) {
+		return getQuantileSketches(TimeBucket.DAY).getMerged(getChartBegin(), getChartEnd())
+			.getQuantile(quantile);
+	}
+    
+	/**
+	 * <p>
+	 *   Stores a model for a chart that shows the estimated number of distinct values of 
+	 *   getDistinctAttribute() per bucket, read from getDistinctSketches().
+	 * </p>
+	 */
+	public LineChartModel getDistinctChartModel(TimeBucket bucket) {
+		return sketchChartModels.computeIfAbsent(
+			bucket + ".distinct", 
+			key -> getSketchChartModel(
+				getDistinctSketches(bucket), HyperLogLog::estimate, getTickFormat(bucket)
+			)
+		);
+	}
+    
+	/**
+	 * <p>
+	 *   Stores a model for a chart that shows the estimated value of getQuantileAttribute() at 
+	 *   the quantile per bucket, read from getQuantileSketches(). Buckets without values are 
+	 *   absent.
+	 * </p>
+	 */
+	public LineChartModel getQuantileChartModel(TimeBucket bucket, double quantile) {
+		return sketchChartModels.computeIfAbsent(
+			bucket + ".quantile." + quantile, 
+			key -> {
+				LineChartModel model = getSketchChartModel(
+					getQuantileSketches(bucket), sketch -> sketch.getQuantile(quantile), 
+					getTickFormat(bucket)
+				);
+				model.getAxis(AxisType.Y).setTickFormat("%.2f");
+				return model;
+			}
+		);
+	}
+	
+	/**
+	 * <p>
+	 *   Creates the model of a chart of a metric of the sketches per bucket, downsampled to 
+	 *   getChartMaxPoints().
+	 * </p>
+	 */
+	private <S extends Sketch<S>> LineChartModel getSketchChartModel(
+		SketchSeries<S> sketches, ToDoubleFunction<S> metric, String xTickFormat 
+	) {
+		List<String> labels = new ArrayList<String>();
+		List<Double> metrics = new ArrayList<Double>();
+		for (Map.Entry<LocalDate, S> sketch: sketches.getSketches().entrySet()) {
+			double value = metric.applyAsDouble(sketch.getValue());
+			if (!Double.isNaN(value)) {
+				labels.add(sketch.getKey().toString());
+				metrics.add(value);
+			}
+		}
+		
+		double[] values = new double[metrics.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = metrics.get(i);
+		LineChartSeries series = new LineChartSeries();
+		for (int i : SeriesDownsampler.selectIndexes(values, getChartMaxPoints()))
+			series.set(labels.get(i), metrics.get(i));
+		return getTotalByTimeUnitChartModel(series, xTickFormat);
+	}
+	
+	/**
+	 * <p>
+	 *   Copies the sketches of the bucket from SketchSeriesCache, unless they were already 
+	 *   copied, for the entities E that match getAggregateFilters() and whose getDateAttribute() 
+	 *   is in the buckets of getChartBegin() to getChartEnd().
+	 * </p>
+	 */
+	private void buildSketches(TimeBucket bucket) {
+		if (getDateAttribute() == null)
+			throw new IllegalStateException(getClass().getName() + " has no date attribute");
+		if (distinctSketches == null) {
+			distinctSketches = new EnumMap<TimeBucket, SketchSeries<HyperLogLog>>(TimeBucket.class);
+			quantileSketches = 
+				new EnumMap<TimeBucket, SketchSeries<QuantileSketch>>(TimeBucket.class);
+		}
+		if (distinctSketches.containsKey(bucket))
+			return;
+		
+		distinctSketches.put(bucket, sketchSeriesCache.getDistinctSketches(
+			getDaoClass(), getDateAttribute(), getDistinctAttribute(), getQuantileAttribute(), 
+			bucket, getChartBegin(), getChartEnd(), getAggregateFilters()
+		));
+		quantileSketches.put(bucket, sketchSeriesCache.getQuantileSketches(
+			getDaoClass(), getDateAttribute(), getDistinctAttribute(), getQuantileAttribute(), 
+			bucket, getChartBegin(), getChartEnd(), getAggregateFilters()
+		));
+	}
+	
+	private static String getTickFormat(TimeBucket bucket) {
+		switch (bucket) {
+			case YEAR:
+				return "%Y";
+			case MONTH:
+				return "%m/%Y";
+			default:
+				return "%d/%m/%Y";
+		}
+	}
+    
+	/**
+	 * <p>
+	 *   Stores a model for a chart that shows the daily total of the entities E between begin 
+	 *   and end, read from getPeriodStats().
+	 * </p>
+	 */
+	public LineChartModel getTotalByDayChartModel() {
+		if (getPeriodStats() == null)
+			return getPendingChartModel("%d/%m/%Y");
+		if (totalByDayChartModel == null)
+			totalByDayChartModel = getTotalByTimeUnitChartModel(
+				getPeriodStats().getSeries(TimeBucket.DAY), "%d/%m/%Y"
+			);
+		return totalByDayChartModel;
+	}
+    
+	/**
+	 * <p>
+	 *   Stores a model for a chart that shows the monthly total of the entities E between begin 
+	 *   and end, read from getPeriodStats().
+	 * </p>
+	 */
+	public LineChartModel getTotalByMonthChartModel() {
+		if (getPeriodStats() == null)
+			return getPendingChartModel("%m/%Y");
+		if (totalByMonthChartModel == null)
+			totalByMonthChartModel = getTotalByTimeUnitChartModel(
+				getPeriodStats().getSeries(TimeBucket.MONTH), "%m/%Y"
+			);
+		return totalByMonthChartModel;
+	}
+    
+	/**
+	 * <p>
+	 *   Stores a model for a chart that shows the yearly total of the entities E between begin 
+	 *   and end, read from getPeriodStats().
+	 * </p>
+	 */
+	public LineChartModel getTotalByYearChartModel() {
+		if (getPeriodStats() == null)
+			return getPendingChartModel("%Y");
+		if (totalByYearChartModel == null)
+			totalByYearChartModel = getTotalByTimeUnitChartModel(
+				getPeriodStats().getSeries(TimeBucket.YEAR), "%Y"
+			);
+		return totalByYearChartModel;
+	}
+    
 	/**
 	 * <p>
 	 *   Stores a model for a chart that shows the daily total of the entities E in a given 
 	 *   period.
 	 * </p>
 	 */
-	public LineChartModel getTotalByDayChartModel(Map<Date, Long> totalByDay) 
+	public LineChartModel getTotalByDayChartModel(Map<Date, ? extends Number> totalByDay) 
 		throws ParseException {
 		
 		if (totalByDayChartModel == null)
@@ -230,7 +915,7 @@ public abstract class AbstractJsfStatsMb
 	 *   period.
 	 * </p>
 	 */
-	public LineChartModel getTotalByMonthChartModel(Map<Date, Long> totalByMonth) 
+	public LineChartModel getTotalByMonthChartModel(Map<Date, ? extends Number> totalByMonth) 
 		throws ParseException {
 		
 		if (totalByMonthChartModel == null)
@@ -244,7 +929,7 @@ public abstract class AbstractJsfStatsMb
 	 *   period.
 	 * </p>
 	 */
-	public LineChartModel getTotalByYearChartModel(Map<Date, Long> totalByYear) 
+	public LineChartModel getTotalByYearChartModel(Map<Date, ? extends Number> totalByYear) 
 		throws ParseException {
 		
 		if (totalByYearChartModel == null)
@@ -274,5 +959,60 @@ public abstract class AbstractJsfStatsMb
      * </p>
      */
     public abstract boolean canReport();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Reports
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Report of the statistics of a period, which counts the entities per day through its own 
+	 *   DAO, in a single aggregated query that times out with the report, and computes 
+	 *   PeriodStats from them. It is static so that it holds no reference to the managed bean.
+	 * </p>
+	 */
+	private static final class PeriodStatsReport extends ReportJob<PeriodStats> {
+		
+		private final Class<? extends AbstractDao<?>> daoClass;
+		
+		private final String dateAttribute;
+		
+		private final Date begin;
+		
+		private final Date end;
+		
+		private final Map<String, Object> filters;
+		
+		private PeriodStatsReport(
+			String entityName, List<Object> key, Class<? extends AbstractDao<?>> daoClass, 
+			String dateAttribute, Date begin, Date end, Map<String, Object> filters
+		) {
+			super(entityName, key);
+			this.daoClass = daoClass;
+			this.dateAttribute = dateAttribute;
+			this.begin = begin != null? new Date(begin.getTime()): null;
+			this.end = end != null? new Date(end.getTime()): null;
+			this.filters = filters != null? new HashMap<String, Object>(filters): null;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.nucleodevel.webapptemplate.job.ReportJob#compute()
+		 */
+		@Override
+		protected PeriodStats compute() {
+			SortedMap<Date, Number> totals = newDao(daoClass).selectAggregateByTimeBucket(
+				dateAttribute, TimeBucket.DAY, AggregateFunction.COUNT, null, begin, end, filters
+			);
+			if (isCancelRequested())
+				return null;
+			setProgress(0.9);
+			return PeriodStats.of(TimeSeries.of(TimeBucket.DAY, begin, end, totals));
+		}
+		
+	}
     
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+package org.nucleodevel.webapptemplate.named.mb.jsf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.entity.IdCodec;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.primefaces.model.LazyDataModel;
+import org.primefaces.model.SortMeta;
+import org.primefaces.model.SortOrder;
+
+/**
+ * <p>
+ *   PrimeFaces LazyDataModel of E entities backed by a DAO. Each load of a datatable passes its 
+ *   page, sort and filter metadata down to AbstractDao.selectAllByRange() and selectCount(), so 
+ *   only the visible page is read from the datasource and kept in the view state. Row keys are 
+ *   the IDs of the entities formatted by the IdCodec of E.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Subclass of AbstractEntity that maps an entity of a datasource.
+ */
+public class EntityLazyDataModel<E extends AbstractEntity<?>> extends LazyDataModel<E> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * <p>
+	 *   Key of the filter map under which PrimeFaces passes the value of the global filter, which 
+	 *   does not name an attribute and is not passed down to the DAO.
+	 * </p>
+	 */
+	private static final String GLOBAL_FILTER = "globalFilter";
+	
+	/**
+	 * <p>
+	 *   DAO that reads the pages.
+	 * </p>
+	 */
+	private final AbstractDao<E> dao;
+	
+	/**
+	 * <p>
+	 *   Class of the entities, whose IdCodec formats and parses the row keys.
+	 * </p>
+	 */
+	private final Class<E> entityClass;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public EntityLazyDataModel(AbstractDao<E> dao, Class<E> entityClass) {
+		this.dao = dao;
+		this.entityClass = entityClass;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.primefaces.model.LazyDataModel#load(
+	 *     int, int, java.lang.String, org.primefaces.model.SortOrder, java.util.Map
+	 * )
+	 */
+	@Override
+	public List<E> load(
+		int first, int pageSize, String sortField, SortOrder sortOrder, Map<String, Object> filters
+	) {
+		if (sortOrder == null || sortOrder == SortOrder.UNSORTED)
+			sortField = null;
+		Map<String, Object> daoFilters = getDaoFilters(filters);
+	
+		setRowCount(dao.selectCount(daoFilters));
+		return dao.selectAllByRange(
+			first, pageSize, sortField, sortOrder != SortOrder.DESCENDING, daoFilters
+		);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.primefaces.model.LazyDataModel#load(
+	 *     int, int, java.util.List, java.util.Map
+	 * )
+	 */
+	@Override
+	public List<E> load(
+		int first, int pageSize, List<SortMeta> multiSortMeta, Map<String, Object> filters
+	) {
+		SortMeta sortMeta = 
+			multiSortMeta != null && !multiSortMeta.isEmpty()? multiSortMeta.get(0): null;
+		return load(
+			first, pageSize, sortMeta != null? sortMeta.getSortField(): null,
+			sortMeta != null? sortMeta.getSortOrder(): null, filters
+		);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.primefaces.model.LazyDataModel#getRowKey(java.lang.Object)
+	 */
+	@Override
+	public Object getRowKey(E entity) {
+		return getIdCodec().formatObject(entity.getEntityId());
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the entity of the row from the current page or else reads it through 
+	 *   selectOne(), not through the identity cache, since the row selected may be edited and the 
+	 *   cached instances are shared by every user.
+	 * </p>
+	 */
+	@Override
+	public E getRowData(String rowKey) {
+		if (rowKey == null)
+			return null;
+	
+		List<E> page = getWrappedData();
+		if (page != null)
+			for (E entity: page)
+				if (rowKey.equals(getRowKey(entity)))
+					return entity;
+		try {
+			return dao.selectOne(getIdCodec().parse(rowKey));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the IdCodec of E.
+	 * </p>
+	 */
+	private IdCodec<?> getIdCodec() {
+		return ClassDescriptor.of(entityClass).getIdCodec();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the filters of the datatable that name attributes of E.
+	 * </p>
+	 */
+	private static Map<String, Object> getDaoFilters(Map<String, Object> filters) {
+		if (filters == null || !filters.containsKey(GLOBAL_FILTER))
+			return filters;
+		Map<String, Object> daoFilters = new HashMap<String, Object>(filters);
+		daoFilters.remove(GLOBAL_FILTER);
+		return daoFilters;
+	}
+	
+}
@@ -2,16 +2,34 @@ package org.nucleodevel.webapptemplate.session.dao;
 
 import javax.servlet.http.HttpSession;
 
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+
 /**
  * <p>
  *   Abstract class that implements the default behavior of a DAO that provides access to the 
  *   current HTTP session. It is intended for use by managed beans that use this library.
  * </p>
+ * <p>
+ *   The attributes are kept by a SessionAttributeStore: HeapSessionAttributeStore, by default, 
+ *   or the class named by the system property webapptemplate.session.store, such as 
+ *   OffHeapSessionAttributeStore, for every DAO, or the one returned by an override of 
+ *   getSessionAttributeStore().
+ * </p>
  * @author Dallan Augusto Toledo Reis
  */
 public abstract class AbstractSessionDao {
 	
 	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final SessionAttributeStore DEFAULT_STORE = createDefaultStore();
+	
+	
 	/* 
 	 * --------------------------------------------------------------------------------------------
 	 *   Methods
@@ -24,18 +42,43 @@ public abstract class AbstractSessionDao {
 	 */
 	protected abstract HttpSession getSession();
 	
+	/**
+	 * Returns the store that keeps the attributes of the HTTP session.
+	 */
+	protected SessionAttributeStore getSessionAttributeStore() {
+		return DEFAULT_STORE;
+	}
+	
 	/**
 	 * Returns the attribute of the current HTTP session whose key is passed by parameter.
 	 */
 	public Object getSessionAttribute(String key) {
-		return getSession().getAttribute(key);
+		return getSessionAttributeStore().get(getSession(), key);
 	}
 	
 	/**
 	 * Sets the attribute of the current HTTP session whose key and value are passed by parameter.
 	 */
 	public void setSessionAttribute(String key, Object value) {
-		getSession().setAttribute(key, value);
+		getSessionAttributeStore().set(getSession(), key, value);
+	}
+	
+	/**
+	 * Creates the store named by the system property webapptemplate.session.store.
+	 */
+	private static SessionAttributeStore createDefaultStore() {
+		String className = System.getProperty("webapptemplate.session.store");
+		if (className == null)
+			return new HeapSessionAttributeStore();
+		try {
+			return (SessionAttributeStore) ClassDescriptor.of(
+				Class.forName(className, true, AbstractSessionDao.class.getClassLoader())
+			).newInstance();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IllegalStateException(
+				"Invalid webapptemplate.session.store: " + className, e
+			);
+		}
 	}
 	
 }
\ No newline at end of file
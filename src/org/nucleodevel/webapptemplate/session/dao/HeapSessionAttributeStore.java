@@ -0,0 +1,42 @@
+package org.nucleodevel.webapptemplate.session.dao;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * <p>
+ *   Default SessionAttributeStore, which keeps the values as they are in the attributes of the 
+ *   HTTP session, in the heap.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class HeapSessionAttributeStore implements SessionAttributeStore {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.session.dao.SessionAttributeStore#get(
+	 *     javax.servlet.http.HttpSession, java.lang.String
+	 * )
+	 */
+	@Override
+	public Object get(HttpSession session, String key) {
+		return session.getAttribute(key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.session.dao.SessionAttributeStore#set(
+	 *     javax.servlet.http.HttpSession, java.lang.String, java.lang.Object
+	 * )
+	 */
+	@Override
+	public void set(HttpSession session, String key, Object value) {
+		session.setAttribute(key, value);
+	}
+	
+}
@@ -0,0 +1,274 @@
+package org.nucleodevel.webapptemplate.session.dao;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ *   Memory outside of the Java heap, in direct ByteBuffers, where OffHeapSessionAttributeStore 
+ *   keeps the serialized values of the session attributes, so that they do not weigh on the 
+ *   garbage collection of the old generation. The memory is allocated in slabs of 4 MB, split 
+ *   into pages of 4 KB, and a value takes as many pages, not necessarily contiguous, as its 
+ *   bytes need. Freed pages are reused by the next values; slabs are never returned to the 
+ *   operating system.
+ * </p>
+ * <p>
+ *   The arena is shared by the application and bounded by the system property 
+ *   webapptemplate.session.offHeap.maxBytes, 256 MB by default: when it is full, allocate() 
+ *   returns null and the value stays in the heap. The pages of an allocation are freed by free() 
+ *   or, if its holder is garbage collected without being freed, such as the attribute of a 
+ *   session passivated to disk, at a later allocation.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public final class OffHeapArena {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static final int PAGE_SIZE = 4096;
+	
+	private static final int SLAB_PAGES = 1024;
+	
+	private static final OffHeapArena INSTANCE = new OffHeapArena(
+		Long.getLong("webapptemplate.session.offHeap.maxBytes", 256L * 1024 * 1024)
+	);
+	
+	private final int maxPages;
+	
+	private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+	
+	/**
+	 * <p>
+	 *   Stack of the indexes of the free pages of the slabs already allocated.
+	 * </p>
+	 */
+	private int[] freePages = new int[SLAB_PAGES];
+	
+	private int freeCount;
+	
+	private int usedPages;
+	
+	/**
+	 * <p>
+	 *   Allocations still in use, keyed by the phantom reference of their holder, which is 
+	 *   enqueued when the holder is garbage collected.
+	 * </p>
+	 */
+	private final Map<Reference<?>, Allocation> live = 
+		new ConcurrentHashMap<Reference<?>, Allocation>();
+	
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private OffHeapArena(long maxBytes) {
+		this.maxPages = (int) Math.min(Math.max(maxBytes, 0) / PAGE_SIZE, Integer.MAX_VALUE);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static OffHeapArena get() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of bytes of the pages in use.
+	 * </p>
+	 */
+	public synchronized long getUsedBytes() {
+		return (long) usedPages * PAGE_SIZE;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of bytes of the slabs allocated so far.
+	 * </p>
+	 */
+	public synchronized long getReservedBytes() {
+		return (long) slabs.size() * SLAB_PAGES * PAGE_SIZE;
+	}
+	
+	public long getMaxBytes() {
+		return (long) maxPages * PAGE_SIZE;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Copies the bytes into new pages, which are freed with the returned allocation or when 
+	 *   the holder is garbage collected, or returns null if the arena has no room for them.
+	 * </p>
+	 */
+	public Allocation allocate(byte[] bytes, Object holder) {
+		expungeCollected();
+		
+		int pages = Math.max((bytes.length + PAGE_SIZE - 1) / PAGE_SIZE, 1);
+		int[] indexes = takePages(pages);
+		if (indexes == null)
+			return null;
+		
+		for (int i = 0, offset = 0; offset < bytes.length; i++, offset += PAGE_SIZE) {
+			ByteBuffer page = getPage(indexes[i]);
+			page.put(bytes, offset, Math.min(PAGE_SIZE, bytes.length - offset));
+		}
+		Allocation allocation = new Allocation(indexes, bytes.length);
+		allocation.reference = new PhantomReference<Object>(holder, collected);
+		live.put(allocation.reference, allocation);
+		return allocation;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a copy of the bytes of the allocation, or null if it was already freed.
+	 * </p>
+	 */
+	public byte[] read(Allocation allocation) {
+		synchronized (allocation) {
+			if (allocation.freed)
+				return null;
+			byte[] bytes = new byte[allocation.length];
+			for (int i = 0, offset = 0; offset < bytes.length; i++, offset += PAGE_SIZE) {
+				ByteBuffer page = getPage(allocation.pages[i]);
+				page.get(bytes, offset, Math.min(PAGE_SIZE, bytes.length - offset));
+			}
+			return bytes;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the pages of the allocation to the arena. Freeing it again has no effect.
+	 * </p>
+	 */
+	public void free(Allocation allocation) {
+		synchronized (allocation) {
+			if (allocation.freed)
+				return;
+			allocation.freed = true;
+		}
+		live.remove(allocation.reference);
+		allocation.reference.clear();
+		returnPages(allocation.pages);
+	}
+	
+	/**
+	 * <p>
+	 *   Frees the allocations whose holders were garbage collected without freeing them.
+	 * </p>
+	 */
+	private void expungeCollected() {
+		Reference<?> reference;
+		while ((reference = collected.poll()) != null) {
+			Allocation allocation = live.get(reference);
+			if (allocation != null)
+				free(allocation);
+		}
+	}
+	
+	private synchronized int[] takePages(int pages) {
+		if (usedPages + pages > maxPages)
+			return null;
+		while (freeCount < pages) {
+			int first = slabs.size() * SLAB_PAGES;
+			slabs.add(ByteBuffer.allocateDirect(SLAB_PAGES * PAGE_SIZE));
+			// the stack must hold every page, which are all freed in the end
+			if (freePages.length < first + SLAB_PAGES)
+				freePages = Arrays.copyOf(
+					freePages, Math.max(freePages.length * 2, first + SLAB_PAGES)
+				);
+			for (int i = SLAB_PAGES - 1; i >= 0; i--)
+				freePages[freeCount++] = first + i;
+		}
+		int[] indexes = new int[pages];
+		for (int i = 0; i < pages; i++)
+			indexes[i] = freePages[--freeCount];
+		usedPages += pages;
+		return indexes;
+	}
+	
+	private synchronized void returnPages(int[] indexes) {
+		for (int index: indexes)
+			freePages[freeCount++] = index;
+		usedPages -= indexes.length;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a buffer of its own over the page, so that pages are read and written by several 
+	 *   threads without sharing a position.
+	 * </p>
+	 */
+	private synchronized ByteBuffer getPage(int index) {
+		ByteBuffer page = slabs.get(index / SLAB_PAGES).duplicate();
+		page.position((index % SLAB_PAGES) * PAGE_SIZE);
+		return page;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Allocation
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Pages that hold the bytes of one value.
+	 * </p>
+	 */
+	public static final class Allocation {
+		
+		private final int[] pages;
+		
+		private final int length;
+		
+		private Reference<?> reference;
+		
+		private boolean freed;
+		
+		private Allocation(int[] pages, int length) {
+			this.pages = pages;
+			this.length = length;
+		}
+		
+		public int getLength() {
+			return length;
+		}
+		
+	}
+	
+}
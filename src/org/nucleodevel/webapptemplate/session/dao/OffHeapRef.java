@@ -0,0 +1,409 @@
+package org.nucleodevel.webapptemplate.session.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+/**
+ * <p>
+ *   Session attribute that stands for a value serialized into OffHeapArena, so that the session 
+ *   only retains this small object in the heap. The value is deserialized when it is read, and 
+ *   the values read last, webapptemplate.session.offHeap.cacheSize, 256 by default, are kept 
+ *   deserialized in an application-wide LRU cache, so a value read by every request of a 
+ *   session is not deserialized every time. Every reader of the attribute gets the same 
+ *   instance while it is cached, as with an attribute kept in the heap.
+ * </p>
+ * <p>
+ *   A change in the instance is kept without setting it again in the session: the instance is 
+ *   serialized back into the arena when it leaves the cache, when the attribute is unbound 
+ *   while the reference is still bound to another one, when the session is serialized and, 
+ *   through OffHeapSessionListener, at the end of every request that read it. An instance 
+ *   that cannot be serialized again stays in the heap until its attribute is removed.
+ * </p>
+ * <p>
+ *   The pages of the value are freed when the attribute is removed or replaced, or when the 
+ *   session is invalidated. If the session is serialized, for persistence or replication, the 
+ *   bytes of the value are written inline and copied into the arena of the JVM that reads them, 
+ *   or kept in the heap if that arena is full.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public final class OffHeapRef implements HttpSessionBindingListener, Serializable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final int CACHE_SIZE = 
+		Math.max(0, Integer.getInteger("webapptemplate.session.offHeap.cacheSize", 256));
+	
+	/**
+	 * <p>
+	 *   References whose value is cached, in access order. It is guarded by its own lock, which 
+	 *   is never held while the lock of a reference is taken.
+	 * </p>
+	 */
+	private static final Map<OffHeapRef, Boolean> CACHE = 
+		new LinkedHashMap<OffHeapRef, Boolean>(16, 0.75f, true);
+	
+	/**
+	 * <p>
+	 *   Marks a thread that runs a request which did not read any value yet.
+	 * </p>
+	 */
+	private static final Map<OffHeapRef, Object> NO_READS = Collections.emptyMap();
+	
+	/**
+	 * <p>
+	 *   Instances read by the request that the thread runs, per reference, which are serialized 
+	 *   back at its end. It is only set between beginRequest() and endRequest().
+	 * </p>
+	 */
+	private static final ThreadLocal<Map<OffHeapRef, Object>> READS = 
+		new ThreadLocal<Map<OffHeapRef, Object>>();
+	
+	private transient volatile OffHeapArena.Allocation allocation;
+	
+	/**
+	 * <p>
+	 *   Bytes of the value when the arena had no room for them after a deserialization.
+	 * </p>
+	 */
+	private transient volatile byte[] bytes;
+	
+	/**
+	 * <p>
+	 *   Number of attributes to which the reference is bound, which are not freed while a 
+	 *   container that binds the same value again unbinds it.
+	 * </p>
+	 */
+	private transient int bindings;
+	
+	/**
+	 * <p>
+	 *   Deserialized value while the reference is in the cache, or while the value cannot be 
+	 *   serialized again.
+	 * </p>
+	 */
+	private transient Object value;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private OffHeapRef() {
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the value, deserialized from the arena unless it is in the cache, or null if it 
+	 *   was already removed from the session.
+	 * </p>
+	 * @throws IllegalStateException If the value cannot be deserialized.
+	 */
+	public Object getValue() {
+		Object value;
+		synchronized (this) {
+			value = this.value;
+			if (value == null) {
+				byte[] bytes = getBytes();
+				if (bytes == null)
+					return null;
+				value = deserialize(bytes);
+				if (CACHE_SIZE > 0)
+					this.value = value;
+			}
+		}
+		
+		Map<OffHeapRef, Object> reads = READS.get();
+		if (reads != null) {
+			if (reads == NO_READS)
+				READS.set(reads = new IdentityHashMap<OffHeapRef, Object>());
+			reads.put(this, value);
+		}
+		if (CACHE_SIZE > 0)
+			cache(this);
+		return value;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the size of the serialized value in bytes.
+	 * </p>
+	 */
+	public int getLength() {
+		OffHeapArena.Allocation allocation = this.allocation;
+		byte[] bytes = this.bytes;
+		return allocation != null? allocation.getLength(): bytes != null? bytes.length: 0;
+	}
+	
+	private byte[] getBytes() {
+		OffHeapArena.Allocation allocation = this.allocation;
+		return allocation != null? OffHeapArena.get().read(allocation): bytes;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Copies the serialized value into the arena and returns its reference, or null if the 
+	 *   arena has no room for it.
+	 * </p>
+	 */
+	public static OffHeapRef allocate(byte[] serialized) {
+		OffHeapRef ref = new OffHeapRef();
+		ref.allocation = OffHeapArena.get().allocate(serialized, ref);
+		return ref.allocation != null? ref: null;
+	}
+	
+	/**
+	 * <p>
+	 *   Starts to track the values read by the thread, until endRequest().
+	 * </p>
+	 */
+	public static void beginRequest() {
+		READS.set(NO_READS);
+	}
+	
+	/**
+	 * <p>
+	 *   Serializes back into the arena the values read by the thread since beginRequest(), so 
+	 *   that their changes are kept even if they leave the cache later, and stops tracking them.
+	 * </p>
+	 */
+	public static void endRequest() {
+		Map<OffHeapRef, Object> reads = READS.get();
+		READS.remove();
+		if (reads != null)
+			for (Map.Entry<OffHeapRef, Object> read: reads.entrySet())
+				read.getKey().release(read.getValue());
+	}
+	
+	/**
+	 * <p>
+	 *   Marks the reference as read last, evicting the one read least recently if the cache is 
+	 *   full.
+	 * </p>
+	 */
+	private static void cache(OffHeapRef ref) {
+		OffHeapRef evicted = null;
+		synchronized (CACHE) {
+			CACHE.put(ref, Boolean.TRUE);
+			if (CACHE.size() > CACHE_SIZE) {
+				Iterator<OffHeapRef> eldest = CACHE.keySet().iterator();
+				evicted = eldest.next();
+				eldest.remove();
+			}
+		}
+		if (evicted != null)
+			evicted.evict();
+	}
+	
+	private static void uncache(OffHeapRef ref) {
+		synchronized (CACHE) {
+			CACHE.remove(ref);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Serializes the value back into the arena and drops it from the heap, unless it cannot 
+	 *   be serialized.
+	 * </p>
+	 */
+	private synchronized void evict() {
+		if (value != null && writeBack(value))
+			value = null;
+	}
+	
+	/**
+	 * <p>
+	 *   Serializes back an instance read by a request, unless the reference has since cached 
+	 *   another one, which was read after it.
+	 * </p>
+	 */
+	private synchronized void release(Object instance) {
+		if (value == null || value == instance)
+			writeBack(instance);
+	}
+	
+	/**
+	 * <p>
+	 *   Replaces the bytes of the value by the serialized instance, if they differ, in new pages 
+	 *   of the arena or in the heap if it has no room for them. Returns false if the instance 
+	 *   cannot be serialized, such as when a field of it is not serializable anymore.
+	 * </p>
+	 */
+	private synchronized boolean writeBack(Object instance) {
+		byte[] current = getBytes();
+		if (current == null)
+			// the attribute was already removed
+			return true;
+		
+		byte[] serialized;
+		try {
+			serialized = serialize(instance);
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+		if (Arrays.equals(current, serialized))
+			return true;
+		
+		OffHeapArena.Allocation previous = allocation;
+		allocation = OffHeapArena.get().allocate(serialized, this);
+		bytes = allocation == null? serialized: null;
+		if (previous != null)
+			OffHeapArena.get().free(previous);
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpSessionBindingListener#valueBound(
+	 *     javax.servlet.http.HttpSessionBindingEvent
+	 * )
+	 */
+	@Override
+	public synchronized void valueBound(HttpSessionBindingEvent event) {
+		bindings++;
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpSessionBindingListener#valueUnbound(
+	 *     javax.servlet.http.HttpSessionBindingEvent
+	 * )
+	 */
+	@Override
+	public void valueUnbound(HttpSessionBindingEvent event) {
+		synchronized (this) {
+			// a deserialized reference is unbound without having been bound
+			if (--bindings > 0) {
+				if (value != null)
+					writeBack(value);
+				return;
+			}
+			value = null;
+			bytes = null;
+			if (allocation != null)
+				OffHeapArena.get().free(allocation);
+		}
+		uncache(this);
+	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		byte[] bytes;
+		synchronized (this) {
+			if (value != null && !writeBack(value))
+				throw new NotSerializableException(value.getClass().getName());
+			bytes = getBytes();
+		}
+		if (bytes == null)
+			throw new NotSerializableException("Off-heap session attribute already freed");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		allocation = OffHeapArena.get().allocate(bytes, this);
+		if (allocation == null)
+			this.bytes = bytes;
+	}
+	
+	private static byte[] serialize(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static Object deserialize(byte[] bytes) {
+		try (
+			ObjectInputStream in = new ContextObjectInputStream(new ByteArrayInputStream(bytes))
+		) {
+			return in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException(
+				"Off-heap session attribute cannot be deserialized", e
+			);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Support classes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   ObjectInputStream that resolves classes through the context class loader of the thread, 
+	 *   which is the one of the web application that reads the session.
+	 * </p>
+	 */
+	private static final class ContextObjectInputStream extends ObjectInputStream {
+		
+		private ContextObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+			throws IOException, ClassNotFoundException {
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			if (loader != null)
+				try {
+					return Class.forName(desc.getName(), false, loader);
+				} catch (ClassNotFoundException e) {
+					// falls back to the default resolution, which also handles primitive types
+				}
+			return super.resolveClass(desc);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,138 @@
+package org.nucleodevel.webapptemplate.session.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * <p>
+ *   SessionAttributeStore that keeps the large values out of the heap: a serializable value 
+ *   whose serialized form has at least webapptemplate.session.offHeap.threshold bytes, 4096 by 
+ *   default, is copied into OffHeapArena and the session only retains an OffHeapRef to it, which 
+ *   is deserialized when the attribute is read. Smaller values, values that are not 
+ *   serializable and values that do not fit in the arena are kept in the heap as they are.
+ *   Values that are small by their type, such as numbers, dates and short strings or arrays of 
+ *   primitives, are kept in the heap without being serialized.
+ * </p>
+ * <p>
+ *   It is selected for every AbstractSessionDao by the system property 
+ *   webapptemplate.session.store with the name of this class, or for one DAO by overriding 
+ *   getSessionAttributeStore(). Managed beans need no change: a value read from this store is 
+ *   the same instance for every read while OffHeapRef caches it, and a change made in it is 
+ *   serialized back into the arena, as described in OffHeapRef.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class OffHeapSessionAttributeStore implements SessionAttributeStore {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final int THRESHOLD = 
+		Math.max(1, Integer.getInteger("webapptemplate.session.offHeap.threshold", 4096));
+	
+	/**
+	 * <p>
+	 *   Upper bound of the bytes that a serialized string or array of primitives takes besides 
+	 *   its elements: the stream header and the class descriptor.
+	 * </p>
+	 */
+	private static final int HEADER_BYTES = 64;
+	
+	/**
+	 * <p>
+	 *   Types whose serialized form is always small.
+	 * </p>
+	 */
+	private static final Set<Class<?>> SMALL_TYPES = new HashSet<Class<?>>(Arrays.asList(
+		Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, 
+		Float.class, Double.class, Date.class
+	));
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.session.dao.SessionAttributeStore#get(
+	 *     javax.servlet.http.HttpSession, java.lang.String
+	 * )
+	 */
+	@Override
+	public Object get(HttpSession session, String key) {
+		Object value = session.getAttribute(key);
+		return value instanceof OffHeapRef? ((OffHeapRef) value).getValue(): value;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.session.dao.SessionAttributeStore#set(
+	 *     javax.servlet.http.HttpSession, java.lang.String, java.lang.Object
+	 * )
+	 */
+	@Override
+	public void set(HttpSession session, String key, Object value) {
+		session.setAttribute(key, toStored(value));
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the object that the session retains for the value: an OffHeapRef for a large 
+	 *   serializable value, or else the value itself.
+	 * </p>
+	 */
+	protected Object toStored(Object value) {
+		if (!(value instanceof Serializable) || value instanceof OffHeapRef || isSmall(value))
+			return value;
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(THRESHOLD);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		} catch (IOException e) {
+			// a field of the value is not serializable
+			return value;
+		}
+		if (bytes.size() < THRESHOLD)
+			return value;
+		
+		OffHeapRef ref = OffHeapRef.allocate(bytes.toByteArray());
+		return ref != null? ref: value;
+	}
+	
+	/**
+	 * <p>
+	 *   Indicates whether the serialized form of the value is certainly under the threshold, 
+	 *   estimated by its type and length, so that it is not serialized only to be measured. 
+	 *   Other values, such as collections and entities, are measured by serializing them.
+	 * </p>
+	 */
+	private static boolean isSmall(Object value) {
+		// an enum constant is serialized by its name
+		if (SMALL_TYPES.contains(value.getClass()) || value instanceof Enum)
+			return true;
+		if (value instanceof String)
+			// modified UTF-8 takes up to 3 bytes per char
+			return ((String) value).length() * 3L + HEADER_BYTES < THRESHOLD;
+		Class<?> componentType = value.getClass().getComponentType();
+		if (componentType != null && componentType.isPrimitive())
+			return (long) Array.getLength(value) * 8 + HEADER_BYTES < THRESHOLD;
+		return false;
+	}
+	
+}
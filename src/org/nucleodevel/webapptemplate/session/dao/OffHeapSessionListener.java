@@ -0,0 +1,48 @@
+package org.nucleodevel.webapptemplate.session.dao;
+
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * <p>
+ *   Tracks the values that every request reads from OffHeapSessionAttributeStore and, at its 
+ *   end, serializes them back into OffHeapArena through OffHeapRef, so that the changes made by 
+ *   managed beans in them are kept. It is registered by the servlet container in every 
+ *   application that has webapptemplate in its classpath, and serializes nothing at the end of 
+ *   the requests that read no off-heap value.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@WebListener
+public class OffHeapSessionListener implements ServletRequestListener {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestListener#requestInitialized(
+	 *     javax.servlet.ServletRequestEvent
+	 * )
+	 */
+	@Override
+	public void requestInitialized(ServletRequestEvent event) {
+		OffHeapRef.beginRequest();
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestListener#requestDestroyed(
+	 *     javax.servlet.ServletRequestEvent
+	 * )
+	 */
+	@Override
+	public void requestDestroyed(ServletRequestEvent event) {
+		OffHeapRef.endRequest();
+	}
+	
+}
@@ -0,0 +1,31 @@
+package org.nucleodevel.webapptemplate.session.dao;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * <p>
+ *   Strategy through which AbstractSessionDao keeps the attributes of an HTTP session, so that 
+ *   the place where their values live, the heap by default, is changed without any change in 
+ *   the managed beans that use the DAO.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public interface SessionAttributeStore {
+	
+	/**
+	 * <p>
+	 *   Returns the value of the attribute of the session whose key is passed by parameter, or 
+	 *   null if it does not exist.
+	 * </p>
+	 */
+	Object get(HttpSession session, String key);
+	
+	/**
+	 * <p>
+	 *   Sets the value of the attribute of the session whose key is passed by parameter. A null 
+	 *   value removes the attribute.
+	 * </p>
+	 */
+	void set(HttpSession session, String key, Object value);
+	
+}
@@ -0,0 +1,210 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.AggregateFunction;
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.RefreshAheadCache;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+
+/**
+ * <p>
+ *   Application-wide cache of the series of the charts of AbstractJsfStatsMb, the totals of the 
+ *   entities per bucket, keyed by DAO class, date attribute, bucket, begin, end and filters, so 
+ *   that every user that views the same chart is served from memory. Series are reloaded 
+ *   through a RefreshAheadCache: asynchronously ahead of their maximum age, while readers get 
+ *   the current series, and synchronously once they are older than it.
+ * </p>
+ * <p>
+ *   Series are loaded by DAO instances owned by the cache, one per DAO class, which load one 
+ *   series at a time. The maximum age and the refresh-ahead time, in milliseconds, are read from 
+ *   the system properties webapptemplate.charts.maxAge, 300000 by default, and 
+ *   webapptemplate.charts.refreshAhead, 60000 by default. Series that are not read for longer 
+ *   than the maximum age are evicted.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@ApplicationScoped
+public class ChartSeriesCache {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long MAX_AGE_MILLIS = 
+		Long.getLong("webapptemplate.charts.maxAge", 300000L);
+	
+	private static final long REFRESH_AHEAD_MILLIS = Math.min(
+		Long.getLong("webapptemplate.charts.refreshAhead", 60000L), MAX_AGE_MILLIS
+	);
+	
+	/**
+	 * <p>
+	 *   Number of reads between two evictions of the expired series.
+	 * </p>
+	 */
+	private static final int EVICTION_INTERVAL = 256;
+	
+	/**
+	 * <p>
+	 *   DAOs that load the series, one per DAO class.
+	 * </p>
+	 */
+	private final Map<Class<?>, AbstractDao<?>> daos = 
+		new ConcurrentHashMap<Class<?>, AbstractDao<?>>();
+	
+	private final RefreshAheadCache<Key, SortedMap<Date, Number>> series = 
+		new RefreshAheadCache<Key, SortedMap<Date, Number>>(
+			this::loadSeries, MAX_AGE_MILLIS, REFRESH_AHEAD_MILLIS
+		);
+	
+	private final AtomicLong reads = new AtomicLong();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the unmodifiable number of entities read by the DAO class per bucket of the date 
+	 *   attribute, as returned by AbstractDao.selectAggregateByTimeBucket(), loading it on the 
+	 *   first call.
+	 * </p>
+	 */
+	public <E extends AbstractEntity<?>> SortedMap<Date, Number> getTotals(
+		Class<? extends AbstractDao<E>> daoClass, String dateAttribute, TimeBucket bucket, 
+		Date begin, Date end, Map<String, Object> filters
+	) {
+		if (reads.incrementAndGet() % EVICTION_INTERVAL == 0)
+			series.evictExpired();
+		return series.get(new Key(daoClass, dateAttribute, bucket, begin, end, filters));
+	}
+	
+	/**
+	 * <p>
+	 *   Removes every series, so that the next reader of each one loads it again.
+	 * </p>
+	 */
+	public void clear() {
+		series.clear();
+	}
+	
+	/**
+	 * <p>
+	 *   Counts the entities per bucket through the DAO of the cache for the DAO class of the key 
+	 *   and copies them to an unmodifiable map.
+	 * </p>
+	 */
+	private SortedMap<Date, Number> loadSeries(Key key) {
+		AbstractDao<?> dao = daos.computeIfAbsent(
+			key.daoClass, daoClass -> (AbstractDao<?>) ClassDescriptor.of(daoClass).newInstance()
+		);
+		synchronized (dao) {
+			return Collections.unmodifiableSortedMap(
+				new TreeMap<Date, Number>(
+					dao.selectAggregateByTimeBucket(
+						key.dateAttribute, key.bucket, AggregateFunction.COUNT, null, 
+						key.begin != null? new Date(key.begin): null, 
+						key.end != null? new Date(key.end): null, key.filters
+					)
+				)
+			);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Key
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Immutable key of a series, which copies the dates and the filters passed to it.
+	 * </p>
+	 */
+	private static final class Key {
+		
+		private final Class<?> daoClass;
+		
+		private final String dateAttribute;
+		
+		private final TimeBucket bucket;
+		
+		private final Long begin;
+		
+		private final Long end;
+		
+		private final Map<String, Object> filters;
+		
+		private Key(
+			Class<?> daoClass, String dateAttribute, TimeBucket bucket, Date begin, Date end, 
+			Map<String, Object> filters
+		) {
+			this.daoClass = daoClass;
+			this.dateAttribute = dateAttribute;
+			this.bucket = bucket;
+			this.begin = begin != null? begin.getTime(): null;
+			this.end = end != null? end.getTime(): null;
+			this.filters = filters != null && !filters.isEmpty()? 
+				Collections.unmodifiableMap(new HashMap<String, Object>(filters)): null;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return
+				daoClass == other.daoClass && bucket == other.bucket
+					&& Objects.equals(dateAttribute, other.dateAttribute)
+					&& Objects.equals(begin, other.begin) && Objects.equals(end, other.end)
+					&& Objects.equals(filters, other.filters);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return Objects.hash(daoClass, dateAttribute, bucket, begin, end, filters);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return
+				daoClass.getSimpleName() + "." + dateAttribute + " by " + bucket + " from "
+					+ begin + " to " + end;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,188 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *   HyperLogLog sketch that estimates the number of distinct values added to it, such as the 
+ *   distinct users of a period, in 2^precision bytes, with a standard error of about 
+ *   1.04 / sqrt(2^precision): 2.3% for the default precision of 11. Values are hashed to 64 bits, 
+ *   so the estimate needs no correction for large cardinalities, and small ones are estimated by 
+ *   linear counting. The registers are only allocated by the first value, so empty buckets of 
+ *   a SketchSeries cost nothing.
+ * </p>
+ * <p>
+ *   Integral numbers are hashed by their value and other values by their string form, so the 
+ *   same ID is counted once whether it is a Long or an Integer. A sketch is not thread-safe.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class HyperLogLog implements Sketch<HyperLogLog> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static final int DEFAULT_PRECISION = 11;
+	
+	private final int precision;
+	
+	/**
+	 * <p>
+	 *   Greatest rank seen per register, or null while no value was added.
+	 * </p>
+	 */
+	private byte[] registers;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * @throws IllegalArgumentException If precision is not between 4 and 18.
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < 4 || precision > 18)
+			throw new IllegalArgumentException("Precision must be between 4 and 18: " + precision);
+		this.precision = precision;
+	}
+	
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public int getPrecision() {
+		return precision;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Adds the value to the sketch. Null is ignored.
+	 * </p>
+	 */
+	public void add(Object value) {
+		if (value != null)
+			addHash(hash(value));
+	}
+	
+	/**
+	 * <p>
+	 *   Adds a value already hashed to 64 well mixed bits.
+	 * </p>
+	 */
+	public void addHash(long hash) {
+		if (registers == null)
+			registers = new byte[1 << precision];
+		int index = (int) (hash >>> (64 - precision));
+		// the guard bit bounds the rank when the remaining bits are all zeros
+		long remaining = (hash << precision) | (1L << (precision - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+		if (rank > registers[index])
+			registers[index] = rank;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the estimated number of distinct values added to the sketch.
+	 * </p>
+	 */
+	public long estimate() {
+		if (registers == null)
+			return 0;
+		
+		int size = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte rank: registers) {
+			sum += Double.longBitsToDouble((1023L - rank) << 52);
+			if (rank == 0)
+				zeros++;
+		}
+		double estimate = getAlpha(size) * size * size / sum;
+		if (estimate <= 2.5 * size && zeros > 0)
+			estimate = size * Math.log((double) size / zeros);
+		return Math.round(estimate);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.stats.Sketch#merge(Sketch)
+	 */
+	@Override
+	public void merge(HyperLogLog other) {
+		if (other.precision != precision)
+			throw new IllegalArgumentException(
+				"Cannot merge precision " + other.precision + " into " + precision
+			);
+		if (other.registers == null)
+			return;
+		if (registers == null) {
+			registers = Arrays.copyOf(other.registers, other.registers.length);
+			return;
+		}
+		for (int i = 0; i < registers.length; i++)
+			if (other.registers[i] > registers[i])
+				registers[i] = other.registers[i];
+	}
+	
+	/**
+	 * <p>
+	 *   Hashes the value to 64 bits: integral numbers by their value, and other values by the 
+	 *   FNV-1a hash of their string form, both mixed by the finalizer of MurmurHash3.
+	 * </p>
+	 */
+	public static long hash(Object value) {
+		long hash;
+		if (
+			value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte
+		)
+			hash = ((Number) value).longValue();
+		else {
+			hash = 0xcbf29ce484222325L;
+			String string = value.toString();
+			for (int i = 0; i < string.length(); i++)
+				hash = (hash ^ string.charAt(i)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+	
+	private static double getAlpha(int size) {
+		switch (size) {
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1 + 1.079 / size);
+		}
+	}
+	
+}
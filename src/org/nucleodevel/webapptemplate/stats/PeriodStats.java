@@ -0,0 +1,166 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+
+/**
+ * <p>
+ *   Statistics of a period computed at once from its daily totals: the daily, monthly and 
+ *   yearly series and the total, the busiest day and the number of days with entities, so that 
+ *   a stats page that shows all of them reads the source data a single time and every chart 
+ *   reuses the same result.
+ * </p>
+ * <p>
+ *   of() makes one pass over the days, which computes every granularity and metric together. 
+ *   A PeriodStats is immutable once created, but the series it returns are not copies and must 
+ *   not be modified.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class PeriodStats {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final Map<TimeBucket, TimeSeries> series;
+	
+	private final long total;
+	
+	private final LocalDate busiestDay;
+	
+	private final long busiestDayTotal;
+	
+	private final int activeDays;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private PeriodStats(TimeSeries daily) {
+		LocalDate first = daily.size() > 0? daily.getStart(0): LocalDate.now(daily.getZone());
+		LocalDate last = daily.size() > 0? daily.getStart(daily.size() - 1): first.minusDays(1);
+		TimeSeries monthly = new TimeSeries(TimeBucket.MONTH, first, last, daily.getZone());
+		TimeSeries yearly = new TimeSeries(TimeBucket.YEAR, first, last, daily.getZone());
+		
+		long total = 0;
+		int busiestDay = -1;
+		long busiestDayTotal = 0;
+		int activeDays = 0;
+		LocalDate day = first;
+		for (int i = 0; i < daily.size(); i++, day = day.plusDays(1)) {
+			long value = daily.get(i);
+			if (value == 0)
+				continue;
+			monthly.add(day, value);
+			yearly.add(day, value);
+			total += value;
+			activeDays++;
+			if (value > busiestDayTotal) {
+				busiestDay = i;
+				busiestDayTotal = value;
+			}
+		}
+		
+		this.series = new EnumMap<TimeBucket, TimeSeries>(TimeBucket.class);
+		this.series.put(TimeBucket.DAY, daily);
+		this.series.put(TimeBucket.MONTH, monthly);
+		this.series.put(TimeBucket.YEAR, yearly);
+		this.total = total;
+		this.busiestDay = busiestDay >= 0? daily.getStart(busiestDay): null;
+		this.busiestDayTotal = busiestDayTotal;
+		this.activeDays = activeDays;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the series of the bucket, whose buckets are those of the period.
+	 * </p>
+	 */
+	public TimeSeries getSeries(TimeBucket bucket) {
+		return series.get(bucket);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the sum of the totals of the period.
+	 * </p>
+	 */
+	public long getTotal() {
+		return total;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the day of the period with the greatest total, the first one on ties, or null if 
+	 *   no day has a positive total.
+	 * </p>
+	 */
+	public LocalDate getBusiestDay() {
+		return busiestDay;
+	}
+	
+	public long getBusiestDayTotal() {
+		return busiestDayTotal;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of days of the period whose total is not zero.
+	 * </p>
+	 */
+	public int getActiveDays() {
+		return activeDays;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the average total per day of the period, or zero if it has no days.
+	 * </p>
+	 */
+	public double getDailyAverage() {
+		int days = series.get(TimeBucket.DAY).size();
+		return days > 0? (double) total / days: 0;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Computes the statistics of the period of the daily series passed by parameter, which is 
+	 *   kept as the daily series of the result.
+	 * </p>
+	 * @throws IllegalArgumentException If the series is not daily.
+	 */
+	public static PeriodStats of(TimeSeries daily) {
+		if (daily.getBucket() != TimeBucket.DAY)
+			throw new IllegalArgumentException("Expected a daily series, got " + daily.getBucket());
+		return new PeriodStats(daily);
+	}
+	
+}
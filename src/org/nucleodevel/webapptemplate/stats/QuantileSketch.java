@@ -0,0 +1,299 @@
+package org.nucleodevel.webapptemplate.stats;
+
+/**
+ * <p>
+ *   Quantile sketch, after DDSketch, that answers percentiles of the values added to it, such 
+ *   as latencies or amounts, within a relative error, 1% by default, of the exact value. Each 
+ *   value is counted in a logarithmic bucket whose bounds differ by that ratio, so the size of 
+ *   the sketch depends on the range of the magnitudes of the values, a few hundred buckets for 
+ *   several orders of magnitude, and not on their number. Sketches with the same relative 
+ *   accuracy are merged exactly by adding their buckets.
+ * </p>
+ * <p>
+ *   Negative values are counted in buckets of their own, and values whose magnitude is below 
+ *   1e-9, such as zero, in a single bucket of zeros. A sketch is not thread-safe.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class QuantileSketch implements Sketch<QuantileSketch> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+	
+	private static final double MIN_MAGNITUDE = 1e-9;
+	
+	private final double relativeAccuracy;
+	
+	/**
+	 * <p>
+	 *   Ratio between the bounds of a bucket.
+	 * </p>
+	 */
+	private final double gamma;
+	
+	private final double logGamma;
+	
+	private final Buckets positives = new Buckets();
+	
+	private final Buckets negatives = new Buckets();
+	
+	private long zeroCount;
+	
+	private long count;
+	
+	private double sum;
+	
+	private double min = Double.POSITIVE_INFINITY;
+	
+	private double max = Double.NEGATIVE_INFINITY;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * @throws IllegalArgumentException If relativeAccuracy is not between 0 and 1, both excluded.
+	 */
+	public QuantileSketch(double relativeAccuracy) {
+		if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+			throw new IllegalArgumentException(
+				"Relative accuracy must be between 0 and 1: " + relativeAccuracy
+			);
+		this.relativeAccuracy = relativeAccuracy;
+		this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		this.logGamma = Math.log(gamma);
+	}
+	
+	public QuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of values added to the sketch.
+	 * </p>
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	public double getSum() {
+		return sum;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the exact mean of the values, or NaN if there are none.
+	 * </p>
+	 */
+	public double getMean() {
+		return count > 0? sum / count: Double.NaN;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the exact least value, or NaN if there are none.
+	 * </p>
+	 */
+	public double getMin() {
+		return count > 0? min: Double.NaN;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the exact greatest value, or NaN if there are none.
+	 * </p>
+	 */
+	public double getMax() {
+		return count > 0? max: Double.NaN;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Adds the value to the sketch. NaN is ignored.
+	 * </p>
+	 */
+	public void add(double value) {
+		if (Double.isNaN(value))
+			return;
+		if (value > MIN_MAGNITUDE)
+			positives.add(getIndex(value), 1);
+		else if (value < -MIN_MAGNITUDE)
+			negatives.add(getIndex(-value), 1);
+		else
+			zeroCount++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the value at the quantile, such as 0.5 for the median or 0.99 for the 99th 
+	 *   percentile, within the relative accuracy, or NaN if the sketch is empty.
+	 * </p>
+	 * @throws IllegalArgumentException If quantile is not between 0 and 1.
+	 */
+	public double getQuantile(double quantile) {
+		if (!(quantile >= 0 && quantile <= 1))
+			throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+		if (count == 0)
+			return Double.NaN;
+		
+		// rank of the value in the ascending order: negatives from the greatest magnitude
+		long rank = (long) (quantile * (count - 1));
+		double value;
+		if (rank < negatives.total)
+			value = -getValue(negatives.getIndexAt(negatives.total - 1 - rank));
+		else if (rank < negatives.total + zeroCount)
+			value = 0;
+		else
+			value = getValue(positives.getIndexAt(rank - negatives.total - zeroCount));
+		return Math.max(min, Math.min(max, value));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.stats.Sketch#merge(Sketch)
+	 */
+	@Override
+	public void merge(QuantileSketch other) {
+		if (other.relativeAccuracy != relativeAccuracy)
+			throw new IllegalArgumentException(
+				"Cannot merge relative accuracy " + other.relativeAccuracy + " into "
+					+ relativeAccuracy
+			);
+		if (other.count == 0)
+			return;
+		positives.merge(other.positives);
+		negatives.merge(other.negatives);
+		zeroCount += other.zeroCount;
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the index of the bucket of a positive magnitude, whose bounds are 
+	 *   gamma^(index - 1), excluded, and gamma^index.
+	 * </p>
+	 */
+	private int getIndex(double magnitude) {
+		return (int) Math.ceil(Math.log(magnitude) / logGamma);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the magnitude that represents the bucket, within the relative accuracy of any 
+	 *   magnitude in it.
+	 * </p>
+	 */
+	private double getValue(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Buckets
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Counts per bucket index of the magnitudes of one sign, in an array that grows to cover 
+	 *   the indexes seen.
+	 * </p>
+	 */
+	private static final class Buckets {
+		
+		private long[] counts = new long[0];
+		
+		/**
+		 * <p>
+		 *   Index of the bucket counted by counts[0].
+		 * </p>
+		 */
+		private int offset;
+		
+		private long total;
+		
+		private void add(int index, long delta) {
+			if (counts.length == 0) {
+				counts = new long[8];
+				offset = index - 4;
+			}
+			if (index < offset || index >= offset + counts.length) {
+				int from = Math.min(offset, index);
+				int to = Math.max(offset + counts.length, index + 1);
+				// grows with slack on the side of the new index
+				int slack = (to - from) / 2 + 1;
+				int newOffset = index < offset? from - slack: from;
+				long[] grown = new long[to - newOffset + (index < offset? 0: slack)];
+				System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+				counts = grown;
+				offset = newOffset;
+			}
+			counts[index - offset] += delta;
+			total += delta;
+		}
+		
+		/**
+		 * <p>
+		 *   Returns the index of the bucket of the value at the rank, from zero, in the ascending 
+		 *   order of the magnitudes.
+		 * </p>
+		 */
+		private int getIndexAt(long rank) {
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulative += counts[i];
+				if (cumulative > rank)
+					return offset + i;
+			}
+			return offset + counts.length - 1;
+		}
+		
+		private void merge(Buckets other) {
+			for (int i = 0; i < other.counts.length; i++)
+				if (other.counts[i] != 0)
+					add(other.offset + i, other.counts[i]);
+		}
+		
+	}
+	
+}
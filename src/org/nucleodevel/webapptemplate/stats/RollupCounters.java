@@ -0,0 +1,493 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.dao.AggregateFunction;
+import org.nucleodevel.webapptemplate.dao.DaoWriteListener;
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+
+/**
+ * <p>
+ *   Counters of the E entities per day, month and year of a date attribute, kept up to date by 
+ *   the inserts and deletes of every DAO of E, so that the charts of AbstractJsfStatsMb read a 
+ *   few hundred buckets instead of aggregating every entity. The counters of a DAO class and 
+ *   attribute are created by of() with a single aggregation of the datasource, and then 
+ *   maintained in memory as a DaoWriteListener.
+ * </p>
+ * <p>
+ *   The day counters are checkpointed to a file whenever they changed, every 
+ *   webapptemplate.rollup.checkpoint milliseconds, 60000 by default, in the directory 
+ *   webapptemplate.rollup.dir. By default, it is webapptemplate-rollups in the temporary 
+ *   directory of the web application, set by RollupCountersListener, or else in a directory of 
+ *   its own for the location of the DAO class in the temporary directory of the JVM, so that 
+ *   applications do not read the checkpoints of each other. On the next start, the checkpoint 
+ *   is loaded and only the days since it was written are aggregated again, once the number of 
+ *   entities of the older days in the datasource is checked to be the one of the checkpoint; 
+ *   otherwise everything is aggregated again. The counters only see the writes of this JVM, so 
+ *   rebuild() must be called after writes made elsewhere, such as by other nodes or by SQL.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <E> Subclass of AbstractEntity that maps an entity of a datasource.
+ */
+public class RollupCounters<E extends AbstractEntity<?>> implements DaoWriteListener<E> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long CHECKPOINT_MILLIS = 
+		Long.getLong("webapptemplate.rollup.checkpoint", 60000L);
+	
+	private static final String CHECKPOINT_DIRECTORY_NAME = "webapptemplate-rollups";
+	
+	/**
+	 * <p>
+	 *   Directory of the checkpoints set by webapptemplate.rollup.dir or setDefaultDirectory(), 
+	 *   or null for a directory of each DAO class.
+	 * </p>
+	 */
+	private static volatile File checkpointDirectory = 
+		System.getProperty("webapptemplate.rollup.dir") != null? 
+			new File(System.getProperty("webapptemplate.rollup.dir")): null;
+	
+	/**
+	 * <p>
+	 *   Version of the format of the checkpoint files, which are ignored if it differs.
+	 * </p>
+	 */
+	private static final int CHECKPOINT_VERSION = 1;
+	
+	/**
+	 * <p>
+	 *   Counters of each DAO class and date attribute.
+	 * </p>
+	 */
+	private static final ConcurrentMap<String, RollupCounters<?>> REGISTRY = 
+		new ConcurrentHashMap<String, RollupCounters<?>>();
+	
+	/**
+	 * <p>
+	 *   Executor of the checkpoints, whose daemon thread does not prevent the shutdown of the 
+	 *   JVM.
+	 * </p>
+	 */
+	private static final ScheduledExecutorService CHECKPOINTER = 
+		Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "webapptemplate-rollup-checkpoint");
+			thread.setDaemon(true);
+			return thread;
+		});
+	
+	private final Class<? extends AbstractDao<E>> daoClass;
+	
+	private final String dateAttribute;
+	
+	/**
+	 * <p>
+	 *   DAO through which the counters aggregate the datasource, created on the first 
+	 *   aggregation.
+	 * </p>
+	 */
+	private AbstractDao<E> dao;
+	
+	/**
+	 * <p>
+	 *   Counters of each bucket, keyed by the start of the bucket. The map is replaced as a whole 
+	 *   when the counters are rebuilt.
+	 * </p>
+	 */
+	private volatile Map<TimeBucket, ConcurrentNavigableMap<Date, AtomicLong>> counters;
+	
+	/**
+	 * <p>
+	 *   Indicates whether the counters changed since the last checkpoint.
+	 * </p>
+	 */
+	private volatile boolean dirty;
+	
+	/**
+	 * <p>
+	 *   Indicates whether the counters are registered as a write listener of E.
+	 * </p>
+	 */
+	private boolean listening;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private RollupCounters(Class<? extends AbstractDao<E>> daoClass, String dateAttribute) {
+		this.daoClass = daoClass;
+		this.dateAttribute = dateAttribute;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the counters of the entities of the DAO class per bucket of the date attribute, 
+	 *   creating them on the first call, which loads the checkpoint or aggregates the datasource 
+	 *   and registers them as a write listener.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends AbstractEntity<?>> RollupCounters<E> of(
+		Class<? extends AbstractDao<E>> daoClass, String dateAttribute
+	) {
+		RollupCounters<E> rollup = (RollupCounters<E>) REGISTRY.computeIfAbsent(
+			daoClass.getName() + "#" + dateAttribute, 
+			key -> new RollupCounters<E>(daoClass, dateAttribute)
+		);
+		rollup.start();
+		return rollup;
+	}
+	
+	/**
+	 * <p>
+	 *   Stops the thread of the checkpoints and writes a last checkpoint of the counters that 
+	 *   changed since their previous one, so that the next start of the application loads them 
+	 *   instead of aggregating the datasource. Called by RollupCountersListener when the 
+	 *   application is undeployed.
+	 * </p>
+	 */
+	public static void shutdown() {
+		CHECKPOINTER.shutdownNow();
+		for (RollupCounters<?> rollup: REGISTRY.values())
+			rollup.checkpointIfDirty();
+	}
+	
+	/**
+	 * <p>
+	 *   Sets the directory of the checkpoints, unless webapptemplate.rollup.dir is set. Called by 
+	 *   RollupCountersListener with a directory in the temporary directory of the application, 
+	 *   before the counters are created.
+	 * </p>
+	 */
+	public static void setDefaultDirectory(File directory) {
+		if (System.getProperty("webapptemplate.rollup.dir") == null)
+			checkpointDirectory = new File(directory, CHECKPOINT_DIRECTORY_NAME);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of entities in each bucket from the bucket of begin to the bucket of 
+	 *   end, both included, omitting the empty buckets. Null begin or end means no bound.
+	 * </p>
+	 */
+	public SortedMap<Date, Number> getCounts(TimeBucket bucket, Date begin, Date end) {
+		NavigableMap<Date, AtomicLong> buckets = counters.get(bucket);
+		if (begin != null)
+			buckets = buckets.tailMap(bucket.truncate(begin), true);
+		if (end != null)
+			buckets = buckets.headMap(bucket.truncate(end), true);
+		
+		SortedMap<Date, Number> counts = new TreeMap<Date, Number>();
+		for (Map.Entry<Date, AtomicLong> entry: buckets.entrySet()) {
+			long count = entry.getValue().get();
+			if (count != 0)
+				counts.put(entry.getKey(), count);
+		}
+		return counts;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.DaoWriteListener#inserted(java.lang.Object)
+	 */
+	@Override
+	public void inserted(E entity) {
+		add(entity, 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.nucleodevel.webapptemplate.dao.DaoWriteListener#deleted(java.lang.Object)
+	 */
+	@Override
+	public void deleted(E entity) {
+		add(entity, -1);
+	}
+	
+	/**
+	 * <p>
+	 *   Replaces the counters by a new aggregation of all the entities of the datasource.
+	 * </p>
+	 */
+	public synchronized void rebuild() {
+		setDays(selectDays(null));
+	}
+	
+	/**
+	 * <p>
+	 *   Writes the day counters to the checkpoint file, replacing it atomically.
+	 * </p>
+	 */
+	public synchronized void checkpoint() throws IOException {
+		long checkpointedAt = System.currentTimeMillis();
+		dirty = false;
+		NavigableMap<Date, AtomicLong> days = counters.get(TimeBucket.DAY);
+		
+		File file = getCheckpointFile();
+		File directory = file.getParentFile();
+		directory.mkdirs();
+		File temp = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (
+				DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp))
+				)
+			) {
+				out.writeInt(CHECKPOINT_VERSION);
+				out.writeUTF(TimeZone.getDefault().getID());
+				out.writeLong(checkpointedAt);
+				for (Map.Entry<Date, AtomicLong> entry: days.entrySet()) {
+					out.writeBoolean(true);
+					out.writeLong(entry.getKey().getTime());
+					out.writeLong(entry.getValue().get());
+				}
+				out.writeBoolean(false);
+			}
+			Files.move(
+				temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, 
+				StandardCopyOption.ATOMIC_MOVE
+			);
+		} catch (IOException | RuntimeException e) {
+			dirty = true;
+			temp.delete();
+			throw e;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Loads the counters, if they were not loaded yet, registers them as a write listener of 
+	 *   E and schedules their checkpoints. The listener is registered before the load, so a 
+	 *   write concurrent to it may be counted twice or missed.
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized void start() {
+		if (counters != null)
+			return;
+		
+		if (!listening) {
+			AbstractDao.addWriteListener(
+				(Class<E>) ClassDescriptor.of(daoClass).getParameterClass(AbstractDao.class, 0), 
+				this
+			);
+			listening = true;
+		}
+		SortedMap<Date, Number> days = readCheckpoint();
+		setDays(days != null? days: selectDays(null));
+		CHECKPOINTER.scheduleWithFixedDelay(
+			this::checkpointIfDirty, CHECKPOINT_MILLIS, CHECKPOINT_MILLIS, TimeUnit.MILLISECONDS
+		);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the day counters of the checkpoint file, with the days since the checkpoint 
+	 *   aggregated again, or null if there is no valid checkpoint or if the number of entities 
+	 *   of the days before it differs in the datasource, which was then written elsewhere.
+	 * </p>
+	 */
+	private SortedMap<Date, Number> readCheckpoint() {
+		File file = getCheckpointFile();
+		if (!file.isFile())
+			return null;
+		
+		SortedMap<Date, Number> days = new TreeMap<Date, Number>();
+		long checkpointedAt;
+		try (
+			DataInputStream in = 
+				new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+		) {
+			if (
+				in.readInt() != CHECKPOINT_VERSION
+					|| !in.readUTF().equals(TimeZone.getDefault().getID())
+			)
+				return null;
+			checkpointedAt = in.readLong();
+			while (in.readBoolean())
+				days.put(new Date(in.readLong()), in.readLong());
+		} catch (IOException e) {
+			Logger.getLogger(RollupCounters.class.getName()).log(
+				Level.WARNING, "Checkpoint " + file + " ignored", e
+			);
+			return null;
+		}
+		
+		Date since = TimeBucket.DAY.truncate(new Date(checkpointedAt));
+		days.tailMap(since).clear();
+		long checkpointed = 0;
+		for (Number count: days.values())
+			checkpointed += count.longValue();
+		long selected = selectCountBefore(since);
+		if (selected != checkpointed) {
+			Logger.getLogger(RollupCounters.class.getName()).log(
+				Level.INFO, 
+				"Checkpoint " + file + " ignored: " + checkpointed + " entities before " + since 
+					+ ", but " + selected + " in the datasource"
+			);
+			return null;
+		}
+		days.putAll(selectDays(since));
+		return days;
+	}
+	
+	/**
+	 * <p>
+	 *   Aggregates the entities per day of the date attribute since the date passed by 
+	 *   parameter, or since ever if it is null, through the DAO of the counters.
+	 * </p>
+	 */
+	private SortedMap<Date, Number> selectDays(Date since) {
+		return getDao().selectAggregateByTimeBucket(
+			dateAttribute, TimeBucket.DAY, AggregateFunction.COUNT, null, since, null, null
+		);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of entities of the datasource whose date attribute is before the date 
+	 *   passed by parameter, aggregated per year so that few rows are read.
+	 * </p>
+	 */
+	private long selectCountBefore(Date date) {
+		long count = 0;
+		for (
+			Number years: getDao().selectAggregateByTimeBucket(
+				dateAttribute, TimeBucket.YEAR, AggregateFunction.COUNT, null, null, 
+				new Date(date.getTime() - 1), null
+			).values()
+		)
+			count += years.longValue();
+		return count;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private AbstractDao<E> getDao() {
+		if (dao == null)
+			dao = (AbstractDao<E>) ClassDescriptor.of(daoClass).newInstance();
+		return dao;
+	}
+	
+	/**
+	 * <p>
+	 *   Replaces the counters by the day counters passed by parameter and the month and year 
+	 *   counters summed from them.
+	 * </p>
+	 */
+	private void setDays(SortedMap<Date, Number> days) {
+		Map<TimeBucket, ConcurrentNavigableMap<Date, AtomicLong>> newCounters = 
+			new EnumMap<TimeBucket, ConcurrentNavigableMap<Date, AtomicLong>>(TimeBucket.class);
+		for (TimeBucket bucket: TimeBucket.values())
+			newCounters.put(bucket, new ConcurrentSkipListMap<Date, AtomicLong>());
+		for (Map.Entry<Date, Number> day: days.entrySet())
+			add(newCounters, day.getKey(), day.getValue().longValue());
+		counters = newCounters;
+		dirty = true;
+	}
+	
+	/**
+	 * <p>
+	 *   Adds delta to the counters of the buckets of the date attribute of the entity.
+	 * </p>
+	 */
+	private void add(E entity, long delta) {
+		Object date = AbstractDao.getPropertyValue(entity, dateAttribute);
+		Map<TimeBucket, ConcurrentNavigableMap<Date, AtomicLong>> current = counters;
+		if (date instanceof Date && current != null) {
+			add(current, (Date) date, delta);
+			dirty = true;
+		}
+	}
+	
+	private static void add(
+		Map<TimeBucket, ConcurrentNavigableMap<Date, AtomicLong>> counters, Date date, long delta
+	) {
+		for (Map.Entry<TimeBucket, ConcurrentNavigableMap<Date, AtomicLong>> entry:
+			counters.entrySet()
+		)
+			entry.getValue().computeIfAbsent(
+				entry.getKey().truncate(date), key -> new AtomicLong()
+			).addAndGet(delta);
+	}
+	
+	private void checkpointIfDirty() {
+		if (dirty)
+			try {
+				checkpoint();
+			} catch (IOException | RuntimeException e) {
+				Logger.getLogger(RollupCounters.class.getName()).log(
+					Level.WARNING, "Checkpoint of " + getCheckpointFile() + " failed", e
+				);
+			}
+	}
+	
+	private File getCheckpointFile() {
+		File directory = checkpointDirectory;
+		if (directory == null)
+			directory = new File(
+				new File(System.getProperty("java.io.tmpdir"), CHECKPOINT_DIRECTORY_NAME), 
+				getLocationName()
+			);
+		return new File(directory, daoClass.getName() + "-" + dateAttribute + ".rollup");
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a name of the location from which the DAO class was loaded, which differs 
+	 *   between the applications of a server.
+	 * </p>
+	 */
+	private String getLocationName() {
+		CodeSource source = daoClass.getProtectionDomain().getCodeSource();
+		String location = source != null && source.getLocation() != null? 
+			source.getLocation().toString(): String.valueOf(daoClass.getClassLoader());
+		return Integer.toHexString(location.hashCode());
+	}
+	
+}
@@ -0,0 +1,53 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.io.File;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * <p>
+ *   Sets the temporary directory of the web application, which the servlet container keeps 
+ *   apart from the ones of other applications, as the directory of the checkpoints of 
+ *   RollupCounters. It is registered by the servlet container in every application that has 
+ *   webapptemplate in its classpath, and it shuts RollupCounters down, with a last checkpoint, 
+ *   when the application is undeployed.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@WebListener
+public class RollupCountersListener implements ServletContextListener {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextInitialized(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		Object directory = event.getServletContext().getAttribute(ServletContext.TEMPDIR);
+		if (directory instanceof File)
+			RollupCounters.setDefaultDirectory((File) directory);
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextDestroyed(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		RollupCounters.shutdown();
+	}
+	
+}
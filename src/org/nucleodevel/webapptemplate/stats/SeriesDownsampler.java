@@ -0,0 +1,91 @@
+package org.nucleodevel.webapptemplate.stats;
+
+/**
+ * <p>
+ *   Reduces a series of evenly spaced values to a number of points that a chart can draw, 
+ *   keeping its visual shape, through the Largest-Triangle-Three-Buckets algorithm: the first 
+ *   and last points are kept, the others are split into buckets of equal length, and from each 
+ *   bucket the point kept is the one that forms the largest triangle with the point kept from 
+ *   the previous bucket and the average of the next bucket. Peaks and valleys are kept, unlike 
+ *   with averaging or regular sampling.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class SeriesDownsampler {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the ascending indexes of the values kept, at most maxPoints of them. All the 
+	 *   indexes are returned if there are no more values than maxPoints or if maxPoints is less 
+	 *   than 3.
+	 * </p>
+	 */
+	public static int[] selectIndexes(long[] values, int maxPoints) {
+		double[] doubles = new double[values.length];
+		for (int i = 0; i < values.length; i++)
+			doubles[i] = values[i];
+		return selectIndexes(doubles, maxPoints);
+	}
+	
+	/**
+	 * <p>
+	 *   Same as selectIndexes(long[], int), for values that are not integral, such as estimated 
+	 *   quantiles, whose fractions matter for the shape of the series.
+	 * </p>
+	 */
+	public static int[] selectIndexes(double[] values, int maxPoints) {
+		int length = values.length;
+		if (maxPoints >= length || maxPoints < 3) {
+			int[] all = new int[length];
+			for (int i = 0; i < length; i++)
+				all[i] = i;
+			return all;
+		}
+		
+		int[] selected = new int[maxPoints];
+		double bucketLength = (double) (length - 2) / (maxPoints - 2);
+		int previous = 0;
+		selected[0] = 0;
+		for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+			// average of the next bucket, or the last point for the last bucket
+			int nextFrom = (int) ((bucket + 1) * bucketLength) + 1;
+			int nextTo = Math.min((int) ((bucket + 2) * bucketLength) + 1, length);
+			double averageX = 0;
+			double averageY = 0;
+			for (int i = nextFrom; i < nextTo; i++) {
+				averageX += i;
+				averageY += values[i];
+			}
+			averageX /= nextTo - nextFrom;
+			averageY /= nextTo - nextFrom;
+			
+			int from = (int) (bucket * bucketLength) + 1;
+			int to = nextFrom;
+			double maxArea = -1;
+			int kept = from;
+			for (int i = from; i < to; i++) {
+				double area = Math.abs(
+					(previous - averageX) * (values[i] - values[previous])
+						- (previous - i) * (averageY - values[previous])
+				);
+				if (area > maxArea) {
+					maxArea = area;
+					kept = i;
+				}
+			}
+			selected[bucket + 1] = kept;
+			previous = kept;
+		}
+		selected[maxPoints - 1] = length - 1;
+		return selected;
+	}
+	
+}
@@ -0,0 +1,24 @@
+package org.nucleodevel.webapptemplate.stats;
+
+/**
+ * <p>
+ *   Approximate summary of a set of values whose size does not grow with the number of values, 
+ *   such as a HyperLogLog or a QuantileSketch. Sketches of disjoint sets, such as those of the 
+ *   buckets of a SketchSeries, are merged into the sketch of their union, so a period is 
+ *   summarized by merging the sketches of its buckets.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <S> Type of the sketch.
+ */
+public interface Sketch<S extends Sketch<S>> {
+	
+	/**
+	 * <p>
+	 *   Adds the values summarized by the other sketch, which must have the same configuration, 
+	 *   to this one.
+	 * </p>
+	 * @throws IllegalArgumentException If the other sketch has another configuration.
+	 */
+	void merge(S other);
+	
+}
@@ -0,0 +1,176 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+
+/**
+ * <p>
+ *   Sketches per bucket, day, month or year, keyed by the LocalDate of the first day of the 
+ *   bucket, so that the approximate analytics of a report, such as distinct users or 
+ *   percentiles of amounts, are built in one pass over the entities and then summarized for any 
+ *   range of buckets by merging their sketches. Only the buckets to which values were added have 
+ *   a sketch.
+ * </p>
+ * <p>
+ *   Buckets are computed as in TimeSeries, in the default time zone unless another is passed. 
+ *   A series is not thread-safe.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <S> Type of the sketches.
+ */
+public class SketchSeries<S extends Sketch<S>> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final TimeBucket bucket;
+	
+	/**
+	 * <p>
+	 *   Creates the empty sketches of the buckets and of the merges, all with the same 
+	 *   configuration.
+	 * </p>
+	 */
+	private final Supplier<S> factory;
+	
+	private final ZoneId zone;
+	
+	private final SortedMap<LocalDate, S> sketches = new TreeMap<LocalDate, S>();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public SketchSeries(TimeBucket bucket, Supplier<S> factory, ZoneId zone) {
+		this.bucket = bucket;
+		this.factory = factory;
+		this.zone = zone;
+	}
+	
+	public SketchSeries(TimeBucket bucket, Supplier<S> factory) {
+		this(bucket, factory, ZoneId.systemDefault());
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public TimeBucket getBucket() {
+		return bucket;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the unmodifiable sketches keyed by the first day of their bucket.
+	 * </p>
+	 */
+	public SortedMap<LocalDate, S> getSketches() {
+		return Collections.unmodifiableSortedMap(sketches);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the sketch of the bucket that contains the day, creating it if it does not 
+	 *   exist, to which the values of that bucket are added.
+	 * </p>
+	 */
+	public S get(LocalDate date) {
+		return sketches.computeIfAbsent(TimeSeries.truncate(bucket, date), key -> factory.get());
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the sketch of the bucket that contains the date, as get(LocalDate).
+	 * </p>
+	 */
+	public S get(Date date) {
+		return get(TimeSeries.toLocalDate(date, zone));
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a new sketch that merges the sketches of the buckets that contain the dates from 
+	 *   begin to end, both included, or from the first or to the last bucket if begin or end is 
+	 *   null.
+	 * </p>
+	 */
+	public S getMerged(Date begin, Date end) {
+		S merged = factory.get();
+		for (S sketch: getRange(begin, end).values())
+			merged.merge(sketch);
+		return merged;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a new series with copies of the sketches of the buckets that contain the dates 
+	 *   from begin to end, as getMerged(), so that the copy is read by a thread while this 
+	 *   series keeps being written by another.
+	 * </p>
+	 */
+	public SketchSeries<S> copy(Date begin, Date end) {
+		SketchSeries<S> copy = new SketchSeries<S>(bucket, factory, zone);
+		for (Map.Entry<LocalDate, S> sketch: getRange(begin, end).entrySet())
+			copy.get(sketch.getKey()).merge(sketch.getValue());
+		return copy;
+	}
+	
+	/**
+	 * <p>
+	 *   Merges the sketches of the other series, of the same bucket, into the sketches of the 
+	 *   same buckets of this one, such as to combine the series built by different nodes.
+	 * </p>
+	 * @throws IllegalArgumentException If the other series has another bucket.
+	 */
+	public void merge(SketchSeries<S> other) {
+		if (other.bucket != bucket)
+			throw new IllegalArgumentException("Cannot merge " + other.bucket + " into " + bucket);
+		for (Map.Entry<LocalDate, S> sketch: other.sketches.entrySet())
+			get(sketch.getKey()).merge(sketch.getValue());
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the sketches of the buckets that contain the dates from begin to end, both 
+	 *   included, or from the first or to the last bucket if begin or end is null.
+	 * </p>
+	 */
+	private SortedMap<LocalDate, S> getRange(Date begin, Date end) {
+		SortedMap<LocalDate, S> range = sketches;
+		if (begin != null)
+			range = range.tailMap(TimeSeries.truncate(bucket, TimeSeries.toLocalDate(begin, zone)));
+		if (end != null)
+			range = range.headMap(TimeSeries.toLocalDate(end, zone).plusDays(1));
+		return range;
+	}
+	
+}
@@ -0,0 +1,322 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.nucleodevel.webapptemplate.dao.AbstractDao;
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.util.ClassDescriptor;
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+
+/**
+ * <p>
+ *   Application-wide cache of the sketches of the charts of AbstractJsfStatsMb, the HyperLogLog 
+ *   and QuantileSketch sketches of the entities per bucket, keyed by DAO class, date attribute, 
+ *   distinct and quantile attributes, bucket and filters, but not by period. The sketches of a 
+ *   bucket are built once, by the first reader whose period includes it, through 
+ *   AbstractDao.forEachBetween() restricted to the buckets not built yet, and every reader gets 
+ *   copies of the sketches of the buckets of its period, which it summarizes by merging them.
+ * </p>
+ * <p>
+ *   Sketches are built by DAO instances owned by the cache, one per DAO class, which build one 
+ *   range at a time. The sketches of a key are built again from scratch once they are older 
+ *   than the system property webapptemplate.charts.maxAge, 300000 milliseconds by default, as 
+ *   the series of ChartSeriesCache, and those that are not read for longer than that are 
+ *   evicted.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@ApplicationScoped
+public class SketchSeriesCache {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final long MAX_AGE_MILLIS = 
+		Long.getLong("webapptemplate.charts.maxAge", 300000L);
+	
+	/**
+	 * <p>
+	 *   Number of reads between two evictions of the expired sketches.
+	 * </p>
+	 */
+	private static final int EVICTION_INTERVAL = 256;
+	
+	/**
+	 * <p>
+	 *   DAOs that read the entities, one per DAO class.
+	 * </p>
+	 */
+	private final Map<Class<?>, AbstractDao<?>> daos = 
+		new ConcurrentHashMap<Class<?>, AbstractDao<?>>();
+	
+	private final ConcurrentMap<Key, Sketches> sketches = new ConcurrentHashMap<Key, Sketches>();
+	
+	private final AtomicLong reads = new AtomicLong();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns a copy of the HyperLogLog sketches of the distinct values of distinctAttribute 
+	 *   per bucket of the date attribute, of the whole buckets that contain the dates from begin 
+	 *   to end, building the missing ones together with those of getQuantileSketches().
+	 * </p>
+	 */
+	public <E extends AbstractEntity<?>> SketchSeries<HyperLogLog> getDistinctSketches(
+		Class<? extends AbstractDao<E>> daoClass, String dateAttribute, String distinctAttribute, 
+		String quantileAttribute, TimeBucket bucket, Date begin, Date end, 
+		Map<String, Object> filters
+	) {
+		Sketches built = build(
+			new Key(daoClass, dateAttribute, distinctAttribute, quantileAttribute, bucket, filters), 
+			begin, end
+		);
+		synchronized (built) {
+			return built.distinct.copy(begin, end);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a copy of the QuantileSketch sketches of the values of quantileAttribute per 
+	 *   bucket of the date attribute, as getDistinctSketches().
+	 * </p>
+	 */
+	public <E extends AbstractEntity<?>> SketchSeries<QuantileSketch> getQuantileSketches(
+		Class<? extends AbstractDao<E>> daoClass, String dateAttribute, String distinctAttribute, 
+		String quantileAttribute, TimeBucket bucket, Date begin, Date end, 
+		Map<String, Object> filters
+	) {
+		Sketches built = build(
+			new Key(daoClass, dateAttribute, distinctAttribute, quantileAttribute, bucket, filters), 
+			begin, end
+		);
+		synchronized (built) {
+			return built.quantiles.copy(begin, end);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Removes every sketch, so that the next reader of each key builds them again.
+	 * </p>
+	 */
+	public void clear() {
+		sketches.clear();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the sketches of the key, after building those of the buckets from the bucket of 
+	 *   begin to the bucket of end that were not built yet. Null begin or end means no bound.
+	 * </p>
+	 */
+	private Sketches build(Key key, Date begin, Date end) {
+		long now = System.currentTimeMillis();
+		if (reads.incrementAndGet() % EVICTION_INTERVAL == 0)
+			sketches.values().removeIf(expired -> now - expired.readAt > MAX_AGE_MILLIS);
+		
+		Sketches built = sketches.computeIfAbsent(key, Sketches::new);
+		synchronized (built) {
+			built.readAt = now;
+			if (built.builtAt >= 0 && now - built.builtAt > MAX_AGE_MILLIS)
+				built.reset();
+			
+			Date from = begin != null? key.bucket.truncate(begin): null;
+			Date to = end != null? key.bucket.next(key.bucket.truncate(end)): null;
+			if (built.builtAt < 0) {
+				scan(key, built, from, to);
+				built.from = from;
+				built.to = to;
+				built.builtAt = now;
+				return built;
+			}
+			if (built.from != null && (from == null || from.before(built.from))) {
+				scan(key, built, from, built.from);
+				built.from = from;
+			}
+			if (built.to != null && (to == null || to.after(built.to))) {
+				scan(key, built, built.to, to);
+				built.to = to;
+			}
+		}
+		return built;
+	}
+	
+	/**
+	 * <p>
+	 *   Adds the entities of the key whose date is from the date from, included, to the date 
+	 *   to, excluded, to the sketches, through the DAO of the cache for the DAO class of the key. 
+	 *   Null from or to means no bound.
+	 * </p>
+	 */
+	private void scan(Key key, Sketches built, Date from, Date to) {
+		AbstractDao<?> dao = daos.computeIfAbsent(
+			key.daoClass, daoClass -> (AbstractDao<?>) ClassDescriptor.of(daoClass).newInstance()
+		);
+		synchronized (dao) {
+			try {
+				dao.forEachBetween(
+					key.dateAttribute, from, to != null? new Date(to.getTime() - 1): null, 
+					key.filters, entity -> add(key, built, entity)
+				);
+			} finally {
+				// the entities read are not kept by the DAO after their sketches are built
+				dao.clear();
+			}
+		}
+	}
+	
+	private static void add(Key key, Sketches built, Object entity) {
+		Date date = (Date) AbstractDao.getPropertyValue(entity, key.dateAttribute);
+		if (key.distinctAttribute != null)
+			built.distinct.get(date).add(
+				AbstractDao.getPropertyValue(entity, key.distinctAttribute)
+			);
+		if (key.quantileAttribute != null) {
+			Object value = AbstractDao.getPropertyValue(entity, key.quantileAttribute);
+			if (value instanceof Number)
+				built.quantiles.get(date).add(((Number) value).doubleValue());
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Sketches
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Sketches of a key, built for the buckets from the date from, included, to the date to, 
+	 *   excluded, which are null if they have no bound. They are read and written under their 
+	 *   own lock.
+	 * </p>
+	 */
+	private static final class Sketches {
+		
+		private final TimeBucket bucket;
+		
+		private SketchSeries<HyperLogLog> distinct;
+		
+		private SketchSeries<QuantileSketch> quantiles;
+		
+		private Date from;
+		
+		private Date to;
+		
+		/**
+		 * <p>
+		 *   Time of the first build of the sketches, or -1 if they were not built yet.
+		 * </p>
+		 */
+		private long builtAt;
+		
+		private volatile long readAt;
+		
+		private Sketches(Key key) {
+			this.bucket = key.bucket;
+			reset();
+		}
+		
+		private void reset() {
+			distinct = new SketchSeries<HyperLogLog>(bucket, HyperLogLog::new);
+			quantiles = new SketchSeries<QuantileSketch>(bucket, QuantileSketch::new);
+			from = null;
+			to = null;
+			builtAt = -1;
+		}
+		
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Key
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Immutable key of the sketches, which copies the filters passed to it.
+	 * </p>
+	 */
+	private static final class Key {
+		
+		private final Class<?> daoClass;
+		
+		private final String dateAttribute;
+		
+		private final String distinctAttribute;
+		
+		private final String quantileAttribute;
+		
+		private final TimeBucket bucket;
+		
+		private final Map<String, Object> filters;
+		
+		private Key(
+			Class<?> daoClass, String dateAttribute, String distinctAttribute, 
+			String quantileAttribute, TimeBucket bucket, Map<String, Object> filters
+		) {
+			this.daoClass = daoClass;
+			this.dateAttribute = dateAttribute;
+			this.distinctAttribute = distinctAttribute;
+			this.quantileAttribute = quantileAttribute;
+			this.bucket = bucket;
+			this.filters = filters != null && !filters.isEmpty()? 
+				Collections.unmodifiableMap(new HashMap<String, Object>(filters)): null;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return
+				daoClass == other.daoClass && bucket == other.bucket
+					&& Objects.equals(dateAttribute, other.dateAttribute)
+					&& Objects.equals(distinctAttribute, other.distinctAttribute)
+					&& Objects.equals(quantileAttribute, other.quantileAttribute)
+					&& Objects.equals(filters, other.filters);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return Objects.hash(
+				daoClass, dateAttribute, distinctAttribute, quantileAttribute, bucket, filters
+			);
+		}
+		
+	}
+	
+}
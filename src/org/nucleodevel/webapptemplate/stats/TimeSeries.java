@@ -0,0 +1,341 @@
+package org.nucleodevel.webapptemplate.stats;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.nucleodevel.webapptemplate.util.TimeBucket;
+
+/**
+ * <p>
+ *   Dense series of counters per bucket, day, month or year, over a contiguous period, backed 
+ *   by a long[] indexed by the offset of the bucket from the first one. Adding to the bucket of 
+ *   a timestamp is O(1), every bucket of the period is present, with zero if nothing was added 
+ *   to it, and a daily series rolls up to a monthly or yearly one in a single pass, so that 
+ *   charts of long periods do not allocate an object per bucket.
+ * </p>
+ * <p>
+ *   Buckets are computed with java.time in a time zone, the default one unless another is 
+ *   passed, and are identified by the LocalDate of their first day. A series is not 
+ *   thread-safe.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class TimeSeries {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private final TimeBucket bucket;
+	
+	/**
+	 * <p>
+	 *   First day of the first bucket.
+	 * </p>
+	 */
+	private final LocalDate first;
+	
+	private final ZoneId zone;
+	
+	private final long[] values;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Creates a series of zeros from the bucket of first to the bucket of last, both included, 
+	 *   which is empty if last is before first.
+	 * </p>
+	 */
+	public TimeSeries(TimeBucket bucket, LocalDate first, LocalDate last, ZoneId zone) {
+		this.bucket = bucket;
+		this.first = truncate(bucket, first);
+		this.zone = zone;
+		long size = offset(bucket, this.first, last) + 1;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many buckets from " + first + " to " + last);
+		this.values = new long[last.isBefore(first)? 0: (int) size];
+	}
+	
+	public TimeSeries(TimeBucket bucket, LocalDate first, LocalDate last) {
+		this(bucket, first, last, ZoneId.systemDefault());
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public TimeBucket getBucket() {
+		return bucket;
+	}
+	
+	public ZoneId getZone() {
+		return zone;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of buckets of the series.
+	 * </p>
+	 */
+	public int size() {
+		return values.length;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the value of the bucket at the index.
+	 * </p>
+	 */
+	public long get(int index) {
+		return values[index];
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the first day of the bucket at the index.
+	 * </p>
+	 */
+	public LocalDate getStart(int index) {
+		switch (bucket) {
+			case YEAR:
+				return first.plusYears(index);
+			case MONTH:
+				return first.plusMonths(index);
+			default:
+				return first.plusDays(index);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a copy of the values of the buckets.
+	 * </p>
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(values, values.length);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Creates a series of zeros over the buckets of the dates between begin and end, both 
+	 *   included, in the default time zone.
+	 * </p>
+	 */
+	public static TimeSeries between(TimeBucket bucket, Date begin, Date end) {
+		ZoneId zone = ZoneId.systemDefault();
+		return new TimeSeries(bucket, toLocalDate(begin, zone), toLocalDate(end, zone), zone);
+	}
+	
+	/**
+	 * <p>
+	 *   Creates a series with the values keyed by the start of their bucket, such as those 
+	 *   returned by AbstractDao.selectAggregateByTimeBucket(), over the buckets between begin and 
+	 *   end, or over the buckets of the keys if begin or end is null. Values outside the period 
+	 *   are ignored.
+	 * </p>
+	 */
+	public static TimeSeries of(
+		TimeBucket bucket, Date begin, Date end, SortedMap<Date, ? extends Number> values
+	) {
+		if (begin == null)
+			begin = !values.isEmpty()? values.firstKey(): end;
+		if (end == null)
+			end = !values.isEmpty()? values.lastKey(): begin;
+		if (begin == null)
+			begin = end = new Date();
+		
+		TimeSeries series = between(bucket, begin, end);
+		for (Map.Entry<Date, ? extends Number> value: values.entrySet())
+			if (value.getValue() != null)
+				series.add(value.getKey(), value.getValue().longValue());
+		return series;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the index of the bucket that contains the day, or -1 if it is outside the 
+	 *   series.
+	 * </p>
+	 */
+	public int indexOf(LocalDate date) {
+		long offset = offset(bucket, first, date);
+		return offset >= 0 && offset < values.length? (int) offset: -1;
+	}
+	
+	/**
+	 * <p>
+	 *   Adds delta to the bucket that contains the day. Returns false, without adding, if it is 
+	 *   outside the series.
+	 * </p>
+	 */
+	public boolean add(LocalDate date, long delta) {
+		int index = indexOf(date);
+		if (index < 0)
+			return false;
+		values[index] += delta;
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 *   Adds delta to the bucket that contains the date, as add(LocalDate, long).
+	 * </p>
+	 */
+	public boolean add(Date date, long delta) {
+		return add(toLocalDate(date, zone), delta);
+	}
+	
+	/**
+	 * <p>
+	 *   Adds one to the bucket that contains the timestamp, in milliseconds since the epoch, as 
+	 *   add(LocalDate, long).
+	 * </p>
+	 */
+	public boolean increment(long epochMillis) {
+		return add(Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate(), 1);
+	}
+	
+	/**
+	 * <p>
+	 *   Adds the values of the other series, of the same bucket, to the buckets of this series, 
+	 *   ignoring those outside it, such as to merge the partial series of a parallel count.
+	 * </p>
+	 * @throws IllegalArgumentException If the other series has another bucket.
+	 */
+	public void add(TimeSeries other) {
+		if (other.bucket != bucket)
+			throw new IllegalArgumentException("Cannot add " + other.bucket + " to " + bucket);
+		
+		if (other.first.equals(first) && other.values.length == values.length) {
+			for (int i = 0; i < values.length; i++)
+				values[i] += other.values[i];
+			return;
+		}
+		for (int i = 0; i < other.values.length; i++)
+			if (other.values[i] != 0)
+				add(other.getStart(i), other.values[i]);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a series of the coarser bucket passed by parameter whose values are the sums of 
+	 *   the values of this series, such as the months of a daily series.
+	 * </p>
+	 * @throws IllegalArgumentException If the bucket is finer than the bucket of this series.
+	 */
+	public TimeSeries rollUp(TimeBucket coarser) {
+		if (coarser == bucket)
+			return copy();
+		if (coarser.compareTo(bucket) < 0)
+			throw new IllegalArgumentException("Cannot roll " + bucket + " up to " + coarser);
+		
+		TimeSeries rolled = new TimeSeries(coarser, first, getStart(values.length - 1), zone);
+		if (values.length == 0)
+			return rolled;
+		
+		// buckets are contiguous, so the index of the coarser bucket only moves forward
+		int target = 0;
+		LocalDate nextStart = rolled.getStart(1);
+		for (int i = 0; i < values.length; i++) {
+			LocalDate start = getStart(i);
+			while (!start.isBefore(nextStart))
+				nextStart = rolled.getStart(++target + 1);
+			rolled.values[target] += values[i];
+		}
+		return rolled;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns a copy of this series.
+	 * </p>
+	 */
+	public TimeSeries copy() {
+		TimeSeries copy = new TimeSeries(bucket, first, getStart(values.length - 1), zone);
+		System.arraycopy(values, 0, copy.values, 0, values.length);
+		return copy;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the values keyed by the start of their bucket as a Date, for the APIs that take 
+	 *   such maps.
+	 * </p>
+	 */
+	public SortedMap<Date, Long> toMap() {
+		SortedMap<Date, Long> map = new TreeMap<Date, Long>();
+		for (int i = 0; i < values.length; i++)
+			map.put(Date.from(getStart(i).atStartOfDay(zone).toInstant()), values[i]);
+		return map;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the first day of the bucket that contains the day.
+	 * </p>
+	 */
+	static LocalDate truncate(TimeBucket bucket, LocalDate date) {
+		switch (bucket) {
+			case YEAR:
+				return date.withDayOfYear(1);
+			case MONTH:
+				return date.withDayOfMonth(1);
+			default:
+				return date;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the number of buckets from the bucket that starts at first to the bucket that 
+	 *   contains the day, negative if the day is before first.
+	 * </p>
+	 */
+	private static long offset(TimeBucket bucket, LocalDate first, LocalDate date) {
+		switch (bucket) {
+			case YEAR:
+				return date.getYear() - first.getYear();
+			case MONTH:
+				return
+					(date.getYear() - first.getYear()) * 12L
+						+ date.getMonthValue() - first.getMonthValue();
+			default:
+				return ChronoUnit.DAYS.between(first, date);
+		}
+	}
+	
+	static LocalDate toLocalDate(Date date, ZoneId zone) {
+		return Instant.ofEpochMilli(date.getTime()).atZone(zone).toLocalDate();
+	}
+	
+}
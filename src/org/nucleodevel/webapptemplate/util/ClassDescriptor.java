@@ -0,0 +1,316 @@
+package org.nucleodevel.webapptemplate.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.Version;
+
+import org.nucleodevel.webapptemplate.entity.AbstractEntity;
+import org.nucleodevel.webapptemplate.entity.IdCodec;
+import org.nucleodevel.webapptemplate.entity.IdCodecs;
+
+/**
+ * <p>
+ *   Metadata of a class that webapptemplate would otherwise obtain by reflection again and again: 
+ *   the classes adopted by the type parameters of each generic superclass, the default 
+ *   constructor and, for entities, the class and the codec of the ID and the accessor of the 
+ *   version. A descriptor is created once per class, through a ClassValue, and is shared by 
+ *   every DAO, entity, converter, managed bean and REST resource of that class.
+ * </p>
+ * <p>
+ *   Type parameters are resolved through the whole superclass chain, so a class that extends an 
+ *   intermediate generic class, or a proxy subclass created by the container, resolves the same 
+ *   classes as a direct subclass.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public final class ClassDescriptor {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private static final ClassValue<ClassDescriptor> DESCRIPTORS = 
+		new ClassValue<ClassDescriptor>() {
+			@Override
+			protected ClassDescriptor computeValue(Class<?> type) {
+				return new ClassDescriptor(type);
+			}
+		};
+	
+	private static final MethodType DEFAULT_CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+	
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	
+	/**
+	 * <p>
+	 *   Version accessor of the classes that have no version, which returns null.
+	 * </p>
+	 */
+	private static final MethodHandle NO_VERSION = MethodHandles.dropArguments(
+		MethodHandles.constant(Object.class, null), 0, Object.class
+	);
+	
+	private final Class<?> type;
+	
+	/**
+	 * <p>
+	 *   For each generic superclass of type, the classes adopted by its type parameters. A type 
+	 *   parameter that is not resolved by the hierarchy is null.
+	 * </p>
+	 */
+	private final Map<Class<?>, Class<?>[]> parameterClasses;
+	
+	/**
+	 * <p>
+	 *   Default constructor adapted to return Object, looked up on first use.
+	 * </p>
+	 */
+	private volatile MethodHandle constructor;
+	
+	/**
+	 * <p>
+	 *   Codec of IDs in string format, resolved on first use when type is an entity.
+	 * </p>
+	 */
+	private volatile IdCodec<?> idCodec;
+	
+	/**
+	 * <p>
+	 *   Getter of the attribute annotated with Version adapted to take and return Object, or 
+	 *   NO_VERSION, looked up on first use.
+	 * </p>
+	 */
+	private volatile MethodHandle versionGetter;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private ClassDescriptor(Class<?> type) {
+		this.type = type;
+		this.parameterClasses = resolveParameterClasses(type);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the shared descriptor of the class passed by parameter.
+	 * </p>
+	 */
+	public static ClassDescriptor of(Class<?> type) {
+		return DESCRIPTORS.get(type);
+	}
+	
+	public Class<?> getType() {
+		return type;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the class adopted by the type parameter whose index is parameterIndex in 
+	 *   genericDeclaration, a generic superclass of this class, or null if the hierarchy does not 
+	 *   resolve it to a class.
+	 * </p>
+	 */
+	public Class<?> getParameterClass(Class<?> genericDeclaration, int parameterIndex) {
+		Class<?>[] classes = parameterClasses.get(genericDeclaration);
+		if (classes == null || parameterIndex >= classes.length)
+			return null;
+		return classes[parameterIndex];
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the class of the ID of an entity class, or null if this class is not an entity.
+	 * </p>
+	 */
+	public Class<?> getEntityIdClass() {
+		return getParameterClass(AbstractEntity.class, 0);
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns a new instance of the class via its public default constructor.
+	 * </p>
+	 * @throws IllegalStateException If the class has no public default constructor or the 
+	 *   constructor fails.
+	 */
+	public Object newInstance() {
+		MethodHandle handle = constructor;
+		if (handle == null) {
+			try {
+				handle = MethodHandles.publicLookup()
+					.unreflectConstructor(type.getConstructor()).asType(DEFAULT_CONSTRUCTOR_TYPE);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				throw new IllegalStateException(type.getName() + " has no default constructor", e);
+			}
+			constructor = handle;
+		}
+		try {
+			return (Object) handle.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(type.getName() + " could not be instantiated", e);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the codec that converts the IDs of the entities of this class from and to 
+	 *   strings, resolved by IdCodecs on the first call.
+	 * </p>
+	 */
+	public IdCodec<?> getIdCodec() {
+		IdCodec<?> codec = idCodec;
+		if (codec == null) {
+			codec = IdCodecs.forIdClass(getEntityIdClass());
+			idCodec = codec;
+		}
+		return codec;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the value of the attribute of the entity, an instance of this class, annotated 
+	 *   with javax.persistence.Version on its field or on its getter, or null if the class has 
+	 *   no such attribute.
+	 * </p>
+	 */
+	public Object getVersion(Object entity) {
+		MethodHandle getter = versionGetter;
+		if (getter == null) {
+			getter = findVersionGetter(type);
+			versionGetter = getter;
+		}
+		try {
+			return (Object) getter.invokeExact(entity);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(type.getName() + " version could not be read", e);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Looks up the field or the getter annotated with Version in the class and its 
+	 *   superclasses.
+	 * </p>
+	 */
+	private static MethodHandle findVersionGetter(Class<?> type) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (Field field: c.getDeclaredFields())
+					if (field.isAnnotationPresent(Version.class)) {
+						field.setAccessible(true);
+						return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+					}
+				for (Method method: c.getDeclaredMethods())
+					if (
+						method.isAnnotationPresent(Version.class) 
+							&& method.getParameterCount() == 0
+					) {
+						method.setAccessible(true);
+						return lookup.unreflect(method).asType(GETTER_TYPE);
+					}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(type.getName() + " version is not accessible", e);
+		}
+		return NO_VERSION;
+	}
+	
+	/**
+	 * <p>
+	 *   Walks the superclass chain of type, resolving the type arguments of each generic 
+	 *   superclass with the bindings of the type variables of its subclass.
+	 * </p>
+	 */
+	private static Map<Class<?>, Class<?>[]> resolveParameterClasses(Class<?> type) {
+		Map<Class<?>, Class<?>[]> result = new HashMap<Class<?>, Class<?>[]>();
+		Map<TypeVariable<?>, Type> bindings = Collections.emptyMap();
+		
+		for (Class<?> c = type; c != null && c.getSuperclass() != null; c = c.getSuperclass()) {
+			Class<?> superclass = c.getSuperclass();
+			Type genericSuperclass = c.getGenericSuperclass();
+			if (!(genericSuperclass instanceof ParameterizedType)) {
+				bindings = Collections.emptyMap();
+				continue;
+			}
+			
+			Type[] arguments = ((ParameterizedType) genericSuperclass).getActualTypeArguments();
+			TypeVariable<?>[] variables = superclass.getTypeParameters();
+			Map<TypeVariable<?>, Type> superclassBindings = new HashMap<TypeVariable<?>, Type>();
+			Class<?>[] classes = new Class<?>[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				Type argument = arguments[i];
+				if (argument instanceof TypeVariable && bindings.containsKey(argument))
+					argument = bindings.get(argument);
+				superclassBindings.put(variables[i], argument);
+				classes[i] = getErasure(argument);
+			}
+			result.put(superclass, classes);
+			bindings = superclassBindings;
+		}
+		return result;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the class that corresponds to a resolved type, or null if the type still 
+	 *   depends on a type variable.
+	 * </p>
+	 */
+	private static Class<?> getErasure(Type type) {
+		if (type instanceof Class)
+			return (Class<?>) type;
+		if (type instanceof ParameterizedType)
+			return getErasure(((ParameterizedType) type).getRawType());
+		if (type instanceof GenericArrayType) {
+			Class<?> component = getErasure(((GenericArrayType) type).getGenericComponentType());
+			return component != null? Array.newInstance(component, 0).getClass(): null;
+		}
+		if (type instanceof WildcardType)
+			return getErasure(((WildcardType) type).getUpperBounds()[0]);
+		return null;
+	}
+	
+}
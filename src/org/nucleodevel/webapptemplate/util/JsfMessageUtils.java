@@ -1,5 +1,7 @@
 package org.nucleodevel.webapptemplate.util;
 
+import java.text.MessageFormat;
+
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
 
@@ -105,5 +107,39 @@ public class JsfMessageUtils {
         FacesContext.getCurrentInstance().addMessage("successInfo", facesMsg);
         FacesContext.getCurrentInstance().getExternalContext().getFlash().setKeepMessages(true);
     }
+
+    /**
+     * <p>
+	 *   This method reads the pattern of the message whose key is passed by parameter and is 
+	 *   located in the default file whose path is referenced by RESOURCE_GENERIC_MSG, formats it 
+	 *   with the parameters by MessageFormat and adds it to the JSF flow as an error message.
+	 * </p>
+     */
+    public static void addFormattedErrorMessage(String key, Object... params) {
+        FacesMessage facesMsg = new FacesMessage(
+        	FacesMessage.SEVERITY_ERROR, 
+        	VariableUtils.getVariableFromResource("generic.error"), 
+        	MessageFormat.format(VariableUtils.getVariableFromResource(key), params)
+        );
+        FacesContext.getCurrentInstance().addMessage(null, facesMsg);
+        FacesContext.getCurrentInstance().getExternalContext().getFlash().setKeepMessages(true);
+    }
+
+    /**
+     * <p>
+	 *   This method reads the pattern of the message whose key is passed by parameter and is 
+	 *   located in the default file whose path is referenced by RESOURCE_GENERIC_MSG, formats it 
+	 *   with the parameters by MessageFormat and adds it to the JSF flow as a success message.
+	 * </p>
+     */
+    public static void addFormattedSuccessMessage(String key, Object... params) {
+        FacesMessage facesMsg = new FacesMessage(
+        	FacesMessage.SEVERITY_INFO, 
+        	VariableUtils.getVariableFromResource("generic.success"), 
+        	MessageFormat.format(VariableUtils.getVariableFromResource(key), params)
+        );
+        FacesContext.getCurrentInstance().addMessage("successInfo", facesMsg);
+        FacesContext.getCurrentInstance().getExternalContext().getFlash().setKeepMessages(true);
+    }
 	
 }
\ No newline at end of file
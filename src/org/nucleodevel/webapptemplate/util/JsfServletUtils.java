@@ -2,6 +2,9 @@ package org.nucleodevel.webapptemplate.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 
 import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
@@ -70,7 +73,7 @@ public class JsfServletUtils {
 		HttpServletResponse httpServletResponse = 
 			(HttpServletResponse) FacesContext.getCurrentInstance()
 				.getExternalContext().getResponse();
-        httpServletResponse.addHeader("Content-disposition", "attachment; filename=\"" + name);
+        httpServletResponse.addHeader("Content-Disposition", getContentDisposition(name));
         ServletOutputStream servletOutputStream = httpServletResponse.getOutputStream();
         
         IOUtils.copy(stream, servletOutputStream);
@@ -80,4 +83,76 @@ public class JsfServletUtils {
         FacesContext.getCurrentInstance().responseComplete();
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * <p>
+	 *   Streams a download as a file whose name is passed by parameter in the context of a 
+	 *   servlet call. The writer writes the content straight to the output of the response, 
+	 *   which is sent in chunks as it is written, so the content is never held in memory as a 
+	 *   whole.
+	 * </p>
+	 */
+	public static void writeAttachment(String name, String contentType, AttachmentWriter writer) 
+		throws IOException {
+		
+		FacesContext facesContext = FacesContext.getCurrentInstance();
+		ExternalContext externalContext = facesContext.getExternalContext();
+		externalContext.responseReset();
+		externalContext.setResponseContentType(contentType);
+		externalContext.setResponseHeader("Content-Disposition", getContentDisposition(name));
+		
+		OutputStream outputStream = externalContext.getResponseOutputStream();
+		writer.write(outputStream);
+		outputStream.flush();
+		
+		facesContext.responseComplete();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the value of the Content-Disposition header of a download as a file whose name 
+	 *   is passed by parameter, as described by RFC 6266: a quoted ASCII name for old clients 
+	 *   and the exact name encoded in UTF-8 for the others.
+	 * </p>
+	 */
+	public static String getContentDisposition(String name) {
+		StringBuilder asciiName = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c < 0x20 || c >= 0x7F)
+				asciiName.append('_');
+			else {
+				if (c == '"' || c == '\\')
+					asciiName.append('\\');
+				asciiName.append(c);
+			}
+		}
+		try {
+			String encodedName = URLEncoder.encode(name, "UTF-8")
+				.replace("+", "%20").replace("*", "%2A");
+			return "attachment; filename=\"" + asciiName + "\"; filename*=UTF-8''" + encodedName;
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attachment writer
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Writer of the content of a download streamed by writeAttachment().
+	 * </p>
+	 */
+	@FunctionalInterface
+	public interface AttachmentWriter {
+		
+		void write(OutputStream out) throws IOException;
+		
+	}
+	
+}
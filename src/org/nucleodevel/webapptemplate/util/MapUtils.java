@@ -1,11 +1,10 @@
 package org.nucleodevel.webapptemplate.util;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
-import java.util.TreeMap;
+
+import org.nucleodevel.webapptemplate.stats.TimeSeries;
 
 /**
  * <p>
@@ -28,48 +27,26 @@ public class MapUtils {
      *   Creates a map with all the keys in a certain period, from begin to end, according to the 
      *   criterion of day, month or year.
      * </p>
+     * @deprecated Use TimeSeries, which keeps the buckets of a period in a long[] instead of a 
+     *   map of dates.
      */
+    @Deprecated
     public static Map<Date, Long> createADateLongMapByPeriod(
     	Date first, Date last, int CalendarType 
     ) {
-    	Map<Date, Long> map = new TreeMap<Date, Long>();
-    	
-    	SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-    	
+    	TimeBucket bucket;
     	switch (CalendarType) {
-    		case Calendar.DATE:
-    			sdf = new SimpleDateFormat("yyyy-MM-dd");
-    		break;
     		case Calendar.MONTH:
-    			sdf = new SimpleDateFormat("yyyy-MM");
+    			bucket = TimeBucket.MONTH;
     		break;
     		case Calendar.YEAR:
-    			sdf = new SimpleDateFormat("yyyy");
+    			bucket = TimeBucket.YEAR;
+    		break;
+    		default:
+    			bucket = TimeBucket.DAY;
     		break;
     	}
-    	
-		Calendar firstDate = Calendar.getInstance();
-		Calendar lastDate = Calendar.getInstance();
-
-		try {
-			firstDate.setTime(sdf.parse(sdf.format(first)));
-			lastDate.setTime(sdf.parse(sdf.format(last)));
-			
-			firstDate.set(Calendar.HOUR_OF_DAY, 0);
-			firstDate.set(Calendar.MINUTE, 0);
-			firstDate.set(Calendar.SECOND, 0);
-			
-			lastDate.set(Calendar.HOUR_OF_DAY, 23);
-			lastDate.set(Calendar.MINUTE, 59);
-			lastDate.set(Calendar.SECOND, 59);
-			
-			for (Calendar d = firstDate; d.compareTo(lastDate) <= 0; d.add(CalendarType, 1))
-				map.put(sdf.parse(sdf.format(d.getTime())), 0L);
-		} catch (ParseException e) {
-			e.printStackTrace();
-		}
-		
-		return map;
+    	return TimeSeries.between(bucket, first, last).toMap();
     }
 	
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package org.nucleodevel.webapptemplate.util;
 
-import java.lang.reflect.ParameterizedType;
-
 /**
  * <p>
  *   Implements some useful functions for parameterized classes.
@@ -21,21 +19,30 @@ public class ParameterizedClassUtils {
     /**
 	 * <p>
 	 *   Gets the type Class<?> of the parameter type defined in parameterizedClass and whose 
-	 *   index is parameterIndex.
+	 *   index is parameterIndex. The parameter belongs to the direct generic superclass of 
+	 *   parameterizedClass.
 	 * </p>
 	 */
 	public static Class<?> getParameterClassFromParameterizedClass(
 		Class<?> parameterizedClass, int parameterIndex
 	) {
-		try {
-			String parameterClassName = 
-				((ParameterizedType) parameterizedClass.getGenericSuperclass())
-					.getActualTypeArguments()[parameterIndex].getTypeName();
-            return Class.forName(parameterClassName);
-		} catch (ClassNotFoundException e) {
-			e.printStackTrace();
-		}
-		return null;
+		return getParameterClassFromParameterizedClass(
+			parameterizedClass, parameterizedClass.getSuperclass(), parameterIndex
+		);
+	}
+    
+    /**
+	 * <p>
+	 *   Gets the type Class<?> of the parameter type whose index is parameterIndex in 
+	 *   genericDeclaration, as resolved by parameterizedClass, which may be an indirect subclass 
+	 *   of genericDeclaration. The result is cached per class by ClassDescriptor.
+	 * </p>
+	 */
+	public static Class<?> getParameterClassFromParameterizedClass(
+		Class<?> parameterizedClass, Class<?> genericDeclaration, int parameterIndex
+	) {
+		return ClassDescriptor.of(parameterizedClass)
+			.getParameterClass(genericDeclaration, parameterIndex);
 	}
 	
-}
\ No newline at end of file
+}
@@ -49,4 +49,26 @@ public class RandomUtils {
 		;
     }
 	
+    /**
+	 * <p>
+	 *   Gets a 6-hex string that represents a color not too dark for a chart series, in the same 
+	 *   range as getRandomStringColorForChartSeries(), but always the same for the same seed, 
+	 *   so that a series keeps its color across views and users.
+	 * </p>
+	 */
+    public static String getStringColorForChartSeries(Object seed) {
+    	// finalizer of MurmurHash3, so that similar seeds get different colors
+    	int hash = seed != null? seed.hashCode(): 0;
+    	hash = (hash ^ (hash >>> 16)) * 0x85ebca6b;
+    	hash = (hash ^ (hash >>> 13)) * 0xc2b2ae35;
+    	hash ^= hash >>> 16;
+    	
+    	StringBuilder color = new StringBuilder(6);
+    	for (int i = 0; i < 3; i++, hash >>>= 10) {
+    		color.append(Integer.toHexString((hash & 0x3f) % 6 + 7));
+    		color.append(Integer.toHexString((hash >>> 6) & 0xf));
+    	}
+    	return color.toString();
+    }
+	
 }
\ No newline at end of file
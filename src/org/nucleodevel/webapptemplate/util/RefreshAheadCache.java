@@ -0,0 +1,265 @@
+package org.nucleodevel.webapptemplate.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ *   Cache of values that are expensive to load and shared by many readers, such as the list of 
+ *   all entities of a table of reference data. Each value is loaded once, by the first reader, 
+ *   and then served to every reader without blocking. When a value gets older than maxAge minus 
+ *   refreshAhead, the next reader triggers an asynchronous reload and keeps getting the current 
+ *   value until the new one is ready; a value older than maxAge is reloaded synchronously. 
+ *   invalidate() also triggers an asynchronous reload, which is repeated if further 
+ *   invalidations arrive while it runs, so the value never misses a write.
+ * </p>
+ * <p>
+ *   Loads of the same key never run concurrently, so the loader can use an object that is not 
+ *   thread-safe per key. Values should be immutable, since they are shared between threads.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class RefreshAheadCache<K, V> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Executor of the asynchronous reloads of the caches created without one, whose daemon 
+	 *   threads do not prevent the shutdown of the JVM.
+	 * </p>
+	 */
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(
+		runnable -> {
+			Thread thread = new Thread(runnable, "webapptemplate-refresh-ahead");
+			thread.setDaemon(true);
+			return thread;
+		}
+	);
+	
+	private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+	
+	private final Function<K, V> loader;
+	
+	private final long maxAgeNanos;
+	
+	private final long refreshAfterNanos;
+	
+	private final Executor executor;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * @param loader Function that loads the value of a key. It must not return null.
+	 * @param maxAgeMillis Maximum age of a value served to a reader.
+	 * @param refreshAheadMillis How long before maxAge a value is reloaded asynchronously.
+	 */
+	public RefreshAheadCache(Function<K, V> loader, long maxAgeMillis, long refreshAheadMillis) {
+		this(loader, maxAgeMillis, refreshAheadMillis, DEFAULT_EXECUTOR);
+	}
+	
+	/**
+	 * @param loader Function that loads the value of a key. It must not return null.
+	 * @param maxAgeMillis Maximum age of a value served to a reader.
+	 * @param refreshAheadMillis How long before maxAge a value is reloaded asynchronously.
+	 * @param executor Executor of the asynchronous reloads.
+	 */
+	public RefreshAheadCache(
+		Function<K, V> loader, long maxAgeMillis, long refreshAheadMillis, Executor executor
+	) {
+		if (maxAgeMillis <= 0 || refreshAheadMillis < 0 || refreshAheadMillis > maxAgeMillis)
+			throw new IllegalArgumentException(
+				"maxAge " + maxAgeMillis + ", refreshAhead " + refreshAheadMillis
+			);
+		this.loader = loader;
+		this.maxAgeNanos = maxAgeMillis * 1000000L;
+		this.refreshAfterNanos = (maxAgeMillis - refreshAheadMillis) * 1000000L;
+		this.executor = executor;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the value of the key, loading it if it is absent or older than maxAge, and 
+	 *   triggering an asynchronous reload if it is due.
+	 * </p>
+	 */
+	public V get(K key) {
+		Entry<V> entry = entries.computeIfAbsent(key, k -> new Entry<V>());
+		V value = entry.value;
+		long age = System.nanoTime() - entry.loadedAt;
+		if (value == null || age >= maxAgeNanos)
+			return load(key, entry, false);
+		if (age >= refreshAfterNanos || entry.loadedGeneration != entry.generation.get())
+			refreshAsync(key, entry);
+		return value;
+	}
+	
+	/**
+	 * <p>
+	 *   Reloads the value of the key synchronously and returns it.
+	 * </p>
+	 */
+	public V reload(K key) {
+		return load(key, entries.computeIfAbsent(key, k -> new Entry<V>()), true);
+	}
+	
+	/**
+	 * <p>
+	 *   Marks the value of the key as outdated and reloads it asynchronously. Readers get the 
+	 *   current value until the reload is done.
+	 * </p>
+	 */
+	public void invalidate(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null) {
+			entry.generation.incrementAndGet();
+			refreshAsync(key, entry);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Removes every value, so that the next reader of each key loads it again.
+	 * </p>
+	 */
+	public void clear() {
+		entries.clear();
+	}
+	
+	/**
+	 * <p>
+	 *   Removes the values older than maxAge, which no reader has asked for since then, so that 
+	 *   a cache of many keys read only for a while does not keep them forever.
+	 * </p>
+	 */
+	public void evictExpired() {
+		long now = System.nanoTime();
+		entries.values().removeIf(
+			entry -> entry.value != null && now - entry.loadedAt >= maxAgeNanos 
+				&& !entry.refreshing.get()
+		);
+	}
+	
+	/**
+	 * <p>
+	 *   Loads the value of the entry under its lock, unless another thread loaded it while this 
+	 *   one waited and force is false.
+	 * </p>
+	 */
+	private V load(K key, Entry<V> entry, boolean force) {
+		synchronized (entry) {
+			V value = entry.value;
+			if (
+				!force && value != null
+					&& System.nanoTime() - entry.loadedAt < maxAgeNanos
+			)
+				return value;
+			
+			long generation = entry.generation.get();
+			value = loader.apply(key);
+			entry.loadedAt = System.nanoTime();
+			entry.loadedGeneration = generation;
+			entry.value = value;
+			return value;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Stops the threads of the executor of the caches created without one, so that they do 
+	 *   not outlive the application. Called by RefreshAheadCacheListener when the application is 
+	 *   undeployed; those caches can no longer reload asynchronously afterwards.
+	 * </p>
+	 */
+	public static void shutdownDefaultExecutor() {
+		DEFAULT_EXECUTOR.shutdownNow();
+	}
+	
+	/**
+	 * <p>
+	 *   Reloads the value of the entry in the executor, unless a reload is already running. The 
+	 *   reload is repeated while invalidations arrive during it.
+	 * </p>
+	 */
+	private void refreshAsync(K key, Entry<V> entry) {
+		if (!entry.refreshing.compareAndSet(false, true))
+			return;
+		try {
+			executor.execute(() -> {
+				try {
+					do
+						load(key, entry, true);
+					while (entry.loadedGeneration != entry.generation.get());
+				} catch (RuntimeException e) {
+					Logger.getLogger(RefreshAheadCache.class.getName()).log(
+						Level.WARNING, "Reload of " + key + " failed", e
+					);
+				} finally {
+					entry.refreshing.set(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			entry.refreshing.set(false);
+			throw e;
+		}
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Entry
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Value of a key, with the time and the generation of its load. The generation counts the 
+	 *   invalidations of the key.
+	 * </p>
+	 */
+	private static class Entry<V> {
+		
+		private volatile V value;
+		
+		private volatile long loadedAt;
+		
+		private volatile long loadedGeneration;
+		
+		private final AtomicLong generation = new AtomicLong();
+		
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+		
+	}
+	
+}
@@ -0,0 +1,47 @@
+package org.nucleodevel.webapptemplate.util;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * <p>
+ *   Stops the threads of the default executor of RefreshAheadCache, which reloads the caches 
+ *   of EntitySnapshotCache and ChartSeriesCache, when the application is undeployed, since 
+ *   they would otherwise keep the class loader of the application alive after a redeploy. It 
+ *   is registered by the servlet container in every application that has webapptemplate in its 
+ *   classpath.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@WebListener
+public class RefreshAheadCacheListener implements ServletContextListener {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextInitialized(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletContextListener#contextDestroyed(
+	 *     javax.servlet.ServletContextEvent
+	 * )
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		RefreshAheadCache.shutdownDefaultExecutor();
+	}
+	
+}
@@ -0,0 +1,123 @@
+package org.nucleodevel.webapptemplate.util;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * <p>
+ *   Periods by which dates are grouped in aggregations, such as the totals of the charts of 
+ *   AbstractJsfStatsMb. Each bucket starts at midnight of its first day, in the default time 
+ *   zone, so that the start of a bucket identifies it. Buckets are declared from the finest to 
+ *   the coarsest.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public enum TimeBucket {
+	
+	DAY(Calendar.DATE),
+	
+	MONTH(Calendar.MONTH),
+	
+	YEAR(Calendar.YEAR);
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Calendar field incremented from a bucket to the next.
+	 * </p>
+	 */
+	private final int calendarField;
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Constructors
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	private TimeBucket(int calendarField) {
+		this.calendarField = calendarField;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Getters and setters
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	public int getCalendarField() {
+		return calendarField;
+	}
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the bucket whose name is passed by parameter, ignoring case.
+	 * </p>
+	 * @throws IllegalArgumentException If there is no such bucket.
+	 */
+	public static TimeBucket of(String name) {
+		if (name != null)
+			for (TimeBucket bucket: values())
+				if (bucket.name().equalsIgnoreCase(name.trim()))
+					return bucket;
+		throw new IllegalArgumentException("Unknown time bucket: " + name);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the start of the bucket that contains the date.
+	 * </p>
+	 */
+	public Date truncate(Date date) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		return getStart(
+			calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, 
+			calendar.get(Calendar.DAY_OF_MONTH)
+		);
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the start of the bucket that contains the day passed by parameter, whose month 
+	 *   goes from 1 to 12. The fields finer than the bucket are ignored.
+	 * </p>
+	 */
+	public Date getStart(int year, int month, int day) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, this != YEAR? month - 1: 0, this == DAY? day: 1);
+		return calendar.getTime();
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the start of the bucket that follows the bucket that starts at the date.
+	 * </p>
+	 */
+	public Date next(Date start) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(start);
+		calendar.add(calendarField, 1);
+		return calendar.getTime();
+	}
+	
+}
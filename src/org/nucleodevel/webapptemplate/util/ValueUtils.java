@@ -0,0 +1,161 @@
+package org.nucleodevel.webapptemplate.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *   Implements the conversion of strings to plain attribute values, used by the filters of the 
+ *   DAOs. Unlike IdCodecs, it only converts scalar types: strings, booleans, characters, enums 
+ *   by the names of their constants ignoring case, UUIDs and classes with a static 
+ *   valueOf(String) method or a constructor that takes a String, such as the numbers. A class 
+ *   without any of them, such as an embeddable or an entity, has no conversion. The conversion 
+ *   of each class is resolved on its first use and cached.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+public class ValueUtils {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Conversion of each class, or null if the class has none.
+	 * </p>
+	 */
+	private static final ClassValue<Function<String, Object>> PARSERS = 
+		new ClassValue<Function<String, Object>>() {
+			@Override
+			protected Function<String, Object> computeValue(Class<?> type) {
+				return createParser(type);
+			}
+		};
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Returns the value of the type, or of the wrapper of a primitive type, represented by the 
+	 *   string, ignoring its surrounding spaces unless the type is String.
+	 * </p>
+	 * @throws IllegalArgumentException If the string does not represent a value of the type, 
+	 *   including NumberFormatException for numbers, or if the type has no conversion.
+	 */
+	public static Object parse(Class<?> type, String value) {
+		if (type == String.class)
+			return value;
+		Function<String, Object> parser = PARSERS.get(wrap(type));
+		if (parser == null)
+			throw new IllegalArgumentException(type.getName() + " has no conversion from strings");
+		return parser.apply(value.trim());
+	}
+	
+	/**
+	 * <p>
+	 *   Creates the conversion of a class, or returns null if it has none.
+	 * </p>
+	 */
+	private static Function<String, Object> createParser(Class<?> type) {
+		if (type == Boolean.class)
+			return value -> {
+				if ("true".equalsIgnoreCase(value))
+					return Boolean.TRUE;
+				if ("false".equalsIgnoreCase(value))
+					return Boolean.FALSE;
+				throw new IllegalArgumentException(value);
+			};
+		if (type == Character.class)
+			return value -> {
+				if (value.length() != 1)
+					throw new IllegalArgumentException(value);
+				return value.charAt(0);
+			};
+		if (type.isEnum())
+			return value -> {
+				for (Object constant: type.getEnumConstants())
+					if (((Enum<?>) constant).name().equalsIgnoreCase(value))
+						return constant;
+				throw new IllegalArgumentException(value);
+			};
+		if (type == UUID.class)
+			return UUID::fromString;
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+			return null;
+		
+		try {
+			Method valueOf = type.getMethod("valueOf", String.class);
+			if (Modifier.isStatic(valueOf.getModifiers()) && valueOf.getReturnType() == type)
+				return value -> invoke(valueOf, value);
+		} catch (NoSuchMethodException e) {
+			// falls back to the constructor
+		}
+		try {
+			Constructor<?> constructor = type.getConstructor(String.class);
+			return value -> invoke(constructor, value);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	private static Object invoke(Method valueOf, String value) {
+		try {
+			return valueOf.invoke(null, value);
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(value, e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(value, e);
+		}
+	}
+	
+	private static Object invoke(Constructor<?> constructor, String value) {
+		try {
+			return constructor.newInstance(value);
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(value, e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(value, e);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the wrapper class of a primitive class, or the class itself.
+	 * </p>
+	 */
+	private static Class<?> wrap(Class<?> type) {
+		if (!type.isPrimitive())
+			return type;
+		if (type == long.class)
+			return Long.class;
+		if (type == int.class)
+			return Integer.class;
+		if (type == short.class)
+			return Short.class;
+		if (type == byte.class)
+			return Byte.class;
+		if (type == boolean.class)
+			return Boolean.class;
+		if (type == char.class)
+			return Character.class;
+		if (type == double.class)
+			return Double.class;
+		return Float.class;
+	}
+	
+}
@@ -0,0 +1,40 @@
+package org.nucleodevel.webapptemplate.ws.rest;
+
+import javax.annotation.Priority;
+import javax.ws.rs.core.FeatureContext;
+
+import org.glassfish.jersey.internal.spi.AutoDiscoverable;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+
+/**
+ * <p>
+ *   Registers MultiPartFeature in every Jersey client and server runtime that has 
+ *   webapptemplate in its classpath, so the importFile() endpoint of the subclasses of 
+ *   AbstractRestResource, which consumes multipart/form-data, is deployed without any change in 
+ *   the configuration of the application.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@Priority(AutoDiscoverable.DEFAULT_PRIORITY)
+public class MultiPartAutoDiscoverable implements AutoDiscoverable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.glassfish.jersey.internal.spi.AutoDiscoverable#configure(
+	 *     javax.ws.rs.core.FeatureContext
+	 * )
+	 */
+	@Override
+	public void configure(FeatureContext context) {
+		if (!context.getConfiguration().isRegistered(MultiPartFeature.class))
+			context.register(MultiPartFeature.class);
+	}
+	
+}
@@ -0,0 +1,38 @@
+package org.nucleodevel.webapptemplate.ws.rest;
+
+import javax.annotation.Priority;
+import javax.ws.rs.core.FeatureContext;
+
+import org.glassfish.jersey.internal.spi.AutoDiscoverable;
+
+/**
+ * <p>
+ *   Registers SmileProvider in every Jersey client and server runtime that has webapptemplate 
+ *   in its classpath, so subclasses of AbstractRestResource accept and produce Smile without any 
+ *   change in the configuration of the application.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@Priority(AutoDiscoverable.DEFAULT_PRIORITY)
+public class SmileAutoDiscoverable implements AutoDiscoverable {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/* (non-Javadoc)
+	 * @see org.glassfish.jersey.internal.spi.AutoDiscoverable#configure(
+	 *     javax.ws.rs.core.FeatureContext
+	 * )
+	 */
+	@Override
+	public void configure(FeatureContext context) {
+		if (!context.getConfiguration().isRegistered(SmileProvider.class))
+			context.register(SmileProvider.class);
+	}
+	
+}
@@ -0,0 +1,181 @@
+package org.nucleodevel.webapptemplate.ws.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+/**
+ * <p>
+ *   JAX-RS provider that reads and writes entities in Smile, a compact binary encoding of the 
+ *   JSON data model. It is intended for service-to-service traffic between an AbstractRestClient 
+ *   and an AbstractRestResource, while browsers keep using the XML and JSON representations. 
+ *   Like the JSON provider of Jersey, it honors both Jackson and JAXB annotations, so an entity 
+ *   has the same properties in Smile and in JSON.
+ * </p>
+ * @author Dallan Augusto Toledo Reis
+ */
+@Provider
+@Consumes(SmileProvider.APPLICATION_SMILE)
+@Produces(SmileProvider.APPLICATION_SMILE)
+public class SmileProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Attributes
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Media type negotiated by clients and resources that exchange entities in Smile.
+	 * </p>
+	 */
+	public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+	
+	/**
+	 * <p>
+	 *   MediaType instance of APPLICATION_SMILE.
+	 * </p>
+	 */
+	public static final MediaType APPLICATION_SMILE_TYPE = 
+		new MediaType("application", "x-jackson-smile");
+	
+	/**
+	 * <p>
+	 *   Mapper shared by every instance of the provider. ObjectMapper is thread-safe once 
+	 *   configured and caches its serializers, so sharing it avoids rebuilding them per request.
+	 * </p>
+	 */
+	private static final ObjectMapper MAPPER = createMapper();
+	
+	
+	/* 
+	 * --------------------------------------------------------------------------------------------
+	 *   Methods
+	 * --------------------------------------------------------------------------------------------
+	 */
+	
+	
+	/**
+	 * <p>
+	 *   Creates the Smile mapper. The streams belong to the JAX-RS runtime, so the mapper must 
+	 *   not close them.
+	 * </p>
+	 */
+	private static ObjectMapper createMapper() {
+		SmileFactory factory = new SmileFactory();
+		factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		
+		ObjectMapper mapper = new ObjectMapper(factory);
+		mapper.setAnnotationIntrospector(
+			AnnotationIntrospector.pair(
+				new JacksonAnnotationIntrospector(), 
+				new JaxbAnnotationIntrospector(mapper.getTypeFactory())
+			)
+		);
+		mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+		return mapper;
+	}
+	
+	/**
+	 * <p>
+	 *   Returns the Jackson type of the entity, keeping the type arguments of generic types such 
+	 *   as List&lt;E&gt;.
+	 * </p>
+	 */
+	private static JavaType getJavaType(Class<?> type, Type genericType) {
+		return MAPPER.getTypeFactory().constructType(genericType != null? genericType: type);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.ext.MessageBodyReader#isReadable(
+	 *     java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], 
+	 *     javax.ws.rs.core.MediaType
+	 * )
+	 */
+	@Override
+	public boolean isReadable(
+		Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType
+	) {
+		return APPLICATION_SMILE_TYPE.isCompatible(mediaType);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.ext.MessageBodyReader#readFrom(
+	 *     java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], 
+	 *     javax.ws.rs.core.MediaType, javax.ws.rs.core.MultivaluedMap, java.io.InputStream
+	 * )
+	 */
+	@Override
+	public Object readFrom(
+		Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+		MultivaluedMap<String, String> httpHeaders, InputStream entityStream
+	) throws IOException {
+		return MAPPER.readValue(entityStream, getJavaType(type, genericType));
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.ext.MessageBodyWriter#isWriteable(
+	 *     java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], 
+	 *     javax.ws.rs.core.MediaType
+	 * )
+	 */
+	@Override
+	public boolean isWriteable(
+		Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType
+	) {
+		return APPLICATION_SMILE_TYPE.isCompatible(mediaType);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.ext.MessageBodyWriter#getSize(
+	 *     java.lang.Object, java.lang.Class, java.lang.reflect.Type, 
+	 *     java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType
+	 * )
+	 */
+	@Override
+	public long getSize(
+		Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType
+	) {
+		return -1;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.ws.rs.ext.MessageBodyWriter#writeTo(
+	 *     java.lang.Object, java.lang.Class, java.lang.reflect.Type, 
+	 *     java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType, 
+	 *     javax.ws.rs.core.MultivaluedMap, java.io.OutputStream
+	 * )
+	 */
+	@Override
+	public void writeTo(
+		Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+		MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream
+	) throws IOException {
+		MAPPER.writerFor(getJavaType(type, genericType)).writeValue(entityStream, t);
+	}
+	
+}